@@ -50,6 +50,9 @@ public class ListingContext implements Serializable
     /** The sorting. */
     private ListingFilter filter = null;
 
+    /** The projection. */
+    private ListingProjection projection = null;
+
     /**
      * Instantiates a new listing context.
      */
@@ -179,4 +182,28 @@ public class ListingContext implements Serializable
     {
         this.filter = filter;
     }
+
+    /**
+     * Returns the {@link org.alfresco.mobile.android.api.model.ListingProjection
+     * ListingProjection} associated to the current ListingContext. Null if all
+     * informations are retrieved.
+     * 
+     * @since 1.4
+     */
+    public ListingProjection getProjection()
+    {
+        return projection;
+    }
+
+    /**
+     * Sets the {@link org.alfresco.mobile.android.api.model.ListingProjection
+     * ListingProjection}.
+     * 
+     * @since 1.4
+     * @param projection : informations retrieved for each node of the list.
+     */
+    public void setProjection(ListingProjection projection)
+    {
+        this.projection = projection;
+    }
 }
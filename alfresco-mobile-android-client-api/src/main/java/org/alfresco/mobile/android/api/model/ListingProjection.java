@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+
+/**
+ * A ListingProjection defines which informations are retrieved for each node
+ * of a list (children of a folder, search results). By default all properties
+ * and allowable actions are retrieved. A lighter projection reduces the size
+ * of the responses : nodes of the list are then partial (
+ * {@link Node#hasAllProperties()} returns false) and the complete node can be
+ * retrieved with
+ * {@link org.alfresco.mobile.android.api.services.DocumentFolderService#refreshNode(Node)
+ * refreshNode}. <br/>
+ * A projection is associated to a listing with
+ * {@link ListingContext#setProjection(ListingProjection)}.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class ListingProjection implements Serializable
+{
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** Rendition filter which excludes all renditions. */
+    public static final String RENDITION_NONE = "cmis:none";
+
+    /** Rendition filter which includes thumbnail renditions. */
+    public static final String RENDITION_THUMBNAIL = "cmis:thumbnail";
+
+    /**
+     * Minimal projection used to display and navigate a list of nodes (folder
+     * picker...) : identifier, name, type and modification date. No allowable
+     * actions, no aspects and no renditions.
+     */
+    public static final ListingProjection SUMMARY = new ListingProjection("summary", Arrays.asList(
+            PropertyIds.OBJECT_ID, PropertyIds.NAME, PropertyIds.BASE_TYPE_ID, PropertyIds.OBJECT_TYPE_ID,
+            PropertyIds.LAST_MODIFICATION_DATE), false, false, RENDITION_NONE);
+
+    /**
+     * Complete projection which also retrieves the thumbnail renditions of
+     * each node. Used by thumbnail grids : thumbnails are then downloaded
+     * without any extra lookup (see
+     * {@link org.alfresco.mobile.android.api.services.DocumentFolderService#getRenditions(List, String)
+     * getRenditions}).
+     */
+    public static final ListingProjection THUMBNAILS = new ListingProjection("thumbnails", null, true, true,
+            RENDITION_THUMBNAIL);
+
+    /** Name of the projection. */
+    private final String name;
+
+    /** Properties retrieved. Null for all properties. */
+    private final List<String> properties;
+
+    /** Include allowable actions flag. */
+    private final boolean includeAllowableActions;
+
+    /** Include aspects flag. */
+    private final boolean includeAspects;
+
+    /** Rendition filter. Null for the default filter of the session. */
+    private final String renditionFilter;
+
+    /**
+     * Creates a projection.
+     * 
+     * @param name : name of the projection.
+     * @param properties : identifiers of the properties retrieved (for example
+     *            cmis:name). If null, all properties are retrieved.
+     * @param includeAllowableActions : true to retrieve allowable actions.
+     * @param includeAspects : true to retrieve aspects.
+     * @param renditionFilter : CMIS rendition filter (for example
+     *            cmis:thumbnail). If null, the default rendition filter of
+     *            the session is used.
+     */
+    public ListingProjection(String name, List<String> properties, boolean includeAllowableActions,
+            boolean includeAspects, String renditionFilter)
+    {
+        this.name = name;
+        this.properties = (properties != null) ? Collections.unmodifiableList(new ArrayList<String>(properties))
+                : null;
+        this.includeAllowableActions = includeAllowableActions;
+        this.includeAspects = includeAspects;
+        this.renditionFilter = renditionFilter;
+    }
+
+    /**
+     * Returns the name of the projection.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the identifiers of the properties retrieved or null if all
+     * properties are retrieved.
+     */
+    public List<String> getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * Returns true if allowable actions are retrieved.
+     */
+    public boolean isIncludeAllowableActions()
+    {
+        return includeAllowableActions;
+    }
+
+    /**
+     * Returns true if aspects are retrieved.
+     */
+    public boolean isIncludeAspects()
+    {
+        return includeAspects;
+    }
+
+    /**
+     * Returns the CMIS rendition filter or null for the default filter of the
+     * session.
+     */
+    public String getRenditionFilter()
+    {
+        return renditionFilter;
+    }
+
+    /**
+     * Returns true if nodes retrieved with this projection are complete.
+     */
+    public boolean hasAllProperties()
+    {
+        return properties == null && includeAllowableActions && includeAspects;
+    }
+}
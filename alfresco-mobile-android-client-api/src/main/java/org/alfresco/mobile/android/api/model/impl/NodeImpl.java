@@ -33,6 +33,7 @@ import org.alfresco.mobile.android.api.model.Node;
 import org.alfresco.mobile.android.api.model.Property;
 import org.apache.chemistry.opencmis.client.api.CmisObject;
 import org.apache.chemistry.opencmis.client.api.ObjectType;
+import org.apache.chemistry.opencmis.client.api.Rendition;
 import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.enums.Action;
 import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
@@ -380,6 +381,18 @@ public class NodeImpl implements Node
         return s;
     }
 
+    /**
+     * @return Returns the renditions retrieved with the node (depends on the
+     *         rendition filter of the request) or null if no rendition is
+     *         available.
+     * @since 1.4
+     */
+    public List<Rendition> getRenditions()
+    {
+        if (object != null) { return object.getRenditions(); }
+        return null;
+    }
+
     // ////////////////////////////////////////////////////
     // EXTRA TBD
     // ////////////////////////////////////////////////////
@@ -0,0 +1,555 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import android.util.LruCache;
+
+/**
+ * Decides for each request body whether it's worth compressing. <br/>
+ * The decision depends on the content type of the request and, for uploads,
+ * on the MIME type and the size of the uploaded content (see
+ * {@link #bindContent(String, long)}) :
+ * <ul>
+ * <li>small bodies are never compressed,</li>
+ * <li>text types (XML, JSON, text...) are compressed,</li>
+ * <li>already compressed types (JPEG, video, ZIP...) are sent as is,</li>
+ * <li>other types are probed : the first {@link #SAMPLE_SIZE} bytes are
+ * deflated and the body is compressed only if the sample shrinks below
+ * {@link #MAX_RATIO}.</li>
+ * </ul>
+ * The ratio achieved by each compressed body is recorded per type : once a
+ * type has enough samples, its average ratio drives the decision. The policy
+ * is used only when the server accepts compressed requests (
+ * {@link org.apache.chemistry.opencmis.commons.SessionParameter#CLIENT_COMPRESSION}
+ * ).
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class CompressionPolicy
+{
+    /** Bodies smaller than this size (in bytes) are never compressed. */
+    public static final int MIN_SIZE = 1024;
+
+    /** Size of the sample used to probe the compressibility of a body. */
+    public static final int SAMPLE_SIZE = 16 * 1024;
+
+    /** A body is compressed if its compressed size is below this ratio. */
+    public static final double MAX_RATIO = 0.9;
+
+    /** Number of samples required before the learned ratio is used. */
+    private static final int MIN_SAMPLES = 3;
+
+    /** Learned decisions are probed again every n requests. */
+    private static final int REPROBE_INTERVAL = 20;
+
+    /** Weight of the last sample inside the learned ratio. */
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    private static final int MAX_TYPES = 64;
+
+    private static final String[] COMPRESSED_TYPES = { "image/jpeg", "image/jpg", "image/png", "image/gif",
+            "image/webp", "video/", "audio/mpeg", "audio/mp4", "audio/aac", "audio/ogg", "application/zip",
+            "application/x-zip", "application/gzip", "application/x-gzip", "application/x-bzip2",
+            "application/x-7z-compressed", "application/x-rar-compressed", "application/java-archive",
+            "application/vnd.android.package-archive", "application/vnd.openxmlformats-",
+            "application/vnd.oasis.opendocument.", "application/epub+zip" };
+
+    private static final ThreadLocal<Content> CURRENT_CONTENT = new ThreadLocal<Content>();
+
+    private static CompressionPolicy instance;
+
+    private final LruCache<String, Ratio> ratios = new LruCache<String, Ratio>(MAX_TYPES);
+
+    // Statistics
+    private final AtomicLong compressedCount = new AtomicLong();
+
+    private final AtomicLong identityCount = new AtomicLong();
+
+    private final AtomicLong probeCount = new AtomicLong();
+
+    private final AtomicLong rawBytes = new AtomicLong();
+
+    private final AtomicLong wireBytes = new AtomicLong();
+
+    private CompressionPolicy()
+    {
+    }
+
+    /**
+     * @return the shared policy.
+     */
+    public static synchronized CompressionPolicy getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new CompressionPolicy();
+        }
+        return instance;
+    }
+
+    /**
+     * Describes the content uploaded by the requests of the current thread.
+     * Must be followed by {@link #unbindContent()}.
+     * 
+     * @param mimeType : MIME type of the uploaded content.
+     * @param length : length of the uploaded content or -1 if unknown.
+     */
+    public static void bindContent(String mimeType, long length)
+    {
+        CURRENT_CONTENT.set(new Content(mimeType, length));
+    }
+
+    /**
+     * Forgets the content of the current thread.
+     */
+    public static void unbindContent()
+    {
+        CURRENT_CONTENT.remove();
+    }
+
+    /**
+     * Creates the stream which sends a request body according to the policy.
+     * {@link PolicyOutputStream#finish()} must be called once the body has
+     * been written.
+     * 
+     * @param contentType : content type of the request.
+     * @param target : opens the underlying stream once the decision is made.
+     */
+    public PolicyOutputStream createOutputStream(String contentType, Target target)
+    {
+        Content content = CURRENT_CONTENT.get();
+        String mimeType = (content != null) ? normalize(content.mimeType) : null;
+        long length = (content != null) ? content.length : -1;
+        String type = normalize(contentType);
+        String key = createKey(type, mimeType);
+
+        Decision decision;
+        if (length >= 0 && length < MIN_SIZE)
+        {
+            decision = Decision.IDENTITY;
+        }
+        else
+        {
+            decision = getLearnedDecision(key);
+            if (decision == null)
+            {
+                decision = getStaticDecision(type, mimeType);
+            }
+        }
+        return new PolicyOutputStream(this, key, decision, target);
+    }
+
+    /**
+     * @param contentType : content type of the request.
+     * @param mimeType : MIME type of the uploaded content. Can be null.
+     * @return the learned compression ratio or -1 if the type has never been
+     *         compressed or probed.
+     */
+    public double getRatio(String contentType, String mimeType)
+    {
+        String key = createKey(normalize(contentType), normalize(mimeType));
+        synchronized (ratios)
+        {
+            Ratio ratio = ratios.get(key);
+            return (ratio != null) ? ratio.value : -1;
+        }
+    }
+
+    private Decision getLearnedDecision(String key)
+    {
+        synchronized (ratios)
+        {
+            Ratio ratio = ratios.get(key);
+            if (ratio == null || ratio.samples < MIN_SAMPLES) { return null; }
+            if (++ratio.decisions % REPROBE_INTERVAL == 0) { return Decision.PROBE; }
+            return (ratio.value < MAX_RATIO) ? Decision.GZIP : Decision.IDENTITY;
+        }
+    }
+
+    private static Decision getStaticDecision(String type, String mimeType)
+    {
+        if (mimeType == null || mimeType.equals(type))
+        {
+            if (isText(type)) { return Decision.GZIP; }
+            if (isCompressed(type)) { return Decision.IDENTITY; }
+            return Decision.PROBE;
+        }
+
+        // Content wrapped inside an Atom entry or a multipart body.
+        if (isText(mimeType)) { return Decision.GZIP; }
+        return Decision.PROBE;
+    }
+
+    private void record(String key, double value)
+    {
+        synchronized (ratios)
+        {
+            Ratio ratio = ratios.get(key);
+            if (ratio == null)
+            {
+                ratio = new Ratio();
+                ratio.value = value;
+                ratios.put(key, ratio);
+            }
+            else
+            {
+                ratio.value = ratio.value * (1 - SAMPLE_WEIGHT) + value * SAMPLE_WEIGHT;
+            }
+            ratio.samples++;
+        }
+    }
+
+    /**
+     * Content wrapped inside another type (Atom entry, multipart body) has its
+     * own key.
+     */
+    private static String createKey(String type, String mimeType)
+    {
+        String key = (type != null) ? type : "*";
+        return (mimeType == null || mimeType.equals(type)) ? key : key + " > " + mimeType;
+    }
+
+    private static boolean isText(String type)
+    {
+        if (type == null) { return false; }
+        return type.startsWith("text/") || type.contains("xml") || type.contains("json")
+                || type.contains("javascript") || type.equals("application/x-www-form-urlencoded");
+    }
+
+    private static boolean isCompressed(String type)
+    {
+        if (type == null) { return false; }
+        for (String compressedType : COMPRESSED_TYPES)
+        {
+            if (type.startsWith(compressedType)) { return true; }
+        }
+        return false;
+    }
+
+    private static String normalize(String type)
+    {
+        if (type == null) { return null; }
+        int index = type.indexOf(';');
+        return ((index != -1) ? type.substring(0, index) : type).trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @return compressed size / sample size.
+     */
+    private static double probe(byte[] sample, int length)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try
+        {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            long total = 0;
+            while (!deflater.finished())
+            {
+                total += deflater.deflate(buffer);
+            }
+            return (double) total / length;
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of request bodies sent compressed.
+     */
+    public long getCompressedCount()
+    {
+        return compressedCount.get();
+    }
+
+    /**
+     * @return Number of request bodies sent as is.
+     */
+    public long getIdentityCount()
+    {
+        return identityCount.get();
+    }
+
+    /**
+     * @return Number of request bodies whose compressibility has been probed.
+     */
+    public long getProbeCount()
+    {
+        return probeCount.get();
+    }
+
+    /**
+     * @return Number of body bytes written by the requests.
+     */
+    public long getRawBytes()
+    {
+        return rawBytes.get();
+    }
+
+    /**
+     * @return Number of body bytes sent on the wire.
+     */
+    public long getWireBytes()
+    {
+        return wireBytes.get();
+    }
+
+    /**
+     * Resets all counters. Learned ratios are kept.
+     */
+    public void resetStatistics()
+    {
+        compressedCount.set(0);
+        identityCount.set(0);
+        probeCount.set(0);
+        rawBytes.set(0);
+        wireBytes.set(0);
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL CLASSES
+    // ///////////////////////////////////////////////
+    private enum Decision
+    {
+        GZIP, IDENTITY, PROBE
+    }
+
+    private static final class Content
+    {
+        private final String mimeType;
+
+        private final long length;
+
+        private Content(String mimeType, long length)
+        {
+            this.mimeType = mimeType;
+            this.length = length;
+        }
+    }
+
+    private static final class Ratio
+    {
+        private double value;
+
+        private int samples;
+
+        private int decisions;
+    }
+
+    /**
+     * Opens the stream of a request once the policy has made its decision.
+     */
+    public interface Target
+    {
+        /**
+         * @param compressed : true if the body is sent compressed with gzip.
+         *            The target must set the Content-Encoding header.
+         * @return the request stream.
+         */
+        OutputStream open(boolean compressed) throws IOException;
+    }
+
+    /**
+     * Stream of a request body. Bodies which must be probed are kept in memory
+     * until the sample is complete.
+     */
+    public static final class PolicyOutputStream extends OutputStream
+    {
+        private final CompressionPolicy policy;
+
+        private final String key;
+
+        private Decision decision;
+
+        private final Target target;
+
+        private byte[] sample;
+
+        private int sampleLength;
+
+        private OutputStream out;
+
+        private CountingOutputStream wire;
+
+        private GZIPOutputStream gzip;
+
+        private long raw;
+
+        private PolicyOutputStream(CompressionPolicy policy, String key, Decision decision, Target target)
+        {
+            this.policy = policy;
+            this.key = key;
+            this.decision = decision;
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            raw += len;
+            if (out == null && decision == Decision.PROBE)
+            {
+                if (sample == null)
+                {
+                    sample = new byte[SAMPLE_SIZE];
+                }
+                int count = Math.min(len, SAMPLE_SIZE - sampleLength);
+                System.arraycopy(b, off, sample, sampleLength, count);
+                sampleLength += count;
+                if (sampleLength < SAMPLE_SIZE) { return; }
+                open();
+                if (count < len)
+                {
+                    out.write(b, off + count, len - count);
+                }
+                return;
+            }
+            if (out == null)
+            {
+                open();
+            }
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            if (out != null)
+            {
+                out.flush();
+            }
+        }
+
+        /**
+         * Completes the body without closing the request stream and records
+         * the result.
+         */
+        public void finish() throws IOException
+        {
+            if (out == null)
+            {
+                open();
+            }
+            if (gzip != null)
+            {
+                gzip.finish();
+            }
+            out.flush();
+
+            policy.rawBytes.addAndGet(raw);
+            policy.wireBytes.addAndGet(wire.count);
+            if (gzip != null)
+            {
+                policy.compressedCount.incrementAndGet();
+                if (raw >= MIN_SIZE)
+                {
+                    policy.record(key, (double) wire.count / raw);
+                }
+            }
+            else
+            {
+                policy.identityCount.incrementAndGet();
+            }
+        }
+
+        private void open() throws IOException
+        {
+            if (decision == Decision.PROBE)
+            {
+                policy.probeCount.incrementAndGet();
+                if (sampleLength < MIN_SIZE)
+                {
+                    decision = Decision.IDENTITY;
+                }
+                else
+                {
+                    double ratio = probe(sample, sampleLength);
+                    decision = (ratio < MAX_RATIO) ? Decision.GZIP : Decision.IDENTITY;
+                    if (decision == Decision.IDENTITY)
+                    {
+                        // Compressed bodies record their real ratio.
+                        policy.record(key, ratio);
+                    }
+                }
+            }
+
+            boolean compressed = decision == Decision.GZIP;
+            wire = new CountingOutputStream(target.open(compressed));
+            if (compressed)
+            {
+                gzip = new GZIPOutputStream(wire, 4096);
+                out = gzip;
+            }
+            else
+            {
+                out = wire;
+            }
+
+            if (sampleLength > 0)
+            {
+                out.write(sample, 0, sampleLength);
+            }
+            sample = null;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream
+    {
+        private long count;
+
+        private CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
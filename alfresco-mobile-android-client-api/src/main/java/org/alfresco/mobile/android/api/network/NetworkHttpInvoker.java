@@ -17,25 +17,38 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.api.network;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
+import org.alfresco.mobile.android.api.utils.BufferPool;
 import org.alfresco.mobile.android.api.utils.IOUtils;
 import org.apache.chemistry.opencmis.client.bindings.impl.ClientVersion;
 import org.apache.chemistry.opencmis.client.bindings.impl.CmisBindingsHelper;
@@ -57,32 +70,165 @@ public class NetworkHttpInvoker implements HttpInvoker
 {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultHttpInvoker.class);
 
-    private static final int BUFFER_SIZE = 2 * 1024 * 1024;
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
 
-    public Response invokeGET(UrlBuilder url, BindingSession session)
+    private static final String HEADER_IF_RANGE = "If-Range";
+
+    /** Encodings accepted by default for text responses. */
+    private static final String DEFAULT_ACCEPT_ENCODING = "gzip,deflate";
+
+    /** Binary contents are always requested without encoding. */
+    private static final Map<String, String> CONTENT_HEADERS = Collections.singletonMap(HEADER_ACCEPT_ENCODING,
+            "identity");
+
+    /** Maximum size of an error response kept in memory. */
+    static final int MAX_ERROR_SIZE = 256 * 1024;
+
+    /** Scheduler slot of the request sent by the current thread. */
+    private static final ThreadLocal<Slot> CURRENT_SLOT = new ThreadLocal<Slot>();
+
+    public Response invokeGET(final UrlBuilder url, final BindingSession session)
     {
-        return invoke(url, "GET", null, null, null, session, null, null);
+        if (!isCoalescingEnabled(session)) { return invokeIdempotent(url, null, session, null, null); }
+
+        return RequestCoalescer.getInstance().execute(createCoalescingKey(url, session, false),
+                new RequestCoalescer.Call()
+                {
+                    public Response execute()
+                    {
+                        return invokeIdempotent(url, null, session, null, null);
+                    }
+                });
     }
 
+    /**
+     * Performs a conditional GET (If-None-Match, If-Modified-Since...).
+     * Identical concurrent conditional requests are coalesced on the URL : the
+     * first request sends its validators and its response (including a 304
+     * Not Modified) is shared with the others. Callers of the same URL and
+     * user share the same stored response, so they send the same validators.
+     * 
+     * @param url : requested URL.
+     * @param headers : conditional request headers. Can be null.
+     * @param session : binding session.
+     * @since 1.4
+     */
+    public Response invokeGET(final UrlBuilder url, final Map<String, String> headers, final BindingSession session)
+    {
+        if (headers == null || headers.isEmpty()) { return invokeGET(url, session); }
+        if (!isCoalescingEnabled(session)) { return invokeIdempotent(url, headers, session, null, null); }
+
+        // A 304 must never be shared with an unconditional request.
+        return RequestCoalescer.getInstance().execute(createCoalescingKey(url, session, true),
+                new RequestCoalescer.Call()
+                {
+                    public Response execute()
+                    {
+                        return invokeIdempotent(url, headers, session, null, null);
+                    }
+                });
+    }
+
+    /**
+     * Reads a binary content (content stream, rendition, avatar). The content
+     * is never requested compressed : compressing it rarely helps and byte
+     * ranges must apply to the content itself.
+     * 
+     * @param url : content URL.
+     * @param session : binding session.
+     * @param offset : first byte requested. Can be null.
+     * @param length : number of bytes requested. Can be null.
+     */
     public Response invokeGET(UrlBuilder url, BindingSession session, BigInteger offset, BigInteger length)
     {
-        return invoke(url, "GET", null, null, null, session, offset, length);
+        return invokeIdempotent(url, CONTENT_HEADERS, session, offset, length);
+    }
+
+    /**
+     * Reads a byte range of a binary content only if the content has not
+     * changed : the validator is sent inside an If-Range header and the server
+     * sends the whole content (200) instead of the range (206) if the content
+     * has changed.
+     * 
+     * @param url : content URL.
+     * @param session : binding session.
+     * @param offset : first byte requested.
+     * @param length : number of bytes requested. Can be null.
+     * @param validator : ETag or Last-Modified date of the bytes already read.
+     *            Can be null.
+     * @since 1.4
+     */
+    public Response invokeGET(UrlBuilder url, BindingSession session, BigInteger offset, BigInteger length,
+            String validator)
+    {
+        if (validator == null) { return invokeGET(url, session, offset, length); }
+        Map<String, String> headers = new HashMap<String, String>(CONTENT_HEADERS);
+        headers.put(HEADER_IF_RANGE, validator);
+        return invokeIdempotent(url, headers, session, offset, length);
+    }
+
+    /**
+     * GET requests are idempotent : transient failures are retried (and slow
+     * requests hedged) by the {@link RetryPolicy}.
+     */
+    private Response invokeIdempotent(final UrlBuilder url, final Map<String, String> headers,
+            final BindingSession session, final BigInteger offset, final BigInteger length)
+    {
+        // Hedged attempts run on worker threads : keep the caller priority.
+        final RequestScheduler.Priority priority = RequestScheduler.getCurrentPriority();
+        return RetryPolicy.getInstance().execute(url.toString(), session, new RetryPolicy.Call()
+        {
+            public Response execute()
+            {
+                return invokeScheduled(url, "GET", null, headers, null, session, offset, length, priority);
+            }
+        });
     }
 
     public Response invokePOST(UrlBuilder url, String contentType, Output writer, BindingSession session)
     {
-        return invoke(url, "POST", contentType, null, writer, session, null, null);
+        return invokeScheduled(url, "POST", contentType, null, writer, session, null, null,
+                RequestScheduler.getCurrentPriority());
     }
 
     public Response invokePUT(UrlBuilder url, String contentType, Map<String, String> headers, Output writer,
             BindingSession session)
     {
-        return invoke(url, "PUT", contentType, headers, writer, session, null, null);
+        return invokeScheduled(url, "PUT", contentType, headers, writer, session, null, null,
+                RequestScheduler.getCurrentPriority());
     }
 
     public Response invokeDELETE(UrlBuilder url, BindingSession session)
     {
-        return invoke(url, "DELETE", null, null, null, session, null, null);
+        return invokeScheduled(url, "DELETE", null, null, null, session, null, null,
+                RequestScheduler.getCurrentPriority());
+    }
+
+    /**
+     * Sends the request once the {@link RequestScheduler} gives a slot to its
+     * class : requests with a body use the upload slots, the other ones the
+     * slots of their priority. The slot is released once the response body has
+     * been read or closed (immediately if the response has no body).
+     */
+    private Response invokeScheduled(UrlBuilder url, String method, String contentType, Map<String, String> headers,
+            Output writer, BindingSession session, BigInteger offset, BigInteger length,
+            RequestScheduler.Priority priority)
+    {
+        Slot slot = new Slot(priority, writer != null);
+        slot.acquire();
+        CURRENT_SLOT.set(slot);
+        try
+        {
+            return invoke(url, method, contentType, headers, writer, session, offset, length);
+        }
+        finally
+        {
+            CURRENT_SLOT.remove();
+            if (!slot.attached)
+            {
+                slot.release();
+            }
+        }
     }
 
     protected HttpURLConnection getHttpURLConnection(URL url) throws IOException
@@ -104,6 +250,7 @@ public class NetworkHttpInvoker implements HttpInvoker
 
             // connect
             HttpURLConnection conn = getHttpURLConnection(new URL(url.toString()));
+            RequestHandle.register(conn);
             conn.setRequestMethod(method);
             conn.setDoInput(true);
             conn.setDoOutput(writer != null);
@@ -124,39 +271,21 @@ public class NetworkHttpInvoker implements HttpInvoker
                 conn.setReadTimeout(readTimeout);
             }
 
-            // set content type
-            if (contentType != null)
-            {
-                conn.setRequestProperty(HTTP.CONTENT_TYPE, contentType);
-            }
-            // set other headers
-            if (headers != null)
+            // headers
+            AuthenticationProvider authProvider = CmisBindingsHelper.getAuthenticationProvider(session);
+            Map<String, List<String>> requestHeaders = createRequestHeaders(url, contentType, headers, session,
+                    authProvider, offset, length);
+            for (Map.Entry<String, List<String>> header : requestHeaders.entrySet())
             {
-                for (Map.Entry<String, String> header : headers.entrySet())
+                for (String value : header.getValue())
                 {
-                    conn.addRequestProperty(header.getKey(), header.getValue());
+                    conn.addRequestProperty(header.getKey(), value);
                 }
             }
 
             // authenticate
-            AuthenticationProvider authProvider = CmisBindingsHelper.getAuthenticationProvider(session);
             if (authProvider != null)
             {
-                Map<String, List<String>> httpHeaders = authProvider.getHTTPHeaders(url.toString());
-                if (httpHeaders != null)
-                {
-                    for (Map.Entry<String, List<String>> header : httpHeaders.entrySet())
-                    {
-                        if (header.getValue() != null)
-                        {
-                            for (String value : header.getValue())
-                            {
-                                conn.addRequestProperty(header.getKey(), value);
-                            }
-                        }
-                    }
-                }
-
                 if (conn instanceof HttpsURLConnection)
                 {
                     SSLSocketFactory sf = authProvider.getSSLSocketFactory();
@@ -173,60 +302,6 @@ public class NetworkHttpInvoker implements HttpInvoker
                 }
             }
 
-            // range
-            if ((offset != null) || (length != null))
-            {
-                StringBuilder sb = new StringBuilder("bytes=");
-
-                if ((offset == null) || (offset.signum() == -1))
-                {
-                    offset = BigInteger.ZERO;
-                }
-
-                sb.append(offset.toString());
-                sb.append("-");
-
-                if ((length != null) && (length.signum() == 1))
-                {
-                    sb.append(offset.add(length.subtract(BigInteger.ONE)).toString());
-                }
-
-                conn.setRequestProperty("Range", sb.toString());
-            }
-
-            // compression
-            Object compression = session.get(AlfrescoSession.HTTP_ACCEPT_ENCODING);
-            if (compression == null)
-            {
-                conn.setRequestProperty("Accept-Encoding", "");
-            }
-            else
-            {
-                Boolean compressionValue;
-                try
-                {
-                    compressionValue = Boolean.parseBoolean(compression.toString());
-                    if (compressionValue)
-                    {
-                        conn.setRequestProperty("Accept-Encoding", "gzip,deflate");
-                    }
-                    else
-                    {
-                        conn.setRequestProperty("Accept-Encoding", "");
-                    }
-                }
-                catch (Exception e)
-                {
-                    conn.setRequestProperty("Accept-Encoding", compression.toString());
-                }
-            }
-
-            // locale
-            if (session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE) instanceof String && session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE) != null)
-            {
-                conn.setRequestProperty("Accept-Language", session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE).toString());
-            }
-
             // send data
             if (writer != null)
             {
@@ -239,22 +314,34 @@ public class NetworkHttpInvoker implements HttpInvoker
 
                 conn.setConnectTimeout(900000);
 
-                OutputStream connOut = null;
-
                 Object clientCompression = session.get(SessionParameter.CLIENT_COMPRESSION);
                 if ((clientCompression != null) && Boolean.parseBoolean(clientCompression.toString()))
                 {
-                    conn.setRequestProperty(HTTP.CONTENT_ENCODING, "gzip");
-                    connOut = new GZIPOutputStream(conn.getOutputStream(), 4096);
+                    // the policy decides if the body is worth compressing
+                    final HttpURLConnection target = conn;
+                    CompressionPolicy.PolicyOutputStream policyOut = CompressionPolicy.getInstance()
+                            .createOutputStream(contentType, new CompressionPolicy.Target()
+                            {
+                                public OutputStream open(boolean compressed) throws IOException
+                                {
+                                    if (compressed)
+                                    {
+                                        target.setRequestProperty(HTTP.CONTENT_ENCODING, "gzip");
+                                    }
+                                    return target.getOutputStream();
+                                }
+                            });
+                    BufferPool.PooledOutputStream out = new BufferPool.PooledOutputStream(policyOut);
+                    writer.write(out);
+                    out.release();
+                    policyOut.finish();
                 }
                 else
                 {
-                    connOut = conn.getOutputStream();
+                    BufferPool.PooledOutputStream out = new BufferPool.PooledOutputStream(conn.getOutputStream());
+                    writer.write(out);
+                    out.release();
                 }
-
-                OutputStream out = new BufferedOutputStream(connOut, BUFFER_SIZE);
-                writer.write(out);
-                out.flush();
             }
 
             // connect
@@ -282,9 +369,22 @@ public class NetworkHttpInvoker implements HttpInvoker
                 authProvider.putResponseHeaders(url.toString(), respCode, conn.getHeaderFields());
             }
 
-            // get the response
-            return new Response(respCode, conn.getResponseMessage(), conn.getHeaderFields(), inputStream,
-                    conn.getErrorStream());
+            // get the response : the scheduler slot is held by the body
+            InputStream responseStream = holdSlot(inputStream);
+            boolean created = false;
+            try
+            {
+                Response resp = createResponse(url, conn, respCode, responseStream);
+                created = true;
+                return resp;
+            }
+            finally
+            {
+                if (!created)
+                {
+                    IOUtils.closeStream(responseStream);
+                }
+            }
         }
         catch (Exception e)
         {
@@ -292,12 +392,388 @@ public class NetworkHttpInvoker implements HttpInvoker
         }
     }
 
+    /**
+     * Creates the request headers shared by all HTTP layers : content type,
+     * additional headers, authentication headers, range, compression and
+     * language. The user agent is not part of the result.
+     * 
+     * @param url : requested url
+     * @param contentType : content type of the request body. Can be null.
+     * @param headers : additional request headers. Can be null.
+     * @param session : binding session
+     * @param authProvider : authentication provider of the session. Can be
+     *            null.
+     * @param offset : first byte requested. Can be null.
+     * @param length : number of bytes requested. Can be null.
+     * @return ordered map of request headers.
+     * @since 1.4
+     */
+    protected Map<String, List<String>> createRequestHeaders(UrlBuilder url, String contentType,
+            Map<String, String> headers, BindingSession session, AuthenticationProvider authProvider,
+            BigInteger offset, BigInteger length)
+    {
+        Map<String, List<String>> requestHeaders = new LinkedHashMap<String, List<String>>();
+
+        // set content type
+        if (contentType != null)
+        {
+            setHeader(requestHeaders, HTTP.CONTENT_TYPE, contentType);
+        }
+        // set other headers
+        if (headers != null)
+        {
+            for (Map.Entry<String, String> header : headers.entrySet())
+            {
+                addHeader(requestHeaders, header.getKey(), header.getValue());
+            }
+        }
+
+        // authenticate
+        if (authProvider != null)
+        {
+            Map<String, List<String>> httpHeaders = authProvider.getHTTPHeaders(url.toString());
+            if (httpHeaders != null)
+            {
+                for (Map.Entry<String, List<String>> header : httpHeaders.entrySet())
+                {
+                    if (header.getValue() != null)
+                    {
+                        for (String value : header.getValue())
+                        {
+                            addHeader(requestHeaders, header.getKey(), value);
+                        }
+                    }
+                }
+            }
+        }
+
+        // range
+        if ((offset != null) || (length != null))
+        {
+            StringBuilder sb = new StringBuilder("bytes=");
+
+            if ((offset == null) || (offset.signum() == -1))
+            {
+                offset = BigInteger.ZERO;
+            }
+
+            sb.append(offset.toString());
+            sb.append("-");
+
+            if ((length != null) && (length.signum() == 1))
+            {
+                sb.append(offset.add(length.subtract(BigInteger.ONE)).toString());
+            }
+
+            setHeader(requestHeaders, "Range", sb.toString());
+        }
+
+        // compression : text responses are compressed unless the caller
+        // has chosen the encoding (binary contents)
+        Object compression = session.get(AlfrescoSession.HTTP_ACCEPT_ENCODING);
+        if (containsHeader(requestHeaders, HEADER_ACCEPT_ENCODING))
+        {
+            // Already set.
+        }
+        else if (compression == null)
+        {
+            setHeader(requestHeaders, HEADER_ACCEPT_ENCODING, DEFAULT_ACCEPT_ENCODING);
+        }
+        else
+        {
+            Boolean compressionValue;
+            try
+            {
+                compressionValue = Boolean.parseBoolean(compression.toString());
+                if (compressionValue)
+                {
+                    setHeader(requestHeaders, HEADER_ACCEPT_ENCODING, DEFAULT_ACCEPT_ENCODING);
+                }
+                else
+                {
+                    setHeader(requestHeaders, HEADER_ACCEPT_ENCODING, "");
+                }
+            }
+            catch (Exception e)
+            {
+                setHeader(requestHeaders, HEADER_ACCEPT_ENCODING, compression.toString());
+            }
+        }
+
+        // locale
+        if (session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE) instanceof String && session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE) != null)
+        {
+            setHeader(requestHeaders, "Accept-Language", session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE).toString());
+        }
+
+        return requestHeaders;
+    }
+
+    private static void setHeader(Map<String, List<String>> requestHeaders, String name, String value)
+    {
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        requestHeaders.put(name, values);
+    }
+
+    private static boolean containsHeader(Map<String, List<String>> headers, String name)
+    {
+        for (String key : headers.keySet())
+        {
+            if (name.equalsIgnoreCase(key)) { return true; }
+        }
+        return false;
+    }
+
+    private static void addHeader(Map<String, List<String>> requestHeaders, String name, String value)
+    {
+        List<String> values = requestHeaders.get(name);
+        if (values == null)
+        {
+            values = new ArrayList<String>(1);
+            requestHeaders.put(name, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * Identical GET requests are coalesced unless
+     * {@link AlfrescoSession#HTTP_COALESCING} is false.
+     */
+    private static boolean isCoalescingEnabled(BindingSession session)
+    {
+        if (session == null) { return false; }
+        Object coalescing = session.get(AlfrescoSession.HTTP_COALESCING);
+        return coalescing == null || Boolean.parseBoolean(coalescing.toString());
+    }
+
+    /**
+     * Requests are identical if they share the same URL, the same
+     * authentication headers and the same language. Conditional requests are
+     * only identical to conditional requests.
+     */
+    private static String createCoalescingKey(UrlBuilder url, BindingSession session, boolean conditional)
+    {
+        StringBuilder principal = new StringBuilder(conditional ? "conditional\n" : "");
+        AuthenticationProvider authProvider = CmisBindingsHelper.getAuthenticationProvider(session);
+        if (authProvider != null)
+        {
+            principal.append(authProvider.getHTTPHeaders(url.toString()));
+        }
+        principal.append('\n').append(session.get(AlfrescoSession.HTTP_ACCEPT_LANGUAGE));
+        return RequestCoalescer.createKey(url.toString(), principal.toString());
+    }
+
+    /**
+     * Creates the response object from the connection once the request has
+     * been sent. Subclasses can override this method to wrap the response
+     * streams.
+     * 
+     * @param url : requested url
+     * @param conn : underlying connection
+     * @param respCode : HTTP status code returned by the server
+     * @param inputStream : response body stream or null if the status code
+     *            doesn't provide a body.
+     * @return the response object
+     * @throws IOException
+     */
+    protected Response createResponse(UrlBuilder url, HttpURLConnection conn, int respCode, InputStream inputStream)
+            throws IOException
+    {
+        // The retry policy drops transient errors : their body must not hold
+        // the connection.
+        InputStream errorStream = conn.getErrorStream();
+        if (RetryPolicy.isTransient(respCode))
+        {
+            errorStream = readErrorStream(errorStream);
+        }
+        return createResponse(url, respCode, conn.getResponseMessage(), conn.getHeaderFields(), inputStream,
+                errorStream);
+    }
+
+    /**
+     * Creates the response object. Compressed bodies (gzip or deflate) are
+     * inflated while they are read and the wire and decoded bytes are counted
+     * by {@link TransferStatistics}.
+     * 
+     * @param url : requested url
+     * @param respCode : HTTP status code returned by the server
+     * @param respMessage : HTTP status message returned by the server
+     * @param headers : response headers
+     * @param inputStream : response body stream or null
+     * @param errorStream : error body stream or null
+     * @return the response object
+     * @throws IOException
+     * @since 1.4
+     */
+    protected Response createResponse(UrlBuilder url, int respCode, String respMessage,
+            Map<String, List<String>> headers, InputStream inputStream, InputStream errorStream) throws IOException
+    {
+        TransferStatistics.Endpoint endpoint = TransferStatistics.getInstance().getEndpoint(url.toString());
+        String encoding = getHeader(headers, HTTP.CONTENT_ENCODING);
+        if (encoding != null)
+        {
+            encoding = encoding.trim().toLowerCase(Locale.ENGLISH);
+        }
+
+        boolean compressed = "gzip".equals(encoding) || "x-gzip".equals(encoding) || "deflate".equals(encoding);
+        if (!compressed)
+        {
+            return new Response(respCode, respMessage, headers, count(inputStream, endpoint), count(errorStream,
+                    endpoint));
+        }
+
+        // The decoded body has neither encoding nor known length.
+        Map<String, List<String>> decodedHeaders = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet())
+        {
+            if (header.getKey() == null
+                    || (!HTTP.CONTENT_ENCODING.equalsIgnoreCase(header.getKey()) && !HTTP.CONTENT_LEN
+                            .equalsIgnoreCase(header.getKey())))
+            {
+                decodedHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        return new Response(respCode, respMessage, decodedHeaders, inflate(inputStream, encoding, endpoint),
+                inflate(errorStream, encoding, endpoint));
+    }
+
+    private static InputStream count(InputStream in, TransferStatistics.Endpoint endpoint)
+    {
+        if (in == null) { return null; }
+        endpoint.responseCount.incrementAndGet();
+        return TransferStatistics.count(in, endpoint.wireBytes, endpoint.decodedBytes);
+    }
+
+    private static InputStream inflate(InputStream in, String encoding, TransferStatistics.Endpoint endpoint)
+            throws IOException
+    {
+        if (in == null) { return null; }
+        endpoint.responseCount.incrementAndGet();
+        endpoint.compressedCount.incrementAndGet();
+        InputStream wire = TransferStatistics.count(in, endpoint.wireBytes);
+
+        InputStream decoded;
+        if ("deflate".equals(encoding))
+        {
+            // zlib wrapped (RFC) or raw deflate (some servers)
+            PushbackInputStream pushback = new PushbackInputStream(wire, 2);
+            byte[] header = new byte[2];
+            int count = 0;
+            int read;
+            while (count < 2 && (read = pushback.read(header, count, 2 - count)) != -1)
+            {
+                count += read;
+            }
+            if (count == 0) { return TransferStatistics.count(pushback, endpoint.decodedBytes); }
+            pushback.unread(header, 0, count);
+            boolean zlib = count == 2 && (header[0] & 0x0F) == 8
+                    && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+            decoded = new InflaterInputStream(pushback, new Inflater(!zlib), 4096)
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    try
+                    {
+                        super.close();
+                    }
+                    finally
+                    {
+                        inf.end();
+                    }
+                }
+            };
+        }
+        else
+        {
+            try
+            {
+                decoded = new GZIPInputStream(wire, 4096);
+            }
+            catch (EOFException e)
+            {
+                // Empty body
+                IOUtils.closeStream(wire);
+                decoded = new ByteArrayInputStream(new byte[0]);
+            }
+        }
+        return TransferStatistics.count(decoded, endpoint.decodedBytes);
+    }
+
+    /**
+     * Hands the scheduler slot of the current request over to the response
+     * body : the slot is released at the end of the body or when it is closed.
+     */
+    private static InputStream holdSlot(InputStream in)
+    {
+        Slot slot = CURRENT_SLOT.get();
+        if (in == null || slot == null) { return in; }
+        slot.attached = true;
+        return new SlotInputStream(in, slot);
+    }
+
+    /**
+     * Reads an error body in memory (at most {@link #MAX_ERROR_SIZE} bytes are
+     * kept) and closes the error stream : the platform can reuse the
+     * connection even if the response is never read.
+     * 
+     * @param errorStream : error stream of the connection. Can be null.
+     * @return the buffered error body or null.
+     */
+    static InputStream readErrorStream(InputStream errorStream)
+    {
+        if (errorStream == null) { return null; }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try
+        {
+            int count;
+            while ((count = errorStream.read(buffer)) != -1)
+            {
+                if (bos.size() < MAX_ERROR_SIZE)
+                {
+                    bos.write(buffer, 0, count);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // Connection not reusable : truncated error body.
+        }
+        finally
+        {
+            BufferPool.getInstance().release(buffer);
+            IOUtils.closeStream(errorStream);
+        }
+        return new ByteArrayInputStream(bos.toByteArray());
+    }
+
+    private static String getHeader(Map<String, List<String>> headers, String name)
+    {
+        if (headers == null) { return null; }
+        for (Map.Entry<String, List<String>> header : headers.entrySet())
+        {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty())
+            {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
     // ///////////////////////////////////////////////
     // STATIC METHOD
     // ///////////////////////////////////////////////
-    public static Response invokeGET(UrlBuilder url, Map<String, List<String>> headers)
+    public static Response invokeGET(final UrlBuilder url, final Map<String, List<String>> headers)
     {
-        return invoke(url, "GET", null, headers, null, null, null, null);
+        return RetryPolicy.getInstance().execute(url.toString(), null, new RetryPolicy.Call()
+        {
+            public Response execute()
+            {
+                return invoke(url, "GET", null, headers, null, null, null, null);
+            }
+        });
     }
 
     public static Response invokePOST(UrlBuilder url, String contentType, Output writer,
@@ -328,6 +804,7 @@ public class NetworkHttpInvoker implements HttpInvoker
 
             // connect
             HttpURLConnection conn = (HttpURLConnection) (new URL(url.toString())).openConnection();
+            RequestHandle.register(conn);
             conn.setRequestMethod(method);
             conn.setDoInput(true);
             conn.setDoOutput(writer != null || forceOutput);
@@ -431,9 +908,9 @@ public class NetworkHttpInvoker implements HttpInvoker
                 // conn.setChunkedStreamingMode((64 * 1024) - 1);
                 OutputStream connOut = null;
                 connOut = conn.getOutputStream();
-                OutputStream out = new BufferedOutputStream(connOut, BUFFER_SIZE);
+                BufferPool.PooledOutputStream out = new BufferPool.PooledOutputStream(connOut);
                 writer.write(out);
-                out.flush();
+                out.release();
             }
 
             // connect
@@ -450,8 +927,13 @@ public class NetworkHttpInvoker implements HttpInvoker
             }
 
             // get the response
+            InputStream errorStream = conn.getErrorStream();
+            if (RetryPolicy.isTransient(respCode))
+            {
+                errorStream = readErrorStream(errorStream);
+            }
             return new Response(respCode, conn.getResponseMessage(), conn.getHeaderFields(), inputStream,
-                    conn.getErrorStream());
+                    errorStream);
         }
         catch (Exception e)
         {
@@ -459,4 +941,103 @@ public class NetworkHttpInvoker implements HttpInvoker
         }
     }
 
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    /**
+     * Slot given by the {@link RequestScheduler} to a request. Releasing twice
+     * the same slot has no effect.
+     */
+    private static final class Slot
+    {
+        private final RequestScheduler.Priority priority;
+
+        private final boolean upload;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        /** True once the slot is held by the response body. */
+        private boolean attached;
+
+        private Slot(RequestScheduler.Priority priority, boolean upload)
+        {
+            this.priority = priority;
+            this.upload = upload;
+        }
+
+        private void acquire()
+        {
+            if (upload)
+            {
+                RequestScheduler.getInstance().acquireUpload();
+            }
+            else
+            {
+                RequestScheduler.getInstance().acquire(priority);
+            }
+        }
+
+        private void release()
+        {
+            if (!released.compareAndSet(false, true)) { return; }
+            if (upload)
+            {
+                RequestScheduler.getInstance().releaseUpload();
+            }
+            else
+            {
+                RequestScheduler.getInstance().release(priority);
+            }
+        }
+    }
+
+    /**
+     * Response body which releases the slot of its request at the end of the
+     * stream or when closed.
+     */
+    private static final class SlotInputStream extends FilterInputStream
+    {
+        private final Slot slot;
+
+        private SlotInputStream(InputStream in, Slot slot)
+        {
+            super(in);
+            this.slot = slot;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b == -1)
+            {
+                slot.release();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = super.read(b, off, len);
+            if (count == -1)
+            {
+                slot.release();
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                slot.release();
+            }
+        }
+    }
 }
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
+import org.alfresco.mobile.android.api.utils.BufferPool;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+import org.apache.chemistry.opencmis.client.bindings.spi.BindingSession;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Output;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
+
+/**
+ * HttpInvoker which keeps the platform keep-alive connections reusable. <br/>
+ * Each request leases a slot of its route from the shared
+ * {@link RouteLimiter} : a burst of requests never opens more sockets than the
+ * platform keeps alive. The lease is released when the response body has been
+ * fully read or closed, or at once when the body is empty : a caller which
+ * never reads a body must close it. Error bodies and remaining bytes are
+ * drained so the platform HttpURLConnection can reuse the socket for the next
+ * request. <br/>
+ * To enable it, use
+ * {@link AlfrescoSession#HTTP_INVOKER_CLASSNAME} with the value
+ * <i>org.alfresco.mobile.android.api.network.PooledNetworkHttpInvoker</i>
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class PooledNetworkHttpInvoker extends NetworkHttpInvoker
+{
+    /**
+     * Maximum number of bytes drained from a response body before giving up
+     * and closing the connection.
+     */
+    private static final int MAX_DRAIN_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<RouteLimiter.Lease> CURRENT_LEASE = new ThreadLocal<RouteLimiter.Lease>();
+
+    @Override
+    protected Response invoke(UrlBuilder url, String method, String contentType, Map<String, String> headers,
+            Output writer, BindingSession session, BigInteger offset, BigInteger length)
+    {
+        RouteLimiter limiter = RouteLimiter.getInstance();
+        configure(limiter, session);
+
+        RouteLimiter.Lease lease = null;
+        try
+        {
+            lease = limiter.lease(new URL(url.toString()));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CmisConnectionException("Cannot access " + url + ": " + e.getMessage(), e);
+        }
+        catch (IOException e)
+        {
+            throw new CmisConnectionException("Cannot access " + url + ": " + e.getMessage(), e);
+        }
+
+        CURRENT_LEASE.set(lease);
+        try
+        {
+            return super.invoke(url, method, contentType, headers, writer, session, offset, length);
+        }
+        catch (RuntimeException e)
+        {
+            limiter.release(lease);
+            throw e;
+        }
+        finally
+        {
+            CURRENT_LEASE.remove();
+        }
+    }
+
+    @Override
+    protected Response createResponse(UrlBuilder url, HttpURLConnection conn, int respCode, InputStream inputStream)
+            throws IOException
+    {
+        RouteLimiter.Lease lease = CURRENT_LEASE.get();
+
+        // Error body is always read so the platform can reuse the connection.
+        InputStream errorStream = readErrorStream(conn.getErrorStream());
+
+        InputStream responseStream = inputStream;
+        if (inputStream == null)
+        {
+            RouteLimiter.getInstance().release(lease);
+        }
+        else if (conn.getContentLength() == 0)
+        {
+            // Empty body : callers often drop such responses without reading
+            // them, the lease is released now.
+            IOUtils.closeStream(inputStream);
+            responseStream = new ByteArrayInputStream(new byte[0]);
+            RouteLimiter.getInstance().release(lease);
+        }
+        else
+        {
+            responseStream = new ReleasingInputStream(inputStream, lease);
+        }
+
+        return createResponse(url, respCode, conn.getResponseMessage(), conn.getHeaderFields(), responseStream,
+                errorStream);
+    }
+
+    /**
+     * Applies limiter settings if they are defined inside the binding session.
+     */
+    private static void configure(RouteLimiter limiter, BindingSession session)
+    {
+        if (session == null) { return; }
+        if (session.get(AlfrescoSession.HTTP_POOL_MAX_PER_ROUTE) != null)
+        {
+            limiter.setMaxPerRoute(session.get(AlfrescoSession.HTTP_POOL_MAX_PER_ROUTE,
+                    RouteLimiter.DEFAULT_MAX_PER_ROUTE));
+        }
+        if (session.get(AlfrescoSession.HTTP_POOL_IDLE_TIMEOUT) != null)
+        {
+            limiter.setIdleTimeout(session.get(AlfrescoSession.HTTP_POOL_IDLE_TIMEOUT,
+                    (int) RouteLimiter.DEFAULT_IDLE_TIMEOUT));
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    /**
+     * Input stream which releases its lease at the end of the stream or when
+     * closed. Unread bytes are drained on close to keep the connection alive.
+     */
+    static class ReleasingInputStream extends FilterInputStream
+    {
+        private final RouteLimiter.Lease lease;
+
+        ReleasingInputStream(InputStream in, RouteLimiter.Lease lease)
+        {
+            super(in);
+            this.lease = lease;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b == -1)
+            {
+                RouteLimiter.getInstance().release(lease);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = super.read(b, off, len);
+            if (count == -1)
+            {
+                RouteLimiter.getInstance().release(lease);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            byte[] buffer = BufferPool.getInstance().acquire();
+            try
+            {
+                int total = 0;
+                int count = 0;
+                while (total < MAX_DRAIN_SIZE && (count = in.read(buffer)) != -1)
+                {
+                    total += count;
+                }
+            }
+            catch (IOException e)
+            {
+                // Connection not reusable : closed by the platform.
+            }
+            finally
+            {
+                BufferPool.getInstance().release(buffer);
+                RouteLimiter.getInstance().release(lease);
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.mobile.android.api.utils.BufferPool;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.apache.http.HttpStatus;
+
+/**
+ * Merges identical concurrent GET requests (same URL, same user) into a single
+ * request. <br/>
+ * The first request (the leader) is sent to the server. Identical requests
+ * received while the leader waits for the response are queued behind it. Once
+ * the response is available, its body is read in memory and each waiting
+ * request receives its own copy. <br/>
+ * Only successful responses smaller than {@link #getMaxSharedSize()} and Not
+ * Modified responses (answer to conditional requests) are shared : in all
+ * other cases waiting requests are sent to the server as usual. Responses are
+ * shared only while the leader is in flight, nothing is cached afterwards.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RequestCoalescer
+{
+    /** Default maximum size (in bytes) of a response body shared. */
+    public static final int DEFAULT_MAX_SHARED_SIZE = 512 * 1024;
+
+    /** Default maximum time (in ms) a request waits for its leader. */
+    public static final long DEFAULT_WAIT_TIMEOUT = 60000;
+
+    /** Interval (in ms) used to check if a waiting request has been aborted. */
+    private static final long ABORT_CHECK_INTERVAL = 250;
+
+    private static final String HEADER_CONTENT_ENCODING = "content-encoding";
+
+    private static final String HEADER_CONTENT_LENGTH = "content-length";
+
+    private static RequestCoalescer instance;
+
+    private final Map<String, Flight> flights = new HashMap<String, Flight>();
+
+    private volatile int maxSharedSize = DEFAULT_MAX_SHARED_SIZE;
+
+    private volatile long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+
+    // Statistics
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    private RequestCoalescer()
+    {
+    }
+
+    /**
+     * @return the shared request coalescer.
+     */
+    public static synchronized RequestCoalescer getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new RequestCoalescer();
+        }
+        return instance;
+    }
+
+    // ///////////////////////////////////////////////
+    // CONFIGURATION
+    // ///////////////////////////////////////////////
+    /**
+     * Defines the maximum size of a response body shared between requests.
+     * 
+     * @param maxSharedSize : value must be >= 0
+     */
+    public void setMaxSharedSize(int maxSharedSize)
+    {
+        if (maxSharedSize >= 0)
+        {
+            this.maxSharedSize = maxSharedSize;
+        }
+    }
+
+    public int getMaxSharedSize()
+    {
+        return maxSharedSize;
+    }
+
+    /**
+     * Defines the maximum time (in ms) a request waits for the response of its
+     * leader. After this delay the request is sent to the server.
+     * 
+     * @param waitTimeout : value must be >= 0
+     */
+    public void setWaitTimeout(long waitTimeout)
+    {
+        if (waitTimeout >= 0)
+        {
+            this.waitTimeout = waitTimeout;
+        }
+    }
+
+    public long getWaitTimeout()
+    {
+        return waitTimeout;
+    }
+
+    // ///////////////////////////////////////////////
+    // EXECUTION
+    // ///////////////////////////////////////////////
+    /**
+     * Request executed by the coalescer.
+     */
+    public interface Call
+    {
+        /**
+         * Sends the request to the server.
+         */
+        Response execute();
+    }
+
+    /**
+     * Creates the identifier of a request. The principal is only kept as a
+     * SHA-256 digest : credentials never stay in memory as clear text.
+     * 
+     * @param url : requested URL.
+     * @param principal : anything which identifies the user and the variant of
+     *            the response (authentication headers, language...).
+     * @return the identifier or null if the principal can't be digested : the
+     *         request is not coalesced.
+     */
+    public static String createKey(String url, String principal)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(principal.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(url.length() + 1 + digest.length * 2).append(url).append('\n');
+            for (byte b : digest)
+            {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return null;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Executes a GET request or waits for the identical request already in
+     * flight.
+     * 
+     * @param key : request identifier (see
+     *            {@link #createKey(String, String)}). If null, the request is
+     *            sent without coalescing.
+     * @param call : request sent to the server if needed.
+     * @return the response. Each caller receives its own response stream.
+     */
+    public Response execute(String key, Call call)
+    {
+        if (key == null) { return call.execute(); }
+        requestCount.incrementAndGet();
+
+        Flight flight;
+        boolean leader;
+        synchronized (flights)
+        {
+            flight = flights.get(key);
+            leader = (flight == null);
+            if (leader)
+            {
+                flight = new Flight();
+                flights.put(key, flight);
+            }
+            else
+            {
+                flight.waiters++;
+            }
+        }
+
+        if (!leader)
+        {
+            SharedResponse shared = flight.await(waitTimeout);
+            if (shared == null)
+            {
+                fallbackCount.incrementAndGet();
+                return call.execute();
+            }
+            coalescedCount.incrementAndGet();
+            savedBytes.addAndGet(shared.body.length);
+            return shared.createResponse();
+        }
+
+        Response resp;
+        try
+        {
+            resp = call.execute();
+        }
+        catch (RuntimeException e)
+        {
+            close(key, flight);
+            flight.complete(null);
+            throw e;
+        }
+
+        // New identical requests are sent to the server from now.
+        int waiters = close(key, flight);
+        if (waiters > 0 && resp.getResponseCode() == HttpStatus.SC_NOT_MODIFIED)
+        {
+            // No body : the waiting requests reuse their stored response.
+            flight.complete(new SharedResponse(resp, new byte[0]));
+            return resp;
+        }
+        if (waiters == 0 || resp.getResponseCode() != HttpStatus.SC_OK || resp.getStream() == null)
+        {
+            flight.complete(null);
+            return resp;
+        }
+
+        return share(resp, flight);
+    }
+
+    /**
+     * Reads the body of the leader response and shares it with the waiting
+     * requests. If the body is too large, the leader keeps the stream and the
+     * waiting requests are sent to the server.
+     */
+    private Response share(Response resp, Flight flight)
+    {
+        InputStream stream = resp.getStream();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        boolean complete = false;
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try
+        {
+            int count;
+            while (bos.size() <= maxSharedSize)
+            {
+                count = stream.read(buffer);
+                if (count == -1)
+                {
+                    complete = true;
+                    break;
+                }
+                bos.write(buffer, 0, count);
+            }
+        }
+        catch (IOException e)
+        {
+            flight.complete(null);
+            IOUtils.closeStream(stream);
+            throw new CmisConnectionException("Cannot read response: " + e.getMessage(), e);
+        }
+        finally
+        {
+            BufferPool.getInstance().release(buffer);
+        }
+
+        if (!complete)
+        {
+            flight.complete(null);
+            return new Response(resp.getResponseCode(), resp.getResponseMessage(), getDecodedHeaders(resp, -1),
+                    new SequenceInputStream(new ByteArrayInputStream(bos.toByteArray()), stream), null);
+        }
+
+        IOUtils.closeStream(stream);
+        SharedResponse shared = new SharedResponse(resp, bos.toByteArray());
+        flight.complete(shared);
+        return shared.createResponse();
+    }
+
+    /**
+     * Removes the flight from the requests in progress.
+     * 
+     * @return the number of requests waiting for this flight.
+     */
+    private int close(String key, Flight flight)
+    {
+        synchronized (flights)
+        {
+            if (flights.get(key) == flight)
+            {
+                flights.remove(key);
+            }
+            return flight.waiters;
+        }
+    }
+
+    /**
+     * The response stream is already decoded : content encoding and length of
+     * the wire response must not be applied again.
+     * 
+     * @param length : length of the decoded body or -1 if unknown.
+     */
+    private static Map<String, List<String>> getDecodedHeaders(Response resp, long length)
+    {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        if (resp.getHeaders() != null)
+        {
+            for (Entry<String, List<String>> header : resp.getHeaders().entrySet())
+            {
+                if (header.getKey() != null
+                        && (HEADER_CONTENT_ENCODING.equalsIgnoreCase(header.getKey()) || HEADER_CONTENT_LENGTH
+                                .equalsIgnoreCase(header.getKey())))
+                {
+                    continue;
+                }
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        if (length >= 0)
+        {
+            List<String> value = new ArrayList<String>(1);
+            value.add(Long.toString(length));
+            headers.put(HEADER_CONTENT_LENGTH, value);
+        }
+        return headers;
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of GET requests handled by the coalescer.
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * @return Number of requests served by an identical request in flight
+     *         (requests saved).
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return Number of requests which waited for an identical request but
+     *         have been sent to the server anyway (error, large response...).
+     */
+    public long getFallbackCount()
+    {
+        return fallbackCount.get();
+    }
+
+    /**
+     * @return Number of response bytes not downloaded thanks to coalescing.
+     */
+    public long getSavedBytes()
+    {
+        return savedBytes.get();
+    }
+
+    /**
+     * @return Number of requests currently in flight.
+     */
+    public int getInFlightCount()
+    {
+        synchronized (flights)
+        {
+            return flights.size();
+        }
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        requestCount.set(0);
+        coalescedCount.set(0);
+        fallbackCount.set(0);
+        savedBytes.set(0);
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    /**
+     * Request in flight and the requests waiting for it.
+     */
+    private static final class Flight
+    {
+        /** Guarded by the flights map. */
+        int waiters = 0;
+
+        private boolean done = false;
+
+        private SharedResponse response;
+
+        synchronized void complete(SharedResponse response)
+        {
+            if (done) { return; }
+            this.response = response;
+            this.done = true;
+            notifyAll();
+        }
+
+        /**
+         * @return the shared response or null if the response can't be shared
+         *         (error, timeout or aborted request).
+         */
+        synchronized SharedResponse await(long timeout)
+        {
+            long deadline = System.currentTimeMillis() + timeout;
+            try
+            {
+                while (!done)
+                {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) { return null; }
+                    if (RequestHandle.isCurrentAborted()) { throw new CmisConnectionException("Request aborted"); }
+                    wait(Math.min(remaining, ABORT_CHECK_INTERVAL));
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new CmisConnectionException("Request interrupted", e);
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Response read in memory and shared by several requests.
+     */
+    private static final class SharedResponse
+    {
+        private final int responseCode;
+
+        private final String responseMessage;
+
+        private final Map<String, List<String>> headers;
+
+        private final byte[] body;
+
+        SharedResponse(Response resp, byte[] body)
+        {
+            this.responseCode = resp.getResponseCode();
+            this.responseMessage = resp.getResponseMessage();
+            this.headers = getDecodedHeaders(resp, body.length);
+            this.body = body;
+        }
+
+        Response createResponse()
+        {
+            return new Response(responseCode, responseMessage, headers, new ByteArrayInputStream(body), null);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.util.concurrent.Callable;
+
+import org.alfresco.mobile.android.api.network.RequestScheduler.Priority;
+
+/**
+ * Context of the requests sent by a thread : its {@link RequestHandle} and its
+ * {@link Priority}. <br/>
+ * A task submitted to an executor doesn't inherit the context of the caller.
+ * Wrapped tasks run with the context captured at submission : aborting the
+ * caller handle aborts their requests and their requests keep the caller
+ * priority.
+ * 
+ * <pre>
+ * executor.submit(RequestContext.wrap(task));
+ * </pre>
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RequestContext
+{
+    private final RequestHandle handle;
+
+    private final Priority priority;
+
+    private RequestContext(RequestHandle handle, Priority priority)
+    {
+        this.handle = handle;
+        this.priority = priority;
+    }
+
+    /**
+     * Wraps a task to run it with the context of the current thread.
+     * 
+     * @param task : task submitted by the current thread.
+     */
+    public static <V> Callable<V> wrap(Callable<V> task)
+    {
+        return wrap(task, RequestScheduler.getCurrentPriority());
+    }
+
+    /**
+     * Wraps a task to run it with the handle of the current thread and the
+     * given priority.
+     * 
+     * @param task : task submitted by the current thread.
+     * @param priority : priority of the requests sent by the task.
+     */
+    public static <V> Callable<V> wrap(final Callable<V> task, Priority priority)
+    {
+        final RequestContext context = new RequestContext(RequestHandle.current(), priority);
+        return new Callable<V>()
+        {
+            public V call() throws Exception
+            {
+                RequestContext previous = context.bind();
+                try
+                {
+                    return task.call();
+                }
+                finally
+                {
+                    context.unbind(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a task to run it with the handle of the current thread and the
+     * given priority.
+     * 
+     * @param task : task submitted by the current thread.
+     * @param priority : priority of the requests sent by the task.
+     */
+    public static Runnable wrap(final Runnable task, Priority priority)
+    {
+        final RequestContext context = new RequestContext(RequestHandle.current(), priority);
+        return new Runnable()
+        {
+            public void run()
+            {
+                RequestContext previous = context.bind();
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    context.unbind(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Binds the context to the current thread.
+     * 
+     * @return the previous context of the thread.
+     */
+    private RequestContext bind()
+    {
+        RequestContext previous = new RequestContext(RequestHandle.current(), RequestScheduler.bind(priority));
+        if (handle != null)
+        {
+            RequestHandle.attach(handle);
+        }
+        return previous;
+    }
+
+    /**
+     * Restores the previous context of the thread. The task may run on the
+     * caller thread : the handle of the caller is kept.
+     */
+    private void unbind(RequestContext previous)
+    {
+        if (previous.handle != null)
+        {
+            RequestHandle.attach(previous.handle);
+        }
+        else if (handle != null)
+        {
+            RequestHandle.detach();
+        }
+        RequestScheduler.bind(previous.priority);
+    }
+}
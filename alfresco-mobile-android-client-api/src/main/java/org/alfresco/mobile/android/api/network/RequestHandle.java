@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handle on all HTTP connections opened by a thread while a unit of work is
+ * executed (for example a service method called asynchronously). <br/>
+ * Once a handle is bound to the current thread, each connection created by
+ * {@link NetworkHttpInvoker} is registered inside the handle. Aborting the
+ * handle disconnects all these connections : blocking reads and writes fail
+ * immediately instead of waiting for the network timeout.
+ * 
+ * <pre>
+ * RequestHandle.bind(handle);
+ * try
+ * {
+ *     // service calls
+ * }
+ * finally
+ * {
+ *     RequestHandle.unbind();
+ * }
+ * </pre>
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RequestHandle
+{
+    private static final ThreadLocal<RequestHandle> CURRENT = new ThreadLocal<RequestHandle>();
+
+    private final List<HttpURLConnection> connections = new ArrayList<HttpURLConnection>(2);
+
+    private volatile boolean aborted = false;
+
+    /**
+     * Binds the handle to the current thread.
+     */
+    public static void bind(RequestHandle handle)
+    {
+        CURRENT.set(handle);
+    }
+
+    /**
+     * Unbinds the handle of the current thread and releases the references to
+     * its connections.
+     */
+    public static void unbind()
+    {
+        RequestHandle handle = CURRENT.get();
+        CURRENT.remove();
+        if (handle != null)
+        {
+            synchronized (handle.connections)
+            {
+                handle.connections.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the handle bound to the current thread or null.
+     */
+    static RequestHandle current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the handle of another thread to a worker thread (for example a
+     * hedged request) : its connections are aborted with the handle.
+     * 
+     * @param handle : handle of the caller. Can be null.
+     */
+    static void attach(RequestHandle handle)
+    {
+        if (handle != null)
+        {
+            CURRENT.set(handle);
+        }
+    }
+
+    /**
+     * Unbinds the handle of a worker thread. Unlike {@link #unbind()},
+     * connections registered by the caller are kept.
+     */
+    static void detach()
+    {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return true if a handle is bound to the current thread and has been
+     *         aborted.
+     */
+    static boolean isCurrentAborted()
+    {
+        RequestHandle handle = CURRENT.get();
+        return handle != null && handle.aborted;
+    }
+
+    /**
+     * Registers a connection inside the handle bound to the current thread (if
+     * any).
+     * 
+     * @throws IOException if the handle has already been aborted.
+     */
+    static void register(HttpURLConnection conn) throws IOException
+    {
+        RequestHandle handle = CURRENT.get();
+        if (handle == null) { return; }
+
+        synchronized (handle.connections)
+        {
+            if (!handle.aborted)
+            {
+                handle.connections.add(conn);
+                return;
+            }
+        }
+        conn.disconnect();
+        throw new IOException("Request aborted");
+    }
+
+    /**
+     * Disconnects all connections of the handle. Further connections opened
+     * with this handle fail immediately.
+     */
+    public void abort()
+    {
+        List<HttpURLConnection> toDisconnect;
+        synchronized (connections)
+        {
+            aborted = true;
+            toDisconnect = new ArrayList<HttpURLConnection>(connections);
+            connections.clear();
+        }
+        for (HttpURLConnection conn : toDisconnect)
+        {
+            try
+            {
+                conn.disconnect();
+            }
+            catch (Exception e)
+            {
+                // Connection already closed.
+            }
+        }
+    }
+
+    /**
+     * @return true if {@link #abort()} has been called.
+     */
+    public boolean isAborted()
+    {
+        return aborted;
+    }
+}
@@ -0,0 +1,557 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+
+/**
+ * Admission control of the HTTP requests sent by the {@link NetworkHttpInvoker}
+ * . <br/>
+ * Each request belongs to a priority class :
+ * <ul>
+ * <li>{@link Priority#FOREGROUND} : requests the user is waiting for (folder
+ * listing, document opening...). This is the default class.</li>
+ * <li>{@link Priority#BACKGROUND} : work the user doesn't wait for (listing
+ * refresh, batched rendition downloads, extra segments of a download,
+ * favorites synchronisation...).</li>
+ * </ul>
+ * At most {@link #getMaxRequests()} requests are in flight at the same time,
+ * background requests use at most {@link #getMaxBackgroundRequests()} of these
+ * slots : the other slots are always available to foreground requests. <br/>
+ * Queued background requests are preempted by foreground requests : while a
+ * foreground request waits for a slot, no background request is started. <br/>
+ * Requests with a body (uploads) use their own {@link #getMaxUploads()}
+ * slots : long uploads never take the slots of the reads. <br/>
+ * The priority is bound to the current thread :
+ * 
+ * <pre>
+ * Priority previous = RequestScheduler.bind(Priority.BACKGROUND);
+ * try
+ * {
+ *     // service calls
+ * }
+ * finally
+ * {
+ *     RequestScheduler.bind(previous);
+ * }
+ * </pre>
+ * 
+ * A slot is held until the response body has been read or closed : callers
+ * must close the response streams they don't read to the end.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RequestScheduler
+{
+    /** Priority classes of requests. */
+    public enum Priority
+    {
+        /** Interactive requests. */
+        FOREGROUND,
+
+        /** Requests executed on behalf of background work. */
+        BACKGROUND
+    }
+
+    /** Default maximum number of requests in flight. */
+    public static final int DEFAULT_MAX_REQUESTS = 6;
+
+    /** Default maximum number of background requests in flight. */
+    public static final int DEFAULT_MAX_BACKGROUND_REQUESTS = 2;
+
+    /** Default maximum number of uploads in flight. */
+    public static final int DEFAULT_MAX_UPLOADS = 2;
+
+    /** Default time (in ms) a request waits for a slot. */
+    public static final long DEFAULT_WAIT_TIMEOUT = 60000;
+
+    /** Interval (in ms) used to check if a waiting request has been aborted. */
+    private static final long ABORT_CHECK_INTERVAL = 250;
+
+    private static final ThreadLocal<Priority> CURRENT = new ThreadLocal<Priority>();
+
+    private static RequestScheduler instance;
+
+    private final Object lock = new Object();
+
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+
+    private int maxBackgroundRequests = DEFAULT_MAX_BACKGROUND_REQUESTS;
+
+    private int maxUploads = DEFAULT_MAX_UPLOADS;
+
+    private long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+
+    private int activeForeground;
+
+    private int activeBackground;
+
+    private int activeUploads;
+
+    private int waitingForeground;
+
+    private int waitingBackground;
+
+    private int waitingUploads;
+
+    // Statistics
+    private final AtomicLong foregroundCount = new AtomicLong();
+
+    private final AtomicLong backgroundCount = new AtomicLong();
+
+    private final AtomicLong uploadCount = new AtomicLong();
+
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    private final AtomicLong preemptedCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private RequestScheduler()
+    {
+    }
+
+    /**
+     * @return the shared scheduler.
+     */
+    public static synchronized RequestScheduler getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new RequestScheduler();
+        }
+        return instance;
+    }
+
+    // ///////////////////////////////////////////////
+    // PRIORITY
+    // ///////////////////////////////////////////////
+    /**
+     * Binds a priority to the current thread.
+     * 
+     * @param priority : priority of the next requests. Null restores the
+     *            default priority.
+     * @return the previous priority of the thread.
+     */
+    public static Priority bind(Priority priority)
+    {
+        Priority previous = getCurrentPriority();
+        if (priority == null)
+        {
+            CURRENT.remove();
+        }
+        else
+        {
+            CURRENT.set(priority);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the priority of the requests sent by the current thread.
+     */
+    public static Priority getCurrentPriority()
+    {
+        Priority priority = CURRENT.get();
+        return (priority != null) ? priority : Priority.FOREGROUND;
+    }
+
+    // ///////////////////////////////////////////////
+    // ADMISSION
+    // ///////////////////////////////////////////////
+    /**
+     * Waits for a slot. Each call must be followed by a call to
+     * {@link #release(Priority)}.
+     * 
+     * @param priority : priority class of the request.
+     * @throws CmisConnectionException if the request is aborted (see
+     *             {@link RequestHandle}), interrupted or if no slot is
+     *             available before the wait timeout.
+     */
+    public void acquire(Priority priority)
+    {
+        boolean background = (priority == Priority.BACKGROUND);
+        synchronized (lock)
+        {
+            if (!isAllowed(background))
+            {
+                long deadline = System.currentTimeMillis() + waitTimeout;
+                queuedCount.incrementAndGet();
+                if (background)
+                {
+                    waitingBackground++;
+                }
+                else
+                {
+                    waitingForeground++;
+                }
+                try
+                {
+                    boolean preempted = false;
+                    while (!isAllowed(background))
+                    {
+                        if (background && !preempted && waitingForeground > 0)
+                        {
+                            preempted = true;
+                            preemptedCount.incrementAndGet();
+                        }
+                        await(deadline);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new CmisConnectionException("Request interrupted", e);
+                }
+                finally
+                {
+                    if (background)
+                    {
+                        waitingBackground--;
+                    }
+                    else if (--waitingForeground == 0)
+                    {
+                        // Background requests may use the remaining slots
+                        lock.notifyAll();
+                    }
+                }
+            }
+
+            if (background)
+            {
+                activeBackground++;
+                backgroundCount.incrementAndGet();
+            }
+            else
+            {
+                activeForeground++;
+                foregroundCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Releases the slot of a request.
+     * 
+     * @param priority : priority class used to acquire the slot.
+     */
+    public void release(Priority priority)
+    {
+        synchronized (lock)
+        {
+            if (priority == Priority.BACKGROUND)
+            {
+                activeBackground = Math.max(0, activeBackground - 1);
+            }
+            else
+            {
+                activeForeground = Math.max(0, activeForeground - 1);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the release of a slot. Must be called while holding the lock.
+     * 
+     * @param deadline : time after which the request fails.
+     */
+    private void await(long deadline) throws InterruptedException
+    {
+        if (RequestHandle.isCurrentAborted()) { throw new CmisConnectionException("Request aborted"); }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0)
+        {
+            timeoutCount.incrementAndGet();
+            throw new CmisConnectionException("No request slot available after " + waitTimeout + " ms");
+        }
+        lock.wait(Math.min(ABORT_CHECK_INTERVAL, remaining));
+    }
+
+    private boolean isAllowed(boolean background)
+    {
+        if (activeForeground + activeBackground >= maxRequests) { return false; }
+        return !background || (waitingForeground == 0 && activeBackground < maxBackgroundRequests);
+    }
+
+    /**
+     * Waits for an upload slot. Upload slots are independent from the slots of
+     * the other requests. Each call must be followed by a call to
+     * {@link #releaseUpload()}.
+     * 
+     * @throws CmisConnectionException if the request is aborted (see
+     *             {@link RequestHandle}), interrupted or if no slot is
+     *             available before the wait timeout.
+     */
+    public void acquireUpload()
+    {
+        synchronized (lock)
+        {
+            if (activeUploads >= maxUploads)
+            {
+                long deadline = System.currentTimeMillis() + waitTimeout;
+                queuedCount.incrementAndGet();
+                waitingUploads++;
+                try
+                {
+                    while (activeUploads >= maxUploads)
+                    {
+                        await(deadline);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new CmisConnectionException("Request interrupted", e);
+                }
+                finally
+                {
+                    waitingUploads--;
+                }
+            }
+            activeUploads++;
+            uploadCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Releases an upload slot.
+     */
+    public void releaseUpload()
+    {
+        synchronized (lock)
+        {
+            activeUploads = Math.max(0, activeUploads - 1);
+            lock.notifyAll();
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // CONFIGURATION
+    // ///////////////////////////////////////////////
+    /**
+     * @return maximum number of requests in flight.
+     */
+    public int getMaxRequests()
+    {
+        synchronized (lock)
+        {
+            return maxRequests;
+        }
+    }
+
+    /**
+     * @param maxRequests : maximum number of requests in flight (at least 1).
+     */
+    public void setMaxRequests(int maxRequests)
+    {
+        if (maxRequests < 1) { return; }
+        synchronized (lock)
+        {
+            this.maxRequests = maxRequests;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return maximum number of background requests in flight.
+     */
+    public int getMaxBackgroundRequests()
+    {
+        synchronized (lock)
+        {
+            return maxBackgroundRequests;
+        }
+    }
+
+    /**
+     * @param maxBackgroundRequests : maximum number of background requests in
+     *            flight (at least 1).
+     */
+    public void setMaxBackgroundRequests(int maxBackgroundRequests)
+    {
+        if (maxBackgroundRequests < 1) { return; }
+        synchronized (lock)
+        {
+            this.maxBackgroundRequests = maxBackgroundRequests;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return maximum time (in ms) a request waits for a slot.
+     */
+    public long getWaitTimeout()
+    {
+        synchronized (lock)
+        {
+            return waitTimeout;
+        }
+    }
+
+    /**
+     * Defines the maximum time (in ms) a request waits for a slot. After this
+     * delay the request fails.
+     * 
+     * @param waitTimeout : value must be > 0
+     */
+    public void setWaitTimeout(long waitTimeout)
+    {
+        if (waitTimeout <= 0) { return; }
+        synchronized (lock)
+        {
+            this.waitTimeout = waitTimeout;
+        }
+    }
+
+    /**
+     * @return maximum number of uploads in flight.
+     */
+    public int getMaxUploads()
+    {
+        synchronized (lock)
+        {
+            return maxUploads;
+        }
+    }
+
+    /**
+     * @param maxUploads : maximum number of uploads in flight (at least 1).
+     */
+    public void setMaxUploads(int maxUploads)
+    {
+        if (maxUploads < 1) { return; }
+        synchronized (lock)
+        {
+            this.maxUploads = maxUploads;
+            lock.notifyAll();
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of requests of a priority class currently in flight.
+     */
+    public int getActiveCount(Priority priority)
+    {
+        synchronized (lock)
+        {
+            return (priority == Priority.BACKGROUND) ? activeBackground : activeForeground;
+        }
+    }
+
+    /**
+     * @return Number of requests of a priority class waiting for a slot.
+     */
+    public int getWaitingCount(Priority priority)
+    {
+        synchronized (lock)
+        {
+            return (priority == Priority.BACKGROUND) ? waitingBackground : waitingForeground;
+        }
+    }
+
+    /**
+     * @return Number of uploads currently in flight.
+     */
+    public int getActiveUploadCount()
+    {
+        synchronized (lock)
+        {
+            return activeUploads;
+        }
+    }
+
+    /**
+     * @return Number of uploads waiting for a slot.
+     */
+    public int getWaitingUploadCount()
+    {
+        synchronized (lock)
+        {
+            return waitingUploads;
+        }
+    }
+
+    /**
+     * @return Number of foreground requests started.
+     */
+    public long getForegroundCount()
+    {
+        return foregroundCount.get();
+    }
+
+    /**
+     * @return Number of background requests started.
+     */
+    public long getBackgroundCount()
+    {
+        return backgroundCount.get();
+    }
+
+    /**
+     * @return Number of uploads started.
+     */
+    public long getUploadCount()
+    {
+        return uploadCount.get();
+    }
+
+    /**
+     * @return Number of requests which waited for a slot.
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return Number of background requests held back by a foreground request.
+     */
+    public long getPreemptedCount()
+    {
+        return preemptedCount.get();
+    }
+
+    /**
+     * @return Number of requests which failed because no slot was available
+     *         before the wait timeout.
+     */
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        foregroundCount.set(0);
+        backgroundCount.set(0);
+        uploadCount.set(0);
+        queuedCount.set(0);
+        preemptedCount.set(0);
+        timeoutCount.set(0);
+    }
+}
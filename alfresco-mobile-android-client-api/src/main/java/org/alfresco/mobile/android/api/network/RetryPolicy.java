@@ -0,0 +1,629 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+import org.apache.chemistry.opencmis.client.bindings.spi.BindingSession;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.apache.http.HttpStatus;
+
+/**
+ * Retries idempotent requests (GET and range reads) which fail because of a
+ * transient problem : network error or 502 / 503 / 504 status code. <br/>
+ * <ul>
+ * <li>Retries are delayed by a jittered exponential backoff (between half and
+ * all of {@link #BASE_DELAY} * 2^(retry - 1), at most {@link #MAX_DELAY}).</li>
+ * <li>A shared retry budget prevents retry storms : each failure costs one
+ * token, each success gives back {@link #TOKEN_RATIO} token and retries are
+ * allowed only while more than half of the {@link #MAX_TOKENS} tokens remain.
+ * </li>
+ * <li>If hedging is enabled ({@link AlfrescoSession#HTTP_HEDGING}), a second
+ * attempt is sent when the first one is slower than the 95th percentile of the
+ * latencies of its endpoint. The first response which isn't a transient error
+ * wins, the other one is closed. Hedged requests use the same budget.</li>
+ * </ul>
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RetryPolicy
+{
+    /** Default maximum number of retries of a request. */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    /** Delay (in ms) before the first retry. */
+    public static final long BASE_DELAY = 200;
+
+    /** Maximum delay (in ms) between two attempts. */
+    public static final long MAX_DELAY = 5000;
+
+    /** Size of the retry budget. */
+    public static final int MAX_TOKENS = 10;
+
+    /** Tokens given back to the budget by each successful request. */
+    public static final double TOKEN_RATIO = 0.1;
+
+    /** Minimum delay (in ms) before a hedged request. */
+    public static final long MIN_HEDGE_DELAY = 50;
+
+    /** Number of latency samples required before hedging an endpoint. */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    /** Number of latency samples kept per endpoint. */
+    private static final int LATENCY_WINDOW = 64;
+
+    private static final int MAX_HEDGING_THREADS = 8;
+
+    private static RetryPolicy instance;
+
+    private final Random random = new Random();
+
+    private final Object budgetLock = new Object();
+
+    private double tokens = MAX_TOKENS;
+
+    private final Map<String, Latencies> latencies = new HashMap<String, Latencies>();
+
+    private ThreadPoolExecutor executor;
+
+    // Statistics
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    private final AtomicLong hedgeCount = new AtomicLong();
+
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    private RetryPolicy()
+    {
+    }
+
+    /**
+     * @return the shared retry policy.
+     */
+    public static synchronized RetryPolicy getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new RetryPolicy();
+        }
+        return instance;
+    }
+
+    // ///////////////////////////////////////////////
+    // EXECUTION
+    // ///////////////////////////////////////////////
+    /**
+     * Idempotent request executed by the policy.
+     */
+    public interface Call
+    {
+        /**
+         * Sends the request to the server. Can be called several times.
+         */
+        Response execute();
+    }
+
+    /**
+     * Executes an idempotent request and retries it if needed.
+     * 
+     * @param url : requested URL.
+     * @param session : binding session (see
+     *            {@link AlfrescoSession#HTTP_RETRY_MAX} and
+     *            {@link AlfrescoSession#HTTP_HEDGING}). Can be null.
+     * @param call : request sent to the server.
+     * @return the response of the last attempt.
+     * @throws CmisConnectionException if the last attempt fails.
+     */
+    public Response execute(String url, BindingSession session, Call call)
+    {
+        int maxRetries = getMaxRetries(session);
+        boolean hedging = isHedgingEnabled(session);
+        String endpoint = TransferStatistics.createEndpointKey(url);
+
+        long delay = 0;
+        for (int attempt = 0;; attempt++)
+        {
+            if (attempt > 0)
+            {
+                retryCount.incrementAndGet();
+                sleep(delay);
+            }
+
+            Response resp;
+            try
+            {
+                resp = hedging ? executeHedged(endpoint, call) : executeTimed(endpoint, call);
+            }
+            catch (CmisConnectionException e)
+            {
+                onFailure();
+                if (!canRetry(attempt, maxRetries)) { throw e; }
+                delay = getBackoff(attempt + 1);
+                continue;
+            }
+
+            if (!isTransient(resp.getResponseCode()))
+            {
+                onSuccess();
+                return resp;
+            }
+
+            onFailure();
+            if (!canRetry(attempt, maxRetries)) { return resp; }
+            delay = Math.max(getBackoff(attempt + 1), getRetryAfter(resp));
+            discard(resp);
+        }
+    }
+
+    /**
+     * Closes a response the caller will never read. Error bodies of the
+     * {@link NetworkHttpInvoker} are already read and closed : only the
+     * response stream can still hold the connection.
+     */
+    private static void discard(Response resp)
+    {
+        if (resp != null)
+        {
+            IOUtils.closeStream(resp.getStream());
+        }
+    }
+
+    private Response executeTimed(String endpoint, Call call)
+    {
+        long start = System.currentTimeMillis();
+        Response resp = call.execute();
+        if (!isTransient(resp.getResponseCode()))
+        {
+            recordLatency(endpoint, System.currentTimeMillis() - start);
+        }
+        return resp;
+    }
+
+    /**
+     * Sends the request from a worker thread. If no response arrives before
+     * the hedge delay of the endpoint, a second attempt is sent. The first
+     * response which isn't a transient error wins. If every attempt fails, the
+     * last transient response (or error) is returned to the retry loop.
+     */
+    private Response executeHedged(String endpoint, Call call)
+    {
+        long hedgeDelay = getHedgeDelay(endpoint);
+        if (hedgeDelay < 0) { return executeTimed(endpoint, call); }
+
+        Hedge hedge = new Hedge(endpoint, call);
+        if (!hedge.start(false)) { return executeTimed(endpoint, call); }
+
+        Response transientResp = null;
+        RuntimeException error = null;
+        try
+        {
+            Attempt attempt = hedge.results.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (attempt == null && isRetryAllowed() && hedge.start(true))
+            {
+                hedgeCount.incrementAndGet();
+            }
+
+            for (int done = 0; done < hedge.started; done++)
+            {
+                if (attempt == null)
+                {
+                    attempt = hedge.results.take();
+                }
+                if (attempt.response == null)
+                {
+                    error = attempt.error;
+                }
+                else if (isTransient(attempt.response.getResponseCode()))
+                {
+                    discard(transientResp);
+                    transientResp = attempt.response;
+                }
+                else
+                {
+                    if (attempt.hedged)
+                    {
+                        hedgeWinCount.incrementAndGet();
+                    }
+                    discard(transientResp);
+                    hedge.claim();
+                    return attempt.response;
+                }
+                attempt = null;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            hedge.claim();
+            discard(transientResp);
+            throw new CmisConnectionException("Request interrupted", e);
+        }
+
+        hedge.claim();
+        if (transientResp != null) { return transientResp; }
+        throw error;
+    }
+
+    // ///////////////////////////////////////////////
+    // BUDGET & BACKOFF
+    // ///////////////////////////////////////////////
+    private boolean canRetry(int attempt, int maxRetries)
+    {
+        if (attempt >= maxRetries || RequestHandle.isCurrentAborted() || Thread.currentThread().isInterrupted()) { return false; }
+        if (!isRetryAllowed())
+        {
+            throttledCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isRetryAllowed()
+    {
+        synchronized (budgetLock)
+        {
+            return tokens > MAX_TOKENS / 2.0;
+        }
+    }
+
+    private void onSuccess()
+    {
+        synchronized (budgetLock)
+        {
+            tokens = Math.min(MAX_TOKENS, tokens + TOKEN_RATIO);
+        }
+    }
+
+    private void onFailure()
+    {
+        synchronized (budgetLock)
+        {
+            tokens = Math.max(0, tokens - 1);
+        }
+    }
+
+    /**
+     * @param retry : retry number (starts at 1).
+     * @return jittered exponential delay (in ms).
+     */
+    private long getBackoff(int retry)
+    {
+        long cap = Math.min(MAX_DELAY, BASE_DELAY << Math.min(retry - 1, 16));
+        return cap / 2 + (long) (random.nextDouble() * (cap / 2));
+    }
+
+    /**
+     * @return delay (in ms) requested by the server through Retry-After (in
+     *         seconds), at most {@link #MAX_DELAY}.
+     */
+    private static long getRetryAfter(Response resp)
+    {
+        String retryAfter = resp.getResponseHeader("Retry-After");
+        if (retryAfter == null) { return 0; }
+        try
+        {
+            return Math.min(MAX_DELAY, Long.parseLong(retryAfter.trim()) * 1000);
+        }
+        catch (NumberFormatException e)
+        {
+            // HTTP date : not supported
+            return 0;
+        }
+    }
+
+    private static void sleep(long delay)
+    {
+        try
+        {
+            Thread.sleep(delay);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CmisConnectionException("Request interrupted", e);
+        }
+    }
+
+    static boolean isTransient(int respCode)
+    {
+        return respCode == HttpStatus.SC_BAD_GATEWAY || respCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+                || respCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    private static int getMaxRetries(BindingSession session)
+    {
+        Object value = (session != null) ? session.get(AlfrescoSession.HTTP_RETRY_MAX) : null;
+        if (value == null) { return DEFAULT_MAX_RETRIES; }
+        try
+        {
+            return Math.max(0, Integer.parseInt(value.toString()));
+        }
+        catch (NumberFormatException e)
+        {
+            return DEFAULT_MAX_RETRIES;
+        }
+    }
+
+    private static boolean isHedgingEnabled(BindingSession session)
+    {
+        Object value = (session != null) ? session.get(AlfrescoSession.HTTP_HEDGING) : null;
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    // ///////////////////////////////////////////////
+    // LATENCIES
+    // ///////////////////////////////////////////////
+    private void recordLatency(String endpoint, long latency)
+    {
+        synchronized (latencies)
+        {
+            Latencies values = latencies.get(endpoint);
+            if (values == null)
+            {
+                if (latencies.size() >= TransferStatistics.MAX_ENDPOINTS) { return; }
+                values = new Latencies();
+                latencies.put(endpoint, values);
+            }
+            values.samples[values.index] = latency;
+            values.index = (values.index + 1) % LATENCY_WINDOW;
+            values.count = Math.min(values.count + 1, LATENCY_WINDOW);
+        }
+    }
+
+    /**
+     * @return 95th percentile of the latencies (in ms) of an endpoint or -1 if
+     *         there isn't enough samples.
+     */
+    public long getLatencyPercentile95(String url)
+    {
+        return getPercentile95(TransferStatistics.createEndpointKey(url));
+    }
+
+    private long getPercentile95(String endpoint)
+    {
+        long[] sorted;
+        synchronized (latencies)
+        {
+            Latencies values = latencies.get(endpoint);
+            if (values == null || values.count < MIN_LATENCY_SAMPLES) { return -1; }
+            sorted = Arrays.copyOf(values.samples, values.count);
+        }
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+    }
+
+    /**
+     * @return delay (in ms) before a hedged request or -1 if the endpoint
+     *         isn't known yet.
+     */
+    private long getHedgeDelay(String endpoint)
+    {
+        long p95 = getPercentile95(endpoint);
+        return (p95 < 0) ? -1 : Math.max(MIN_HEDGE_DELAY, p95);
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = new ThreadPoolExecutor(0, MAX_HEDGING_THREADS, 30, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory()
+                    {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread thread = new Thread(r, "RetryPolicy-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of retries sent.
+     */
+    public long getRetryCount()
+    {
+        return retryCount.get();
+    }
+
+    /**
+     * @return Number of retries refused because the budget was exhausted.
+     */
+    public long getThrottledCount()
+    {
+        return throttledCount.get();
+    }
+
+    /**
+     * @return Number of hedged requests sent.
+     */
+    public long getHedgeCount()
+    {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return Number of hedged requests which answered first.
+     */
+    public long getHedgeWinCount()
+    {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * Resets all counters. The budget and the latencies are kept.
+     */
+    public void resetStatistics()
+    {
+        retryCount.set(0);
+        throttledCount.set(0);
+        hedgeCount.set(0);
+        hedgeWinCount.set(0);
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL CLASSES
+    // ///////////////////////////////////////////////
+    private static final class Latencies
+    {
+        private final long[] samples = new long[LATENCY_WINDOW];
+
+        private int index;
+
+        private int count;
+    }
+
+    /**
+     * Attempts of a hedged request. Attempts report their response (or error)
+     * to the caller until the request is claimed, later responses are closed.
+     */
+    private final class Hedge
+    {
+        private final String endpoint;
+
+        private final Call call;
+
+        private final RequestHandle handle = RequestHandle.current();
+
+        private final BlockingQueue<Attempt> results = new LinkedBlockingQueue<Attempt>();
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private int started;
+
+        private Hedge(String endpoint, Call call)
+        {
+            this.endpoint = endpoint;
+            this.call = call;
+        }
+
+        /**
+         * @return false if no worker thread is available.
+         */
+        private boolean start(final boolean hedged)
+        {
+            try
+            {
+                getExecutor().execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        RequestHandle.attach(handle);
+                        try
+                        {
+                            report(new Attempt(hedged, executeTimed(endpoint, call), null));
+                        }
+                        catch (RuntimeException e)
+                        {
+                            report(new Attempt(hedged, null, e));
+                        }
+                        catch (Error e)
+                        {
+                            report(new Attempt(hedged, null, new CmisConnectionException(e.getMessage(), e)));
+                        }
+                        finally
+                        {
+                            RequestHandle.detach();
+                        }
+                    }
+                });
+                started++;
+                return true;
+            }
+            catch (RejectedExecutionException e)
+            {
+                return false;
+            }
+        }
+
+        private void report(Attempt attempt)
+        {
+            results.offer(attempt);
+            // The caller may have claimed the request after this attempt has
+            // been queued.
+            if (claimed.get())
+            {
+                drain();
+            }
+        }
+
+        /**
+         * The caller doesn't read the other attempts anymore : pending and
+         * later responses are closed.
+         */
+        private void claim()
+        {
+            claimed.set(true);
+            drain();
+        }
+
+        private void drain()
+        {
+            Attempt attempt;
+            while ((attempt = results.poll()) != null)
+            {
+                discard(attempt.response);
+            }
+        }
+    }
+
+    /**
+     * Result of one attempt of a hedged request.
+     */
+    private static final class Attempt
+    {
+        private final boolean hedged;
+
+        private final Response response;
+
+        private final RuntimeException error;
+
+        private Attempt(boolean hedged, Response response, RuntimeException error)
+        {
+            this.hedged = hedged;
+            this.response = response;
+            this.error = error;
+        }
+    }
+}
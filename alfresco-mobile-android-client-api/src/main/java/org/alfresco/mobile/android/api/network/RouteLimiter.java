@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per route (protocol, host, port) concurrency limiter used by
+ * {@link PooledNetworkHttpInvoker}. <br/>
+ * The sockets themselves are kept alive by the platform HttpURLConnection
+ * implementation : this class doesn't own connections. It bounds the number of
+ * requests in flight on a route so a burst of requests doesn't open more
+ * sockets than the platform keeps alive. A request which doesn't get a slot
+ * before the lease timeout fails. <br/>
+ * Routes unused for more than the idle timeout are forgotten.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RouteLimiter
+{
+    /** Default maximum number of concurrent requests per route. */
+    public static final int DEFAULT_MAX_PER_ROUTE = 5;
+
+    /** Default time (in ms) after which an unused route is forgotten. */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    /** Default time (in ms) a request waits for a slot of its route. */
+    public static final long DEFAULT_LEASE_TIMEOUT = 60000;
+
+    private static RouteLimiter instance;
+
+    private final Map<String, Route> routes = new HashMap<String, Route>();
+
+    private volatile int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private volatile long leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+
+    private volatile long lastEviction = System.currentTimeMillis();
+
+    // Statistics
+    private final AtomicLong leaseCount = new AtomicLong();
+
+    private final AtomicLong waitCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final AtomicLong totalLeaseTime = new AtomicLong();
+
+    private final AtomicLong maxLeaseTime = new AtomicLong();
+
+    private RouteLimiter()
+    {
+    }
+
+    /**
+     * @return the shared limiter.
+     */
+    public static synchronized RouteLimiter getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new RouteLimiter();
+        }
+        return instance;
+    }
+
+    // ///////////////////////////////////////////////
+    // CONFIGURATION
+    // ///////////////////////////////////////////////
+    /**
+     * Defines the maximum number of concurrent requests per route. The new
+     * value applies to routes created after the call.
+     * 
+     * @param maxPerRoute : value must be > 0
+     */
+    public void setMaxPerRoute(int maxPerRoute)
+    {
+        if (maxPerRoute > 0)
+        {
+            this.maxPerRoute = maxPerRoute;
+        }
+    }
+
+    public int getMaxPerRoute()
+    {
+        return maxPerRoute;
+    }
+
+    /**
+     * Defines the time (in ms) after which an unused route is forgotten.
+     * 
+     * @param idleTimeout : value must be > 0
+     */
+    public void setIdleTimeout(long idleTimeout)
+    {
+        if (idleTimeout > 0)
+        {
+            this.idleTimeout = idleTimeout;
+        }
+    }
+
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * Defines the maximum time (in ms) a request waits for a slot of its
+     * route. After this delay the request fails.
+     * 
+     * @param leaseTimeout : value must be >= 0
+     */
+    public void setLeaseTimeout(long leaseTimeout)
+    {
+        if (leaseTimeout >= 0)
+        {
+            this.leaseTimeout = leaseTimeout;
+        }
+    }
+
+    public long getLeaseTimeout()
+    {
+        return leaseTimeout;
+    }
+
+    // ///////////////////////////////////////////////
+    // LEASE / RELEASE
+    // ///////////////////////////////////////////////
+    /**
+     * Leases a slot for the route of the url. The caller must release the
+     * lease once the response body has been consumed.
+     * 
+     * @param url : requested url
+     * @return lease associated to the request.
+     * @throws IOException if no slot is available before the lease timeout.
+     * @throws InterruptedException
+     */
+    public Lease lease(URL url) throws IOException, InterruptedException
+    {
+        if (System.currentTimeMillis() - lastEviction > idleTimeout)
+        {
+            evictIdleRoutes();
+        }
+
+        Route route = getRoute(url);
+        if (!route.permits.tryAcquire())
+        {
+            waitCount.incrementAndGet();
+            if (!route.permits.tryAcquire(leaseTimeout, TimeUnit.MILLISECONDS))
+            {
+                timeoutCount.incrementAndGet();
+                throw new IOException("No slot available for " + url.getHost() + " after " + leaseTimeout + " ms");
+            }
+        }
+
+        synchronized (route)
+        {
+            route.lastUsed = System.currentTimeMillis();
+        }
+        leaseCount.incrementAndGet();
+        return new Lease(route);
+    }
+
+    /**
+     * Releases a lease. Releasing twice the same lease has no effect.
+     * 
+     * @param lease : lease to release
+     */
+    void release(Lease lease)
+    {
+        if (lease == null || !lease.released.compareAndSet(false, true)) { return; }
+
+        long duration = System.currentTimeMillis() - lease.startTime;
+        totalLeaseTime.addAndGet(duration);
+        long max = maxLeaseTime.get();
+        while (duration > max && !maxLeaseTime.compareAndSet(max, duration))
+        {
+            max = maxLeaseTime.get();
+        }
+
+        Route route = lease.route;
+        synchronized (route)
+        {
+            route.lastUsed = System.currentTimeMillis();
+        }
+        route.permits.release();
+    }
+
+    /**
+     * Forgets the routes without request in flight and unused for more than
+     * the idle timeout.
+     */
+    public void evictIdleRoutes()
+    {
+        long now = System.currentTimeMillis();
+        synchronized (routes)
+        {
+            lastEviction = now;
+            for (Iterator<Route> iterator = routes.values().iterator(); iterator.hasNext();)
+            {
+                Route route = iterator.next();
+                synchronized (route)
+                {
+                    if (route.permits.availablePermits() == route.capacity && now - route.lastUsed > idleTimeout)
+                    {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private Route getRoute(URL url)
+    {
+        int port = (url.getPort() != -1) ? url.getPort() : url.getDefaultPort();
+        String key = url.getProtocol() + "://" + url.getHost() + ":" + port;
+        synchronized (routes)
+        {
+            Route route = routes.get(key);
+            if (route == null)
+            {
+                route = new Route(maxPerRoute);
+                routes.put(key, route);
+            }
+            return route;
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Total number of leases.
+     */
+    public long getLeaseCount()
+    {
+        return leaseCount.get();
+    }
+
+    /**
+     * @return Number of requests which waited for a slot of their route.
+     */
+    public long getWaitCount()
+    {
+        return waitCount.get();
+    }
+
+    /**
+     * @return Number of requests which failed because no slot was available
+     *         before the lease timeout.
+     */
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return Cumulated lease time in ms.
+     */
+    public long getTotalLeaseTime()
+    {
+        return totalLeaseTime.get();
+    }
+
+    /**
+     * @return Average lease time in ms.
+     */
+    public long getAverageLeaseTime()
+    {
+        long count = leaseCount.get();
+        return (count == 0) ? 0 : totalLeaseTime.get() / count;
+    }
+
+    /**
+     * @return Longest lease time in ms.
+     */
+    public long getMaxLeaseTime()
+    {
+        return maxLeaseTime.get();
+    }
+
+    /**
+     * @return Number of requests currently in flight on all routes.
+     */
+    public int getActiveCount()
+    {
+        int count = 0;
+        synchronized (routes)
+        {
+            for (Route route : routes.values())
+            {
+                count += route.capacity - route.permits.availablePermits();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        leaseCount.set(0);
+        waitCount.set(0);
+        timeoutCount.set(0);
+        totalLeaseTime.set(0);
+        maxLeaseTime.set(0);
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    /**
+     * Slots associated to a protocol, host and port.
+     */
+    private static final class Route
+    {
+        final int capacity;
+
+        final Semaphore permits;
+
+        long lastUsed = System.currentTimeMillis();
+
+        Route(int capacity)
+        {
+            this.capacity = capacity;
+            this.permits = new Semaphore(capacity, true);
+        }
+    }
+
+    /**
+     * Represents the right to send a request on a route until the response
+     * has been consumed.
+     */
+    public static final class Lease
+    {
+        private final Route route;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Lease(Route route)
+        {
+            this.route = route;
+        }
+    }
+}
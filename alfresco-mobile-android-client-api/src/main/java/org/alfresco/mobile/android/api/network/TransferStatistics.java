@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per endpoint counters of the response bytes received on the wire and of the
+ * bytes delivered once decoded. The difference is the bandwidth saved by
+ * compressed responses. <br/>
+ * An endpoint is identified by the host and the first
+ * {@link #ENDPOINT_SEGMENTS} segments of the path (for example
+ * <i>host:8080/alfresco/service/api/people</i>).
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class TransferStatistics
+{
+    /** Number of path segments which identify an endpoint. */
+    public static final int ENDPOINT_SEGMENTS = 4;
+
+    /** Maximum number of endpoints tracked. Other endpoints share one entry. */
+    public static final int MAX_ENDPOINTS = 128;
+
+    /** Endpoint used once {@link #MAX_ENDPOINTS} is reached. */
+    public static final String OTHER_ENDPOINT = "*";
+
+    private static TransferStatistics instance;
+
+    private final Map<String, Endpoint> endpoints = new HashMap<String, Endpoint>();
+
+    private TransferStatistics()
+    {
+    }
+
+    /**
+     * @return the shared statistics.
+     */
+    public static synchronized TransferStatistics getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new TransferStatistics();
+        }
+        return instance;
+    }
+
+    /**
+     * @param url : requested URL.
+     * @return the identifier of the endpoint of an URL.
+     */
+    public static String createEndpointKey(String url)
+    {
+        try
+        {
+            URL u = new URL(url);
+            StringBuilder builder = new StringBuilder(u.getHost());
+            if (u.getPort() != -1)
+            {
+                builder.append(':').append(u.getPort());
+            }
+            int count = 0;
+            for (String segment : u.getPath().split("/"))
+            {
+                if (segment.length() == 0)
+                {
+                    continue;
+                }
+                builder.append('/').append(segment);
+                if (++count == ENDPOINT_SEGMENTS)
+                {
+                    break;
+                }
+            }
+            return builder.toString();
+        }
+        catch (MalformedURLException e)
+        {
+            return OTHER_ENDPOINT;
+        }
+    }
+
+    /**
+     * @param url : requested URL.
+     * @return the counters of the endpoint of an URL.
+     */
+    public Endpoint getEndpoint(String url)
+    {
+        String key = createEndpointKey(url);
+        synchronized (endpoints)
+        {
+            Endpoint endpoint = endpoints.get(key);
+            if (endpoint == null)
+            {
+                if (endpoints.size() >= MAX_ENDPOINTS)
+                {
+                    key = OTHER_ENDPOINT;
+                    endpoint = endpoints.get(key);
+                }
+                if (endpoint == null)
+                {
+                    endpoint = new Endpoint();
+                    endpoints.put(key, endpoint);
+                }
+            }
+            return endpoint;
+        }
+    }
+
+    /**
+     * @return snapshot of the counters by endpoint.
+     */
+    public Map<String, Endpoint> getEndpoints()
+    {
+        synchronized (endpoints)
+        {
+            return new HashMap<String, Endpoint>(endpoints);
+        }
+    }
+
+    /**
+     * @return Number of response bytes received on the wire.
+     */
+    public long getWireBytes()
+    {
+        long total = 0;
+        for (Endpoint endpoint : getEndpoints().values())
+        {
+            total += endpoint.getWireBytes();
+        }
+        return total;
+    }
+
+    /**
+     * @return Number of response bytes delivered once decoded.
+     */
+    public long getDecodedBytes()
+    {
+        long total = 0;
+        for (Endpoint endpoint : getEndpoints().values())
+        {
+            total += endpoint.getDecodedBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        synchronized (endpoints)
+        {
+            endpoints.clear();
+        }
+    }
+
+    /**
+     * Wraps a stream : each byte read is added to the counters.
+     */
+    static InputStream count(InputStream in, AtomicLong... counters)
+    {
+        return new CountingInputStream(in, counters);
+    }
+
+    // ///////////////////////////////////////////////
+    // ENDPOINT
+    // ///////////////////////////////////////////////
+    /**
+     * Counters of an endpoint.
+     */
+    public static final class Endpoint
+    {
+        final AtomicLong responseCount = new AtomicLong();
+
+        final AtomicLong compressedCount = new AtomicLong();
+
+        final AtomicLong wireBytes = new AtomicLong();
+
+        final AtomicLong decodedBytes = new AtomicLong();
+
+        private Endpoint()
+        {
+        }
+
+        /**
+         * @return Number of response bodies received.
+         */
+        public long getResponseCount()
+        {
+            return responseCount.get();
+        }
+
+        /**
+         * @return Number of compressed response bodies received.
+         */
+        public long getCompressedCount()
+        {
+            return compressedCount.get();
+        }
+
+        /**
+         * @return Number of bytes received on the wire.
+         */
+        public long getWireBytes()
+        {
+            return wireBytes.get();
+        }
+
+        /**
+         * @return Number of bytes delivered once decoded.
+         */
+        public long getDecodedBytes()
+        {
+            return decodedBytes.get();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream
+    {
+        private final AtomicLong[] counters;
+
+        private CountingInputStream(InputStream in, AtomicLong... counters)
+        {
+            super(in);
+            this.counters = counters;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b != -1)
+            {
+                add(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = in.read(b, off, len);
+            if (count > 0)
+            {
+                add(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long count = in.skip(n);
+            if (count > 0)
+            {
+                add(count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        private void add(long count)
+        {
+            for (AtomicLong counter : counters)
+            {
+                counter.addAndGet(count);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.mobile.android.api.network.RequestScheduler;
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
+
+/**
+ * Asynchronous facade of the {@link ServiceRegistry}. <br/>
+ * All methods of the SDK services are blocking. This registry executes them
+ * inside a bounded pool of background threads and returns a
+ * {@link ServiceFuture} for each request. Independent requests (for example
+ * sites, favorites and activities of a dashboard) are executed concurrently.
+ * 
+ * <pre>
+ * AsyncServiceRegistry async = new AsyncServiceRegistry(session);
+ * ServiceFuture&lt;List&lt;Site&gt;&gt; sites = async.execute(new ServiceRequest&lt;List&lt;Site&gt;&gt;()
+ * {
+ *     public List&lt;Site&gt; execute(ServiceRegistry registry)
+ *     {
+ *         return registry.getSiteService().getSites();
+ *     }
+ * }, callback);
+ * </pre>
+ * 
+ * Pending requests are executed by priority (see
+ * {@link ServiceRequest#getPriority()}) : a foreground request jumps ahead of
+ * the queued background requests. <br/>
+ * Cancelling a future aborts the underlying HTTP connections. Don't forget to
+ * call {@link #shutdown()} when the registry is no longer used.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class AsyncServiceRegistry
+{
+    /** Default maximum number of requests executed at the same time. */
+    public static final int DEFAULT_MAX_THREADS = 4;
+
+    /** Default maximum number of requests waiting for a thread. */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /** Time (in seconds) an idle thread is kept alive. */
+    private static final long KEEP_ALIVE = 30;
+
+    private final ServiceRegistry registry;
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates an asynchronous registry with default values.
+     * 
+     * @param session : session providing the service registry.
+     */
+    public AsyncServiceRegistry(AlfrescoSession session)
+    {
+        this(session.getServiceRegistry(), DEFAULT_MAX_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param registry : service registry wrapped.
+     * @param maxThreads : maximum number of requests executed at the same
+     *            time.
+     * @param queueSize : maximum number of pending requests. Beyond this
+     *            limit, {@link #execute(ServiceRequest, ServiceCallback)}
+     *            throws a {@link RejectedExecutionException}.
+     */
+    public AsyncServiceRegistry(ServiceRegistry registry, int maxThreads, int queueSize)
+    {
+        this(registry, createExecutor(maxThreads, queueSize));
+    }
+
+    /**
+     * @param registry : service registry wrapped.
+     * @param executor : executor responsible to run the requests.
+     */
+    public AsyncServiceRegistry(ServiceRegistry registry, ExecutorService executor)
+    {
+        if (registry == null) { throw new IllegalArgumentException("registry"); }
+        if (executor == null) { throw new IllegalArgumentException("executor"); }
+        this.registry = registry;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the synchronous registry wrapped.
+     */
+    public ServiceRegistry getServiceRegistry()
+    {
+        return registry;
+    }
+
+    /**
+     * Submits a request.
+     * 
+     * @param request : request to execute.
+     * @return future of the request.
+     */
+    public <T> ServiceFuture<T> execute(ServiceRequest<T> request)
+    {
+        return execute(request, null);
+    }
+
+    /**
+     * Submits a request.
+     * 
+     * @param request : request to execute.
+     * @param callback : callback notified at the end of the request. Can be
+     *            null.
+     * @return future of the request.
+     * @throws RejectedExecutionException if too many requests are pending.
+     */
+    public <T> ServiceFuture<T> execute(ServiceRequest<T> request, ServiceCallback<T> callback)
+    {
+        if (request == null) { throw new IllegalArgumentException("request"); }
+        ServiceFuture<T> future = new ServiceFuture<T>(registry, request, callback);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Submits several independent requests. They are executed concurrently
+     * within the limit of the executor.
+     * 
+     * @param requests : requests to execute.
+     * @return futures in the same order as the requests.
+     */
+    public List<ServiceFuture<?>> executeAll(List<? extends ServiceRequest<?>> requests)
+    {
+        List<ServiceFuture<?>> futures = new ArrayList<ServiceFuture<?>>(requests.size());
+        for (ServiceRequest<?> request : requests)
+        {
+            futures.add(execute(request));
+        }
+        return futures;
+    }
+
+    /**
+     * Stops the registry. Pending requests are cancelled and running requests
+     * are aborted.
+     */
+    public void shutdown()
+    {
+        for (Runnable runnable : executor.shutdownNow())
+        {
+            if (runnable instanceof ServiceFuture)
+            {
+                ((ServiceFuture<?>) runnable).cancel(true);
+            }
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    private static ExecutorService createExecutor(int maxThreads, int queueSize)
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE, TimeUnit.SECONDS,
+                new RequestQueue(queueSize), new ThreadFactory()
+                {
+                    private final AtomicInteger count = new AtomicInteger(1);
+
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "AlfrescoAsyncService #" + count.getAndIncrement());
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Bounded queue of pending requests ordered by priority then by
+     * submission.
+     */
+    private static final class RequestQueue extends PriorityBlockingQueue<Runnable>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private RequestQueue(int capacity)
+        {
+            super(Math.max(1, Math.min(capacity, DEFAULT_QUEUE_SIZE)), new Comparator<Runnable>()
+            {
+                public int compare(Runnable r1, Runnable r2)
+                {
+                    int result = getPriority(r1).compareTo(getPriority(r2));
+                    if (result != 0 || !(r1 instanceof ServiceFuture) || !(r2 instanceof ServiceFuture)) { return result; }
+                    long s1 = ((ServiceFuture<?>) r1).sequence;
+                    long s2 = ((ServiceFuture<?>) r2).sequence;
+                    return (s1 < s2) ? -1 : ((s1 == s2) ? 0 : 1);
+                }
+            });
+            this.capacity = capacity;
+        }
+
+        private static RequestScheduler.Priority getPriority(Runnable runnable)
+        {
+            return (runnable instanceof ServiceFuture) ? ((ServiceFuture<?>) runnable).getPriority()
+                    : RequestScheduler.Priority.FOREGROUND;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable)
+        {
+            // Beyond the capacity the executor rejects the request.
+            if (size() >= capacity) { return false; }
+            return super.offer(runnable);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.alfresco.mobile.android.api.model.ListingContext;
 import org.alfresco.mobile.android.api.model.Node;
 import org.alfresco.mobile.android.api.model.PagingResult;
 import org.alfresco.mobile.android.api.model.Permissions;
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
 
 /**
  * DocumentFolderService manages Folders and Documents in an Alfresco
@@ -481,6 +482,26 @@ public interface DocumentFolderService extends Service
      */
     ContentStream getRenditionStream(Node node, String type);
 
+    /**
+     * Retrieve a specific type of Rendition for a list of nodes (for example
+     * the thumbnails of the visible page of a folder). Renditions are
+     * downloaded in parallel over a bounded number of connections (see
+     * {@link AlfrescoSession#RENDITION_FETCH_THREADS}) and stored inside the
+     * rendition cache. Nodes retrieved with the rendition metadata (see
+     * {@link org.alfresco.mobile.android.api.model.ListingProjection#THUMBNAILS})
+     * don't require any extra request to locate their rendition. <br/>
+     * Folders are ignored.
+     * 
+     * @param nodes : list of nodes (Documents in general)
+     * @param type : Type of rendition available
+     * @return Returns a map of node identifiers and ContentFile objects. Nodes
+     *         without rendition are not part of the map.
+     * @throws AlfrescoServiceException : if network or internal problems occur
+     *             during the process.
+     * @since 1.4
+     */
+    Map<String, ContentFile> getRenditions(List<Node> nodes, String type);
+
     /**
      * Returns a list of the current users favorite documents.
      * 
@@ -567,4 +588,14 @@ public interface DocumentFolderService extends Service
      */
     Node refreshNode(Node node);
 
+    /**
+     * Defines the listener notified when a cached listing has been refreshed
+     * in background with a different result. Only used if the listing cache
+     * is enabled ({@link AlfrescoSession#LISTING_CACHE}).
+     * 
+     * @param listener : listener or null to remove the current one.
+     * @since 1.4
+     */
+    void setListingRefreshListener(ListingRefreshListener listener);
+
 }
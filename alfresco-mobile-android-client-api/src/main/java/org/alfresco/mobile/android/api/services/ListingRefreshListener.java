@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services;
+
+import org.alfresco.mobile.android.api.model.Folder;
+import org.alfresco.mobile.android.api.model.ListingContext;
+import org.alfresco.mobile.android.api.model.Node;
+import org.alfresco.mobile.android.api.model.PagingResult;
+
+/**
+ * Listener notified when a folder listing returned from the listing cache of
+ * the {@link DocumentFolderService} has been refreshed in background and
+ * differs from the cached version. <br/>
+ * The method is called from a background thread. Use a Handler to update the
+ * user interface.
+ * 
+ * @see org.alfresco.mobile.android.api.session.AlfrescoSession#LISTING_CACHE
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public interface ListingRefreshListener
+{
+    /**
+     * Called when a fresh version of a page of children is available. <br/>
+     * The same request (getChildren, getFolders or getDocuments) now returns
+     * the fresh version.
+     * 
+     * @param folder : parent folder of the listing.
+     * @param listingContext : listing context of the request. Can be null.
+     * @param result : fresh page of children.
+     */
+    void onListingRefresh(Folder folder, ListingContext listingContext, PagingResult<Node> result);
+}
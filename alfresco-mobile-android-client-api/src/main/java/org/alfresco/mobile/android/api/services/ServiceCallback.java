@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services;
+
+/**
+ * Callback notified when a request submitted to the
+ * {@link AsyncServiceRegistry} is finished. <br/>
+ * Methods are called from the background thread which has executed the
+ * request. Use a Handler to update the user interface.
+ * 
+ * @param <T> : type of the result.
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public interface ServiceCallback<T>
+{
+    /**
+     * Called when the request has been successfully executed.
+     * 
+     * @param result : result of the request.
+     */
+    void onResult(T result);
+
+    /**
+     * Called when the request has failed or has been cancelled.
+     * 
+     * @param e : exception raised by the request. In case of cancellation, it's
+     *            a {@link java.util.concurrent.CancellationException}.
+     */
+    void onError(Exception e);
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.mobile.android.api.network.RequestHandle;
+import org.alfresco.mobile.android.api.network.RequestScheduler;
+
+/**
+ * Pending result of a {@link ServiceRequest} submitted to the
+ * {@link AsyncServiceRegistry}. <br/>
+ * Cancelling the future aborts the HTTP connections currently opened by the
+ * request : the request stops as soon as possible instead of waiting the end
+ * of the network exchange.
+ * 
+ * @param <T> : type of the result.
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class ServiceFuture<T> extends FutureTask<T>
+{
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final RequestHandle handle = new RequestHandle();
+
+    private final ServiceCallback<T> callback;
+
+    private final RequestScheduler.Priority priority;
+
+    /** Submission order : requests of the same priority are executed FIFO. */
+    final long sequence = SEQUENCE.getAndIncrement();
+
+    /**
+     * @param registry : service registry used to execute the request.
+     * @param request : request to execute.
+     * @param callback : optional callback notified at the end of the request.
+     */
+    public ServiceFuture(final ServiceRegistry registry, final ServiceRequest<T> request, ServiceCallback<T> callback)
+    {
+        super(new Callable<T>()
+        {
+            public T call() throws Exception
+            {
+                return request.execute(registry);
+            }
+        });
+        this.callback = callback;
+        this.priority = (request.getPriority() != null) ? request.getPriority()
+                : RequestScheduler.Priority.FOREGROUND;
+    }
+
+    /**
+     * @return priority of the request.
+     */
+    public RequestScheduler.Priority getPriority()
+    {
+        return priority;
+    }
+
+    @Override
+    public void run()
+    {
+        RequestHandle.bind(handle);
+        RequestScheduler.Priority previous = RequestScheduler.bind(priority);
+        try
+        {
+            super.run();
+        }
+        finally
+        {
+            RequestScheduler.bind(previous);
+            RequestHandle.unbind();
+        }
+    }
+
+    /**
+     * Cancels the request and aborts its HTTP connections.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled)
+        {
+            handle.abort();
+        }
+        return cancelled;
+    }
+
+    @Override
+    protected void done()
+    {
+        if (callback == null) { return; }
+
+        if (isCancelled())
+        {
+            callback.onError(new CancellationException());
+            return;
+        }
+
+        try
+        {
+            callback.onResult(get());
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            callback.onError((cause instanceof Exception) ? (Exception) cause : e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            callback.onError(e);
+        }
+    }
+}
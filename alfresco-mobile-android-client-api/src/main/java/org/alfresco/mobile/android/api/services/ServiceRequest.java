@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services;
+
+import org.alfresco.mobile.android.api.network.RequestScheduler;
+
+/**
+ * Unit of work executed by the {@link AsyncServiceRegistry}. <br/>
+ * Implementations call one or several blocking methods of the services
+ * available inside the registry and return the result.
+ * 
+ * <pre>
+ * new ServiceRequest&lt;List&lt;Site&gt;&gt;()
+ * {
+ *     public List&lt;Site&gt; execute(ServiceRegistry registry)
+ *     {
+ *         return registry.getSiteService().getFavoriteSites();
+ *     }
+ * };
+ * </pre>
+ * 
+ * @param <T> : type of the result.
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public abstract class ServiceRequest<T>
+{
+    /**
+     * Executes the request. This method is called from a background thread.
+     * 
+     * @param registry : service registry of the session.
+     * @return result of the request.
+     */
+    public abstract T execute(ServiceRegistry registry);
+
+    /**
+     * Priority of the request. Background requests (prefetch,
+     * synchronisation...) wait behind foreground requests inside the
+     * {@link AsyncServiceRegistry} and the {@link RequestScheduler}.
+     * 
+     * @return {@link RequestScheduler.Priority#FOREGROUND} by default.
+     */
+    public RequestScheduler.Priority getPriority()
+    {
+        return RequestScheduler.Priority.FOREGROUND;
+    }
+}
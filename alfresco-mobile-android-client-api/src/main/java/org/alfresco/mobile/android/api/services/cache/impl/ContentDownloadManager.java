@@ -0,0 +1,954 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.alfresco.mobile.android.api.network.RequestContext;
+import org.alfresco.mobile.android.api.network.RequestScheduler;
+import org.alfresco.mobile.android.api.utils.BufferPool;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.http.HttpStatus;
+
+/**
+ * Downloads document contents into the content cache folder and resumes
+ * interrupted downloads. <br/>
+ * While a content is downloaded, bytes are written inside a partial file
+ * (&lt;name&gt;.part) described by an info file (&lt;name&gt;.part.info) which
+ * keeps the version (change token) and the length of the content. If the
+ * download is interrupted, the next download of the same version restarts
+ * from the end of the partial file with a Range request. The ETag (or
+ * Last-Modified date) of the first bytes is sent inside an If-Range header :
+ * if the content has changed, the server sends the whole content and the
+ * download restarts. A partial file of another version is discarded. <br/>
+ * Large contents can be downloaded in several segments (byte ranges) fetched
+ * concurrently and written at their position inside a preallocated partial
+ * file (see {@link #download(String, String, long, int, RangeSource)}). <br/>
+ * Once complete, the length of the partial file is verified and the file is
+ * renamed to its final name : a content file is never visible half written.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class ContentDownloadManager
+{
+    private static final String PARTIAL_EXTENSION = ".part";
+
+    private static final String INFO_EXTENSION = ".part.info";
+
+    private static final String INFO_TOKEN = "token";
+
+    private static final String INFO_LENGTH = "length";
+
+    private static final String INFO_SEGMENTS = "segments";
+
+    private static final String INFO_SEGMENT = "segment.";
+
+    private static final String INFO_VALIDATOR = "validator";
+
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+
+    private static final String HEADER_ETAG = "ETag";
+
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    /** Maximum number of segments of a download. */
+    public static final int MAX_SEGMENTS = 8;
+
+    /** Idle time (in ms) before a segment thread is released. */
+    private static final long SEGMENT_KEEP_ALIVE = 30000;
+
+    /** Interval (in ms) between two stores of the segments progress. */
+    private static final long CHECKPOINT_INTERVAL = 2000;
+
+    private static final Map<String, ContentDownloadManager> INSTANCES = new HashMap<String, ContentDownloadManager>();
+
+    private final File folder;
+
+    /** Locks of the files being downloaded. */
+    private final Map<String, FileLock> locks = new HashMap<String, FileLock>();
+
+    private ExecutorService segmentExecutor;
+
+    // Statistics
+    private final AtomicLong downloadCount = new AtomicLong();
+
+    private final AtomicLong resumedCount = new AtomicLong();
+
+    private final AtomicLong resumedBytes = new AtomicLong();
+
+    private final AtomicLong segmentedCount = new AtomicLong();
+
+    private ContentDownloadManager(File folder)
+    {
+        this.folder = folder;
+    }
+
+    /**
+     * Returns the download manager associated to a content folder.
+     * 
+     * @param folder : path to the content cache folder.
+     */
+    public static ContentDownloadManager getInstance(String folder)
+    {
+        synchronized (INSTANCES)
+        {
+            ContentDownloadManager manager = INSTANCES.get(folder);
+            if (manager == null)
+            {
+                manager = new ContentDownloadManager(new File(folder));
+                INSTANCES.put(folder, manager);
+            }
+            return manager;
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // DOWNLOAD
+    // ///////////////////////////////////////////////
+    /**
+     * Source of a content.
+     */
+    public interface RangeSource
+    {
+        /**
+         * Sends a GET request for the content.
+         * 
+         * @param offset : first byte requested.
+         * @param length : number of bytes requested or -1 until the end of
+         *            the content. If offset is 0 and length is -1, the whole
+         *            content is requested (no Range header).
+         * @param validator : ETag or Last-Modified date of the bytes already
+         *            downloaded or null. If not null, it must be sent inside an
+         *            If-Range header : the server sends the whole content
+         *            (200) if the content has changed.
+         * @return the response : 200 (whole content), 206 (partial content)
+         *         or 416 (range not satisfiable). Other responses must be
+         *         handled (and reported) by the source.
+         */
+        Response open(long offset, long length, String validator) throws IOException;
+    }
+
+    /**
+     * Downloads a content into the content folder. If a partial file of the
+     * same version exists, the download is resumed.
+     * 
+     * @param fileName : name of the file inside the content folder.
+     * @param token : version of the content (change token or modification
+     *            date). If null, a partial file is never resumed.
+     * @param length : expected length of the content or -1 if unknown.
+     * @param source : source of the content.
+     * @return the downloaded file.
+     * @throws IOException if the download fails. The partial file is kept
+     *             and the next download resumes it.
+     */
+    public File download(String fileName, String token, long length, RangeSource source) throws IOException
+    {
+        FileLock lock = lock(fileName);
+        try
+        {
+            synchronized (lock)
+            {
+                return downloadStream(fileName, token, length, source);
+            }
+        }
+        finally
+        {
+            unlock(fileName, lock);
+        }
+    }
+
+    private File downloadStream(String fileName, String token, long length, RangeSource source) throws IOException
+    {
+        downloadCount.incrementAndGet();
+        File partial = new File(folder, fileName + PARTIAL_EXTENSION);
+        File info = new File(folder, fileName + INFO_EXTENSION);
+        IOUtils.ensureOrCreatePathAndFile(partial);
+
+        long offset = 0;
+        String validator = null;
+        Properties properties = (token != null) ? loadInfo(info, token, length, 0) : null;
+        if (properties != null)
+        {
+            offset = partial.length();
+            validator = properties.getProperty(INFO_VALIDATOR);
+        }
+        else
+        {
+            reset(partial, info, token, length);
+        }
+
+        boolean downloaded = (offset > 0 && offset == length);
+        if (!downloaded && offset > 0 && (length < 0 || offset < length))
+        {
+            Response resp = source.open(offset, -1, validator);
+            if (resp.getResponseCode() == HttpStatus.SC_PARTIAL_CONTENT && getRangeStart(resp) == offset)
+            {
+                resumedCount.incrementAndGet();
+                resumedBytes.addAndGet(offset);
+                write(resp, partial, true);
+                downloaded = true;
+            }
+            else if (resp.getResponseCode() == HttpStatus.SC_OK)
+            {
+                // Content changed (If-Range) or range ignored : the whole
+                // content is sent.
+                reset(partial, info, token, length);
+                storeValidator(info, resp);
+                write(resp, partial, false);
+                downloaded = true;
+            }
+            else
+            {
+                // Range not satisfiable or unexpected : full download.
+                IOUtils.closeStream(resp.getStream());
+                reset(partial, info, token, length);
+            }
+        }
+        else if (!downloaded && offset > 0)
+        {
+            // Partial file larger than the content.
+            reset(partial, info, token, length);
+        }
+
+        if (!downloaded)
+        {
+            Response resp = source.open(0, -1, null);
+            if (resp.getResponseCode() != HttpStatus.SC_OK)
+            {
+                IOUtils.closeStream(resp.getStream());
+                throw new IOException("Unexpected response : " + resp.getResponseCode());
+            }
+            storeValidator(info, resp);
+            write(resp, partial, false);
+        }
+
+        return publish(fileName, partial, info, length);
+    }
+
+    /**
+     * Downloads a content in several segments fetched concurrently. Each
+     * segment is a byte range written at its position inside the partial
+     * file. If the server doesn't answer the first range with 206 Partial
+     * Content, the content is downloaded as a single stream. <br/>
+     * The progress of each segment is stored at regular intervals and when
+     * the download stops : the next download of the same version (even after
+     * the process has been killed) only requests the missing bytes. If the
+     * content changes during the download (a range is answered with the whole
+     * content), the download restarts as a single stream.
+     * 
+     * @param fileName : name of the file inside the content folder.
+     * @param token : version of the content (change token or modification
+     *            date). If null, a partial file is never resumed.
+     * @param length : length of the content.
+     * @param segments : number of segments (at most {@link #MAX_SEGMENTS}).
+     * @param source : source of the content.
+     * @return the downloaded file.
+     * @throws IOException if the download fails.
+     */
+    public File download(String fileName, String token, long length, int segments, RangeSource source)
+            throws IOException
+    {
+        int count = Math.min(segments, MAX_SEGMENTS);
+        if (count <= 1 || length < count) { return download(fileName, token, length, source); }
+
+        FileLock lock = lock(fileName);
+        try
+        {
+            synchronized (lock)
+            {
+                return downloadSegments(fileName, token, length, count, source);
+            }
+        }
+        finally
+        {
+            unlock(fileName, lock);
+        }
+    }
+
+    private File downloadSegments(String fileName, String token, long length, int count, RangeSource source)
+            throws IOException
+    {
+        File partial = new File(folder, fileName + PARTIAL_EXTENSION);
+        File info = new File(folder, fileName + INFO_EXTENSION);
+        IOUtils.ensureOrCreatePathAndFile(partial);
+        long segmentLength = (length + count - 1) / count;
+
+        Properties properties = (token != null) ? loadInfo(info, token, length, count) : null;
+        long[] progress = (properties != null) ? loadProgress(properties, count) : null;
+        String validator = (properties != null) ? properties.getProperty(INFO_VALIDATOR) : null;
+        Response first = null;
+        if (progress == null || partial.length() != length)
+        {
+            // The first range tells if the server supports ranges.
+            first = source.open(0, segmentLength, null);
+            if (first.getResponseCode() == HttpStatus.SC_OK)
+            {
+                downloadCount.incrementAndGet();
+                reset(partial, info, token, length);
+                storeValidator(info, first);
+                write(first, partial, false);
+                return publish(fileName, partial, info, length);
+            }
+            if (first.getResponseCode() != HttpStatus.SC_PARTIAL_CONTENT || getRangeStart(first) != 0)
+            {
+                IOUtils.closeStream(first.getStream());
+                return downloadStream(fileName, token, length, source);
+            }
+            reset(partial, info, null, length);
+            progress = new long[count];
+            validator = getValidator(first);
+        }
+        else
+        {
+            long done = 0;
+            for (long segmentDone : progress)
+            {
+                done += segmentDone;
+            }
+            if (done > 0)
+            {
+                resumedCount.incrementAndGet();
+                resumedBytes.addAndGet(done);
+            }
+        }
+
+        downloadCount.incrementAndGet();
+        segmentedCount.incrementAndGet();
+        AtomicLongArray done = new AtomicLongArray(progress);
+        AtomicBoolean changed = new AtomicBoolean(false);
+        RandomAccessFile file = new RandomAccessFile(partial, "rw");
+        Checkpoint checkpoint = null;
+        try
+        {
+            file.setLength(length);
+            FileChannel channel = file.getChannel();
+            if (token != null)
+            {
+                checkpoint = new Checkpoint(info, token, length, validator, done, channel);
+            }
+
+            // Segments are aborted with the caller handle. The extra segments
+            // only speed the download up : they run as background requests
+            // while the first one keeps the caller priority.
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(count - 1);
+            for (int i = 1; i < count; i++)
+            {
+                long start = i * segmentLength;
+                futures.add(getSegmentExecutor().submit(
+                        RequestContext.wrap(new Segment(i, start, Math.min(length, start + segmentLength), done,
+                                channel, source, validator, changed, checkpoint, null),
+                                RequestScheduler.Priority.BACKGROUND)));
+            }
+
+            // The calling thread downloads the first segment.
+            IOException error = null;
+            try
+            {
+                new Segment(0, 0, Math.min(length, segmentLength), done, channel, source, validator, changed,
+                        checkpoint, first).call();
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+            error = await(futures, error);
+            if (error != null && !changed.get()) { throw error; }
+        }
+        finally
+        {
+            if (checkpoint != null)
+            {
+                checkpoint.close();
+            }
+            IOUtils.closeStream(file);
+            for (int i = 0; i < count; i++)
+            {
+                progress[i] = done.get(i);
+            }
+            if (token != null && !changed.get())
+            {
+                storeProgress(info, token, length, validator, progress);
+            }
+        }
+
+        if (changed.get())
+        {
+            // The content has changed since the first bytes : the new version
+            // is downloaded as a single stream.
+            reset(partial, info, token, length);
+            return downloadStream(fileName, token, length, source);
+        }
+        return publish(fileName, partial, info, length);
+    }
+
+    /**
+     * Waits for the end of all segments.
+     * 
+     * @return the first error.
+     */
+    private static IOException await(List<Future<Void>> futures, IOException error)
+    {
+        IOException firstError = error;
+        boolean interrupted = false;
+        for (Future<Void> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+                for (Future<Void> pending : futures)
+                {
+                    pending.cancel(true);
+                }
+                if (firstError == null)
+                {
+                    firstError = new InterruptedIOException("Download interrupted");
+                }
+            }
+            catch (CancellationException e)
+            {
+                if (firstError == null)
+                {
+                    firstError = new InterruptedIOException("Download cancelled");
+                }
+            }
+            catch (ExecutionException e)
+            {
+                if (firstError == null)
+                {
+                    firstError = (e.getCause() instanceof IOException) ? (IOException) e.getCause()
+                            : new IOException(String.valueOf(e.getCause()));
+                }
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return firstError;
+    }
+
+    /**
+     * Byte range of a segmented download.
+     */
+    private static final class Segment implements Callable<Void>
+    {
+        private final int index;
+
+        private final long start;
+
+        private final long end;
+
+        private final AtomicLongArray done;
+
+        private final FileChannel channel;
+
+        private final RangeSource source;
+
+        private final String validator;
+
+        private final AtomicBoolean changed;
+
+        private final Checkpoint checkpoint;
+
+        private final Response response;
+
+        /**
+         * @param end : end of the range (exclusive).
+         * @param validator : validator of the content (If-Range) or null.
+         * @param changed : set if the content has changed.
+         * @param checkpoint : progress storage or null if the download can't
+         *            be resumed.
+         * @param response : response already received for this range or
+         *            null.
+         */
+        Segment(int index, long start, long end, AtomicLongArray done, FileChannel channel, RangeSource source,
+                String validator, AtomicBoolean changed, Checkpoint checkpoint, Response response)
+        {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.done = done;
+            this.channel = channel;
+            this.source = source;
+            this.validator = validator;
+            this.changed = changed;
+            this.checkpoint = checkpoint;
+            this.response = response;
+        }
+
+        public Void call() throws IOException
+        {
+            long position = start + done.get(index);
+            if (position >= end)
+            {
+                IOUtils.closeStream((response != null) ? response.getStream() : null);
+                return null;
+            }
+
+            Response resp = (response != null) ? response : source.open(position, end - position, validator);
+            InputStream in = resp.getStream();
+            byte[] buffer = null;
+            try
+            {
+                if (validator != null && resp.getResponseCode() == HttpStatus.SC_OK)
+                {
+                    changed.set(true);
+                    throw new IOException("Content changed during the download");
+                }
+                if (resp.getResponseCode() != HttpStatus.SC_PARTIAL_CONTENT || getRangeStart(resp) != position
+                        || in == null) { throw new IOException("Range not supported : " + resp.getResponseCode()); }
+
+                buffer = BufferPool.getInstance().acquire();
+                int count;
+                while (position < end
+                        && (count = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) != -1)
+                {
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                    while (bytes.hasRemaining())
+                    {
+                        int written = channel.write(bytes, position);
+                        position += written;
+                        done.addAndGet(index, written);
+                    }
+                    if (checkpoint != null)
+                    {
+                        checkpoint.update();
+                    }
+                }
+            }
+            finally
+            {
+                BufferPool.getInstance().release(buffer);
+                IOUtils.closeStream(in);
+            }
+            if (position < end) { throw new IOException("Incomplete segment " + index); }
+            return null;
+        }
+    }
+
+    /**
+     * Stores the progress of the segments at regular intervals : if the
+     * process is killed during the download, the next download resumes from
+     * the last checkpoint.
+     */
+    private static final class Checkpoint
+    {
+        private final File info;
+
+        private final String token;
+
+        private final long length;
+
+        private final String validator;
+
+        private final AtomicLongArray done;
+
+        private final FileChannel channel;
+
+        private long lastStore = System.currentTimeMillis();
+
+        private boolean closed = false;
+
+        Checkpoint(File info, String token, long length, String validator, AtomicLongArray done, FileChannel channel)
+        {
+            this.info = info;
+            this.token = token;
+            this.length = length;
+            this.validator = validator;
+            this.done = done;
+            this.channel = channel;
+        }
+
+        /**
+         * Stores the progress if the last checkpoint is older than
+         * {@link #CHECKPOINT_INTERVAL}.
+         */
+        synchronized void update()
+        {
+            long now = System.currentTimeMillis();
+            if (closed || now - lastStore < CHECKPOINT_INTERVAL) { return; }
+            lastStore = now;
+            try
+            {
+                // Bytes are on disk before the progress which describes them.
+                channel.force(false);
+                long[] progress = new long[done.length()];
+                for (int i = 0; i < progress.length; i++)
+                {
+                    progress[i] = done.get(i);
+                }
+                storeProgress(info, token, length, validator, progress);
+            }
+            catch (IOException e)
+            {
+                // The next checkpoint tries again.
+            }
+        }
+
+        /**
+         * Segments still running (cancelled) don't store their progress
+         * anymore.
+         */
+        synchronized void close()
+        {
+            closed = true;
+        }
+    }
+
+    private synchronized ExecutorService getSegmentExecutor()
+    {
+        if (segmentExecutor == null)
+        {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_SEGMENTS, MAX_SEGMENTS, SEGMENT_KEEP_ALIVE,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            segmentExecutor = executor;
+        }
+        return segmentExecutor;
+    }
+
+    /**
+     * Removes the partial file of a content.
+     */
+    public void discard(String fileName)
+    {
+        FileLock lock = lock(fileName);
+        try
+        {
+            synchronized (lock)
+            {
+                new File(folder, fileName + PARTIAL_EXTENSION).delete();
+                new File(folder, fileName + INFO_EXTENSION).delete();
+            }
+        }
+        finally
+        {
+            unlock(fileName, lock);
+        }
+    }
+
+    /**
+     * Verifies the length of the partial file and renames it to its final
+     * name.
+     */
+    private File publish(String fileName, File partial, File info, long length) throws IOException
+    {
+        if (length >= 0 && partial.length() != length)
+        {
+            long found = partial.length();
+            partial.delete();
+            info.delete();
+            throw new IOException("Incomplete content : " + found + " bytes instead of " + length);
+        }
+
+        File target = new File(folder, fileName);
+        if (!partial.renameTo(target))
+        {
+            // Some file systems don't replace an existing file.
+            target.delete();
+            if (!partial.renameTo(target)) { throw new IOException("Unable to publish " + target.getPath()); }
+        }
+        info.delete();
+        return target;
+    }
+
+    private static void write(Response resp, File partial, boolean append) throws IOException
+    {
+        InputStream in = resp.getStream();
+        if (in == null) { throw new IOException("Empty response"); }
+        FileOutputStream out = null;
+        try
+        {
+            out = new FileOutputStream(partial, append);
+            IOUtils.transfer(in, out.getChannel());
+        }
+        finally
+        {
+            IOUtils.closeStream(in);
+            IOUtils.closeStream(out);
+        }
+    }
+
+    /**
+     * @return the first byte of a partial response (Content-Range: bytes
+     *         start-end/total) or -1 if unknown.
+     */
+    private static long getRangeStart(Response resp)
+    {
+        String range = resp.getResponseHeader(HEADER_CONTENT_RANGE);
+        if (range == null) { return -1; }
+        int start = range.indexOf(' ');
+        int end = range.indexOf('-');
+        if (start < 0 || end <= start) { return -1; }
+        try
+        {
+            return Long.parseLong(range.substring(start + 1, end).trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // PARTIAL FILE INFO
+    // ///////////////////////////////////////////////
+    /**
+     * @param segments : number of segments or 0 for a single stream download.
+     * @return the informations of the partial file or null if the partial file
+     *         belongs to another version or download.
+     */
+    private static Properties loadInfo(File info, String token, long length, int segments)
+    {
+        Properties properties = loadInfo(info);
+        if (properties == null || !token.equals(properties.getProperty(INFO_TOKEN))
+                || !Long.toString(length).equals(properties.getProperty(INFO_LENGTH))) { return null; }
+        String segmentCount = properties.getProperty(INFO_SEGMENTS);
+        if ((segments == 0) ? segmentCount != null : !Integer.toString(segments).equals(segmentCount)) { return null; }
+        return properties;
+    }
+
+    /**
+     * @return the progress of each segment of a segmented partial file or null
+     *         if the informations are corrupted.
+     */
+    private static long[] loadProgress(Properties properties, int segments)
+    {
+        long[] progress = new long[segments];
+        try
+        {
+            for (int i = 0; i < segments; i++)
+            {
+                progress[i] = Long.parseLong(properties.getProperty(INFO_SEGMENT + i, "0"));
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+        return progress;
+    }
+
+    private static void storeProgress(File info, String token, long length, String validator, long[] progress)
+            throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty(INFO_TOKEN, token);
+        properties.setProperty(INFO_LENGTH, Long.toString(length));
+        if (validator != null)
+        {
+            properties.setProperty(INFO_VALIDATOR, validator);
+        }
+        properties.setProperty(INFO_SEGMENTS, Integer.toString(progress.length));
+        for (int i = 0; i < progress.length; i++)
+        {
+            properties.setProperty(INFO_SEGMENT + i, Long.toString(progress[i]));
+        }
+        storeInfo(info, properties);
+    }
+
+    private static void reset(File partial, File info, String token, long length) throws IOException
+    {
+        new FileOutputStream(partial).close();
+        if (token == null)
+        {
+            info.delete();
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(INFO_TOKEN, token);
+        properties.setProperty(INFO_LENGTH, Long.toString(length));
+        storeInfo(info, properties);
+    }
+
+    /**
+     * Keeps the validator of the content sent by the server : a resumed
+     * download sends it inside an If-Range header.
+     */
+    private static void storeValidator(File info, Response resp) throws IOException
+    {
+        String validator = getValidator(resp);
+        Properties properties = loadInfo(info);
+        if (validator == null || properties == null) { return; }
+        properties.setProperty(INFO_VALIDATOR, validator);
+        storeInfo(info, properties);
+    }
+
+    /**
+     * @return the strong ETag or the Last-Modified date of a response : weak
+     *         ETags can't be used inside an If-Range header.
+     */
+    private static String getValidator(Response resp)
+    {
+        String eTag = resp.getResponseHeader(HEADER_ETAG);
+        if (eTag != null && !eTag.startsWith("W/")) { return eTag; }
+        return resp.getResponseHeader(HEADER_LAST_MODIFIED);
+    }
+
+    private static Properties loadInfo(File info)
+    {
+        if (!info.exists()) { return null; }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream(info);
+            properties.load(in);
+            return properties;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeStream(in);
+        }
+    }
+
+    private static void storeInfo(File info, Properties properties) throws IOException
+    {
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream(info);
+            properties.store(out, null);
+        }
+        finally
+        {
+            IOUtils.closeStream(out);
+        }
+    }
+
+    /**
+     * Downloads of the same file are serialized. Downloads of different files
+     * never wait for each other.
+     */
+    private FileLock lock(String fileName)
+    {
+        synchronized (locks)
+        {
+            FileLock lock = locks.get(fileName);
+            if (lock == null)
+            {
+                lock = new FileLock();
+                locks.put(fileName, lock);
+            }
+            lock.users++;
+            return lock;
+        }
+    }
+
+    private void unlock(String fileName, FileLock lock)
+    {
+        synchronized (locks)
+        {
+            if (--lock.users == 0)
+            {
+                locks.remove(fileName);
+            }
+        }
+    }
+
+    /**
+     * Lock of a file, kept while at least one thread uses it.
+     */
+    private static final class FileLock
+    {
+        private int users;
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of downloads handled by the manager.
+     */
+    public long getDownloadCount()
+    {
+        return downloadCount.get();
+    }
+
+    /**
+     * @return Number of downloads resumed from a partial file.
+     */
+    public long getResumedCount()
+    {
+        return resumedCount.get();
+    }
+
+    /**
+     * @return Number of bytes not downloaded again thanks to resumed
+     *         downloads.
+     */
+    public long getResumedBytes()
+    {
+        return resumedBytes.get();
+    }
+
+    /**
+     * @return Number of downloads split in several segments.
+     */
+    public long getSegmentedCount()
+    {
+        return segmentedCount.get();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        segmentedCount.set(0);
+        downloadCount.set(0);
+        resumedCount.set(0);
+        resumedBytes.set(0);
+    }
+}
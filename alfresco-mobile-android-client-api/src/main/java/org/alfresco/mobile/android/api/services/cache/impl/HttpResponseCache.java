@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.mobile.android.api.model.ContentFile;
+import org.alfresco.mobile.android.api.model.impl.ContentStreamImpl;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.http.HttpStatus;
+
+import android.util.LruCache;
+
+/**
+ * Disk cache of REST responses based on HTTP validators. <br/>
+ * A response is stored only if it's a text response (JSON, XML...) and if the
+ * server provides a validator (ETag and/or Last-Modified header). Binary
+ * responses (renditions, avatars) are handled by the rendition cache. Cached
+ * responses are never used without asking the
+ * server : the request is sent with If-None-Match / If-Modified-Since headers
+ * and if the server answers 304 Not Modified, the stored body is used instead
+ * of downloading it again. <br/>
+ * The parsed version of a response can be kept in memory alongside the body
+ * (see {@link #getParsed(String, String)}) : an unchanged response is then
+ * neither downloaded nor parsed again. <br/>
+ * Bodies are stored inside a {@link RenditionCache} (same journal and LRU
+ * eviction) dedicated to responses.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class HttpResponseCache
+{
+    /** Default disk budget of the cache : 5 MB. */
+    public static final long DEFAULT_MAX_SIZE = 5 * 1024 * 1024L;
+
+    /** Default number of parsed responses kept in memory. */
+    public static final int DEFAULT_MAX_PARSED = 50;
+
+    public static final String HEADER_ETAG = "ETag";
+
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+
+    /** Separates ETag and Last-Modified inside the stored validator. */
+    private static final char VALIDATOR_SEPARATOR = '|';
+
+    private static final Map<String, HttpResponseCache> INSTANCES = new HashMap<String, HttpResponseCache>();
+
+    private final RenditionCache bodies;
+
+    private final LruCache<String, Parsed> parsed = new LruCache<String, Parsed>(DEFAULT_MAX_PARSED);
+
+    // Statistics
+    private final AtomicLong conditionalCount = new AtomicLong();
+
+    private final AtomicLong revalidatedCount = new AtomicLong();
+
+    private final AtomicLong storeCount = new AtomicLong();
+
+    private HttpResponseCache(RenditionCache bodies)
+    {
+        this.bodies = bodies;
+    }
+
+    /**
+     * Returns the cache associated to a folder. The budget is only used to
+     * create the cache.
+     * 
+     * @param folder : path to the response cache folder.
+     * @param maxSize : disk budget (in bytes) of the cache.
+     */
+    public static HttpResponseCache getInstance(String folder, long maxSize)
+    {
+        synchronized (INSTANCES)
+        {
+            HttpResponseCache cache = INSTANCES.get(folder);
+            if (cache == null)
+            {
+                cache = new HttpResponseCache(RenditionCache.getInstance(folder, maxSize));
+                INSTANCES.put(folder, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Creates the identifier of a response.
+     * 
+     * @param url : requested URL.
+     */
+    public static String createKey(String url)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+            {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return Integer.toHexString(url.hashCode()) + Integer.toHexString(url.length());
+        }
+        catch (IOException e)
+        {
+            return Integer.toHexString(url.hashCode()) + Integer.toHexString(url.length());
+        }
+    }
+
+    /**
+     * Returns the headers which make a request conditional.
+     * 
+     * @param key : response identifier.
+     * @return conditional headers or null if the response is not cached.
+     */
+    public Map<String, String> getConditionalHeaders(String key)
+    {
+        String validator = bodies.getValidator(key);
+        if (validator == null) { return null; }
+        conditionalCount.incrementAndGet();
+
+        Map<String, String> headers = new HashMap<String, String>(2);
+        int index = validator.lastIndexOf(VALIDATOR_SEPARATOR);
+        String eTag = validator.substring(0, index);
+        String lastModified = validator.substring(index + 1);
+        if (eTag.length() > 0)
+        {
+            headers.put(HEADER_IF_NONE_MATCH, eTag);
+        }
+        if (lastModified.length() > 0)
+        {
+            headers.put(HEADER_IF_MODIFIED_SINCE, lastModified);
+        }
+        return headers;
+    }
+
+    /**
+     * Returns the stored response. Must be called when the server answers 304
+     * Not Modified.
+     * 
+     * @param key : response identifier.
+     * @return the stored response or null if it has been evicted meanwhile.
+     */
+    public CachedResponse get(String key)
+    {
+        String validator = bodies.getValidator(key);
+        if (validator == null) { return null; }
+        CachedResponse resp = createResponse(key, validator, bodies.get(key, validator, 0));
+        if (resp != null)
+        {
+            revalidatedCount.incrementAndGet();
+        }
+        return resp;
+    }
+
+    /**
+     * Stores a successful text response if it provides a validator. The
+     * response stream is consumed and closed.
+     * 
+     * @param key : response identifier.
+     * @param resp : response sent by the server.
+     * @return the stored response (its body is read from the cache) or null if
+     *         the response can't be cached.
+     * @throws IOException if the body can't be read or stored.
+     */
+    public CachedResponse put(String key, Response resp) throws IOException
+    {
+        if (resp.getResponseCode() != HttpStatus.SC_OK || resp.getStream() == null
+                || !isText(resp.getContentTypeHeader())) { return null; }
+
+        String eTag = resp.getResponseHeader(HEADER_ETAG);
+        String lastModified = resp.getResponseHeader(HEADER_LAST_MODIFIED);
+        if (eTag == null && lastModified == null) { return null; }
+
+        String validator = ((eTag != null) ? eTag : "") + VALIDATOR_SEPARATOR
+                + ((lastModified != null) ? lastModified : "");
+        parsed.remove(key);
+        ContentFile file = bodies.put(key, validator,
+                new ContentStreamImpl(key, resp.getStream(), resp.getContentTypeHeader(), -1));
+        storeCount.incrementAndGet();
+        return createResponse(key, validator, file);
+    }
+
+    /**
+     * Removes a response.
+     */
+    public void remove(String key)
+    {
+        parsed.remove(key);
+        bodies.remove(key);
+    }
+
+    /**
+     * Removes all responses.
+     */
+    public void clear()
+    {
+        parsed.evictAll();
+        bodies.clear();
+    }
+
+    /**
+     * @param key : response identifier.
+     * @param validator : validator of the response (see
+     *            {@link CachedResponse#getValidator()}).
+     * @return the parsed version of the response or null.
+     */
+    public Object getParsed(String key, String validator)
+    {
+        Parsed value = parsed.get(key);
+        if (value == null || !value.validator.equals(validator)) { return null; }
+        return value.value;
+    }
+
+    /**
+     * Keeps the parsed version of a response in memory.
+     */
+    public void putParsed(String key, String validator, Object value)
+    {
+        if (value == null) { return; }
+        parsed.put(key, new Parsed(validator, value));
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of conditional requests (a response was stored).
+     */
+    public long getConditionalCount()
+    {
+        return conditionalCount.get();
+    }
+
+    /**
+     * @return Number of stored responses reused after a 304 Not Modified.
+     */
+    public long getRevalidatedCount()
+    {
+        return revalidatedCount.get();
+    }
+
+    /**
+     * @return Number of responses downloaded and stored.
+     */
+    public long getStoreCount()
+    {
+        return storeCount.get();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        conditionalCount.set(0);
+        revalidatedCount.set(0);
+        storeCount.set(0);
+    }
+
+    private static boolean isText(String contentType)
+    {
+        if (contentType == null) { return false; }
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml");
+    }
+
+    private static CachedResponse createResponse(String key, String validator, ContentFile file)
+    {
+        if (file == null) { return null; }
+
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        putHeader(headers, HEADER_CONTENT_TYPE, file.getMimeType());
+        putHeader(headers, HEADER_CONTENT_LENGTH, Long.toString(file.getLength()));
+        int index = validator.lastIndexOf(VALIDATOR_SEPARATOR);
+        putHeader(headers, HEADER_ETAG, validator.substring(0, index));
+        putHeader(headers, HEADER_LAST_MODIFIED, validator.substring(index + 1));
+
+        try
+        {
+            return new CachedResponse(key, validator, headers, new FileInputStream(file.getFile()));
+        }
+        catch (IOException e)
+        {
+            // File evicted meanwhile.
+            return null;
+        }
+    }
+
+    private static void putHeader(Map<String, List<String>> headers, String name, String value)
+    {
+        if (value == null || value.length() == 0) { return; }
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        headers.put(name, values);
+    }
+
+    // ///////////////////////////////////////////////
+    // CACHED RESPONSE
+    // ///////////////////////////////////////////////
+    /**
+     * Response whose body is read from the cache.
+     */
+    public static final class CachedResponse extends Response
+    {
+        private final String key;
+
+        private final String validator;
+
+        private CachedResponse(String key, String validator, Map<String, List<String>> headers, InputStream stream)
+        {
+            super(HttpStatus.SC_OK, "OK", headers, stream, null);
+            this.key = key;
+            this.validator = validator;
+        }
+
+        /**
+         * @return identifier of the response inside the cache.
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return validator (ETag and Last-Modified) of the response.
+         */
+        public String getValidator()
+        {
+            return validator;
+        }
+    }
+
+    private static final class Parsed
+    {
+        private final String validator;
+
+        private final Object value;
+
+        private Parsed(String validator, Object value)
+        {
+            this.validator = validator;
+            this.value = value;
+        }
+    }
+}
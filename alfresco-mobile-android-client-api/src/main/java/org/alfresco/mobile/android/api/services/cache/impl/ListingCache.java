@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.util.List;
+
+import org.alfresco.mobile.android.api.model.Node;
+import org.alfresco.mobile.android.api.model.PagingResult;
+
+import android.util.LruCache;
+
+/**
+ * Client side cache of folder listings (stale-while-revalidate). <br/>
+ * A page of children is identified by the folder and all the parameters of
+ * the request (sorting, paging, filter). A cached page is returned
+ * immediately and refreshed in background by the service. <br/>
+ * Each operation which modifies the repository must call {@link #clear()}.
+ * Pages requested before a clear can't be stored afterwards (see
+ * {@link #getGeneration()}) : a refresh started before a modification never
+ * overrides the cache with an out of date page.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class ListingCache
+{
+    /** Default number of pages kept by the cache. */
+    public static final int DEFAULT_MAX_LISTINGS = 20;
+
+    private final LruCache<String, PagingResult<Node>> listings;
+
+    private int generation = 0;
+
+    /**
+     * Creates a cache with default values.
+     */
+    public ListingCache()
+    {
+        this(DEFAULT_MAX_LISTINGS);
+    }
+
+    /**
+     * @param maxListings : maximum number of pages kept in memory.
+     */
+    public ListingCache(int maxListings)
+    {
+        this.listings = new LruCache<String, PagingResult<Node>>(maxListings);
+    }
+
+    /**
+     * Creates the identifier of a page.
+     * 
+     * @param folderIdentifier : identifier of the parent folder.
+     * @param orderBy : sorting of the request.
+     * @param maxItems : maximum number of items. Can be null.
+     * @param skipCount : number of items skipped. Can be null.
+     * @param filter : property filter of the request.
+     */
+    public static String createKey(String folderIdentifier, String orderBy, Object maxItems, Object skipCount,
+            String filter)
+    {
+        return new StringBuilder(folderIdentifier).append('|').append(orderBy).append('|').append(maxItems)
+                .append('|').append(skipCount).append('|').append(filter).toString();
+    }
+
+    /**
+     * @return the cached page or null.
+     */
+    public PagingResult<Node> get(String key)
+    {
+        return listings.get(key);
+    }
+
+    /**
+     * @return current generation of the cache. Must be retrieved before
+     *         requesting a page to the server.
+     */
+    public synchronized int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Stores a page if the cache has not been cleared since the page has been
+     * requested.
+     * 
+     * @param key : page identifier.
+     * @param page : page retrieved from the server.
+     * @param generation : generation of the cache before the request.
+     * @return true if the page has been stored.
+     */
+    public synchronized boolean put(String key, PagingResult<Node> page, int generation)
+    {
+        if (page == null || generation != this.generation) { return false; }
+        listings.put(key, page);
+        return true;
+    }
+
+    /**
+     * Removes a page.
+     */
+    public synchronized void remove(String key)
+    {
+        listings.remove(key);
+    }
+
+    /**
+     * Removes all pages.
+     */
+    public synchronized void clear()
+    {
+        generation++;
+        listings.evictAll();
+    }
+
+    /**
+     * Compares 2 pages : same paging informations and same nodes (identifier
+     * and change token or modification date).
+     * 
+     * @return true if both pages are equivalent.
+     */
+    public static boolean isSame(PagingResult<Node> page1, PagingResult<Node> page2)
+    {
+        if (Boolean.TRUE.equals(page1.hasMoreItems()) != Boolean.TRUE.equals(page2.hasMoreItems())) { return false; }
+        if (page1.getTotalItems() != page2.getTotalItems()) { return false; }
+
+        List<Node> nodes1 = page1.getList();
+        List<Node> nodes2 = page2.getList();
+        if (nodes1.size() != nodes2.size()) { return false; }
+        for (int i = 0; i < nodes1.size(); i++)
+        {
+            Node node1 = nodes1.get(i);
+            Node node2 = nodes2.get(i);
+            if (!node1.getIdentifier().equals(node2.getIdentifier())) { return false; }
+            String validator1 = NodeCache.getValidator(node1);
+            if (validator1 == null || !validator1.equals(NodeCache.getValidator(node2))) { return false; }
+        }
+        return true;
+    }
+}
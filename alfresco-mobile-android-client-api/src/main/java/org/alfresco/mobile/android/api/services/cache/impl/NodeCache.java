@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.alfresco.mobile.android.api.model.Node;
+import org.alfresco.mobile.android.api.model.Property;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+
+import android.util.LruCache;
+
+/**
+ * Client side cache of nodes retrieved by the DocumentFolderService. <br/>
+ * Nodes are identified by their object identifier and can also be retrieved
+ * by their path. The cache is bounded by an estimation of the memory used by
+ * the node properties. <br/>
+ * Each node is stored with a validator (cmis:changeToken or
+ * cmis:lastModificationDate if the repository doesn't provide change token).
+ * During its time to live a node is considered as fresh and can be used
+ * without any request to the server. After that the node must be revalidated
+ * : if the validator on the server is the same, the node is still valid and
+ * can be reused.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class NodeCache
+{
+    /** Default memory budget of the cache : 1 MB. */
+    public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    /** Default number of paths kept by the cache. */
+    public static final int DEFAULT_MAX_PATHS = 200;
+
+    /** Default time to live of a node : 30 seconds. */
+    public static final long DEFAULT_TTL = 30000;
+
+    /** Estimated size of a node without its properties. */
+    private static final int NODE_OVERHEAD = 256;
+
+    /** Estimated size of a property without its value. */
+    private static final int PROPERTY_OVERHEAD = 64;
+
+    private final LruCache<String, CachedNode> nodes;
+
+    private final LruCache<String, String> paths;
+
+    private final long ttl;
+
+    /**
+     * Creates a cache with default values.
+     */
+    public NodeCache()
+    {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_PATHS, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize : memory budget (in bytes) of the cache.
+     * @param maxPaths : maximum number of paths kept by the cache.
+     * @param ttl : time (in ms) during which a node can be used without any
+     *            request to the server.
+     */
+    public NodeCache(int maxSize, int maxPaths, long ttl)
+    {
+        this.nodes = new LruCache<String, CachedNode>(maxSize)
+        {
+            @Override
+            protected int sizeOf(String key, CachedNode value)
+            {
+                return value.size;
+            }
+        };
+        this.paths = new LruCache<String, String>(maxPaths);
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param identifier : node identifier.
+     * @return the cached node or null if the node is not cached.
+     */
+    public CachedNode get(String identifier)
+    {
+        return nodes.get(identifier);
+    }
+
+    /**
+     * @param path : node path.
+     * @return the cached node or null if the path is not cached.
+     */
+    public CachedNode getByPath(String path)
+    {
+        String identifier = paths.get(path);
+        if (identifier == null) { return null; }
+        CachedNode cachedNode = nodes.get(identifier);
+        if (cachedNode == null)
+        {
+            paths.remove(path);
+        }
+        return cachedNode;
+    }
+
+    /**
+     * Stores a node.
+     * 
+     * @param node : node retrieved from the server.
+     * @param path : path used to retrieve the node. Can be null.
+     */
+    public void put(Node node, String path)
+    {
+        if (node == null) { return; }
+        nodes.put(node.getIdentifier(), new CachedNode(node, System.currentTimeMillis() + ttl));
+        if (path != null)
+        {
+            paths.put(path, node.getIdentifier());
+        }
+    }
+
+    /**
+     * Extends the validity of a node. Used when the server confirms the node
+     * is still up to date.
+     */
+    public void touch(CachedNode cachedNode)
+    {
+        cachedNode.expiration = System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * Removes a node. Must be called each time an operation modifies the node.
+     */
+    public void remove(String identifier)
+    {
+        nodes.remove(identifier);
+    }
+
+    /**
+     * Removes all nodes.
+     */
+    public void clear()
+    {
+        nodes.evictAll();
+        paths.evictAll();
+    }
+
+    /**
+     * @return the validator of a node : cmis:changeToken or
+     *         cmis:lastModificationDate if the change token is not available.
+     */
+    public static String getValidator(Node node)
+    {
+        Property changeToken = node.getProperty(PropertyIds.CHANGE_TOKEN);
+        if (changeToken != null && changeToken.getValue() != null) { return changeToken.getValue().toString(); }
+        if (node.getModifiedAt() != null) { return Long.toString(node.getModifiedAt().getTimeInMillis()); }
+        return null;
+    }
+
+    private static int sizeOf(Node node)
+    {
+        int size = NODE_OVERHEAD;
+        Map<String, Property> properties = node.getProperties();
+        if (properties == null) { return size; }
+        for (Entry<String, Property> entry : properties.entrySet())
+        {
+            size += PROPERTY_OVERHEAD + entry.getKey().length() * 2;
+            if (entry.getValue() != null && entry.getValue().getValue() != null)
+            {
+                size += entry.getValue().getValue().toString().length() * 2;
+            }
+        }
+        return size;
+    }
+
+    // ///////////////////////////////////////////////
+    // CACHED NODE
+    // ///////////////////////////////////////////////
+    /**
+     * Node snapshot stored inside the cache.
+     */
+    public static final class CachedNode
+    {
+        private final Node node;
+
+        private final String validator;
+
+        private final int size;
+
+        private volatile long expiration;
+
+        private CachedNode(Node node, long expiration)
+        {
+            this.node = node;
+            this.validator = getValidator(node);
+            this.size = sizeOf(node);
+            this.expiration = expiration;
+        }
+
+        /**
+         * @return the cached node.
+         */
+        public Node getNode()
+        {
+            return node;
+        }
+
+        /**
+         * @return the change token (or modification date) of the node when it
+         *         has been cached. Can be null.
+         */
+        public String getValidator()
+        {
+            return validator;
+        }
+
+        /**
+         * @return true if the node must be revalidated with the server.
+         */
+        public boolean isExpired()
+        {
+            return System.currentTimeMillis() > expiration;
+        }
+    }
+}
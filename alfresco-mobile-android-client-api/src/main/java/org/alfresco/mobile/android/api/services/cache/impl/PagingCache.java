@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import android.util.LruCache;
+
+/**
+ * Client side paging cache for REST webscripts which don't support server side
+ * paging. <br/>
+ * The first page of a listing downloads and parses the full result once. The
+ * parsed result is kept as a snapshot (with its ETag if the server provides
+ * one) so the following pages of the same listing are served from memory
+ * instead of downloading and parsing the whole result again. Listings read
+ * with a {@link Converter} keep the converted objects only, not the JSON
+ * maps. <br/>
+ * Snapshots are identified by the URL of the listing (which contains the
+ * filter parameters) and expire after a time to live.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class PagingCache
+{
+    /** Default number of snapshots kept by the cache. */
+    public static final int DEFAULT_MAX_SNAPSHOTS = 10;
+
+    /** Default time to live of a snapshot : 1 minute. */
+    public static final long DEFAULT_TTL = 60000;
+
+    private final LruCache<String, Snapshot> snapshots;
+
+    private final long ttl;
+
+    /**
+     * Creates a cache with default values.
+     */
+    public PagingCache()
+    {
+        this(DEFAULT_MAX_SNAPSHOTS, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSnapshots : maximum number of listings kept in memory.
+     * @param ttl : time (in ms) during which a snapshot can be used without
+     *            any request to the server.
+     */
+    public PagingCache(int maxSnapshots, long ttl)
+    {
+        this.snapshots = new LruCache<String, Snapshot>(maxSnapshots);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the snapshot associated to the listing even if it has expired.
+     * An expired snapshot can still be reused if the server returns the same
+     * ETag.
+     * 
+     * @param key : listing identifier (usually the URL)
+     * @return the snapshot or null if the listing is not cached.
+     */
+    public Snapshot get(String key)
+    {
+        return snapshots.get(key);
+    }
+
+    /**
+     * Stores the full result of a listing.
+     * 
+     * @param key : listing identifier (usually the URL)
+     * @param entries : full list of parsed entries.
+     * @param eTag : ETag of the response. Can be null.
+     * @return the newly created snapshot.
+     */
+    public Snapshot put(String key, List<Object> entries, String eTag)
+    {
+        Snapshot snapshot = new Snapshot(entries, eTag, System.currentTimeMillis() + ttl);
+        snapshots.put(key, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Extends the validity of a snapshot. Used when the server confirms the
+     * snapshot is still up to date.
+     */
+    public void touch(Snapshot snapshot)
+    {
+        snapshot.expiration = System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * Removes the snapshot of a listing.
+     */
+    public void remove(String key)
+    {
+        snapshots.remove(key);
+    }
+
+    /**
+     * Removes all snapshots. Must be called each time an operation modifies
+     * the listings managed by the cache.
+     */
+    public void clear()
+    {
+        snapshots.evictAll();
+    }
+
+    // ///////////////////////////////////////////////
+    // CONVERTER
+    // ///////////////////////////////////////////////
+    /**
+     * Converts each JSON entry of a streamed listing into the object kept by
+     * the snapshot. The JSON map of an entry can be released as soon as it has
+     * been converted.
+     */
+    public interface Converter
+    {
+        /**
+         * @param entry : JSON object of the entry.
+         * @return object kept inside the snapshot. Null entries are skipped.
+         */
+        Object convert(Map<String, Object> entry);
+    }
+
+    // ///////////////////////////////////////////////
+    // SNAPSHOT
+    // ///////////////////////////////////////////////
+    /**
+     * Full result of a listing at a specific time.
+     */
+    public static final class Snapshot
+    {
+        private final List<Object> entries;
+
+        private final String eTag;
+
+        private volatile long expiration;
+
+        private Snapshot(List<Object> entries, String eTag, long expiration)
+        {
+            this.entries = Collections.unmodifiableList(entries);
+            this.eTag = eTag;
+            this.expiration = expiration;
+        }
+
+        /**
+         * @return all the entries of the listing. The list can't be modified.
+         */
+        public List<Object> getEntries()
+        {
+            return entries;
+        }
+
+        /**
+         * @return ETag of the response used to build the snapshot. Can be null.
+         */
+        public String getETag()
+        {
+            return eTag;
+        }
+
+        /**
+         * @return true if the snapshot must be revalidated with the server.
+         */
+        public boolean isExpired()
+        {
+            return System.currentTimeMillis() > expiration;
+        }
+    }
+}
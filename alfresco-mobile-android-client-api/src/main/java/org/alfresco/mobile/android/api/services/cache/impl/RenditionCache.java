@@ -0,0 +1,557 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.alfresco.mobile.android.api.model.ContentFile;
+import org.alfresco.mobile.android.api.model.ContentStream;
+import org.alfresco.mobile.android.api.model.impl.ContentFileImpl;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+
+/**
+ * Disk cache of renditions (thumbnails, previews, avatars). <br/>
+ * The cache is bounded by the size of its files : once the budget is
+ * exceeded, the least recently used renditions are deleted. <br/>
+ * All operations are written inside a journal file. At startup the journal is
+ * replayed to rebuild the index of the cache : the cache folder is never
+ * scanned. The journal is compacted when it contains too many obsolete
+ * operations. <br/>
+ * Each rendition is stored with a validator (usually the modification date of
+ * the node) : a rendition is only reused if the validator has not changed.
+ * <br/>
+ * One instance is shared by all sessions using the same cache folder. The
+ * cache is only an optimisation : if the journal can't be written, renditions
+ * are still stored but the index is rebuilt empty at next startup.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class RenditionCache
+{
+    /** Default disk budget of the cache : 20 MB. */
+    public static final long DEFAULT_MAX_SIZE = 20 * 1024 * 1024L;
+
+    private static final String JOURNAL_FILE = "journal";
+
+    private static final String JOURNAL_TMP_FILE = "journal.tmp";
+
+    private static final String TMP_EXTENSION = ".tmp";
+
+    private static final String OP_PUT = "PUT";
+
+    private static final String OP_READ = "READ";
+
+    private static final String OP_REMOVE = "REMOVE";
+
+    private static final char SEPARATOR = '\t';
+
+    /** Minimum number of obsolete operations before a journal compaction. */
+    private static final int COMPACT_THRESHOLD = 2000;
+
+    private static final Map<String, RenditionCache> INSTANCES = new HashMap<String, RenditionCache>();
+
+    private final File folder;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private long maxSize;
+
+    private long size = 0;
+
+    private int obsoleteOperations = 0;
+
+    private Writer journal;
+
+    /**
+     * @param folder : folder where renditions and journal are stored.
+     * @param maxSize : disk budget (in bytes) of the cache.
+     */
+    private RenditionCache(File folder, long maxSize)
+    {
+        this.folder = folder;
+        this.maxSize = maxSize;
+        readJournal();
+        trimToSize();
+    }
+
+    /**
+     * Returns the cache associated to a folder. The budget is only used to
+     * create the cache : the budget of an existing cache is changed with
+     * {@link #setMaxSize(long)}.
+     * 
+     * @param folder : path to the rendition cache folder.
+     * @param maxSize : disk budget (in bytes) of the cache.
+     */
+    public static RenditionCache getInstance(String folder, long maxSize)
+    {
+        synchronized (INSTANCES)
+        {
+            RenditionCache cache = INSTANCES.get(folder);
+            if (cache == null)
+            {
+                cache = new RenditionCache(new File(folder), maxSize);
+                INSTANCES.put(folder, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Creates the identifier of a rendition.
+     * 
+     * @param identifier : identifier of the object (node, person...).
+     * @param type : type of rendition.
+     */
+    public static String createKey(String identifier, String type)
+    {
+        return identifier + "." + type;
+    }
+
+    /**
+     * Creates the prefix which isolates the renditions of a user on a server.
+     * The prefix is a SHA-256 digest : two users never share a prefix.
+     * 
+     * @param baseUrl : url of the server.
+     * @param userIdentifier : identifier of the user.
+     */
+    public static String createUserPrefix(String baseUrl, String userIdentifier)
+    {
+        String value = baseUrl + "|" + userIdentifier;
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+            {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return toFileName(value);
+        }
+        catch (IOException e)
+        {
+            return toFileName(value);
+        }
+    }
+
+    /**
+     * Returns a cached rendition.
+     * 
+     * @param key : rendition identifier.
+     * @param validator : validator of the current version of the object. If
+     *            null, the validator is not checked.
+     * @param maxAge : maximum age (in ms) of the rendition. If 0, the age is
+     *            not checked.
+     * @return the cached rendition or null if the rendition is unknown or out
+     *         of date.
+     */
+    public synchronized ContentFile get(String key, String validator, long maxAge)
+    {
+        key = toFileName(key);
+        Entry entry = entries.get(key);
+        if (entry == null) { return null; }
+
+        File file = new File(folder, key);
+        if ((validator != null && !validator.equals(entry.validator))
+                || (maxAge > 0 && System.currentTimeMillis() - entry.creationTime > maxAge) || !file.exists())
+        {
+            removeEntry(key);
+            return null;
+        }
+
+        // Only the last operation of a rendition is useful after a restart.
+        appendJournal(OP_READ, key);
+        obsoleteOperations++;
+        compactIfNecessary();
+        return new ContentFileImpl(file, entry.name, entry.mimeType);
+    }
+
+    /**
+     * @param key : rendition identifier.
+     * @return the validator stored with the rendition or null if the
+     *         rendition is unknown or has been stored without validator.
+     */
+    public synchronized String getValidator(String key)
+    {
+        Entry entry = entries.get(toFileName(key));
+        return (entry != null) ? entry.validator : null;
+    }
+
+    /**
+     * Stores a rendition. The content stream is consumed and closed. A
+     * rendition bigger than the cache budget is still indexed : it is evicted
+     * by the next operation which trims the cache.
+     * 
+     * @param key : rendition identifier.
+     * @param validator : validator of the current version of the object.
+     * @param contentStream : content of the rendition.
+     * @return the cached rendition.
+     * @throws IOException if the content can't be written.
+     */
+    public ContentFile put(String key, String validator, ContentStream contentStream) throws IOException
+    {
+        key = toFileName(key);
+        File tmpFile = new File(folder, key + "." + Thread.currentThread().getId() + TMP_EXTENSION);
+        folder.mkdirs();
+        try
+        {
+            IOUtils.copyStream(contentStream.getInputStream(), new FileOutputStream(tmpFile));
+        }
+        catch (IOException e)
+        {
+            tmpFile.delete();
+            throw e;
+        }
+
+        File file = new File(folder, key);
+        synchronized (this)
+        {
+            if (!tmpFile.renameTo(file))
+            {
+                tmpFile.delete();
+                throw new IOException("Unable to store " + file.getPath());
+            }
+
+            Entry entry = new Entry(file.length(), System.currentTimeMillis(), validator,
+                    contentStream.getFileName(), contentStream.getMimeType());
+            addEntry(key, entry);
+            appendJournal(OP_PUT, key, Long.toString(entry.size), Long.toString(entry.creationTime),
+                    entry.validator, entry.name, entry.mimeType);
+            // A rendition bigger than the whole cache is kept for the caller
+            // and evicted by the next trim.
+            trimToSize(key);
+            compactIfNecessary();
+            return new ContentFileImpl(file, entry.name, entry.mimeType);
+        }
+    }
+
+    /**
+     * Removes a rendition.
+     */
+    public synchronized void remove(String key)
+    {
+        key = toFileName(key);
+        if (entries.containsKey(key))
+        {
+            removeEntry(key);
+        }
+    }
+
+    /**
+     * Removes all renditions.
+     */
+    public synchronized void clear()
+    {
+        for (String key : new ArrayList<String>(entries.keySet()))
+        {
+            new File(folder, key).delete();
+        }
+        entries.clear();
+        size = 0;
+        compact();
+    }
+
+    /**
+     * @return size (in bytes) of all renditions stored by the cache.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return disk budget (in bytes) of the cache.
+     */
+    public synchronized long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Changes the disk budget of the cache. Renditions are evicted if the
+     * budget is exceeded.
+     */
+    public synchronized void setMaxSize(long maxSize)
+    {
+        if (this.maxSize == maxSize) { return; }
+        this.maxSize = maxSize;
+        trimToSize();
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    private void addEntry(String key, Entry entry)
+    {
+        Entry previous = entries.put(key, entry);
+        if (previous != null)
+        {
+            size -= previous.size;
+            obsoleteOperations++;
+        }
+        size += entry.size;
+    }
+
+    private void removeEntry(String key)
+    {
+        Entry entry = entries.remove(key);
+        if (entry == null) { return; }
+        size -= entry.size;
+        new File(folder, key).delete();
+        appendJournal(OP_REMOVE, key);
+        obsoleteOperations += 2;
+    }
+
+    private void trimToSize()
+    {
+        trimToSize(null);
+    }
+
+    /**
+     * Evicts the least recently used renditions until the budget is
+     * respected.
+     * 
+     * @param keep : rendition which must not be evicted or null.
+     */
+    private void trimToSize(String keep)
+    {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (size > maxSize && eldest.hasNext())
+        {
+            Map.Entry<String, Entry> mapEntry = eldest.next();
+            if (mapEntry.getKey().equals(keep))
+            {
+                continue;
+            }
+            eldest.remove();
+            size -= mapEntry.getValue().size;
+            new File(folder, mapEntry.getKey()).delete();
+            appendJournal(OP_REMOVE, mapEntry.getKey());
+            obsoleteOperations += 2;
+        }
+    }
+
+    /**
+     * Rebuilds the index of the cache from the journal. Unknown or malformed
+     * lines are ignored.
+     */
+    private void readJournal()
+    {
+        File file = new File(folder, JOURNAL_FILE);
+        if (!file.exists()) { return; }
+
+        BufferedReader reader = null;
+        int operations = 0;
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                operations++;
+                String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+                if (fields.length < 2)
+                {
+                    continue;
+                }
+                if (OP_PUT.equals(fields[0]) && fields.length == 7)
+                {
+                    addEntry(fields[1], new Entry(Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                            toValue(fields[4]), toValue(fields[5]), toValue(fields[6])));
+                }
+                else if (OP_READ.equals(fields[0]))
+                {
+                    entries.get(fields[1]);
+                }
+                else if (OP_REMOVE.equals(fields[0]))
+                {
+                    Entry entry = entries.remove(fields[1]);
+                    if (entry != null)
+                    {
+                        size -= entry.size;
+                    }
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            // Journal corrupted : the index is rebuilt with valid operations.
+        }
+        finally
+        {
+            IOUtils.closeStream(reader);
+        }
+        obsoleteOperations = operations - entries.size();
+    }
+
+    private void appendJournal(String operation, String key, String... values)
+    {
+        try
+        {
+            if (journal == null)
+            {
+                folder.mkdirs();
+                journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(folder,
+                        JOURNAL_FILE), true), "UTF-8"));
+            }
+            journal.write(createLine(operation, key, values));
+            journal.flush();
+        }
+        catch (IOException e)
+        {
+            // Journal not available : renditions are lost at next startup.
+            IOUtils.closeStream(journal);
+            journal = null;
+        }
+    }
+
+    private void compactIfNecessary()
+    {
+        if (obsoleteOperations >= COMPACT_THRESHOLD && obsoleteOperations >= entries.size())
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal with only one operation per rendition (by access
+     * order).
+     */
+    private void compact()
+    {
+        IOUtils.closeStream(journal);
+        journal = null;
+
+        File tmpFile = new File(folder, JOURNAL_TMP_FILE);
+        Writer writer = null;
+        try
+        {
+            folder.mkdirs();
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet())
+            {
+                Entry entry = mapEntry.getValue();
+                writer.write(createLine(OP_PUT, mapEntry.getKey(), Long.toString(entry.size),
+                        Long.toString(entry.creationTime), entry.validator, entry.name, entry.mimeType));
+            }
+            writer.close();
+            writer = null;
+            if (tmpFile.renameTo(new File(folder, JOURNAL_FILE)))
+            {
+                obsoleteOperations = 0;
+            }
+        }
+        catch (IOException e)
+        {
+            // The previous journal is kept.
+        }
+        finally
+        {
+            IOUtils.closeStream(writer);
+            tmpFile.delete();
+        }
+    }
+
+    private static String createLine(String operation, String key, String... values)
+    {
+        StringBuilder builder = new StringBuilder(operation).append(SEPARATOR).append(key);
+        for (String value : values)
+        {
+            builder.append(SEPARATOR);
+            if (value != null)
+            {
+                builder.append(value.replace(SEPARATOR, ' ').replace('\n', ' ').replace('\r', ' '));
+            }
+        }
+        return builder.append('\n').toString();
+    }
+
+    private static String toValue(String field)
+    {
+        return (field.length() == 0) ? null : field;
+    }
+
+    /**
+     * Keys are used as file names : only safe characters are kept.
+     */
+    private static String toFileName(String key)
+    {
+        StringBuilder builder = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++)
+        {
+            char c = key.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-'
+                    || c == '_')
+            {
+                builder.append(c);
+            }
+            else
+            {
+                builder.append('_');
+            }
+        }
+        return builder.toString();
+    }
+
+    // ///////////////////////////////////////////////
+    // ENTRY
+    // ///////////////////////////////////////////////
+    /**
+     * Informations about one rendition stored by the cache.
+     */
+    private static final class Entry
+    {
+        private final long size;
+
+        private final long creationTime;
+
+        private final String validator;
+
+        private final String name;
+
+        private final String mimeType;
+
+        private Entry(long size, long creationTime, String validator, String name, String mimeType)
+        {
+            this.size = size;
+            this.creationTime = creationTime;
+            this.validator = validator;
+            this.name = name;
+            this.mimeType = mimeType;
+        }
+    }
+}
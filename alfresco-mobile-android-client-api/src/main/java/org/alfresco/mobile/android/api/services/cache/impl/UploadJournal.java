@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.services.cache.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.alfresco.mobile.android.api.utils.IOUtils;
+
+/**
+ * Journal of the chunked uploads in progress. <br/>
+ * For each upload, the journal keeps the identifier of the server document
+ * and the number of bytes already committed on the server. If an upload fails,
+ * the next upload of the same local file to the same destination finds the
+ * document and only sends the remaining chunks. <br/>
+ * Each upload is stored in its own file inside the journal folder : the
+ * journal survives an application restart.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class UploadJournal
+{
+    private static final String ENTRY_EXTENSION = ".upload";
+
+    private static final String ENTRY_OBJECT_ID = "objectId";
+
+    private static final String ENTRY_OFFSET = "offset";
+
+    private static final Map<String, UploadJournal> INSTANCES = new HashMap<String, UploadJournal>();
+
+    private final File folder;
+
+    private UploadJournal(File folder)
+    {
+        this.folder = folder;
+    }
+
+    /**
+     * Returns the journal associated to a folder.
+     * 
+     * @param folder : path to the journal folder.
+     */
+    public static UploadJournal getInstance(String folder)
+    {
+        synchronized (INSTANCES)
+        {
+            UploadJournal journal = INSTANCES.get(folder);
+            if (journal == null)
+            {
+                journal = new UploadJournal(new File(folder));
+                INSTANCES.put(folder, journal);
+            }
+            return journal;
+        }
+    }
+
+    /**
+     * Creates the identifier of an upload.
+     * 
+     * @param parts : everything which identifies the upload (server, user,
+     *            destination, local file and its version...).
+     */
+    public static String createKey(String... parts)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts)
+        {
+            builder.append(part).append('|');
+        }
+        return HttpResponseCache.createKey(builder.toString());
+    }
+
+    /**
+     * @param key : upload identifier.
+     * @return the upload in progress or null.
+     */
+    public synchronized Entry get(String key)
+    {
+        File file = new File(folder, key + ENTRY_EXTENSION);
+        if (!file.exists()) { return null; }
+
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream(file);
+            properties.load(in);
+            String objectId = properties.getProperty(ENTRY_OBJECT_ID);
+            if (objectId == null) { return null; }
+            return new Entry(objectId, Long.parseLong(properties.getProperty(ENTRY_OFFSET, "0")));
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtils.closeStream(in);
+        }
+    }
+
+    /**
+     * Records the progress of an upload.
+     * 
+     * @param key : upload identifier.
+     * @param objectId : identifier of the server document.
+     * @param offset : number of bytes committed on the server.
+     */
+    public synchronized void put(String key, String objectId, long offset) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty(ENTRY_OBJECT_ID, objectId);
+        properties.setProperty(ENTRY_OFFSET, Long.toString(offset));
+
+        File file = new File(folder, key + ENTRY_EXTENSION);
+        IOUtils.ensureOrCreatePathAndFile(file);
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream(file);
+            properties.store(out, null);
+        }
+        finally
+        {
+            IOUtils.closeStream(out);
+        }
+    }
+
+    /**
+     * Removes an upload (complete or abandoned).
+     */
+    public synchronized void remove(String key)
+    {
+        new File(folder, key + ENTRY_EXTENSION).delete();
+    }
+
+    /**
+     * Upload in progress.
+     */
+    public static final class Entry
+    {
+        private final String objectId;
+
+        private final long offset;
+
+        private Entry(String objectId, long offset)
+        {
+            this.objectId = objectId;
+            this.offset = offset;
+        }
+
+        /**
+         * @return identifier of the server document.
+         */
+        public String getObjectId()
+        {
+            return objectId;
+        }
+
+        /**
+         * @return number of bytes committed on the server.
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+    }
+}
@@ -24,16 +24,26 @@ import static org.alfresco.mobile.android.api.constants.ModelMappingUtils.CMISPR
 import static org.alfresco.mobile.android.api.constants.ModelMappingUtils.CMISPREFIX_FOLDER;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.alfresco.mobile.android.api.constants.ContentModel;
 import org.alfresco.mobile.android.api.constants.OnPremiseConstant;
@@ -48,13 +58,23 @@ import org.alfresco.mobile.android.api.model.PagingResult;
 import org.alfresco.mobile.android.api.model.Permissions;
 import org.alfresco.mobile.android.api.model.Property;
 import org.alfresco.mobile.android.api.model.impl.ContentStreamImpl;
+import org.alfresco.mobile.android.api.model.impl.NodeImpl;
 import org.alfresco.mobile.android.api.model.impl.PagingResultImpl;
 import org.alfresco.mobile.android.api.model.impl.PermissionsImpl;
 import org.alfresco.mobile.android.api.model.impl.RepositoryVersionHelper;
+import org.alfresco.mobile.android.api.network.CompressionPolicy;
+import org.alfresco.mobile.android.api.network.RequestContext;
+import org.alfresco.mobile.android.api.network.RequestScheduler;
 import org.alfresco.mobile.android.api.services.DocumentFolderService;
+import org.alfresco.mobile.android.api.services.ListingRefreshListener;
+import org.alfresco.mobile.android.api.services.cache.impl.ListingCache;
+import org.alfresco.mobile.android.api.services.cache.impl.NodeCache;
+import org.alfresco.mobile.android.api.services.cache.impl.RenditionCache;
+import org.alfresco.mobile.android.api.services.cache.impl.UploadJournal;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.RepositorySession;
 import org.alfresco.mobile.android.api.session.impl.AbstractAlfrescoSessionImpl;
+import org.alfresco.mobile.android.api.utils.BufferPool;
 import org.alfresco.mobile.android.api.utils.IOUtils;
 import org.alfresco.mobile.android.api.utils.JsonDataWriter;
 import org.alfresco.mobile.android.api.utils.NodeRefUtils;
@@ -62,25 +82,30 @@ import org.alfresco.mobile.android.api.utils.OnPremiseUrlRegistry;
 import org.alfresco.mobile.android.api.utils.messages.Messagesl18n;
 import org.apache.chemistry.opencmis.client.api.ObjectFactory;
 import org.apache.chemistry.opencmis.client.api.OperationContext;
+import org.apache.chemistry.opencmis.client.api.Rendition;
 import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.client.bindings.spi.atompub.AbstractAtomPubService;
 import org.apache.chemistry.opencmis.client.bindings.spi.atompub.AtomPubParser;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Output;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
-import org.apache.chemistry.opencmis.client.runtime.OperationContextImpl;
 import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.data.ContentStream;
 import org.apache.chemistry.opencmis.commons.data.ObjectData;
 import org.apache.chemistry.opencmis.commons.data.ObjectInFolderData;
 import org.apache.chemistry.opencmis.commons.data.ObjectInFolderList;
+import org.apache.chemistry.opencmis.commons.data.PropertyData;
 import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
 import org.apache.chemistry.opencmis.commons.enums.Updatability;
 import org.apache.chemistry.opencmis.commons.enums.VersioningState;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisConstraintException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisRuntimeException;
+import org.apache.chemistry.opencmis.commons.impl.Constants;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.RepositoryInfoBrowserBindingImpl;
 import org.apache.chemistry.opencmis.commons.impl.json.JSONObject;
 import org.apache.chemistry.opencmis.commons.spi.Holder;
 import org.apache.chemistry.opencmis.commons.spi.NavigationService;
@@ -100,8 +125,31 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
     /** Internal Tag for Logger. */
     private static final String TAG = "DocumentFolderService";
 
+    /** Time (in ms) after which the idle refresh thread is stopped. */
+    private static final long REFRESH_KEEP_ALIVE = 30000;
+
     protected Session cmisSession;
 
+    /** Nodes retrieved by identifier or path. */
+    protected NodeCache nodeCache = new NodeCache();
+
+    /** Pages of children (only if the listing cache is enabled). */
+    protected ListingCache listingCache = new ListingCache();
+
+    private volatile ListingRefreshListener listingRefreshListener;
+
+    /** Executor of background listing refreshes. Created on demand. */
+    private ExecutorService refreshExecutor;
+
+    /** Pages currently refreshed in background. */
+    private final Set<String> refreshingListings = new HashSet<String>();
+
+    /** Default number of renditions downloaded at the same time. */
+    private static final int DEFAULT_RENDITION_THREADS = 4;
+
+    /** Executor of batched rendition downloads. Created on demand. */
+    private ExecutorService renditionExecutor;
+
     /**
      * Default Constructor. Only used inside ServiceRegistry.
      * 
@@ -131,61 +179,171 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
 
         try
         {
-            NavigationService navigationService = cmisSession.getBinding().getNavigationService();
-            OperationContext ctxt = new OperationContextImpl(cmisSession.getDefaultContext());
-            ObjectFactory objectFactory = cmisSession.getObjectFactory();
+            if (!isListingCacheEnabled()) { return retrieveChildren(parentFolder, lcontext); }
 
-            // By default Listing context has default value
-            String orderBy = getSorting(SORT_PROPERTY_NAME, true);
-            BigInteger maxItems = null;
-            BigInteger skipCount = null;
-
-            if (lcontext != null)
+            String key = createListingKey(parentFolder, lcontext);
+            PagingResult<Node> page = listingCache.get(key);
+            if (page != null)
             {
-                orderBy = getSorting(lcontext.getSortProperty(), lcontext.isSortAscending());
-                maxItems = BigInteger.valueOf(lcontext.getMaxItems());
-                skipCount = BigInteger.valueOf(lcontext.getSkipCount());
+                refreshListing(key, parentFolder, lcontext, page);
+                return page;
             }
-            // get the children
-            ObjectInFolderList children = navigationService.getChildren(session.getRepositoryInfo().getIdentifier(),
-                    parentFolder.getIdentifier(), ctxt.getFilterString(), orderBy, ctxt.isIncludeAllowableActions(),
-                    ctxt.getIncludeRelationships(), ctxt.getRenditionFilterString(), ctxt.isIncludePathSegments(),
-                    maxItems, skipCount, null);
 
-            // convert objects
-            List<Node> page = new ArrayList<Node>();
-            List<ObjectInFolderData> childObjects = children.getObjects();
+            int generation = listingCache.getGeneration();
+            page = retrieveChildren(parentFolder, lcontext);
+            listingCache.put(key, page, generation);
+            return page;
+        }
+        catch (Exception e)
+        {
+            convertException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Requests a page of children to the server.
+     */
+    private PagingResult<Node> retrieveChildren(Folder parentFolder, ListingContext lcontext)
+    {
+        NavigationService navigationService = cmisSession.getBinding().getNavigationService();
+        OperationContext ctxt = createOperationContext(cmisSession.getDefaultContext(), lcontext);
+        ObjectFactory objectFactory = cmisSession.getObjectFactory();
+        boolean hasAllProperties = hasAllProperties(lcontext);
+
+        // By default Listing context has default value
+        String orderBy = getSorting(SORT_PROPERTY_NAME, true);
+        BigInteger maxItems = null;
+        BigInteger skipCount = null;
+
+        if (lcontext != null)
+        {
+            orderBy = getSorting(lcontext.getSortProperty(), lcontext.isSortAscending());
+            maxItems = BigInteger.valueOf(lcontext.getMaxItems());
+            skipCount = BigInteger.valueOf(lcontext.getSkipCount());
+        }
+        // get the children
+        ObjectInFolderList children = navigationService.getChildren(session.getRepositoryInfo().getIdentifier(),
+                parentFolder.getIdentifier(), ctxt.getFilterString(), orderBy, ctxt.isIncludeAllowableActions(),
+                ctxt.getIncludeRelationships(), ctxt.getRenditionFilterString(), ctxt.isIncludePathSegments(),
+                maxItems, skipCount, null);
+
+        // convert objects
+        List<Node> page = new ArrayList<Node>();
+        List<ObjectInFolderData> childObjects = children.getObjects();
 
-            if (childObjects != null)
+        if (childObjects != null)
+        {
+            // //Log.d(TAG, "childObjects : " + childObjects.size());
+            for (ObjectInFolderData objectData : childObjects)
             {
-                // //Log.d(TAG, "childObjects : " + childObjects.size());
-                for (ObjectInFolderData objectData : childObjects)
+                if (objectData.getObject() != null)
                 {
-                    if (objectData.getObject() != null)
-                    {
-                        Node n = convertNode(objectFactory.convertObject(objectData.getObject(), ctxt));
-                        page.add(n);
-                    }
+                    Node n = convertNode(objectFactory.convertObject(objectData.getObject(), ctxt),
+                            hasAllProperties);
+                    page.add(n);
                 }
             }
+        }
 
-            Boolean hasMoreItem = false;
-            if (maxItems != null)
-            {
-                hasMoreItem = children.hasMoreItems() && page.size() == maxItems.intValue();
-            }
-            else
-            {
-                hasMoreItem = children.hasMoreItems();
-            }
+        Boolean hasMoreItem = false;
+        if (maxItems != null)
+        {
+            hasMoreItem = children.hasMoreItems() && page.size() == maxItems.intValue();
+        }
+        else
+        {
+            hasMoreItem = children.hasMoreItems();
+        }
+
+        return new PagingResultImpl<Node>(page, hasMoreItem, children.getNumItems().intValue());
+    }
 
-            return new PagingResultImpl<Node>(page, hasMoreItem, children.getNumItems().intValue());
+    // ////////////////////////////////////////////////////
+    // LISTING CACHE
+    // ////////////////////////////////////////////////////
+    /** {@inheritDoc} */
+    public void setListingRefreshListener(ListingRefreshListener listener)
+    {
+        this.listingRefreshListener = listener;
+    }
+
+    private boolean isListingCacheEnabled()
+    {
+        return session.getParameter(AlfrescoSession.LISTING_CACHE) != null
+                && (Boolean) session.getParameter(AlfrescoSession.LISTING_CACHE);
+    }
+
+    private String createListingKey(Folder parentFolder, ListingContext lcontext)
+    {
+        String orderBy = getSorting(SORT_PROPERTY_NAME, true);
+        Integer maxItems = null;
+        Integer skipCount = null;
+        if (lcontext != null)
+        {
+            orderBy = getSorting(lcontext.getSortProperty(), lcontext.isSortAscending());
+            maxItems = lcontext.getMaxItems();
+            skipCount = lcontext.getSkipCount();
         }
-        catch (Exception e)
+        return ListingCache.createKey(parentFolder.getIdentifier(), orderBy, maxItems, skipCount,
+                createOperationContext(cmisSession.getDefaultContext(), lcontext).getCacheKey());
+    }
+
+    /**
+     * Requests a fresh version of a cached page in background. The listener is
+     * notified if the fresh page differs from the cached one. Only one refresh
+     * per page can run at the same time.
+     */
+    private void refreshListing(final String key, final Folder parentFolder, final ListingContext lcontext,
+            final PagingResult<Node> cachedPage)
+    {
+        synchronized (refreshingListings)
         {
-            convertException(e);
+            if (!refreshingListings.add(key)) { return; }
+            if (refreshExecutor == null)
+            {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, REFRESH_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>());
+                executor.allowCoreThreadTimeOut(true);
+                refreshExecutor = executor;
+            }
         }
-        return null;
+
+        // Nobody waits for the refresh : it yields to foreground requests.
+        refreshExecutor.execute(RequestContext.wrap(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    int generation = listingCache.getGeneration();
+                    PagingResult<Node> page = retrieveChildren(parentFolder, lcontext);
+                    if (listingCache.put(key, page, generation) && !ListingCache.isSame(cachedPage, page))
+                    {
+                        ListingRefreshListener listener = listingRefreshListener;
+                        if (listener != null)
+                        {
+                            listener.onListingRefresh(parentFolder, lcontext, page);
+                        }
+                    }
+                }
+                catch (CmisObjectNotFoundException e)
+                {
+                    listingCache.remove(key);
+                }
+                catch (Exception e)
+                {
+                    Log.w(TAG, "Listing refresh : KO");
+                }
+                finally
+                {
+                    synchronized (refreshingListings)
+                    {
+                        refreshingListings.remove(key);
+                    }
+                }
+            }
+        }, RequestScheduler.Priority.BACKGROUND));
     }
 
     /** {@inheritDoc} */
@@ -205,7 +363,13 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
 
         try
         {
+            // Partial folder (listing projection) : the path is retrieved on
+            // demand.
             String path = folder.getPropertyValue(PropertyIds.PATH);
+            if (path == null && !folder.hasAllProperties())
+            {
+                path = getChildById(folder.getIdentifier()).getPropertyValue(PropertyIds.PATH);
+            }
             if (path.equals("/"))
             {
                 path = "";
@@ -224,6 +388,9 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
 
             path = path.concat(tmpPath);
 
+            NodeCache.CachedNode cachedNode = nodeCache.getByPath(path);
+            if (cachedNode != null && isUpToDate(cachedNode, path)) { return cachedNode.getNode(); }
+
             Node result = null;
 
             OperationContext context = cmisSession.getDefaultContext();
@@ -236,6 +403,7 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
                     context.getRenditionFilterString(), context.isIncludePolicies(), context.isIncludeAcls(), null);
 
             result = convertNode(objectFactory.convertObject(objectData, context));
+            nodeCache.put(result, path);
 
             return result;
         }
@@ -441,6 +609,8 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
                     objectFactory.convertProperties(tmpProperties, null, null, CREATE_UPDATABILITY),
                     parentFolder.getIdentifier(), null, null, null, null);
 
+            nodeCache.remove(parentFolder.getIdentifier());
+            listingCache.clear();
             if (newId == null) { return null; }
 
             n = getChildById(newId);
@@ -514,16 +684,33 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
             ObjectService objectService = cmisSession.getBinding().getObjectService();
             ObjectFactory objectFactory = cmisSession.getObjectFactory();
 
-            ContentStream c = null;
-            if (contentFile != null)
+            String newId = null;
+            if (isChunkedUpload(contentFile))
             {
-                c = objectFactory.createContentStream(documentName, contentFile.getLength(), contentFile.getMimeType(),
-                        IOUtils.getContentFileInputStream(contentFile));
+                newId = createChunkedDocument(parentFolder, documentName,
+                        objectFactory.convertProperties(tmpProperties, null, null, CREATE_UPDATABILITY), contentFile);
             }
+            else
+            {
+                ContentStream c = null;
+                if (contentFile != null)
+                {
+                    c = objectFactory.createContentStream(documentName, contentFile.getLength(),
+                            contentFile.getMimeType(), IOUtils.getContentFileInputStream(contentFile));
+                    CompressionPolicy.bindContent(contentFile.getMimeType(), contentFile.getLength());
+                }
 
-            String newId = objectService.createDocument(session.getRepositoryInfo().getIdentifier(),
-                    objectFactory.convertProperties(tmpProperties, null, null, CREATE_UPDATABILITY),
-                    parentFolder.getIdentifier(), c, VersioningState.MAJOR, null, null, null, null);
+                try
+                {
+                    newId = objectService.createDocument(session.getRepositoryInfo().getIdentifier(),
+                            objectFactory.convertProperties(tmpProperties, null, null, CREATE_UPDATABILITY),
+                            parentFolder.getIdentifier(), c, VersioningState.MAJOR, null, null, null, null);
+                }
+                finally
+                {
+                    CompressionPolicy.unbindContent();
+                }
+            }
 
             // EXTRACT METADATA + Generate Thumbnails
             if (session instanceof RepositorySession && RepositoryVersionHelper.isAlfrescoProduct(session))
@@ -540,6 +727,8 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
                 }
             }
 
+            nodeCache.remove(parentFolder.getIdentifier());
+            listingCache.clear();
             if (newId == null) { return null; }
 
             Node n = getChildById(newId);
@@ -679,6 +868,8 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
             objectService.deleteObject(session.getRepositoryInfo().getIdentifier(), document.getIdentifier(), true,
                     null);
             cmisSession.removeObjectFromCache(document.getIdentifier());
+            nodeCache.clear();
+            listingCache.clear();
         }
         catch (CmisConstraintException e)
         {
@@ -697,6 +888,9 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
             ObjectService objectService = cmisSession.getBinding().getObjectService();
             objectService.deleteTree(session.getRepositoryInfo().getIdentifier(), folder.getIdentifier(), true, null,
                     false, null);
+            // All descendants have been deleted too.
+            nodeCache.clear();
+            listingCache.clear();
         }
         catch (CmisConstraintException e)
         {
@@ -796,6 +990,8 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
                             cmisSession.getTypeDefinition(nodeType), null, updatebility), null);
 
             cmisSession.removeObjectFromCache(objectId);
+            nodeCache.remove(objectId);
+            listingCache.clear();
 
             return getChildById(objectId);
         }
@@ -842,24 +1038,41 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
         Document newContent = null;
         try
         {
-            ObjectService objectService = cmisSession.getBinding().getObjectService();
-            ObjectFactory objectFactory = cmisSession.getObjectFactory();
-
-            Holder<String> objectIdHolder = new Holder<String>(content.getIdentifier());
-            Holder<String> changeTokenHolder = new Holder<String>((String) content
-                    .getProperty(PropertyIds.CHANGE_TOKEN).getValue());
-
-            ContentStream c = null;
-            if (contentFile != null)
+            if (isChunkedUpload(contentFile))
             {
-                c = objectFactory.createContentStream(contentFile.getFileName(), contentFile.getLength(),
-                        content.getContentStreamMimeType(), IOUtils.getContentFileInputStream(contentFile));
+                updateChunkedContent(content, contentFile);
             }
+            else
+            {
+                ObjectService objectService = cmisSession.getBinding().getObjectService();
+                ObjectFactory objectFactory = cmisSession.getObjectFactory();
+
+                Holder<String> objectIdHolder = new Holder<String>(content.getIdentifier());
+                Holder<String> changeTokenHolder = new Holder<String>((String) content.getProperty(
+                        PropertyIds.CHANGE_TOKEN).getValue());
+
+                ContentStream c = null;
+                if (contentFile != null)
+                {
+                    c = objectFactory.createContentStream(contentFile.getFileName(), contentFile.getLength(),
+                            content.getContentStreamMimeType(), IOUtils.getContentFileInputStream(contentFile));
+                    CompressionPolicy.bindContent(content.getContentStreamMimeType(), contentFile.getLength());
+                }
 
-            objectService.setContentStream(session.getRepositoryInfo().getIdentifier(), objectIdHolder, true,
-                    changeTokenHolder, c, null);
+                try
+                {
+                    objectService.setContentStream(session.getRepositoryInfo().getIdentifier(), objectIdHolder,
+                            true, changeTokenHolder, c, null);
+                }
+                finally
+                {
+                    CompressionPolicy.unbindContent();
+                }
+            }
 
             cmisSession.removeObjectFromCache(content.getIdentifier());
+            nodeCache.remove(content.getIdentifier());
+            listingCache.clear();
 
             newContent = (Document) getNodeByIdentifier(content.getIdentifier());
 
@@ -872,6 +1085,237 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
         return newContent;
     }
 
+    // ////////////////////////////////////////////////////
+    // RESUMABLE UPLOAD
+    // ////////////////////////////////////////////////////
+    /**
+     * @return true if the content must be uploaded in chunks (see
+     *         {@link AlfrescoSession#UPLOAD_CHUNK_SIZE}).
+     */
+    private boolean isChunkedUpload(ContentFile contentFile)
+    {
+        int chunkSize = getUploadChunkSize();
+        return chunkSize > 0 && contentFile != null && contentFile.getFile() != null
+                && contentFile.getLength() > chunkSize
+                && cmisSession.getRepositoryInfo().getCmisVersion() == CmisVersion.CMIS_1_1;
+    }
+
+    private int getUploadChunkSize()
+    {
+        return getIntParameter(AlfrescoSession.UPLOAD_CHUNK_SIZE, 0);
+    }
+
+    /**
+     * Creates a document without content then uploads the content in chunks.
+     * If a previous upload of the same file has failed, the document created
+     * by this upload is completed.
+     * 
+     * @return identifier of the document.
+     */
+    private String createChunkedDocument(Folder parentFolder, String documentName,
+            org.apache.chemistry.opencmis.commons.data.Properties properties, ContentFile contentFile)
+            throws IOException
+    {
+        String key = UploadJournal.createKey(session.getBaseUrl(), session.getPersonIdentifier(),
+                parentFolder.getIdentifier(), documentName, contentFile.getFile().getPath(),
+                Long.toString(contentFile.getLength()), Long.toString(contentFile.getFile().lastModified()));
+
+        UploadJournal.Entry entry = getUploadJournal().get(key);
+        Document document = (entry != null) ? getUploadedDocument(entry.getObjectId()) : null;
+        if (document == null)
+        {
+            String newId = cmisSession
+                    .getBinding()
+                    .getObjectService()
+                    .createDocument(session.getRepositoryInfo().getIdentifier(), properties,
+                            parentFolder.getIdentifier(), null, VersioningState.MAJOR, null, null, null, null);
+            getUploadJournal().put(key, newId, 0);
+            return uploadChunks(key, newId, null, documentName, contentFile.getMimeType(), contentFile, 0);
+        }
+
+        return uploadChunks(key, document.getIdentifier(), getChangeToken(document), documentName,
+                contentFile.getMimeType(), contentFile, getCommittedOffset(document, entry));
+    }
+
+    /**
+     * Replaces the content of a document by uploading the new content in
+     * chunks. If a previous upload of the same file has failed, only the
+     * missing chunks are uploaded.
+     */
+    private void updateChunkedContent(Document content, ContentFile contentFile) throws IOException
+    {
+        String key = UploadJournal.createKey(session.getBaseUrl(), session.getPersonIdentifier(),
+                content.getIdentifier(), contentFile.getFile().getPath(), Long.toString(contentFile.getLength()),
+                Long.toString(contentFile.getFile().lastModified()));
+
+        UploadJournal.Entry entry = getUploadJournal().get(key);
+        Document document = (entry != null) ? getUploadedDocument(entry.getObjectId()) : null;
+        if (document == null)
+        {
+            uploadChunks(key, content.getIdentifier(), getChangeToken(content), contentFile.getFileName(),
+                    content.getContentStreamMimeType(), contentFile, 0);
+        }
+        else
+        {
+            uploadChunks(key, document.getIdentifier(), getChangeToken(document), contentFile.getFileName(),
+                    content.getContentStreamMimeType(), contentFile, getCommittedOffset(document, entry));
+        }
+    }
+
+    /**
+     * Uploads the content from an offset. The first chunk replaces the content
+     * of the document (setContentStream), the next ones are appended
+     * (appendContentStream). The journal is updated after each chunk. <br/>
+     * Chunks are streamed from the file through a single buffer of the
+     * {@link BufferPool} : the chunk size doesn't change the memory used.
+     * 
+     * @return identifier of the document (may change with versioning).
+     */
+    private String uploadChunks(String key, String objectId, String changeToken, String fileName, String mimeType,
+            ContentFile contentFile, long offset) throws IOException
+    {
+        ObjectService objectService = cmisSession.getBinding().getObjectService();
+        ObjectFactory objectFactory = cmisSession.getObjectFactory();
+        String repositoryId = session.getRepositoryInfo().getIdentifier();
+
+        Holder<String> objectIdHolder = new Holder<String>(objectId);
+        Holder<String> changeTokenHolder = new Holder<String>(changeToken);
+        long length = contentFile.getLength();
+        int chunkSize = getUploadChunkSize();
+
+        byte[] buffer = BufferPool.getInstance().acquire();
+        RandomAccessFile file = new RandomAccessFile(contentFile.getFile(), "r");
+        try
+        {
+            long position = offset;
+            while (position < length)
+            {
+                int count = (int) Math.min(chunkSize, length - position);
+                file.seek(position);
+                ContentStream c = objectFactory.createContentStream(fileName, count, mimeType, new ChunkInputStream(
+                        file, count, buffer));
+                if (position == 0)
+                {
+                    objectService.setContentStream(repositoryId, objectIdHolder, true, changeTokenHolder, c, null);
+                }
+                else
+                {
+                    objectService.appendContentStream(repositoryId, objectIdHolder, changeTokenHolder, c,
+                            position + count >= length, null);
+                }
+                if (objectIdHolder.getValue() == null)
+                {
+                    objectIdHolder.setValue(objectId);
+                }
+                position += count;
+                getUploadJournal().put(key, objectIdHolder.getValue(), position);
+                contentFile.fileReadCallback(count);
+            }
+        }
+        finally
+        {
+            IOUtils.closeStream(file);
+            BufferPool.getInstance().release(buffer);
+        }
+
+        getUploadJournal().remove(key);
+        return objectIdHolder.getValue();
+    }
+
+    /**
+     * Reads a chunk of a file from its current position. The buffer is shared
+     * by all the chunks of an upload : a chunk must be sent before the next one
+     * is read. Closing the stream doesn't close the file.
+     */
+    private static final class ChunkInputStream extends InputStream
+    {
+        private final RandomAccessFile file;
+
+        private final byte[] buffer;
+
+        private long remaining;
+
+        private int position;
+
+        private int limit;
+
+        ChunkInputStream(RandomAccessFile file, long length, byte[] buffer)
+        {
+            this.file = file;
+            this.remaining = length;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if (position == limit && !fill()) { return -1; }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0) { return 0; }
+            if (position == limit && !fill()) { return -1; }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return limit - position;
+        }
+
+        private boolean fill() throws IOException
+        {
+            if (remaining <= 0) { return false; }
+            int count = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (count < 0) { throw new IOException("Unexpected end of file"); }
+            remaining -= count;
+            position = 0;
+            limit = count;
+            return true;
+        }
+    }
+
+    /**
+     * @return the document of an interrupted upload or null if it doesn't
+     *         exist anymore.
+     */
+    private Document getUploadedDocument(String identifier)
+    {
+        try
+        {
+            cmisSession.removeObjectFromCache(identifier);
+            nodeCache.remove(identifier);
+            Node node = getNodeByIdentifier(identifier);
+            return (node instanceof Document) ? (Document) node : null;
+        }
+        catch (AlfrescoServiceException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * The server is the reference : if the content length of the document
+     * doesn't match the journal, the upload restarts from the beginning.
+     */
+    private static long getCommittedOffset(Document document, UploadJournal.Entry entry)
+    {
+        return (document.getContentStreamLength() == entry.getOffset()) ? entry.getOffset() : 0;
+    }
+
+    private static String getChangeToken(Document document)
+    {
+        Property changeToken = document.getProperty(PropertyIds.CHANGE_TOKEN);
+        return (changeToken != null && changeToken.getValue() != null) ? changeToken.getValue().toString() : null;
+    }
+
     /** {@inheritDoc} */
     @Override
     public ContentFile getContent(Document document)
@@ -881,8 +1325,13 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
 
         try
         {
-            return saveContentStream(getContentStream(document),
-                    NodeRefUtils.getNodeIdentifier(document.getIdentifier()), CONTENT_CACHE);
+            if (document.getContentStreamLength() <= 0) { return null; }
+
+            // Resumable download : an interrupted download of the same
+            // version restarts where it stopped.
+            return downloadContent(new UrlBuilder(getContentUrl(document.getIdentifier())),
+                    NodeRefUtils.getNodeIdentifier(document.getIdentifier()), NodeCache.getValidator(document),
+                    document.getContentStreamLength(), document.getName(), document.getContentStreamMimeType());
         }
         catch (Exception e)
         {
@@ -946,9 +1395,7 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
 
         try
         {
-            AbstractAtomPubService objectService = (AbstractAtomPubService) cmisSession.getBinding().getObjectService();
-            return objectService.loadLink(session.getRepositoryInfo().getIdentifier(), document.getIdentifier(),
-                    AtomPubParser.LINK_REL_CONTENT, null);
+            return getContentUrl(document.getIdentifier());
         }
         catch (Exception e)
         {
@@ -957,6 +1404,31 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
         return null;
     }
 
+    /**
+     * Internal : Retrieves the content url of an object for the binding of
+     * the session (AtomPub link or browser binding content selector).
+     * 
+     * @param identifier : object identifier.
+     * @return content url of the object.
+     * @since 1.4
+     */
+    public String getContentUrl(String identifier)
+    {
+        if (cmisSession.getBinding().getObjectService() instanceof AbstractAtomPubService)
+        {
+            AbstractAtomPubService objectService = (AbstractAtomPubService) cmisSession.getBinding().getObjectService();
+            return objectService.loadLink(session.getRepositoryInfo().getIdentifier(), identifier,
+                    AtomPubParser.LINK_REL_CONTENT, null);
+        }
+
+        // Browser binding
+        UrlBuilder url = new UrlBuilder(
+                ((RepositoryInfoBrowserBindingImpl) cmisSession.getRepositoryInfo()).getRootUrl());
+        url.addParameter(Constants.PARAM_OBJECT_ID, identifier);
+        url.addParameter(Constants.PARAM_SELECTOR, Constants.SELECTOR_CONTENT);
+        return url.toString();
+    }
+
     // //////////////////////////////////////////////////////////////////////////////
     // RENDITION
     // ///////////////////////////////////////////////////////////////////////////////
@@ -982,8 +1454,150 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
         if (isObjectNull(node)) { throw new IllegalArgumentException(String.format(
                 Messagesl18n.getString("ErrorCodeRegistry.GENERAL_INVALID_ARG_NULL"), "node")); }
 
-        return saveContentStream(getRenditionStream(node.getIdentifier(), type),
-                NodeRefUtils.getNodeIdentifier(node.getIdentifier()), RENDITION_CACHE);
+        ContentFile rendition = getCachedRendition(node, type);
+        if (rendition != null) { return rendition; }
+
+        return downloadRendition(node, type);
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, ContentFile> getRenditions(List<Node> nodes, final String type)
+    {
+        if (isObjectNull(nodes)) { throw new IllegalArgumentException(String.format(
+                Messagesl18n.getString("ErrorCodeRegistry.GENERAL_INVALID_ARG_NULL"), "nodes")); }
+
+        Map<String, ContentFile> renditions = new HashMap<String, ContentFile>(nodes.size());
+        Map<String, Future<ContentFile>> downloads = new HashMap<String, Future<ContentFile>>();
+        for (final Node node : nodes)
+        {
+            if (node == null || node.isFolder() || renditions.containsKey(node.getIdentifier())
+                    || downloads.containsKey(node.getIdentifier()))
+            {
+                continue;
+            }
+
+            ContentFile rendition = getCachedRendition(node, type);
+            if (rendition != null)
+            {
+                renditions.put(node.getIdentifier(), rendition);
+                continue;
+            }
+
+            Callable<ContentFile> download = new Callable<ContentFile>()
+            {
+                public ContentFile call() throws Exception
+                {
+                    return downloadRendition(node, type);
+                }
+            };
+            // Downloads are aborted with the caller handle. Renditions are
+            // secondary content : they yield to foreground requests.
+            downloads.put(node.getIdentifier(),
+                    getRenditionExecutor().submit(RequestContext.wrap(download, RequestScheduler.Priority.BACKGROUND)));
+        }
+
+        try
+        {
+            for (Entry<String, Future<ContentFile>> download : downloads.entrySet())
+            {
+                try
+                {
+                    ContentFile rendition = download.getValue().get();
+                    if (rendition != null)
+                    {
+                        renditions.put(download.getKey(), rendition);
+                    }
+                }
+                catch (ExecutionException e)
+                {
+                    // A missing rendition must not prevent the display of
+                    // the others.
+                    Log.w(TAG, "Rendition " + download.getKey() + " : KO");
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // The page is no more visible : pending downloads are cancelled.
+            for (Future<ContentFile> download : downloads.values())
+            {
+                download.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+        return renditions;
+    }
+
+    private ContentFile getCachedRendition(Node node, String type)
+    {
+        String validator = getRenditionValidator(node);
+        return getCachedRendition(createRenditionKey(node, type), validator, (validator == null) ? RENDITION_MAX_AGE
+                : 0);
+    }
+
+    /**
+     * Downloads a rendition and stores it inside the rendition cache. If the
+     * node has been retrieved with its renditions, the rendition is directly
+     * downloaded by its stream identifier. Otherwise (or if the rendition is
+     * not yet available) the rendition is requested by its type.
+     */
+    private ContentFile downloadRendition(Node node, String type)
+    {
+        org.alfresco.mobile.android.api.model.ContentStream contentStream = null;
+        if (node instanceof NodeImpl && ((NodeImpl) node).getRenditions() != null)
+        {
+            for (Rendition rendition : ((NodeImpl) node).getRenditions())
+            {
+                if (type.equalsIgnoreCase(rendition.getTitle()))
+                {
+                    try
+                    {
+                        ContentStream stream = rendition.getContentStream();
+                        if (stream != null)
+                        {
+                            contentStream = new ContentStreamImpl(node.getName(), stream);
+                        }
+                    }
+                    catch (CmisObjectNotFoundException e)
+                    {
+                        contentStream = null;
+                    }
+                    break;
+                }
+            }
+        }
+        if (contentStream == null)
+        {
+            contentStream = getRenditionStream(node.getIdentifier(), type);
+        }
+        return saveRendition(contentStream, createRenditionKey(node, type), getRenditionValidator(node));
+    }
+
+    private static String createRenditionKey(Node node, String type)
+    {
+        return RenditionCache.createKey(NodeRefUtils.getNodeIdentifier(node.getIdentifier()), type);
+    }
+
+    private static String getRenditionValidator(Node node)
+    {
+        return (node.getModifiedAt() != null) ? Long.toString(node.getModifiedAt().getTimeInMillis()) : null;
+    }
+
+    private synchronized ExecutorService getRenditionExecutor()
+    {
+        if (renditionExecutor == null)
+        {
+            int maxThreads = getIntParameter(AlfrescoSession.RENDITION_FETCH_THREADS, DEFAULT_RENDITION_THREADS);
+            if (maxThreads <= 0)
+            {
+                maxThreads = DEFAULT_RENDITION_THREADS;
+            }
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, REFRESH_KEEP_ALIVE,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            renditionExecutor = executor;
+        }
+        return renditionExecutor;
     }
 
     // ////////////////////////////////////////////////////
@@ -995,6 +1609,21 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
         if (isObjectNull(node)) { throw new IllegalArgumentException(String.format(
                 Messagesl18n.getString("ErrorCodeRegistry.GENERAL_INVALID_ARG_NULL"), "node")); }
 
+        // Partial node (listing projection) : allowable actions are retrieved
+        // on demand.
+        if (!node.hasAllProperties() && node instanceof NodeImpl
+                && ((NodeImpl) node).getAllowableActions().isEmpty())
+        {
+            try
+            {
+                return new PermissionsImpl(getChildById(node.getIdentifier()));
+            }
+            catch (Exception e)
+            {
+                convertException(e);
+            }
+        }
+
         return new PermissionsImpl(node);
     }
 
@@ -1009,13 +1638,93 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
      */
     private Node getChildById(String identifier)
     {
+        NodeCache.CachedNode cachedNode = nodeCache.get(identifier);
+        if (cachedNode != null)
+        {
+            if (isUpToDate(cachedNode, null)) { return cachedNode.getNode(); }
+            cmisSession.removeObjectFromCache(identifier);
+        }
+
         Node result = null;
 
         result = convertNode(cmisSession.getObject(identifier));
+        nodeCache.put(result, null);
 
         return result;
     }
 
+    /** Properties requested to revalidate a cached node. */
+    private static final String VALIDATOR_FILTER = PropertyIds.OBJECT_ID + "," + PropertyIds.CHANGE_TOKEN + ","
+            + PropertyIds.LAST_MODIFICATION_DATE;
+
+    /** Rendition filter which excludes all renditions. */
+    private static final String RENDITION_NONE = "cmis:none";
+
+    /**
+     * Checks if a cached node can be reused. During its time to live the node
+     * is used as is. After that, only the validator of the node (change token
+     * or modification date) is requested to the server.
+     * 
+     * @param cachedNode : node inside the cache.
+     * @param path : path used to retrieve the node. If null, the node is
+     *            revalidated by its identifier.
+     * @return true if the cached node is up to date.
+     */
+    private boolean isUpToDate(NodeCache.CachedNode cachedNode, String path)
+    {
+        if (!cachedNode.isExpired()) { return true; }
+        if (cachedNode.getValidator() == null) { return false; }
+
+        try
+        {
+            ObjectService objectService = cmisSession.getBinding().getObjectService();
+            String repositoryId = session.getRepositoryInfo().getIdentifier();
+            ObjectData objectData = null;
+            if (path != null)
+            {
+                objectData = objectService.getObjectByPath(repositoryId, path, VALIDATOR_FILTER, false,
+                        IncludeRelationships.NONE, RENDITION_NONE, false, false, null);
+            }
+            else
+            {
+                objectData = objectService.getObject(repositoryId, cachedNode.getNode().getIdentifier(),
+                        VALIDATOR_FILTER, false, IncludeRelationships.NONE, RENDITION_NONE, false, false, null);
+            }
+
+            if (cachedNode.getNode().getIdentifier().equals(objectData.getId())
+                    && cachedNode.getValidator().equals(getValidator(objectData)))
+            {
+                nodeCache.touch(cachedNode);
+                return true;
+            }
+        }
+        catch (Exception e)
+        {
+            // The node is requested again : errors are managed there.
+        }
+        nodeCache.remove(cachedNode.getNode().getIdentifier());
+        return false;
+    }
+
+    /**
+     * @return change token or modification date of the object.
+     * @see NodeCache#getValidator(Node)
+     */
+    private static String getValidator(ObjectData objectData)
+    {
+        if (objectData.getProperties() == null) { return null; }
+        Map<String, PropertyData<?>> properties = objectData.getProperties().getProperties();
+
+        PropertyData<?> changeToken = properties.get(PropertyIds.CHANGE_TOKEN);
+        if (changeToken != null && changeToken.getFirstValue() != null) { return changeToken.getFirstValue()
+                .toString(); }
+
+        PropertyData<?> modificationDate = properties.get(PropertyIds.LAST_MODIFICATION_DATE);
+        if (modificationDate != null && modificationDate.getFirstValue() instanceof GregorianCalendar) { return Long
+                .toString(((GregorianCalendar) modificationDate.getFirstValue()).getTimeInMillis()); }
+        return null;
+    }
+
     /** Static Map of all sorting possibility for DocumentFolderService. */
     @SuppressWarnings("serial")
     static Map<String, String> sortingMap = new HashMap<String, String>()
@@ -1156,6 +1865,16 @@ public abstract class AbstractDocumentFolderServiceImpl extends AlfrescoService
     public Node refreshNode(Node node)
     {
         cmisSession.removeObjectFromCache(node.getIdentifier());
+        nodeCache.remove(node.getIdentifier());
         return getNodeByIdentifier(node.getIdentifier());
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear()
+    {
+        super.clear();
+        nodeCache.clear();
+        listingCache.clear();
+    }
 }
@@ -21,6 +21,7 @@ import org.alfresco.mobile.android.api.model.ContentFile;
 import org.alfresco.mobile.android.api.model.ContentStream;
 import org.alfresco.mobile.android.api.model.Person;
 import org.alfresco.mobile.android.api.services.PersonService;
+import org.alfresco.mobile.android.api.services.cache.impl.RenditionCache;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.utils.messages.Messagesl18n;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
@@ -31,6 +32,9 @@ import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
  */
 public abstract class AbstractPersonService extends AlfrescoService implements PersonService
 {
+    /** Rendition type used to identify avatars inside the rendition cache. */
+    private static final String AVATAR_RENDITION = "avatar";
+
     /**
      * Default Constructor. Only used inside ServiceRegistry.
      * 
@@ -92,8 +96,12 @@ public abstract class AbstractPersonService extends AlfrescoService implements P
     {
         if (isStringNull(personIdentifier)) { throw new IllegalArgumentException(String.format(
                 Messagesl18n.getString("ErrorCodeRegistry.GENERAL_INVALID_ARG_NULL"), "personIdentifier")); }
-        
-        return saveContentStream(getAvatarStream(personIdentifier), personIdentifier, RENDITION_CACHE);
+
+        String key = RenditionCache.createKey(personIdentifier, AVATAR_RENDITION);
+        ContentFile avatar = getCachedRendition(key, null, RENDITION_MAX_AGE);
+        if (avatar != null) { return avatar; }
+
+        return saveRendition(getAvatarStream(personIdentifier), key, null);
     }
 
     /**
@@ -107,8 +115,14 @@ public abstract class AbstractPersonService extends AlfrescoService implements P
     {
         if (isObjectNull(person) || isStringNull(person.getIdentifier())) { throw new IllegalArgumentException(
                 String.format(Messagesl18n.getString("ErrorCodeRegistry.GENERAL_INVALID_ARG_NULL"), "person")); }
-        
-        return saveContentStream(getAvatarStream(person.getIdentifier()), person.getIdentifier(), RENDITION_CACHE);
+
+        // The avatar identifier changes each time a new avatar is uploaded.
+        String key = RenditionCache.createKey(person.getIdentifier(), AVATAR_RENDITION);
+        String validator = person.getAvatarIdentifier();
+        ContentFile avatar = getCachedRendition(key, validator, (validator == null) ? RENDITION_MAX_AGE : 0);
+        if (avatar != null) { return avatar; }
+
+        return saveRendition(getAvatarStream(person.getIdentifier()), key, validator);
     }
 
     // ////////////////////////////////////////////////////////////////////////////////////
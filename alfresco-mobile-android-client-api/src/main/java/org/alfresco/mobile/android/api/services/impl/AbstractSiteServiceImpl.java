@@ -34,6 +34,7 @@ import org.alfresco.mobile.android.api.model.impl.PagingResultImpl;
 import org.alfresco.mobile.android.api.model.impl.SiteImpl;
 import org.alfresco.mobile.android.api.services.SiteService;
 import org.alfresco.mobile.android.api.services.cache.impl.CacheSiteExtraProperties;
+import org.alfresco.mobile.android.api.services.cache.impl.PagingCache;
 import org.alfresco.mobile.android.api.services.impl.publicapi.PublicAPISiteServiceImpl;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.CloudSession;
@@ -459,6 +460,9 @@ public abstract class AbstractSiteServiceImpl extends AlfrescoService implements
             properties = new CacheSiteExtraProperties(isPendingMember, isMember, isFavorite);
         }
         extraPropertiesCache.put(siteIdentifier, properties);
+
+        // Membership has changed : cached listings are no more valid.
+        pagingCache.clear();
     }
 
     /**
@@ -482,6 +486,13 @@ public abstract class AbstractSiteServiceImpl extends AlfrescoService implements
         }
     };
 
+    /**
+     * Snapshots of listings which are not paged by the server.
+     * 
+     * @since 1.4
+     */
+    protected PagingCache pagingCache = new PagingCache();
+
     /**
      * {@inheritDoc}
      * 
@@ -490,6 +501,7 @@ public abstract class AbstractSiteServiceImpl extends AlfrescoService implements
     @Override
     public void clear()
     {
+        pagingCache.clear();
         if (extraPropertiesCache == null)
         {
             extraPropertiesCache = new LruCache<String, CacheSiteExtraProperties>(MAX_CACHE_ITEMS)
@@ -17,35 +17,58 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.api.services.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.alfresco.mobile.android.api.exceptions.AlfrescoServiceException;
 import org.alfresco.mobile.android.api.exceptions.ErrorCodeRegistry;
 import org.alfresco.mobile.android.api.exceptions.impl.ExceptionHelper;
 import org.alfresco.mobile.android.api.model.ContentFile;
 import org.alfresco.mobile.android.api.model.ContentStream;
+import org.alfresco.mobile.android.api.model.ListingContext;
+import org.alfresco.mobile.android.api.model.ListingProjection;
 import org.alfresco.mobile.android.api.model.Node;
 import org.alfresco.mobile.android.api.model.impl.ContentFileImpl;
 import org.alfresco.mobile.android.api.model.impl.DocumentImpl;
 import org.alfresco.mobile.android.api.model.impl.FolderImpl;
+import org.alfresco.mobile.android.api.network.NetworkHttpInvoker;
 import org.alfresco.mobile.android.api.services.Service;
 import org.alfresco.mobile.android.api.services.ServiceRegistry;
+import org.alfresco.mobile.android.api.services.cache.impl.ContentDownloadManager;
+import org.alfresco.mobile.android.api.services.cache.impl.HttpResponseCache;
+import org.alfresco.mobile.android.api.services.cache.impl.PagingCache;
+import org.alfresco.mobile.android.api.services.cache.impl.RenditionCache;
+import org.alfresco.mobile.android.api.services.cache.impl.UploadJournal;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.CloudSession;
 import org.alfresco.mobile.android.api.session.RepositorySession;
 import org.alfresco.mobile.android.api.session.impl.AbstractAlfrescoSessionImpl;
+import org.alfresco.mobile.android.api.utils.BufferPool;
 import org.alfresco.mobile.android.api.utils.IOUtils;
+import org.alfresco.mobile.android.api.utils.JsonEntryHandler;
+import org.alfresco.mobile.android.api.utils.JsonUtils;
 import org.alfresco.mobile.android.api.utils.messages.Messagesl18n;
 import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.bindings.impl.CmisBindingsHelper;
 import org.apache.chemistry.opencmis.client.bindings.impl.SessionImpl;
 import org.apache.chemistry.opencmis.client.bindings.spi.BindingSession;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.HttpInvoker;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Output;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.client.runtime.OperationContextImpl;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
 import org.apache.http.HttpStatus;
 
@@ -61,11 +84,17 @@ import android.os.Parcel;
  */
 public abstract class AlfrescoService implements Service
 {
+    /** HTTP Header used to validate cached responses. */
+    private static final String HEADER_ETAG = "ETag";
+
     /** Repository Session. */
     protected AlfrescoSession session;
 
     private BindingSession bindingSession;
 
+    /** Isolates the cached renditions and responses of the session user. */
+    private String userPrefix;
+
     /**
      * Default empty Constructor.
      */
@@ -88,6 +117,15 @@ public abstract class AlfrescoService implements Service
                 ((AbstractAlfrescoSessionImpl) session).getPassthruAuthenticationProvider());
         bindingSession.put(SessionParameter.HTTP_INVOKER_CLASS,
                 repositorySession.getParameter(AlfrescoSession.HTTP_INVOKER_CLASSNAME));
+        bindingSession.put(AlfrescoSession.HTTP_POOL_MAX_PER_ROUTE,
+                repositorySession.getParameter(AlfrescoSession.HTTP_POOL_MAX_PER_ROUTE));
+        bindingSession.put(AlfrescoSession.HTTP_POOL_IDLE_TIMEOUT,
+                repositorySession.getParameter(AlfrescoSession.HTTP_POOL_IDLE_TIMEOUT));
+        bindingSession.put(AlfrescoSession.HTTP_COALESCING,
+                repositorySession.getParameter(AlfrescoSession.HTTP_COALESCING));
+        bindingSession.put(AlfrescoSession.HTTP_RETRY_MAX,
+                repositorySession.getParameter(AlfrescoSession.HTTP_RETRY_MAX));
+        bindingSession.put(AlfrescoSession.HTTP_HEDGING, repositorySession.getParameter(AlfrescoSession.HTTP_HEDGING));
     }
 
     // //////////////////////////////////////////////////////////////////////////////////////////
@@ -96,7 +134,8 @@ public abstract class AlfrescoService implements Service
 
     /**
      * Performs a GET on an URL, checks the response code and returns the
-     * result.
+     * result. Identical concurrent reads are merged into a single request (see
+     * {@link AlfrescoSession#HTTP_COALESCING}).
      * 
      * @param url : requested URL. @ : if network or internal problems occur
      *            during the process.
@@ -104,7 +143,7 @@ public abstract class AlfrescoService implements Service
     protected Response read(UrlBuilder url, int errorCode)
     {
         // Log.d("URL", url.toString());
-        Response resp = getHttpInvoker().invokeGET(url, getSessionHttp());
+        Response resp = get(url);
 
         // check response code
         if (resp.getResponseCode() != HttpStatus.SC_OK)
@@ -115,14 +154,178 @@ public abstract class AlfrescoService implements Service
         return resp;
     }
 
+    /**
+     * Performs a GET on a binary content (rendition, avatar...), checks the
+     * response code and returns the result. The content is never requested
+     * compressed.
+     * 
+     * @param url : requested URL.
+     * @since 1.4
+     */
+    protected Response readContent(UrlBuilder url, int errorCode)
+    {
+        Response resp = getHttpInvoker().invokeGET(url, getSessionHttp(), null, null);
+
+        // check response code
+        if (resp.getResponseCode() != HttpStatus.SC_OK)
+        {
+            convertStatusCode(resp, errorCode);
+        }
+
+        return resp;
+    }
+
+    /**
+     * Performs a GET on an URL without checking the response code. If the HTTP
+     * response cache is enabled (see {@link AlfrescoSession#HTTP_CACHE_SIZE}),
+     * the request is conditional : if the server answers 304 Not Modified the
+     * stored response is returned.
+     * 
+     * @param url : requested URL.
+     * @return the response.
+     * @since 1.4
+     */
+    protected Response get(UrlBuilder url)
+    {
+        HttpResponseCache cache = getHttpResponseCache();
+        if (cache == null) { return getHttpInvoker().invokeGET(url, getSessionHttp()); }
+
+        String key = getUserKey(HttpResponseCache.createKey(url.toString()));
+        Response resp = ((NetworkHttpInvoker) getHttpInvoker()).invokeGET(url, cache.getConditionalHeaders(key),
+                getSessionHttp());
+        switch (resp.getResponseCode())
+        {
+            case HttpStatus.SC_NOT_MODIFIED:
+                IOUtils.closeStream(resp.getStream());
+                Response cachedResp = cache.get(key);
+                if (cachedResp != null) { return cachedResp; }
+                // Evicted meanwhile : full request.
+                return getHttpInvoker().invokeGET(url, getSessionHttp());
+            case HttpStatus.SC_OK:
+                try
+                {
+                    Response storedResp = cache.put(key, resp);
+                    if (storedResp != null) { return storedResp; }
+                }
+                catch (IOException e)
+                {
+                    // Body lost : full request without cache.
+                    cache.remove(key);
+                    return getHttpInvoker().invokeGET(url, getSessionHttp());
+                }
+                return resp;
+            default:
+                cache.remove(key);
+                return resp;
+        }
+    }
+
+    /**
+     * Parses a JSON object response. If the response comes from the HTTP
+     * response cache, the parsed object is kept in memory and reused while the
+     * response doesn't change. <br/>
+     * The returned object can be shared : it must not be modified.
+     * 
+     * @param resp : successful response.
+     * @return the parsed JSON object.
+     * @since 1.4
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object> parseObject(Response resp)
+    {
+        HttpResponseCache cache = getHttpResponseCache();
+        if (cache == null || !(resp instanceof HttpResponseCache.CachedResponse)) { return JsonUtils.parseObject(
+                resp.getStream(), resp.getCharset()); }
+
+        HttpResponseCache.CachedResponse cachedResp = (HttpResponseCache.CachedResponse) resp;
+        Object json = cache.getParsed(cachedResp.getKey(), cachedResp.getValidator());
+        if (json instanceof Map)
+        {
+            IOUtils.closeStream(resp.getStream());
+            return (Map<String, Object>) json;
+        }
+        Map<String, Object> parsedJson = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+        cache.putParsed(cachedResp.getKey(), cachedResp.getValidator(), parsedJson);
+        return parsedJson;
+    }
+
+    /**
+     * Performs a GET on an URL which returns a JSON array and keeps the parsed
+     * array inside the paging cache. <br/>
+     * If a valid snapshot exists and no refresh is requested, no request is
+     * sent to the server. If the server returns the same ETag as the snapshot,
+     * the response is not parsed again.
+     *
+     * @param url : requested URL.
+     * @param errorCode : error code used if the request fails.
+     * @param cache : paging cache of the service.
+     * @param refresh : true to always check the result against the server
+     *            (usually for the first page of a listing).
+     * @return full list of entries. This list can't be modified.
+     * @since 1.4
+     */
+    protected List<Object> readList(UrlBuilder url, int errorCode, PagingCache cache, boolean refresh)
+    {
+        return readList(url, errorCode, cache, refresh, null);
+    }
+
+    /**
+     * Same as {@link #readList(UrlBuilder, int, PagingCache, boolean)} but the
+     * JSON array is streamed : each entry is converted as soon as it has been
+     * read and only the converted objects are kept inside the snapshot.
+     *
+     * @param converter : converts the JSON entries. If null, the array is
+     *            parsed as a whole and the JSON values are kept.
+     * @return full list of converted entries. This list can't be modified.
+     * @since 1.4
+     */
+    protected List<Object> readList(UrlBuilder url, int errorCode, PagingCache cache, boolean refresh,
+            final PagingCache.Converter converter)
+    {
+        String key = url.toString();
+        PagingCache.Snapshot snapshot = cache.get(key);
+        if (snapshot != null && !refresh && !snapshot.isExpired()) { return snapshot.getEntries(); }
+
+        Response resp = read(url, errorCode);
+        String eTag = resp.getResponseHeader(HEADER_ETAG);
+        if (snapshot != null && eTag != null && eTag.equals(snapshot.getETag()))
+        {
+            IOUtils.closeStream(resp.getStream());
+            cache.touch(snapshot);
+            return snapshot.getEntries();
+        }
+
+        if (converter == null)
+        {
+            List<Object> entries = JsonUtils.parseArray(resp.getStream(), resp.getCharset());
+            return cache.put(key, entries, eTag).getEntries();
+        }
+
+        final List<Object> entries = new ArrayList<Object>();
+        JsonUtils.parseArray(resp.getStream(), resp.getCharset(), new JsonEntryHandler()
+        {
+            public boolean onEntry(int index, Map<String, Object> entry)
+            {
+                Object value = converter.convert(entry);
+                if (value != null)
+                {
+                    entries.add(value);
+                }
+                return true;
+            }
+        });
+        return cache.put(key, entries, eTag).getEntries();
+    }
+
     /**
      * Performs a POST on an URL, checks the response code and returns the
      * result. @ : if network or internal problems occur during the process.
+     * The response body is read in memory : callers don't have to close it.
      */
     protected Response post(UrlBuilder url, String contentType, Output writer, int errorCode)
     {
         // make the call
-        Response resp = getHttpInvoker().invokePOST(url, contentType, writer, getSessionHttp());
+        Response resp = readResponse(getHttpInvoker().invokePOST(url, contentType, writer, getSessionHttp()));
         
         // check response code
         if (resp.getResponseCode() != HttpStatus.SC_OK && resp.getResponseCode() != HttpStatus.SC_CREATED)
@@ -142,6 +345,9 @@ public abstract class AlfrescoService implements Service
         // make the call
         Response resp = getHttpInvoker().invokeDELETE(url, getSessionHttp());
 
+        // nobody reads the body : release the connection
+        IOUtils.closeStream(resp.getStream());
+
         // check response code
         if (resp.getResponseCode() != HttpStatus.SC_NO_CONTENT && resp.getResponseCode() != HttpStatus.SC_OK)
         {
@@ -153,10 +359,11 @@ public abstract class AlfrescoService implements Service
     /**
      * Performs a PUT on an URL, checks the response code and returns the
      * result. @ : if network or internal problems occur during the process.
+     * The response body is read in memory : callers don't have to close it.
      */
     protected Response put(UrlBuilder url, String contentType, Map<String, String> headers, Output writer, int errorCode)
     {
-        Response resp = getHttpInvoker().invokePUT(url, contentType, headers, writer, getSessionHttp());
+        Response resp = readResponse(getHttpInvoker().invokePUT(url, contentType, headers, writer, getSessionHttp()));
 
         // check response code
         if ((resp.getResponseCode() < HttpStatus.SC_OK) || (resp.getResponseCode() > 299))
@@ -167,6 +374,39 @@ public abstract class AlfrescoService implements Service
         return resp;
     }
 
+    /**
+     * Reads the body of a response in memory and closes the response stream :
+     * the connection, its scheduler slot and its route lease are released even
+     * if the caller never reads the body.
+     */
+    protected static Response readResponse(Response resp)
+    {
+        InputStream stream = resp.getStream();
+        if (stream == null) { return resp; }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try
+        {
+            int count;
+            while ((count = stream.read(buffer)) != -1)
+            {
+                bos.write(buffer, 0, count);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new CmisConnectionException("Cannot read response: " + e.getMessage(), e);
+        }
+        finally
+        {
+            BufferPool.getInstance().release(buffer);
+            IOUtils.closeStream(stream);
+        }
+        return new Response(resp.getResponseCode(), resp.getResponseMessage(), resp.getHeaders(),
+                new ByteArrayInputStream(bos.toByteArray()), null);
+    }
+
     /**
      * @return Binding session for passing the authenticationProvider to execute
      *         the http request.
@@ -180,6 +420,16 @@ public abstract class AlfrescoService implements Service
                     ((AbstractAlfrescoSessionImpl) session).getPassthruAuthenticationProvider());
             bindingSession.put(SessionParameter.HTTP_INVOKER_CLASS,
                     ((AbstractAlfrescoSessionImpl) session).getParameter(AlfrescoSession.HTTP_INVOKER_CLASSNAME));
+            bindingSession.put(AlfrescoSession.HTTP_POOL_MAX_PER_ROUTE,
+                    ((AbstractAlfrescoSessionImpl) session).getParameter(AlfrescoSession.HTTP_POOL_MAX_PER_ROUTE));
+            bindingSession.put(AlfrescoSession.HTTP_POOL_IDLE_TIMEOUT,
+                    ((AbstractAlfrescoSessionImpl) session).getParameter(AlfrescoSession.HTTP_POOL_IDLE_TIMEOUT));
+            bindingSession.put(AlfrescoSession.HTTP_COALESCING,
+                    ((AbstractAlfrescoSessionImpl) session).getParameter(AlfrescoSession.HTTP_COALESCING));
+            bindingSession.put(AlfrescoSession.HTTP_RETRY_MAX,
+                    ((AbstractAlfrescoSessionImpl) session).getParameter(AlfrescoSession.HTTP_RETRY_MAX));
+            bindingSession.put(AlfrescoSession.HTTP_HEDGING,
+                    ((AbstractAlfrescoSessionImpl) session).getParameter(AlfrescoSession.HTTP_HEDGING));
         }
         else if (bindingSession != null
                 && bindingSession.get(CmisBindingsHelper.AUTHENTICATION_PROVIDER_OBJECT) == null)
@@ -230,6 +480,53 @@ public abstract class AlfrescoService implements Service
         }
     }
 
+    /**
+     * Creates the operation context of a listing. The projection of the
+     * listing context (if any) replaces the default values of the session :
+     * property filter, allowable actions and rendition filter.
+     * 
+     * @param defaultContext : default operation context of the CMIS session.
+     * @param lcontext : listing context. Can be null.
+     * @return a new operation context.
+     * @since 1.4
+     */
+    protected static OperationContext createOperationContext(OperationContext defaultContext,
+            ListingContext lcontext)
+    {
+        OperationContext ctxt = new OperationContextImpl(defaultContext);
+        ListingProjection projection = (lcontext != null) ? lcontext.getProjection() : null;
+        if (projection == null) { return ctxt; }
+
+        if (projection.getProperties() != null)
+        {
+            Set<String> filter = new HashSet<String>(projection.getProperties());
+            filter.add(PropertyIds.OBJECT_ID);
+            filter.add(PropertyIds.BASE_TYPE_ID);
+            filter.add(PropertyIds.OBJECT_TYPE_ID);
+            if (projection.isIncludeAspects())
+            {
+                filter.add(PropertyIds.SECONDARY_OBJECT_TYPE_IDS);
+            }
+            ctxt.setFilter(filter);
+        }
+        ctxt.setIncludeAllowableActions(projection.isIncludeAllowableActions());
+        if (projection.getRenditionFilter() != null)
+        {
+            ctxt.setRenditionFilterString(projection.getRenditionFilter());
+        }
+        return ctxt;
+    }
+
+    /**
+     * @param lcontext : listing context. Can be null.
+     * @return true if nodes retrieved with the listing context are complete.
+     * @since 1.4
+     */
+    protected static boolean hasAllProperties(ListingContext lcontext)
+    {
+        return lcontext == null || lcontext.getProjection() == null || lcontext.getProjection().hasAllProperties();
+    }
+
     /**
      * Utils method to check if an object is null.
      * 
@@ -286,6 +583,39 @@ public abstract class AlfrescoService implements Service
         return (session instanceof CloudSession);
     }
 
+    /**
+     * @param key : name of a session parameter.
+     * @param defaultValue : value used if the parameter is not defined or not
+     *            a number.
+     * @return the value of a numeric session parameter. Any Number (Integer,
+     *         Long...) or numeric String is accepted.
+     * @since 1.4
+     */
+    protected long getLongParameter(String key, long defaultValue)
+    {
+        Object value = session.getParameter(key);
+        if (value instanceof Number) { return ((Number) value).longValue(); }
+        if (value == null) { return defaultValue; }
+        try
+        {
+            return Long.parseLong(value.toString().trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @see #getLongParameter(String, long)
+     * @since 1.4
+     */
+    protected int getIntParameter(String key, int defaultValue)
+    {
+        long value = getLongParameter(key, defaultValue);
+        return (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) ? defaultValue : (int) value;
+    }
+
     // //////////////////////////////////////////////////////////////////////////////////////////
     // EXCEPTION
     // /////////////////////////////////////////////////////////////////////////////////////////
@@ -322,6 +652,31 @@ public abstract class AlfrescoService implements Service
 
     protected static final int CONTENT_CACHE = 2;
 
+    /**
+     * Maximum age of a cached rendition which can't be validated (no
+     * modification date) : 1 hour.
+     */
+    protected static final long RENDITION_MAX_AGE = 60 * 60 * 1000L;
+
+    private static final String RENDITION_CACHE_FOLDER = "/rendition";
+
+    /**
+     * Folder of the HTTP response cache inside
+     * {@link AlfrescoSession#CACHE_FOLDER}.
+     * 
+     * @since 1.4
+     */
+    public static final String HTTP_CACHE_FOLDER = "/http";
+
+    private static final String CONTENT_CACHE_FOLDER = "/content";
+
+    private static final String UPLOAD_JOURNAL_FOLDER = "/upload";
+
+    /** Default size above which a content is downloaded in segments : 4 MB. */
+    private static final long DEFAULT_CONTENT_SEGMENT_THRESHOLD = 4 * 1024 * 1024L;
+
+    private static final int DEFAULT_CONTENT_SEGMENT_COUNT = 4;
+
     /**
      * Allow to save a contentStream inside the devices file system. The content
      * is saved as cache file inside a cache folder. It's possible to determine
@@ -343,10 +698,10 @@ public abstract class AlfrescoService implements Service
             switch (storageType)
             {
                 case RENDITION_CACHE:
-                    folderName += "/rendition";
+                    folderName += RENDITION_CACHE_FOLDER;
                     break;
                 case CONTENT_CACHE:
-                    folderName += "/content";
+                    folderName += CONTENT_CACHE_FOLDER;
                     break;
                 default:
                     break;
@@ -364,6 +719,175 @@ public abstract class AlfrescoService implements Service
         return null;
     }
 
+    /**
+     * Downloads a content inside the content cache folder. An interrupted
+     * download of the same version is resumed with a Range request (see
+     * {@link ContentDownloadManager}). Contents larger than
+     * {@link AlfrescoSession#CONTENT_SEGMENT_THRESHOLD} are downloaded in
+     * several segments fetched concurrently. The file is visible inside the
+     * cache folder only once complete.
+     * 
+     * @param url : content url.
+     * @param cacheFileName : Name of the cache file
+     * @param token : version of the content (change token or modification
+     *            date). If null, the download can't be resumed.
+     * @param length : expected length of the content or -1 if unknown.
+     * @param fileName : name of the content.
+     * @param mimeType : mimetype of the content.
+     * @return ContentFile associated to the cache file.
+     * @since 1.4
+     */
+    protected ContentFile downloadContent(final UrlBuilder url, String cacheFileName, String token, long length,
+            String fileName, String mimeType)
+    {
+        try
+        {
+            ContentDownloadManager.RangeSource source = new ContentDownloadManager.RangeSource()
+            {
+                public Response open(long offset, long rangeLength, String validator)
+                {
+                    Response resp;
+                    if (offset == 0 && rangeLength <= 0)
+                    {
+                        resp = getHttpInvoker().invokeGET(url, getSessionHttp(), null, null);
+                    }
+                    else if (getHttpInvoker() instanceof NetworkHttpInvoker)
+                    {
+                        // If-Range : the whole content is sent if it has
+                        // changed since the first bytes.
+                        resp = ((NetworkHttpInvoker) getHttpInvoker()).invokeGET(url, getSessionHttp(),
+                                BigInteger.valueOf(offset), (rangeLength > 0) ? BigInteger.valueOf(rangeLength)
+                                        : null, validator);
+                    }
+                    else
+                    {
+                        resp = getHttpInvoker().invokeGET(url, getSessionHttp(), BigInteger.valueOf(offset),
+                                (rangeLength > 0) ? BigInteger.valueOf(rangeLength) : null);
+                    }
+                    if (resp.getResponseCode() != HttpStatus.SC_OK
+                            && resp.getResponseCode() != HttpStatus.SC_PARTIAL_CONTENT
+                            && resp.getResponseCode() != HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE)
+                    {
+                        convertStatusCode(resp, ErrorCodeRegistry.DOCFOLDER_GENERIC);
+                    }
+                    return resp;
+                }
+            };
+
+            long segmentThreshold = getLongParameter(AlfrescoSession.CONTENT_SEGMENT_THRESHOLD,
+                    DEFAULT_CONTENT_SEGMENT_THRESHOLD);
+            File f;
+            if (segmentThreshold > 0 && length >= segmentThreshold)
+            {
+                f = getContentDownloadManager().download(cacheFileName, token, length,
+                        getIntParameter(AlfrescoSession.CONTENT_SEGMENT_COUNT, DEFAULT_CONTENT_SEGMENT_COUNT), source);
+            }
+            else
+            {
+                f = getContentDownloadManager().download(cacheFileName, token, length, source);
+            }
+            return new ContentFileImpl(f, fileName, mimeType);
+        }
+        catch (Exception e)
+        {
+            convertException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a rendition stored inside the rendition cache.
+     * 
+     * @param key : rendition identifier (see
+     *            {@link RenditionCache#createKey(String, String)}).
+     * @param validator : validator of the current version of the object
+     *            (usually its modification date). If null, the validator is
+     *            not checked.
+     * @param maxAge : maximum age (in ms) of the rendition. If 0, the age is
+     *            not checked.
+     * @return ContentFile associated to the cache file or null if the
+     *         rendition must be downloaded.
+     * @since 1.4
+     */
+    protected ContentFile getCachedRendition(String key, String validator, long maxAge)
+    {
+        return getRenditionCache().get(getUserKey(key), validator, maxAge);
+    }
+
+    /**
+     * Saves a rendition inside the rendition cache. The cache is bounded by
+     * {@link AlfrescoSession#RENDITION_CACHE_SIZE}.
+     * 
+     * @param contentStream : Content stream of the rendition
+     * @param key : rendition identifier (see
+     *            {@link RenditionCache#createKey(String, String)}).
+     * @param validator : validator of the current version of the object.
+     * @return ContentFile associated to the cache file.
+     * @since 1.4
+     */
+    protected ContentFile saveRendition(ContentStream contentStream, String key, String validator)
+    {
+        if (contentStream == null || contentStream.getInputStream() == null) { return null; }
+
+        try
+        {
+            return getRenditionCache().put(getUserKey(key), validator, contentStream);
+        }
+        catch (Exception e)
+        {
+            convertException(e);
+        }
+        return null;
+    }
+
+    /**
+     * The rendition cache is shared by all sessions : renditions are isolated
+     * per server and user to respect permissions.
+     */
+    private String getUserKey(String key)
+    {
+        if (userPrefix == null)
+        {
+            userPrefix = RenditionCache.createUserPrefix(session.getBaseUrl(), session.getPersonIdentifier());
+        }
+        return userPrefix + "." + key;
+    }
+
+    /**
+     * @return the journal of the chunked uploads in progress.
+     * @since 1.4
+     */
+    protected UploadJournal getUploadJournal()
+    {
+        return UploadJournal.getInstance(session.getParameter(AlfrescoSession.CACHE_FOLDER) + UPLOAD_JOURNAL_FOLDER);
+    }
+
+    private ContentDownloadManager getContentDownloadManager()
+    {
+        return ContentDownloadManager.getInstance(session.getParameter(AlfrescoSession.CACHE_FOLDER)
+                + CONTENT_CACHE_FOLDER);
+    }
+
+    /**
+     * @return the HTTP response cache or null if it's disabled or if the HTTP
+     *         invoker doesn't support conditional requests.
+     */
+    private HttpResponseCache getHttpResponseCache()
+    {
+        long maxSize = getLongParameter(AlfrescoSession.HTTP_CACHE_SIZE, HttpResponseCache.DEFAULT_MAX_SIZE);
+        if (maxSize <= 0 || session.getParameter(AlfrescoSession.CACHE_FOLDER) == null
+                || !(getHttpInvoker() instanceof NetworkHttpInvoker)) { return null; }
+        return HttpResponseCache.getInstance(session.getParameter(AlfrescoSession.CACHE_FOLDER)
+                + HTTP_CACHE_FOLDER, maxSize);
+    }
+
+    private RenditionCache getRenditionCache()
+    {
+        return RenditionCache.getInstance(session.getParameter(AlfrescoSession.CACHE_FOLDER)
+                + RENDITION_CACHE_FOLDER,
+                getLongParameter(AlfrescoSession.RENDITION_CACHE_SIZE, RenditionCache.DEFAULT_MAX_SIZE));
+    }
+
     // ////////////////////////////////////////////////////
     // CACHING
     // ////////////////////////////////////////////////////
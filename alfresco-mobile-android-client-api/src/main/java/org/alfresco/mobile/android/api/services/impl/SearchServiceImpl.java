@@ -21,8 +21,10 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.alfresco.mobile.android.api.model.Folder;
 import org.alfresco.mobile.android.api.model.KeywordSearchOptions;
@@ -38,6 +40,7 @@ import org.alfresco.mobile.android.api.utils.messages.Messagesl18n;
 import org.apache.chemistry.opencmis.client.api.ObjectFactory;
 import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.api.Session;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.data.ObjectData;
 import org.apache.chemistry.opencmis.commons.data.ObjectList;
 import org.apache.chemistry.opencmis.commons.spi.DiscoveryService;
@@ -109,7 +112,7 @@ public class SearchServiceImpl extends AlfrescoService implements SearchService
         try
         {
             DiscoveryService discoveryService = cmisSession.getBinding().getDiscoveryService();
-            OperationContext ctxt = cmisSession.getDefaultContext();
+            OperationContext ctxt = createOperationContext(cmisSession.getDefaultContext(), listingContext);
             ObjectFactory objectFactory = cmisSession.getObjectFactory();
 
             BigInteger maxItems = BigInteger.valueOf(ListingContext.DEFAULT_MAX_ITEMS);
@@ -172,6 +175,10 @@ public class SearchServiceImpl extends AlfrescoService implements SearchService
 
     private static final String QUERY_DEFAULT = "SELECT * FROM %s WHERE ";
 
+    private static final String QUERY_SELECT = "SELECT ";
+
+    private static final String QUERY_SELECT_ALL = "SELECT *";
+
     private static final String PARAM_NODEREF = "{noderef}";
 
     private static final String QUERY_INFOLDER = " IN_FOLDER('" + PARAM_NODEREF + "')";
@@ -242,6 +249,16 @@ public class SearchServiceImpl extends AlfrescoService implements SearchService
             startStatement = String.format(QUERY_DEFAULT, typeName);
         }
 
+        // Listing projection : only requested properties are selected.
+        if (!hasAspect && listingContext != null && listingContext.getProjection() != null
+                && listingContext.getProjection().getProperties() != null)
+        {
+            startStatement = QUERY_SELECT
+                    + createSelectList(listingContext.getProjection().getProperties(),
+                            sortingMap.get(listingContext.getSortProperty()))
+                    + startStatement.substring(QUERY_SELECT_ALL.length());
+        }
+
         StringBuilder sb = new StringBuilder(startStatement);
 
         // First IN_FOLDER or IN_DESCENDANTS
@@ -300,6 +317,24 @@ public class SearchServiceImpl extends AlfrescoService implements SearchService
         return sb.toString();
     }
 
+    /**
+     * Creates the select list of a query : properties of the projection,
+     * mandatory properties and the sorting property.
+     */
+    private static String createSelectList(List<String> properties, String sortingProperty)
+    {
+        Set<String> selectList = new LinkedHashSet<String>();
+        selectList.add(PropertyIds.OBJECT_ID);
+        selectList.add(PropertyIds.BASE_TYPE_ID);
+        selectList.add(PropertyIds.OBJECT_TYPE_ID);
+        selectList.addAll(properties);
+        if (sortingProperty != null)
+        {
+            selectList.add(sortingProperty.trim());
+        }
+        return TextUtils.join(",", selectList);
+    }
+
     @SuppressWarnings({ "serial" })
     private static Map<String, String> sortingMap = new HashMap<String, String>()
     {
@@ -98,7 +98,7 @@ public class CloudDocumentFolderServiceImpl extends PublicAPIDocumentFolderServi
         try
         {
             UrlBuilder url = getRenditionUrl(identifier, title);
-            Response resp = getHttpInvoker().invokeGET(url, getSessionHttp());
+            Response resp = getHttpInvoker().invokeGET(url, getSessionHttp(), null, null);
             if (resp.getResponseCode() == HttpStatus.SC_NOT_FOUND)
             {
                 cf = null;
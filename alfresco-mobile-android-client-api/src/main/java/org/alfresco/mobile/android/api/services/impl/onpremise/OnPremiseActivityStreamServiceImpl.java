@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.alfresco.mobile.android.api.constants.OnPremiseConstant;
 import org.alfresco.mobile.android.api.exceptions.ErrorCodeRegistry;
 import org.alfresco.mobile.android.api.model.ActivityEntry;
 import org.alfresco.mobile.android.api.model.ListingContext;
@@ -31,13 +32,15 @@ import org.alfresco.mobile.android.api.services.impl.AbstractActivityStreamServi
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.RepositorySession;
 import org.alfresco.mobile.android.api.session.impl.RepositorySessionImpl;
-import org.alfresco.mobile.android.api.utils.JsonUtils;
+import org.alfresco.mobile.android.api.utils.JsonStreamReader;
 import org.alfresco.mobile.android.api.utils.OnPremiseUrlRegistry;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.impl.JSONConverter;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.util.LruCache;
 
 /**
  * Specific implementation of ActivityStreamService for OnPremise REST API.
@@ -82,13 +85,18 @@ public class OnPremiseActivityStreamServiceImpl extends AbstractActivityStreamSe
     // ////////////////////////////////////////////////////////////////////////////////////
     /**
      * Internal method to compute data from server and transform it as high
-     * level object.
+     * level object. <br/>
+     * The legacy activity feed doesn't support server side paging : the whole
+     * feed is always sent back. Entries before the page are skipped without
+     * being converted. Entries after the page are only counted to provide the
+     * total number of items. If the same feed has already been fully read and
+     * its head entry is unchanged, the parsing stops as soon as the page is
+     * complete and the total is taken from the previous read.
      * 
      * @param url : Alfresco REST API activity url
      * @param listingContext : listing context to apply to the paging result.
      * @return Paging Result of activity entry.
      */
-    @SuppressWarnings("unchecked")
     protected PagingResult<ActivityEntry> computeActivities(UrlBuilder url, ListingContext listingContext)
     {
         try
@@ -96,35 +104,75 @@ public class OnPremiseActivityStreamServiceImpl extends AbstractActivityStreamSe
             // read and parse
             Response resp = read(url, ErrorCodeRegistry.ACTIVITISTREAM_GENERIC);
 
-            List<Object> json = JsonUtils.parseArray(resp.getStream(), resp.getCharset());
-            int size = json.size();
-            ArrayList<ActivityEntry> result = new ArrayList<ActivityEntry>(size);
-
-            Boolean b = false;
+            int skipCount = 0;
+            int maxItems = -1;
             if (listingContext != null)
             {
-                int fromIndex = (listingContext.getSkipCount() > size) ? size : listingContext.getSkipCount();
+                skipCount = (listingContext.getSkipCount() < 0) ? 0 : listingContext.getSkipCount();
+                maxItems = listingContext.getMaxItems();
+            }
+            int toIndex = (maxItems < 0) ? Integer.MAX_VALUE : skipCount + maxItems;
 
-                // Case if skipCount > result size
-                if (listingContext.getMaxItems() + fromIndex >= size)
-                {
-                    json = json.subList(fromIndex, size);
-                    b = false;
-                }
-                else
+            String feedKey = url.toString();
+            FeedCursor cursor = getFeedCursor(feedKey);
+
+            List<ActivityEntry> result = new ArrayList<ActivityEntry>();
+            String headIdentifier = null;
+            int size = 0;
+            boolean complete = true;
+
+            JsonStreamReader reader = new JsonStreamReader(resp.getStream(), resp.getCharset());
+            try
+            {
+                if (reader.beginArray())
                 {
-                    json = json.subList(fromIndex, listingContext.getMaxItems() + fromIndex);
-                    b = true;
+                    int index = 0;
+                    while (reader.hasNext())
+                    {
+                        if (index >= toIndex && cursor != null && cursor.headIdentifier.equals(headIdentifier))
+                        {
+                            // Same feed as the previous read : no need to
+                            // parse the end of the feed.
+                            complete = false;
+                            break;
+                        }
+
+                        if (index == 0 || (index >= skipCount && index < toIndex))
+                        {
+                            Map<String, Object> entry = reader.nextObject();
+                            if (index == 0 && entry != null)
+                            {
+                                headIdentifier = JSONConverter.getString(entry, OnPremiseConstant.ID_VALUE);
+                            }
+                            if (entry != null && index >= skipCount && index < toIndex)
+                            {
+                                result.add(ActivityEntryImpl.parseJson(entry));
+                            }
+                        }
+                        else
+                        {
+                            reader.skipValue();
+                        }
+                        index++;
+                    }
+                    size = index;
                 }
             }
+            finally
+            {
+                reader.close();
+            }
 
-            if (json != null)
+            if (complete)
             {
-                for (Object obj : json)
-                {
-                    result.add(ActivityEntryImpl.parseJson((Map<String, Object>) obj));
-                }
+                putFeedCursor(feedKey, headIdentifier, size);
             }
+            else
+            {
+                size = cursor.totalItems;
+            }
+
+            Boolean b = (listingContext != null && maxItems >= 0 && toIndex < size);
 
             return new PagingResultImpl<ActivityEntry>(result, b, size);
         }
@@ -134,7 +182,66 @@ public class OnPremiseActivityStreamServiceImpl extends AbstractActivityStreamSe
         }
         return null;
     }
-    
+
+    // ////////////////////////////////////////////////////
+    // CACHING
+    // ////////////////////////////////////////////////////
+    /** Maximum number of feeds tracked by the cursor cache. */
+    private static final int MAX_FEED_CURSORS = 10;
+
+    /** Duration (in ms) during which a feed cursor is considered as valid. */
+    private static final long FEED_CURSOR_TTL = 60000;
+
+    /**
+     * Keeps for each feed url the identifier of its head entry and its total
+     * number of entries from the last complete read.
+     */
+    private LruCache<String, FeedCursor> feedCursors = new LruCache<String, FeedCursor>(MAX_FEED_CURSORS);
+
+    private FeedCursor getFeedCursor(String feedKey)
+    {
+        FeedCursor cursor = feedCursors.get(feedKey);
+        if (cursor != null && System.currentTimeMillis() - cursor.timestamp > FEED_CURSOR_TTL)
+        {
+            feedCursors.remove(feedKey);
+            return null;
+        }
+        return cursor;
+    }
+
+    private void putFeedCursor(String feedKey, String headIdentifier, int totalItems)
+    {
+        if (headIdentifier == null)
+        {
+            feedCursors.remove(feedKey);
+            return;
+        }
+        feedCursors.put(feedKey, new FeedCursor(headIdentifier, totalItems));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear()
+    {
+        feedCursors.evictAll();
+    }
+
+    private static final class FeedCursor
+    {
+        private final String headIdentifier;
+
+        private final int totalItems;
+
+        private final long timestamp;
+
+        private FeedCursor(String headIdentifier, int totalItems)
+        {
+            this.headIdentifier = headIdentifier;
+            this.totalItems = totalItems;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
     // ////////////////////////////////////////////////////
     // Save State - serialization / deserialization
     // ////////////////////////////////////////////////////
@@ -94,7 +94,7 @@ public class OnPremiseDocumentFolderServiceImpl extends AbstractDocumentFolderSe
         try
         {
             UrlBuilder url = getRenditionUrl(identifier, type);
-            Response resp = getHttpInvoker().invokeGET(url, getSessionHttp());
+            Response resp = getHttpInvoker().invokeGET(url, getSessionHttp(), null, null);
             org.alfresco.mobile.android.api.model.ContentStream cf;
             if (resp.getResponseCode() == HttpStatus.SC_NOT_FOUND)
             {
@@ -97,7 +97,7 @@ public class OnPremisePersonServiceImpl extends AbstractPersonService
         {
             ContentStream cf = null;
             UrlBuilder builder = getAvatarUrl(personIdentifier);
-            Response resp = read(builder, ErrorCodeRegistry.PERSON_GENERIC);
+            Response resp = readContent(builder, ErrorCodeRegistry.PERSON_GENERIC);
 
             cf = new ContentStreamImpl(resp.getStream(), resp.getContentTypeHeader() + ";" + resp.getCharset(), resp
                     .getContentLength().longValue());
@@ -182,7 +182,7 @@ public class OnPremisePersonServiceImpl extends AbstractPersonService
     /** {@inheritDoc} */
     protected Person computePerson(UrlBuilder url)
     {
-        Response resp = getHttpInvoker().invokeGET(url, getSessionHttp());
+        Response resp = get(url);
 
         // check response code
         if (resp.getResponseCode() == HttpStatus.SC_NOT_FOUND)
@@ -194,7 +194,7 @@ public class OnPremisePersonServiceImpl extends AbstractPersonService
             convertStatusCode(resp, ErrorCodeRegistry.PERSON_GENERIC);
         }
 
-        Map<String, Object> json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+        Map<String, Object> json = parseObject(resp);
 
         return PersonImpl.parseJson(json);
     }
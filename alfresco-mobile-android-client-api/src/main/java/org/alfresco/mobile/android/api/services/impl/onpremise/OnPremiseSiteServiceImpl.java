@@ -38,6 +38,7 @@ import org.alfresco.mobile.android.api.model.impl.PagingResultImpl;
 import org.alfresco.mobile.android.api.model.impl.PersonImpl;
 import org.alfresco.mobile.android.api.model.impl.SiteImpl;
 import org.alfresco.mobile.android.api.services.cache.impl.CacheSiteExtraProperties;
+import org.alfresco.mobile.android.api.services.cache.impl.PagingCache;
 import org.alfresco.mobile.android.api.services.impl.AbstractServiceRegistry;
 import org.alfresco.mobile.android.api.services.impl.AbstractSiteServiceImpl;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
@@ -76,6 +77,25 @@ public class OnPremiseSiteServiceImpl extends AbstractSiteServiceImpl
 {
     private static final String TAG = "OnPremiseSiteServiceImpl";
 
+    /** Site listings are streamed into Site objects. */
+    private static final PagingCache.Converter SITE_CONVERTER = new PagingCache.Converter()
+    {
+        public Object convert(Map<String, Object> entry)
+        {
+            return SiteImpl.parseJson(entry);
+        }
+    };
+
+    /** Membership listings are streamed into Person objects. */
+    private static final PagingCache.Converter MEMBER_CONVERTER = new PagingCache.Converter()
+    {
+        @SuppressWarnings("unchecked")
+        public Object convert(Map<String, Object> entry)
+        {
+            return PersonImpl.parseJson((Map<String, Object>) entry.get(OnPremiseConstant.AUTHORITY_VALUE), false);
+        }
+    };
+
     /**
      * Default constructor for service. </br>
      * Used by the {@link AbstractServiceRegistry}.
@@ -554,7 +574,38 @@ public class OnPremiseSiteServiceImpl extends AbstractSiteServiceImpl
     /** {@inheritDoc} */
     public PagingResult<Person> getAllMembers(Site site, ListingContext listingContext)
     {
-        return searchMembers(site, null, listingContext);
+        if (isObjectNull(site)) { throw new IllegalArgumentException(
+                String.format(Messagesl18n.getString("ErrorCodeRegistry.GENERAL_INVALID_ARG_NULL"), "site")); }
+
+        List<Person> persons = new ArrayList<Person>();
+        boolean hasMoreItems = false;
+        int size = 0;
+        try
+        {
+            // The full membership list is requested once and paged from the
+            // snapshot.
+            String link = OnPremiseUrlRegistry.getSiteMembershipUrl(session, site.getIdentifier());
+            int skipCount = (listingContext != null && listingContext.getSkipCount() > 0) ? listingContext
+                    .getSkipCount() : 0;
+            int maxItems = (listingContext != null) ? listingContext.getMaxItems() : -1;
+
+            List<Object> members = readList(new UrlBuilder(link), ErrorCodeRegistry.SITE_GENERIC, pagingCache,
+                    skipCount == 0, MEMBER_CONVERTER);
+            size = members.size();
+            int fromIndex = Math.min(skipCount, size);
+            int toIndex = (maxItems < 0 || fromIndex + maxItems >= size) ? size : fromIndex + maxItems;
+            hasMoreItems = toIndex < size;
+
+            for (int i = fromIndex; i < toIndex; i++)
+            {
+                persons.add((Person) members.get(i));
+            }
+        }
+        catch (Exception e)
+        {
+            convertException(e);
+        }
+        return new PagingResultImpl<Person>(persons, hasMoreItems, size);
     }
 
     /** {@inheritDoc} */
@@ -611,34 +662,16 @@ public class OnPremiseSiteServiceImpl extends AbstractSiteServiceImpl
     // / INTERNAL
     // ////////////////////////////////////////////////////////////////////////////////////
     /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
     protected PagingResult<Site> computeSites(UrlBuilder url, ListingContext listingContext)
     {
-        Response resp = read(url, ErrorCodeRegistry.SITE_GENERIC);
-
-        List<Object> json = JsonUtils.parseArray(resp.getStream(), resp.getCharset());
-        int size = json.size();
-
-        List<Site> result = new ArrayList<Site>();
-        int fromIndex = 0, toIndex = size;
-        Boolean hasMoreItems = false;
-
-        // Define Listing Context
+        // The webscript returns all sites : the response is streamed once
+        // into a snapshot of Site objects and pages are served from it.
+        int skipCount = 0;
+        int maxItems = -1;
         if (listingContext != null)
         {
-            fromIndex = (listingContext.getSkipCount() > size) ? size : listingContext.getSkipCount();
-
-            // Case if skipCount > result size
-            if (listingContext.getMaxItems() + fromIndex >= size)
-            {
-                toIndex = size;
-                hasMoreItems = false;
-            }
-            else
-            {
-                toIndex = listingContext.getMaxItems() + fromIndex;
-                hasMoreItems = true;
-            }
+            skipCount = (listingContext.getSkipCount() < 0) ? 0 : listingContext.getSkipCount();
+            maxItems = listingContext.getMaxItems();
         }
         else
         {
@@ -646,24 +679,28 @@ public class OnPremiseSiteServiceImpl extends AbstractSiteServiceImpl
             listingContext.setSortProperty(SORT_PROPERTY_TITLE);
         }
 
-        String siteName = null;
-        Map<String, Object> mapProperties = null;
+        List<Object> sites = readList(url, ErrorCodeRegistry.SITE_GENERIC, pagingCache, skipCount == 0,
+                SITE_CONVERTER);
+        int size = sites.size();
+        int fromIndex = Math.min(skipCount, size);
+        int toIndex = (maxItems < 0 || fromIndex + maxItems >= size) ? size : fromIndex + maxItems;
+        Boolean hasMoreItems = toIndex < size;
+
+        List<Site> result = new ArrayList<Site>(toIndex - fromIndex);
+        Site site = null;
         CacheSiteExtraProperties extraProperties = null;
         for (int i = fromIndex; i < toIndex; i++)
         {
-            mapProperties = (Map<String, Object>) json.get(i);
-            if (mapProperties != null)
+            // Snapshot sites are shared between pages : extra properties are
+            // applied to a copy.
+            site = (Site) sites.get(i);
+            extraProperties = extraPropertiesCache.get(site.getShortName());
+            if (extraProperties != null)
             {
-                siteName = JSONConverter.getString(mapProperties, OnPremiseConstant.SHORTNAME_VALUE);
-                if (extraPropertiesCache.get(siteName) != null)
-                {
-                    extraProperties = extraPropertiesCache.get(siteName);
-                    mapProperties.put(OnPremiseConstant.ISPENDINGMEMBER_VALUE, extraProperties.isPendingMember);
-                    mapProperties.put(OnPremiseConstant.ISMEMBER_VALUE, extraProperties.isMember);
-                    mapProperties.put(OnPremiseConstant.ISFAVORITE_VALUE, extraProperties.isFavorite);
-                }
-                result.add(SiteImpl.parseJson((Map<String, Object>) json.get(i)));
+                site = new SiteImpl(site, extraProperties.isPendingMember, extraProperties.isMember,
+                        extraProperties.isFavorite);
             }
+            result.add(site);
         }
 
         if (listingContext != null)
@@ -32,6 +32,7 @@ import org.alfresco.mobile.android.api.model.impl.PagingResultImpl;
 import org.alfresco.mobile.android.api.model.impl.TagImpl;
 import org.alfresco.mobile.android.api.services.ServiceRegistry;
 import org.alfresco.mobile.android.api.services.TaggingService;
+import org.alfresco.mobile.android.api.services.cache.impl.PagingCache;
 import org.alfresco.mobile.android.api.services.impl.AlfrescoService;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.RepositorySession;
@@ -44,7 +45,6 @@ import org.apache.chemistry.opencmis.client.bindings.spi.http.Output;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
 import org.json.JSONArray;
-import org.json.JSONException;
 
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -158,6 +158,9 @@ public class OnPremiseTaggingServiceImpl extends AlfrescoService implements Tagg
                     formData.write(out);
                 }
             }, ErrorCodeRegistry.TAGGING_GENERIC);
+
+            // New tags may have been created.
+            pagingCache.clear();
         }
         catch (Exception e)
         {
@@ -165,31 +168,43 @@ public class OnPremiseTaggingServiceImpl extends AlfrescoService implements Tagg
         }
     }
 
+    // ////////////////////////////////////////////////////
+    // CACHING
+    // ////////////////////////////////////////////////////
+    /** Snapshots of the tag listings which are not paged by the server. */
+    private PagingCache pagingCache = new PagingCache();
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear()
+    {
+        pagingCache.clear();
+    }
+
     // ////////////////////////////////////////////////////////////////////////////////////
     // / INTERNAL
     // ////////////////////////////////////////////////////////////////////////////////////
-    private PagingResult<Tag> computeTag(UrlBuilder url, ListingContext listingContext) throws JSONException
+    private PagingResult<Tag> computeTag(UrlBuilder url, ListingContext listingContext)
     {
-        Response resp = read(url, ErrorCodeRegistry.TAGGING_GENERIC);
-
-        String resultsString = JsonUtils.convertStreamToString(resp.getStream());
+        // The webscript returns all tags : pages after the first one are
+        // served from the snapshot.
+        int skipCount = (listingContext != null && listingContext.getSkipCount() > 0) ? listingContext
+                .getSkipCount() : 0;
+        List<Object> results = readList(url, ErrorCodeRegistry.TAGGING_GENERIC, pagingCache, skipCount == 0);
         List<Tag> tags = new ArrayList<Tag>();
 
-        JSONArray results = new JSONArray(resultsString);
-
-        int fromIndex = 0, toIndex = results.length();
+        int fromIndex = 0, toIndex = results.size();
         Boolean hasMoreItems = false;
 
         // Define Listing Context
         if (listingContext != null)
         {
-            fromIndex = (listingContext.getSkipCount() > results.length()) ? results.length() : listingContext
-                    .getSkipCount();
+            fromIndex = (skipCount > results.size()) ? results.size() : skipCount;
 
             // Case if skipCount > result size
-            if (listingContext.getMaxItems() + fromIndex >= results.length())
+            if (listingContext.getMaxItems() + fromIndex >= results.size())
             {
-                toIndex = results.length();
+                toIndex = results.size();
                 hasMoreItems = false;
             }
             else
@@ -201,10 +216,10 @@ public class OnPremiseTaggingServiceImpl extends AlfrescoService implements Tagg
 
         for (int i = fromIndex; i < toIndex; i++)
         {
-            tags.add(new TagImpl(results.getString(i)));
+            tags.add(new TagImpl((String) results.get(i)));
         }
 
-        return new PagingResultImpl<Tag>(tags, hasMoreItems, results.length());
+        return new PagingResultImpl<Tag>(tags, hasMoreItems, results.size());
     }
 
     private PagingResult<Tag> computeSimpleTag(UrlBuilder url, ListingContext listingContext)
@@ -53,6 +53,8 @@ import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.impl.RepositorySessionImpl;
 import org.alfresco.mobile.android.api.utils.DateUtils;
 import org.alfresco.mobile.android.api.utils.JsonDataWriter;
+import org.alfresco.mobile.android.api.utils.JsonEntryHandler;
+import org.alfresco.mobile.android.api.utils.JsonStreamReader;
 import org.alfresco.mobile.android.api.utils.JsonUtils;
 import org.alfresco.mobile.android.api.utils.NodeRefUtils;
 import org.alfresco.mobile.android.api.utils.OnPremiseUrlRegistry;
@@ -102,7 +104,7 @@ public class OnPremiseWorkflowServiceImpl extends AbstractWorkflowService
 
             // send and parse
             Response resp = read(url, ErrorCodeRegistry.WORKFLOW_GENERIC);
-            json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+            json = parseObject(resp);
             if (json != null)
             {
                 List<Object> jo = (List<Object>) json.get(OnPremiseConstant.DATA_VALUE);
@@ -161,7 +163,7 @@ public class OnPremiseWorkflowServiceImpl extends AbstractWorkflowService
 
                 // send and parse
                 Response resp = read(url, ErrorCodeRegistry.WORKFLOW_GENERIC);
-                Map<String, Object> json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+                Map<String, Object> json = parseObject(resp);
                 if (json != null)
                 {
                     Map<String, Object> jo = (Map<String, Object>) json.get(OnPremiseConstant.DATA_VALUE);
@@ -643,11 +645,9 @@ public class OnPremiseWorkflowServiceImpl extends AbstractWorkflowService
     // TASKS
     // ////////////////////////////////////////////////////////////////
     /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
     private PagingResult<Task> getTasks(String link, ListingContext listingContext)
     {
-        List<Task> tasks = new ArrayList<Task>();
-        Map<String, Object> json = new HashMap<String, Object>(0);
+        final List<Task> tasks = new ArrayList<Task>();
         int maxItems = -1;
         int size = 0;
         boolean hasMoreItem = false;
@@ -773,28 +773,30 @@ public class OnPremiseWorkflowServiceImpl extends AbstractWorkflowService
 
             // send and parse
             Response resp = read(url, ErrorCodeRegistry.WORKFLOW_GENERIC);
-            json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
-            if (json != null)
+            // Tasks are available as "data" array or inside "data.tasks"
+            JsonStreamReader reader = new JsonStreamReader(resp.getStream(), resp.getCharset());
+            try
             {
-                List<Object> jo = null;
-                if (json.get(OnPremiseConstant.DATA_VALUE) instanceof List)
+                if (reader.moveTo(OnPremiseConstant.DATA_VALUE)
+                        && (reader.beginArray() || (reader.moveTo(OnPremiseConstant.TASKS_VALUE) && reader
+                                .beginArray())))
                 {
-                    jo = (List<Object>) json.get(OnPremiseConstant.DATA_VALUE);
-                }
-                else if (json.get(OnPremiseConstant.DATA_VALUE) instanceof Map)
-                {
-                    Map<String, Object> jso = (Map<String, Object>) json.get(OnPremiseConstant.DATA_VALUE);
-                    jo = (List<Object>) jso.get(OnPremiseConstant.TASKS_VALUE);
-                }
-
-                size = jo.size();
-                for (Object obj : jo)
-                {
-                    tasks.add(TaskImpl.parseJson((Map<String, Object>) obj));
+                    size = reader.readArray(0, -1, new JsonEntryHandler()
+                    {
+                        public boolean onEntry(int index, Map<String, Object> entry)
+                        {
+                            tasks.add(TaskImpl.parseJson(entry));
+                            return true;
+                        }
+                    });
                 }
-
-                hasMoreItem = (maxItems == -1) ? false : (size == maxItems);
             }
+            finally
+            {
+                reader.close();
+            }
+
+            hasMoreItem = (maxItems == -1) ? false : (size == maxItems);
         }
         catch (Exception e)
         {
@@ -31,6 +31,7 @@ import org.alfresco.mobile.android.api.model.impl.PagingResultImpl;
 import org.alfresco.mobile.android.api.services.impl.AbstractActivityStreamService;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.impl.RepositorySessionImpl;
+import org.alfresco.mobile.android.api.utils.JsonEntryHandler;
 import org.alfresco.mobile.android.api.utils.PublicAPIResponse;
 import org.alfresco.mobile.android.api.utils.PublicAPIUrlRegistry;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
@@ -107,20 +108,22 @@ public class PublicAPIActivityStreamServiceImpl extends AbstractActivityStreamSe
      * @param listingContext : listing context to apply to the paging result.
      * @return Paging Result of activity entry.
      */
-    @SuppressWarnings("unchecked")
     protected PagingResult<ActivityEntry> computeActivities(UrlBuilder url, ListingContext listingContext)
     {
         // read and parse
         Response resp = read(url, ErrorCodeRegistry.ACTIVITISTREAM_GENERIC);
-        PublicAPIResponse response = new PublicAPIResponse(resp);
 
-        List<ActivityEntry> result = new ArrayList<ActivityEntry>();
-        Map<String, Object> data = null;
-        for (Object entry : response.getEntries())
+        final List<ActivityEntry> result = new ArrayList<ActivityEntry>();
+        PublicAPIResponse response = new PublicAPIResponse(resp, new JsonEntryHandler()
         {
-            data = (Map<String, Object>) ((Map<String, Object>) entry).get(PublicAPIConstant.ENTRY_VALUE);
-            result.add(ActivityEntryImpl.parsePublicAPIJson(data));
-        }
+            @SuppressWarnings("unchecked")
+            public boolean onEntry(int index, Map<String, Object> entry)
+            {
+                result.add(ActivityEntryImpl.parsePublicAPIJson((Map<String, Object>) entry
+                        .get(PublicAPIConstant.ENTRY_VALUE)));
+                return true;
+            }
+        });
 
         return new PagingResultImpl<ActivityEntry>(result, response.getHasMoreItems(), response.getSize());
     }
@@ -44,8 +44,6 @@ import org.alfresco.mobile.android.api.utils.PublicAPIUrlRegistry;
 import org.alfresco.mobile.android.api.utils.messages.Messagesl18n;
 import org.apache.chemistry.opencmis.client.api.CmisObject;
 import org.apache.chemistry.opencmis.client.api.Session;
-import org.apache.chemistry.opencmis.client.bindings.spi.atompub.AbstractAtomPubService;
-import org.apache.chemistry.opencmis.client.bindings.spi.atompub.AtomPubParser;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
 import org.apache.http.HttpStatus;
@@ -85,9 +83,8 @@ public class PublicAPIPersonServiceImpl extends AbstractPersonService
         if (person.getAvatarIdentifier() == null) { return null; }
         Session cmisSession = ((AbstractAlfrescoSessionImpl) session).getCmisSession();
         CmisObject obj = cmisSession.getObject(person.getAvatarIdentifier());
-        String url = ((AbstractAtomPubService) cmisSession.getBinding().getObjectService()).loadLink(session
-                .getRepositoryInfo().getIdentifier(), obj.getId(), AtomPubParser.LINK_REL_CONTENT,
-                null);
+        String url = ((AbstractDocumentFolderServiceImpl) session.getServiceRegistry().getDocumentFolderService())
+                .getContentUrl(obj.getId());
         Log.d("Avatar URL", url);
         return new UrlBuilder(url);
     }
@@ -181,7 +178,7 @@ public class PublicAPIPersonServiceImpl extends AbstractPersonService
     /** {@inheritDoc} */
     protected Person computePerson(UrlBuilder url)
     {
-        Response resp = getHttpInvoker().invokeGET(url, getSessionHttp());
+        Response resp = get(url);
 
         // check response code
         if (resp.getResponseCode() == HttpStatus.SC_INTERNAL_SERVER_ERROR
@@ -193,7 +190,7 @@ public class PublicAPIPersonServiceImpl extends AbstractPersonService
         // convertStatusCode(resp, ErrorCodeRegistry.PERSON_GENERIC);
         }
 
-        Map<String, Object> json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+        Map<String, Object> json = parseObject(resp);
         Map<String, Object> data = (Map<String, Object>) ((Map<String, Object>) json)
                 .get(PublicAPIConstant.ENTRY_VALUE);
         return PersonImpl.parsePublicAPIJson(data);
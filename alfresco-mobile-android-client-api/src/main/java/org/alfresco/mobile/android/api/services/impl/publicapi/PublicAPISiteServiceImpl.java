@@ -42,6 +42,7 @@ import org.alfresco.mobile.android.api.services.impl.AbstractSiteServiceImpl;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.impl.RepositorySessionImpl;
 import org.alfresco.mobile.android.api.utils.JsonDataWriter;
+import org.alfresco.mobile.android.api.utils.JsonEntryHandler;
 import org.alfresco.mobile.android.api.utils.JsonUtils;
 import org.alfresco.mobile.android.api.utils.PublicAPIResponse;
 import org.alfresco.mobile.android.api.utils.PublicAPIUrlRegistry;
@@ -255,13 +256,13 @@ public class PublicAPISiteServiceImpl extends AbstractSiteServiceImpl
             final JsonDataWriter formDataM = new JsonDataWriter(jo);
 
             // send and parse
-            resp = getHttpInvoker().invokePOST(url, formDataM.getContentType(), new Output()
+            resp = readResponse(getHttpInvoker().invokePOST(url, formDataM.getContentType(), new Output()
             {
                 public void write(OutputStream out) throws IOException
                 {
                     formDataM.write(out);
                 }
-            }, getSessionHttp());
+            }, getSessionHttp()));
 
             switch (site.getVisibility())
             {
@@ -398,34 +399,34 @@ public class PublicAPISiteServiceImpl extends AbstractSiteServiceImpl
     // ////////////////////////////////////////////////////////////////////////////////////
     // / INTERNAL
     // ////////////////////////////////////////////////////////////////////////////////////
-    @SuppressWarnings("unchecked")
-    protected PagingResult<Site> computeSites(UrlBuilder url, boolean isAllSite)
+    protected PagingResult<Site> computeSites(UrlBuilder url, final boolean isAllSite)
     {
 
         Response resp = read(url, ErrorCodeRegistry.SITE_GENERIC);
-        PublicAPIResponse response = new PublicAPIResponse(resp);
 
-        List<Site> result = new ArrayList<Site>();
-        Map<String, Object> data = null;
-        CacheSiteExtraProperties extraProperties = null;
-        String siteName = null;
-        for (Object entry : response.getEntries())
+        final List<Site> result = new ArrayList<Site>();
+        PublicAPIResponse response = new PublicAPIResponse(resp, new JsonEntryHandler()
         {
-            data = (Map<String, Object>) ((Map<String, Object>) entry).get(PublicAPIConstant.ENTRY_VALUE);
-            if (!isAllSite)
-            {
-                data = (Map<String, Object>) data.get(PublicAPIConstant.SITE_VALUE);
-            }
-            siteName = JSONConverter.getString(data, PublicAPIConstant.ID_VALUE);
-            if (extraPropertiesCache.get(siteName) != null)
+            @SuppressWarnings("unchecked")
+            public boolean onEntry(int index, Map<String, Object> entry)
             {
-                extraProperties = extraPropertiesCache.get(siteName);
-                data.put(PublicAPIConstant.ISPENDINGMEMBER_VALUE, extraProperties.isPendingMember);
-                data.put(PublicAPIConstant.ISMEMBER_VALUE, extraProperties.isMember);
-                data.put(PublicAPIConstant.ISFAVORITE_VALUE, extraProperties.isFavorite);
+                Map<String, Object> data = (Map<String, Object>) entry.get(PublicAPIConstant.ENTRY_VALUE);
+                if (!isAllSite)
+                {
+                    data = (Map<String, Object>) data.get(PublicAPIConstant.SITE_VALUE);
+                }
+                String siteName = JSONConverter.getString(data, PublicAPIConstant.ID_VALUE);
+                CacheSiteExtraProperties extraProperties = extraPropertiesCache.get(siteName);
+                if (extraProperties != null)
+                {
+                    data.put(PublicAPIConstant.ISPENDINGMEMBER_VALUE, extraProperties.isPendingMember);
+                    data.put(PublicAPIConstant.ISMEMBER_VALUE, extraProperties.isMember);
+                    data.put(PublicAPIConstant.ISFAVORITE_VALUE, extraProperties.isFavorite);
+                }
+                result.add(SiteImpl.parsePublicAPIJson(data));
+                return true;
             }
-            result.add(SiteImpl.parsePublicAPIJson(data));
-        }
+        });
         return new PagingResultImpl<Site>(result, response.getHasMoreItems(), response.getSize());
     }
 
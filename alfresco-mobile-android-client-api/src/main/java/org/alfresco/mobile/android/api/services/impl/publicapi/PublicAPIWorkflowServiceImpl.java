@@ -60,6 +60,7 @@ import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.impl.RepositorySessionImpl;
 import org.alfresco.mobile.android.api.utils.DateUtils;
 import org.alfresco.mobile.android.api.utils.JsonDataWriter;
+import org.alfresco.mobile.android.api.utils.JsonEntryHandler;
 import org.alfresco.mobile.android.api.utils.JsonUtils;
 import org.alfresco.mobile.android.api.utils.NodeRefUtils;
 import org.alfresco.mobile.android.api.utils.PublicAPIResponse;
@@ -149,7 +150,7 @@ public class PublicAPIWorkflowServiceImpl extends AbstractWorkflowService
             UrlBuilder url = new UrlBuilder(link);
 
             Response resp = read(url, ErrorCodeRegistry.WORKFLOW_GENERIC);
-            Map<String, Object> json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+            Map<String, Object> json = parseObject(resp);
             Map<String, Object> data = (Map<String, Object>) ((Map<String, Object>) json)
                     .get(PublicAPIConstant.ENTRY_VALUE);
             definition = ProcessDefinitionImpl.parsePublicAPIJson(data);
@@ -329,7 +330,6 @@ public class PublicAPIWorkflowServiceImpl extends AbstractWorkflowService
     }
 
     /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
     public PagingResult<Task> getTasks(Process process, ListingContext listingContext)
     {
         List<Task> tasks = new ArrayList<Task>();
@@ -363,14 +363,7 @@ public class PublicAPIWorkflowServiceImpl extends AbstractWorkflowService
 
             // send and parse
             Response resp = read(url, ErrorCodeRegistry.WORKFLOW_GENERIC);
-            response = new PublicAPIResponse(resp);
-
-            Map<String, Object> data = null;
-            for (Object entry : response.getEntries())
-            {
-                data = (Map<String, Object>) ((Map<String, Object>) entry).get(PublicAPIConstant.ENTRY_VALUE);
-                tasks.add(TaskImpl.parsePublicAPIJson(data));
-            }
+            response = new PublicAPIResponse(resp, new TaskEntryHandler(tasks));
         }
         catch (Exception e)
         {
@@ -524,7 +517,6 @@ public class PublicAPIWorkflowServiceImpl extends AbstractWorkflowService
     // TASKS
     // ////////////////////////////////////////////////////////////////
     /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
     public PagingResult<Task> getTasks(ListingContext listingContext)
     {
         List<Task> tasks = new ArrayList<Task>();
@@ -553,14 +545,7 @@ public class PublicAPIWorkflowServiceImpl extends AbstractWorkflowService
 
             // send and parse
             Response resp = read(url, ErrorCodeRegistry.WORKFLOW_GENERIC);
-            response = new PublicAPIResponse(resp);
-
-            Map<String, Object> data = null;
-            for (Object entry : response.getEntries())
-            {
-                data = (Map<String, Object>) ((Map<String, Object>) entry).get(PublicAPIConstant.ENTRY_VALUE);
-                tasks.add(TaskImpl.parsePublicAPIJson(data));
-            }
+            response = new PublicAPIResponse(resp, new TaskEntryHandler(tasks));
         }
         catch (Exception e)
         {
@@ -1295,6 +1280,27 @@ public class PublicAPIWorkflowServiceImpl extends AbstractWorkflowService
         return (totalItems == -1) ? hasMoreItems : (skipCount >= totalItems) ? false : hasMoreItems;
     }
 
+    /**
+     * Converts each task entry of a Public API list while the response is
+     * read.
+     */
+    private static class TaskEntryHandler implements JsonEntryHandler
+    {
+        private final List<Task> tasks;
+
+        TaskEntryHandler(List<Task> tasks)
+        {
+            this.tasks = tasks;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean onEntry(int index, Map<String, Object> entry)
+        {
+            tasks.add(TaskImpl.parsePublicAPIJson((Map<String, Object>) entry.get(PublicAPIConstant.ENTRY_VALUE)));
+            return true;
+        }
+    }
+
     // ////////////////////////////////////////////////////
     // Save State - serialization / deserialization
     // ////////////////////////////////////////////////////
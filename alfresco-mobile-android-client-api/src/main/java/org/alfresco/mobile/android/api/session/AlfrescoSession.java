@@ -40,14 +40,17 @@ public interface AlfrescoSession extends Parcelable
     // HTTP REQUEST
     // ///////////////////////////////////////////////
     /**
-     * Define the HTTP Header "Accept-Encoding" for all requests.<br/>
+     * Define the HTTP Header "Accept-Encoding" for all requests except binary
+     * contents (content streams, renditions, avatars) which are always
+     * requested without encoding.<br/>
      * Values can be
      * <ul>
-     * <li>true (as string value) : gzip,deflate</li>
+     * <li>true (as string value) : gzip,deflate (default value)</li>
      * <li>false (as string value) : empty value</li>
      * <li>any string value : replace the default value.</li>
      * </ul>
-     * <b>This parameter can't be changed after the session creation</b>.
+     * Compressed responses are inflated while they are read. <b>This parameter
+     * can't be changed after the session creation</b>.
      * 
      * @since 1.3
      */
@@ -72,6 +75,80 @@ public interface AlfrescoSession extends Parcelable
      */
     String HTTP_CHUNK_TRANSFERT = "org.alfresco.mobile.http.transfert.chunk";
 
+    /**
+     * Used by the PooledNetworkHttpInvoker to define the maximum number of
+     * concurrent requests per host (see
+     * {@link org.alfresco.mobile.android.api.network.RouteLimiter}).<br/>
+     * Value must be a String representing an Integer > 0. Default : 5 <b>This
+     * parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    String HTTP_POOL_MAX_PER_ROUTE = "org.alfresco.mobile.http.pool.maxperroute";
+
+    /**
+     * Used by the PooledNetworkHttpInvoker to define the time (in ms) after
+     * which an unused host is forgotten by the
+     * {@link org.alfresco.mobile.android.api.network.RouteLimiter}.<br/>
+     * Value must be a String representing an Integer > 0. Default : 30000
+     * <b>This parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    String HTTP_POOL_IDLE_TIMEOUT = "org.alfresco.mobile.http.pool.idletimeout";
+
+    /**
+     * Used by the NetworkHttpInvoker to merge identical concurrent GET
+     * requests (same URL and same user) into a single request (see
+     * {@link org.alfresco.mobile.android.api.network.RequestCoalescer}).<br/>
+     * Value must be a String representing a Boolean. Default : true <b>This
+     * parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    String HTTP_COALESCING = "org.alfresco.mobile.http.coalescing";
+
+    /**
+     * Maximum number of retries of an idempotent request (GET, range read)
+     * which fails because of a network error or a 502 / 503 / 504 response
+     * (see {@link org.alfresco.mobile.android.api.network.RetryPolicy}). 0
+     * disables retries.<br/>
+     * Value must be a String representing an Integer. Default : 2 <b>This
+     * parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    String HTTP_RETRY_MAX = "org.alfresco.mobile.http.retry.max";
+
+    /**
+     * Used by the NetworkHttpInvoker to send a second copy of an idempotent
+     * request when the first one is slower than the 95th percentile of its
+     * endpoint. The first response is used (see
+     * {@link org.alfresco.mobile.android.api.network.RetryPolicy}).<br/>
+     * Value must be a String representing a Boolean. Default : false <b>This
+     * parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    String HTTP_HEDGING = "org.alfresco.mobile.http.hedging";
+
+    // ///////////////////////////////////////////////
+    // BINDING
+    // ///////////////////////////////////////////////
+    /**
+     * Define if the session uses the CMIS 1.1 browser binding (JSON) when the
+     * server provides it. Responses of the browser binding are smaller and
+     * faster to parse than AtomPub responses. If the browser binding is not
+     * available, the session automatically falls back to the AtomPub binding.
+     * <br/>
+     * Value must be a Boolean.<br/>
+     * Default : false<br/>
+     * <b>This parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    String CMIS_BROWSER_BINDING = "org.alfresco.mobile.binding.browser";
+
     // ///////////////////////////////////////////////
     // EXTENSION
     // ///////////////////////////////////////////////
@@ -133,6 +210,20 @@ public interface AlfrescoSession extends Parcelable
      */
     String LISTING_MAX_ITEMS = "org.alfresco.mobile.api.listing.maxitems";
 
+    /**
+     * Enable the listing cache of the DocumentFolderService (getChildren,
+     * getFolders, getDocuments). A page already retrieved is returned
+     * immediately from memory and refreshed in background. If the fresh page
+     * differs, the
+     * {@link org.alfresco.mobile.android.api.services.ListingRefreshListener
+     * ListingRefreshListener} of the service is notified.<br/>
+     * Value must be a Boolean. <br/>
+     * Default : false
+     * 
+     * @since 1.4
+     */
+    String LISTING_CACHE = "org.alfresco.mobile.api.listing.cache";
+
     // ///////////////////////////////////////////////
     // CACHE
     // ///////////////////////////////////////////////
@@ -145,6 +236,86 @@ public interface AlfrescoSession extends Parcelable
      */
     String CACHE_FOLDER = "org.alfresco.mobile.cache.folder";
 
+    /**
+     * Define the disk budget of the rendition cache (thumbnails, previews,
+     * avatars). Once the budget is exceeded, the least recently used
+     * renditions are deleted. The budget is applied when the cache is created
+     * : sessions sharing the same cache folder share the same budget.<br/>
+     * Value must be a number (Long, Integer...) that represents a size in
+     * bytes.<br/>
+     * Default : 20971520 (20 MB)
+     * 
+     * @since 1.4
+     */
+    String RENDITION_CACHE_SIZE = "org.alfresco.mobile.cache.rendition.size";
+
+    /**
+     * Define the maximum number of renditions downloaded at the same time by
+     * {@link org.alfresco.mobile.android.api.services.DocumentFolderService#getRenditions(java.util.List, String)
+     * getRenditions}. Should not exceed {@link #HTTP_POOL_MAX_PER_ROUTE}.<br/>
+     * Value must be a number (Integer, Long...) > 0.<br/>
+     * Default : 4
+     * 
+     * @since 1.4
+     */
+    String RENDITION_FETCH_THREADS = "org.alfresco.mobile.cache.rendition.threads";
+
+    /**
+     * Define the disk budget of the HTTP response cache used by REST requests.
+     * Responses with a validator (ETag or Last-Modified header) are stored and
+     * revalidated with conditional requests : unchanged responses are neither
+     * downloaded nor parsed again.<br/>
+     * Value must be a number (Long, Integer...) that represents a size in
+     * bytes. 0 disables the cache.<br/>
+     * Default : 5242880 (5 MB)
+     * 
+     * @since 1.4
+     */
+    String HTTP_CACHE_SIZE = "org.alfresco.mobile.cache.http.size";
+
+    /**
+     * Define the content size above which
+     * {@link org.alfresco.mobile.android.api.services.DocumentFolderService#getContent(org.alfresco.mobile.android.api.model.Document)
+     * getContent} downloads the content in several byte ranges fetched
+     * concurrently (see {@link #CONTENT_SEGMENT_COUNT}). If the server doesn't
+     * support ranges, the content is downloaded as a single stream.<br/>
+     * Value must be a number (Long, Integer...) that represents a size in
+     * bytes. 0 disables segmented downloads.<br/>
+     * Default : 4194304 (4 MB)
+     * 
+     * @since 1.4
+     */
+    String CONTENT_SEGMENT_THRESHOLD = "org.alfresco.mobile.cache.content.segment.threshold";
+
+    /**
+     * Define the number of byte ranges fetched concurrently by a segmented
+     * download (see {@link #CONTENT_SEGMENT_THRESHOLD}). Should not exceed
+     * {@link #HTTP_POOL_MAX_PER_ROUTE}.<br/>
+     * Value must be a number (Integer, Long...) between 1 and 8.<br/>
+     * Default : 4
+     * 
+     * @since 1.4
+     */
+    String CONTENT_SEGMENT_COUNT = "org.alfresco.mobile.cache.content.segment.count";
+
+    /**
+     * Define the chunk size of resumable uploads. If the repository supports
+     * CMIS 1.1, contents larger than this value are uploaded by
+     * {@link org.alfresco.mobile.android.api.services.DocumentFolderService#createDocument(org.alfresco.mobile.android.api.model.Folder, String, java.util.Map, org.alfresco.mobile.android.api.model.ContentFile)
+     * createDocument} and
+     * {@link org.alfresco.mobile.android.api.services.DocumentFolderService#updateContent(org.alfresco.mobile.android.api.model.Document, org.alfresco.mobile.android.api.model.ContentFile)
+     * updateContent} in several requests (appendContentStream). If an upload
+     * fails, the next upload of the same file only sends the chunks not
+     * committed yet.<br/>
+     * Value must be a number (Integer, Long...) that represents a size in
+     * bytes. 0 disables resumable uploads. The chunk is streamed from the file
+     * : its size doesn't change the memory used by the upload.<br/>
+     * Default : 0
+     * 
+     * @since 1.4
+     */
+    String UPLOAD_CHUNK_SIZE = "org.alfresco.mobile.upload.chunk.size";
+
     // ///////////////////////////////////////////////
     // METHODS
     // ///////////////////////////////////////////////
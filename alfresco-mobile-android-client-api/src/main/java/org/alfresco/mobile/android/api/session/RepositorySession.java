@@ -42,6 +42,20 @@ public abstract class RepositorySession extends AbstractAlfrescoSessionImpl
      */
     public static final String REPOSITORY_ID = "org.alfresco.mobile.binding.repository.id";
 
+    /**
+     * Define how the session discovers the binding URL of the repository. If
+     * true, candidate bindings are requested concurrently (the preferred one
+     * gets a short head start) and the edition lookup is done while the root
+     * folder is retrieved. Rejected credentials stop the probing at once.<br/>
+     * If false, bindings are requested one after another.<br/>
+     * Value must be a Boolean.<br/>
+     * Default : true<br/>
+     * <b>This parameter can't be changed after the session creation</b>.
+     * 
+     * @since 1.4
+     */
+    public static final String PARALLEL_BOOTSTRAP = "org.alfresco.mobile.binding.bootstrap.parallel";
+
     /**
      * Creates and authenticates a session represented by the URL using the
      * given user identifier and password. This method will use Basic HTTP
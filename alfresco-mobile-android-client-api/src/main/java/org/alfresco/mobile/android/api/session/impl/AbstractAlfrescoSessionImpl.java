@@ -17,6 +17,7 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.api.session.impl;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
@@ -47,7 +48,13 @@ import org.apache.chemistry.opencmis.client.api.SessionFactory;
 import org.apache.chemistry.opencmis.client.runtime.SessionFactoryImpl;
 import org.apache.chemistry.opencmis.commons.SessionParameter;
 import org.apache.chemistry.opencmis.commons.enums.BindingType;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisPermissionDeniedException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisRuntimeException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisUnauthorizedException;
 
 import android.os.Parcelable;
 
@@ -314,7 +321,10 @@ public abstract class AbstractAlfrescoSessionImpl implements AlfrescoSession, Pa
         sessionParameters.put(SessionParameter.BINDING_TYPE, BindingType.ATOMPUB.value());
         
         // connection settings
-        addParameterIfExist(BINDING_URL, SessionParameter.ATOMPUB_URL);
+        if (hasParameter(BINDING_URL))
+        {
+            setBindingUrl(sessionParameters, (String) getParameter(BINDING_URL));
+        }
         addParameterIfExist(BASE_URL, BASE_URL);
         addParameterIfExist(RepositorySession.REPOSITORY_ID, SessionParameter.REPOSITORY_ID);
         addParameterIfExist(SessionParameter.CONNECT_TIMEOUT, SessionParameter.CONNECT_TIMEOUT);
@@ -328,6 +338,11 @@ public abstract class AbstractAlfrescoSessionImpl implements AlfrescoSession, Pa
         addParameterIfExist(HTTP_ACCEPT_ENCODING, HTTP_ACCEPT_ENCODING);
         addParameterIfExist(HTTP_ACCEPT_LANGUAGE, HTTP_ACCEPT_LANGUAGE);
         addParameterIfExist(HTTP_CHUNK_TRANSFERT, HTTP_CHUNK_TRANSFERT);
+        addParameterIfExist(HTTP_POOL_MAX_PER_ROUTE, HTTP_POOL_MAX_PER_ROUTE);
+        addParameterIfExist(HTTP_POOL_IDLE_TIMEOUT, HTTP_POOL_IDLE_TIMEOUT);
+        addParameterIfExist(HTTP_COALESCING, HTTP_COALESCING);
+        addParameterIfExist(HTTP_RETRY_MAX, HTTP_RETRY_MAX);
+        addParameterIfExist(HTTP_HEDGING, HTTP_HEDGING);
         addParameterIfExist(ONPREMISE_TRUSTMANAGER_CLASSNAME, ONPREMISE_TRUSTMANAGER_CLASSNAME);
         addParameterIfExist(HTTP_INVOKER_CLASSNAME, SessionParameter.HTTP_INVOKER_CLASS);
         
@@ -373,12 +388,21 @@ public abstract class AbstractAlfrescoSessionImpl implements AlfrescoSession, Pa
             this.baseUrl = tmpBindingUrl.replace(PublicAPIUrlRegistry.BINDING_NETWORK_CMISATOM, "");
             sessionParameters.put(BASE_URL, tmpBindingUrl.replace(PublicAPIUrlRegistry.BINDING_NETWORK_CMISATOM, ""));
         }
+        // Force binding with Public API implementation (CMIS 1.1 browser)
+        else if (tmpBindingUrl != null && tmpBindingUrl.endsWith(PublicAPIUrlRegistry.BINDING_NETWORK_CMISBROWSER))
+        {
+            forceBinding = true;
+            hasPublicAPI = true;
+            this.baseUrl = tmpBindingUrl.replace(PublicAPIUrlRegistry.BINDING_NETWORK_CMISBROWSER, "");
+            sessionParameters.put(BASE_URL,
+                    tmpBindingUrl.replace(PublicAPIUrlRegistry.BINDING_NETWORK_CMISBROWSER, ""));
+        }
         // Binding Automatic : Default Public API
-        else if (tmpBindingUrl != null && !sessionParameters.containsKey(SessionParameter.ATOMPUB_URL))
+        else if (tmpBindingUrl != null && getBindingUrl(sessionParameters) == null)
         {
             tmpBindingUrl = tmpBindingUrl.concat(PublicAPIUrlRegistry.BINDING_NETWORK_CMISATOM);
         }
-        sessionParameters.put(SessionParameter.ATOMPUB_URL, tmpBindingUrl);
+        setBindingUrl(sessionParameters, tmpBindingUrl);
 
         // Object Factory
         sessionParameters.put(SessionParameter.OBJECT_FACTORY_CLASS,
@@ -392,10 +416,12 @@ public abstract class AbstractAlfrescoSessionImpl implements AlfrescoSession, Pa
 
         if (!sessionParameters.containsKey(BINDING_URL))
         {
-            sessionParameters.put(
-                    SessionParameter.ATOMPUB_URL,
-                    ((String) getParameter(BASE_URL)).concat(CloudUrlRegistry.BINDING_NETWORK_CMISATOM).replace(
-                            CloudUrlRegistry.VARIABLE_NETWORKID, (String) getParameter(CloudSession.CLOUD_NETWORK_ID)));
+            String binding = isBrowserBindingEnabled() ? CloudUrlRegistry.BINDING_NETWORK_CMISBROWSER
+                    : CloudUrlRegistry.BINDING_NETWORK_CMISATOM;
+            setBindingUrl(
+                    sessionParameters,
+                    ((String) getParameter(BASE_URL)).concat(binding).replace(CloudUrlRegistry.VARIABLE_NETWORKID,
+                            (String) getParameter(CloudSession.CLOUD_NETWORK_ID)));
         }
 
         // Object Factory
@@ -467,9 +493,122 @@ public abstract class AbstractAlfrescoSessionImpl implements AlfrescoSession, Pa
         }
     }
 
+    /**
+     * @return true if the session must try the CMIS 1.1 browser binding.
+     */
+    protected boolean isBrowserBindingEnabled()
+    {
+        return hasParameter(CMIS_BROWSER_BINDING) && (Boolean) getParameter(CMIS_BROWSER_BINDING);
+    }
+
+    /**
+     * Defines the binding URL of the CMIS session. The binding type is deduced
+     * from the URL : browser binding for a CMIS 1.1 browser endpoint, AtomPub
+     * otherwise.
+     * 
+     * @param param : CMIS session parameters.
+     * @param bindingUrl : URL of the binding.
+     */
+    protected static void setBindingUrl(Map<String, String> param, String bindingUrl)
+    {
+        if (isBrowserBinding(bindingUrl))
+        {
+            param.remove(SessionParameter.ATOMPUB_URL);
+            param.put(SessionParameter.BINDING_TYPE, BindingType.BROWSER.value());
+            param.put(SessionParameter.BROWSER_URL, bindingUrl);
+            param.put(SessionParameter.BROWSER_SUCCINCT, Boolean.TRUE.toString());
+        }
+        else
+        {
+            param.remove(SessionParameter.BROWSER_URL);
+            param.remove(SessionParameter.BROWSER_SUCCINCT);
+            param.put(SessionParameter.BINDING_TYPE, BindingType.ATOMPUB.value());
+            param.put(SessionParameter.ATOMPUB_URL, bindingUrl);
+        }
+    }
+
+    /**
+     * @param param : CMIS session parameters.
+     * @return the binding URL of the CMIS session (AtomPub or browser).
+     */
+    protected static String getBindingUrl(Map<String, String> param)
+    {
+        if (BindingType.BROWSER.value().equals(param.get(SessionParameter.BINDING_TYPE))) { return param
+                .get(SessionParameter.BROWSER_URL); }
+        return param.get(SessionParameter.ATOMPUB_URL);
+    }
+
+    /**
+     * @return true if the URL is a CMIS 1.1 browser binding endpoint.
+     */
+    protected static boolean isBrowserBinding(String bindingUrl)
+    {
+        return bindingUrl != null && bindingUrl.endsWith(BINDING_BROWSER_SUFFIX);
+    }
+
+    /**
+     * @return true if the session creation failed because of the user
+     *         credentials.
+     */
+    protected static boolean isUnauthorized(Exception err)
+    {
+        return err.getCause() instanceof CmisUnauthorizedException;
+    }
+
+    /**
+     * @return true if the server rejected the credentials or the access (401,
+     *         403) : any other request would be rejected the same way.
+     */
+    protected static boolean isRejected(Exception err)
+    {
+        for (Throwable cause = err; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof CmisUnauthorizedException
+                    || cause instanceof CmisPermissionDeniedException) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the session creation failed because of a transient
+     *         failure (network error, server error 5xx) : the same request may
+     *         succeed later.
+     */
+    protected static boolean isTransient(Exception err)
+    {
+        for (Throwable cause = err; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof CmisConnectionException || cause instanceof IOException
+                    || cause instanceof CmisRuntimeException) { return true; }
+            if (cause instanceof CmisBaseException) { return false; }
+        }
+        return false;
+    }
+
+    /**
+     * A session created with discovered informations (binding, repository
+     * identifier) is created again with a full discovery only if the
+     * informations are outdated (unknown repository) or if the failure is
+     * transient. Other failures (credentials...) are thrown.
+     * 
+     * @return true if a full discovery can be tried.
+     */
+    protected static boolean canRediscover(Exception err)
+    {
+        if (isRejected(err)) { return false; }
+        for (Throwable cause = err; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof CmisObjectNotFoundException
+                    || cause instanceof CmisInvalidArgumentException) { return true; }
+        }
+        return isTransient(err);
+    }
+
     // ///////////////////////////////////////////////
     // BINDINGS
     // ///////////////////////////////////////////////
+    private static final String BINDING_BROWSER_SUFFIX = "/browser";
+
     /**
      * Define the specific binding type associated with which we want to create
      * the session.
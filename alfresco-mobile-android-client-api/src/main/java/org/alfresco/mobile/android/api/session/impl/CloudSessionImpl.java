@@ -51,6 +51,7 @@ import org.alfresco.mobile.android.api.utils.messages.Messagesl18n;
 import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
 import org.apache.chemistry.opencmis.client.runtime.SessionFactoryImpl;
+import org.apache.chemistry.opencmis.commons.SessionParameter;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
 import org.apache.http.HttpStatus;
 
@@ -186,7 +187,49 @@ public class CloudSessionImpl extends CloudSession
             Map<String, String> param = retrieveSessionParameters();
 
             // Create CMIS Session with selected network + parameters
-            cmisSession = createSession(SessionFactoryImpl.newInstance(), authenticator, param);
+            // The repository identifier discovered by a previous session
+            // avoids the repositories listing.
+            DiscoveryCache discoveryCache = new DiscoveryCache((String) getParameter(CACHE_FOLDER));
+            String discoveryKey = baseUrl + "/" + currentNetwork.getIdentifier();
+            DiscoveryCache.Entry discovery = discoveryCache.get(discoveryKey);
+            if (discovery != null && discovery.getBindingUrl().equals(getBindingUrl(param)))
+            {
+                param.put(SessionParameter.REPOSITORY_ID, discovery.getRepositoryId());
+                try
+                {
+                    cmisSession = createSession(SessionFactoryImpl.newInstance(), authenticator, param);
+                }
+                catch (AlfrescoSessionException e)
+                {
+                    // Credentials or server errors won't be fixed by a full
+                    // discovery.
+                    if (!canRediscover(e)) { throw e; }
+                    discoveryCache.remove(discoveryKey);
+                    discovery = null;
+                    param.remove(SessionParameter.REPOSITORY_ID);
+                }
+            }
+            if (cmisSession == null && isBrowserBinding(getBindingUrl(param)))
+            {
+                try
+                {
+                    cmisSession = createSession(SessionFactoryImpl.newInstance(), authenticator, param);
+                }
+                catch (AlfrescoSessionException e)
+                {
+                    if (isRejected(e)) { throw e; }
+
+                    // CMIS 1.1 browser binding not available : AtomPub
+                    setBindingUrl(param, getBindingUrl(param).replace(CloudUrlRegistry.BINDING_NETWORK_CMISBROWSER
+                            .replace(CloudUrlRegistry.VARIABLE_NETWORKID, currentNetwork.getIdentifier()),
+                            CloudUrlRegistry.BINDING_NETWORK_CMISATOM.replace(CloudUrlRegistry.VARIABLE_NETWORKID,
+                                    currentNetwork.getIdentifier())));
+                }
+            }
+            if (cmisSession == null)
+            {
+                cmisSession = createSession(SessionFactoryImpl.newInstance(), authenticator, param);
+            }
 
             // Init Services + Object
             try
@@ -202,7 +245,16 @@ public class CloudSessionImpl extends CloudSession
                 Log.e(TAG, Log.getStackTraceString(e));
             }
 
-            repositoryInfo = new CloudRepositoryInfoImpl(cmisSession.getRepositoryInfo());
+            if (discovery != null && discovery.isValid(cmisSession.getRepositoryInfo()))
+            {
+                repositoryInfo = discovery.getRepositoryInfo();
+            }
+            else
+            {
+                repositoryInfo = new CloudRepositoryInfoImpl(cmisSession.getRepositoryInfo());
+                discoveryCache.put(discoveryKey, new DiscoveryCache.Entry(getBindingUrl(param),
+                        cmisSession.getRepositoryInfo(), true, repositoryInfo));
+            }
 
             create();
         }
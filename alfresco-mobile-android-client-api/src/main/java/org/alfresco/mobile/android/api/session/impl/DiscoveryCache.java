@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.session.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.alfresco.mobile.android.api.model.RepositoryInfo;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+
+/**
+ * Small on-disk cache of informations discovered during the session creation :
+ * binding URL which answered, repository identifier, repository informations
+ * (edition, capabilities...) and availability of the public API. <br/>
+ * With these informations a new session against the same server goes straight
+ * to the CMIS session creation with the repository identifier (no binding
+ * probing, no repositories listing, no edition lookup). <br/>
+ * Each server has its own file under the session cache folder. An entry is
+ * ignored once its time to live has expired and must be dropped by the session
+ * if the repository doesn't match anymore (for example after an upgrade, see
+ * {@link Entry#isValid(org.apache.chemistry.opencmis.commons.data.RepositoryInfo)}
+ * ). The cache is only an optimisation : all errors are ignored.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+class DiscoveryCache
+{
+    /** Default time to live of an entry : 1 day. */
+    static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L;
+
+    private static final String FOLDER_NAME = "discovery";
+
+    private static final String FILE_EXTENSION = ".ser";
+
+    /** Lock shared by all sessions : files can be used by several threads. */
+    private static final Object LOCK = new Object();
+
+    private final File folder;
+
+    private final long ttl;
+
+    /**
+     * @param cacheFolder : path to the session cache folder. If null, nothing
+     *            is stored.
+     */
+    DiscoveryCache(String cacheFolder)
+    {
+        this(cacheFolder, DEFAULT_TTL);
+    }
+
+    /**
+     * @param cacheFolder : path to the session cache folder. If null, nothing
+     *            is stored.
+     * @param ttl : time (in ms) during which an entry can be used.
+     */
+    DiscoveryCache(String cacheFolder, long ttl)
+    {
+        this.folder = (cacheFolder != null) ? new File(cacheFolder, FOLDER_NAME) : null;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param key : server identifier (usually the base URL).
+     * @return the informations discovered during the last session creation or
+     *         null if unknown or expired.
+     */
+    Entry get(String key)
+    {
+        File file = getFile(key);
+        if (file == null) { return null; }
+
+        synchronized (LOCK)
+        {
+            if (!file.exists()) { return null; }
+
+            ObjectInputStream in = null;
+            try
+            {
+                in = new ObjectInputStream(new FileInputStream(file));
+                Entry entry = (Entry) in.readObject();
+                if (key.equals(entry.key) && System.currentTimeMillis() - entry.creationTime < ttl) { return entry; }
+            }
+            catch (Exception e)
+            {
+                // Unreadable entry (format changed, file corrupted...)
+            }
+            finally
+            {
+                IOUtils.closeStream(in);
+            }
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the informations discovered for a server.
+     */
+    void put(String key, Entry entry)
+    {
+        File file = getFile(key);
+        if (file == null) { return; }
+
+        entry.key = key;
+        entry.creationTime = System.currentTimeMillis();
+        synchronized (LOCK)
+        {
+            ObjectOutputStream out = null;
+            try
+            {
+                folder.mkdirs();
+                out = new ObjectOutputStream(new FileOutputStream(file));
+                out.writeObject(entry);
+            }
+            catch (Exception e)
+            {
+                // Cache not available : the discovery will be done again.
+                file.delete();
+            }
+            finally
+            {
+                IOUtils.closeStream(out);
+            }
+        }
+    }
+
+    /**
+     * Removes all informations associated to a server.
+     */
+    void remove(String key)
+    {
+        File file = getFile(key);
+        if (file == null) { return; }
+
+        synchronized (LOCK)
+        {
+            file.delete();
+        }
+    }
+
+    private File getFile(String key)
+    {
+        if (folder == null || key == null) { return null; }
+        return new File(folder, Integer.toHexString(key.hashCode()) + FILE_EXTENSION);
+    }
+
+    // ///////////////////////////////////////////////
+    // ENTRY
+    // ///////////////////////////////////////////////
+    /**
+     * Informations discovered for one server.
+     */
+    static final class Entry implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private String key;
+
+        private long creationTime;
+
+        private final String bindingUrl;
+
+        private final String repositoryId;
+
+        private final String productVersion;
+
+        private final boolean hasPublicAPI;
+
+        private final RepositoryInfo repositoryInfo;
+
+        /**
+         * @param bindingUrl : binding URL used to create the session.
+         * @param cmisRepositoryInfo : CMIS repository informations of the
+         *            session.
+         * @param hasPublicAPI : true if the server supports the public API.
+         * @param repositoryInfo : repository informations provided by the
+         *            session.
+         */
+        Entry(String bindingUrl, org.apache.chemistry.opencmis.commons.data.RepositoryInfo cmisRepositoryInfo,
+                boolean hasPublicAPI, RepositoryInfo repositoryInfo)
+        {
+            this.bindingUrl = bindingUrl;
+            this.repositoryId = cmisRepositoryInfo.getId();
+            this.productVersion = cmisRepositoryInfo.getProductVersion();
+            this.hasPublicAPI = hasPublicAPI;
+            this.repositoryInfo = repositoryInfo;
+        }
+
+        String getBindingUrl()
+        {
+            return bindingUrl;
+        }
+
+        String getRepositoryId()
+        {
+            return repositoryId;
+        }
+
+        boolean hasPublicAPI()
+        {
+            return hasPublicAPI;
+        }
+
+        RepositoryInfo getRepositoryInfo()
+        {
+            return repositoryInfo;
+        }
+
+        /**
+         * @param cmisRepositoryInfo : CMIS repository informations of the
+         *            new session.
+         * @return true if the entry describes the same repository with the
+         *         same version.
+         */
+        boolean isValid(org.apache.chemistry.opencmis.commons.data.RepositoryInfo cmisRepositoryInfo)
+        {
+            return repositoryInfo != null && repositoryId.equals(cmisRepositoryInfo.getId())
+                    && equals(productVersion, cmisRepositoryInfo.getProductVersion());
+        }
+
+        private static boolean equals(String value1, String value2)
+        {
+            return (value1 == null) ? value2 == null : value1.equals(value2);
+        }
+    }
+}
@@ -18,7 +18,22 @@
 package org.alfresco.mobile.android.api.session.impl;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.alfresco.mobile.android.api.constants.OnPremiseConstant;
 import org.alfresco.mobile.android.api.exceptions.AlfrescoSessionException;
@@ -26,6 +41,7 @@ import org.alfresco.mobile.android.api.model.RepositoryInfo;
 import org.alfresco.mobile.android.api.model.impl.FolderImpl;
 import org.alfresco.mobile.android.api.model.impl.onpremise.OnPremiseRepositoryInfoImpl;
 import org.alfresco.mobile.android.api.network.NetworkHttpInvoker;
+import org.alfresco.mobile.android.api.network.RequestHandle;
 import org.alfresco.mobile.android.api.services.impl.onpremise.OnPremiseServiceRegistry;
 import org.alfresco.mobile.android.api.session.RepositorySession;
 import org.alfresco.mobile.android.api.session.authentication.impl.PassthruAuthenticationProviderImpl;
@@ -37,7 +53,6 @@ import org.apache.chemistry.opencmis.client.api.SessionFactory;
 import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
 import org.apache.chemistry.opencmis.client.runtime.SessionFactoryImpl;
 import org.apache.chemistry.opencmis.commons.SessionParameter;
-import org.apache.chemistry.opencmis.commons.exceptions.CmisUnauthorizedException;
 import org.apache.chemistry.opencmis.commons.impl.JSONConverter;
 import org.apache.chemistry.opencmis.commons.impl.UrlBuilder;
 
@@ -88,14 +103,206 @@ public class RepositorySessionImpl extends RepositorySession
      */
     private void authenticate()
     {
-        // default factory implementation
-        SessionFactory sessionFactory = SessionFactoryImpl.newInstance();
         Map<String, String> param = retrieveSessionParameters();
 
-        // List of endpoint
-        String[] bindingUrls = { baseUrl.concat(PublicAPIUrlRegistry.BINDING_NETWORK_CMISATOM),
-                baseUrl.concat(OnPremiseUrlRegistry.BINDING_CMISATOM),
-                baseUrl.concat(OnPremiseUrlRegistry.BINDING_CMIS) };
+        // List of endpoint by order of preference. The CMIS 1.1 browser
+        // binding falls back to AtomPub bindings.
+        List<String> endpoints = new ArrayList<String>(4);
+        if (isBrowserBindingEnabled())
+        {
+            endpoints.add(baseUrl.concat(PublicAPIUrlRegistry.BINDING_NETWORK_CMISBROWSER));
+        }
+        endpoints.add(baseUrl.concat(PublicAPIUrlRegistry.BINDING_NETWORK_CMISATOM));
+        endpoints.add(baseUrl.concat(OnPremiseUrlRegistry.BINDING_CMISATOM));
+        endpoints.add(baseUrl.concat(OnPremiseUrlRegistry.BINDING_CMIS));
+        String[] bindingUrls = endpoints.toArray(new String[endpoints.size()]);
+
+        // Informations discovered by a previous session
+        DiscoveryCache discoveryCache = new DiscoveryCache((String) getParameter(CACHE_FOLDER));
+        DiscoveryCache.Entry discovery = discoveryCache.get(baseUrl);
+        if (discovery != null && !connect(param, discovery))
+        {
+            discoveryCache.remove(baseUrl);
+            discovery = null;
+        }
+
+        ExecutorService executor = null;
+        try
+        {
+            if (cmisSession == null && (hasForceBinding() || !isParallelBootstrap()))
+            {
+                connect(param, bindingUrls);
+            }
+            else if (cmisSession == null)
+            {
+                executor = Executors.newFixedThreadPool(bindingUrls.length, BOOTSTRAP_THREAD_FACTORY);
+                int index = probeBindings(executor, param, bindingUrls);
+                setBindingUrl(param, bindingUrls[index]);
+                hasPublicAPI = isPublicAPIBinding(bindingUrls[index]);
+            }
+
+            // Check if it's an Alfresco server
+            boolean isAlfresco = cmisSession.getRepositoryInfo().getProductName()
+                    .startsWith(OnPremiseConstant.ALFRESCO_VENDOR);
+            if (!isAlfresco) { throw new AlfrescoSessionException(AlfrescoSessionException.SESSION_NO_REPOSITORY,
+                    (Exception) null); }
+
+            // Discovered informations are reused only if the repository has
+            // not changed (upgrade...).
+            if (discovery != null && !discovery.isValid(cmisSession.getRepositoryInfo()))
+            {
+                discoveryCache.remove(baseUrl);
+                discovery = null;
+            }
+
+            Future<String> editionLookup = null;
+            String editionValue = null;
+            if (discovery != null)
+            {
+                repositoryInfo = discovery.getRepositoryInfo();
+            }
+            else
+            {
+                // If Session Object available we populate other info &
+                // capabilities
+                repositoryInfo = new OnPremiseRepositoryInfoImpl(cmisSession.getRepositoryInfo(), hasPublicAPI);
+
+                // On cmisatom binding sometimes the edition is not well
+                // formated. In this case we use service/cmis binding.
+                // MOBSDK-508
+                // With the parallel bootstrap the edition is retrieved while
+                // the root folder is requested.
+                if (repositoryInfo.getEdition() == OnPremiseConstant.ALFRESCO_EDITION_UNKNOWN)
+                {
+                    if (executor != null)
+                    {
+                        editionLookup = executor.submit(new Callable<String>()
+                        {
+                            public String call()
+                            {
+                                return retrieveEdition();
+                            }
+                        });
+                    }
+                    else
+                    {
+                        editionValue = retrieveEdition();
+                    }
+                }
+            }
+
+            // Retrieve Root Node
+            rootNode = new FolderImpl(cmisSession.getRootFolder());
+
+            if (editionLookup != null)
+            {
+                try
+                {
+                    editionValue = editionLookup.get();
+                }
+                catch (Exception e)
+                {
+                    // Nothing major...
+                }
+            }
+            if (editionValue != null)
+            {
+                repositoryInfo = new OnPremiseRepositoryInfoImpl(cmisSession.getRepositoryInfo(), editionValue);
+            }
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        // A failed edition lookup is not remembered : the next session asks
+        // again.
+        if (discovery == null && repositoryInfo.getEdition() != OnPremiseConstant.ALFRESCO_EDITION_UNKNOWN)
+        {
+            discoveryCache.put(baseUrl, new DiscoveryCache.Entry(getBindingUrl(param),
+                    cmisSession.getRepositoryInfo(), hasPublicAPI, repositoryInfo));
+        }
+
+        // Retrieve Service Registry & Services
+        initServices();
+    }
+
+    // ////////////////////////////////////////////////////
+    // BOOTSTRAP
+    // ////////////////////////////////////////////////////
+    private static final ThreadFactory BOOTSTRAP_THREAD_FACTORY = new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r)
+        {
+            return new Thread(r, "AlfrescoSessionBootstrap #" + count.getAndIncrement());
+        }
+    };
+
+    /**
+     * Time (in ms) the preferred binding is requested alone before the other
+     * bindings are probed.
+     */
+    private static final long PROBE_HEAD_START = 300;
+
+    private boolean isParallelBootstrap()
+    {
+        return !hasParameter(PARALLEL_BOOTSTRAP) || (Boolean) getParameter(PARALLEL_BOOTSTRAP);
+    }
+
+    /**
+     * Creates the session directly with the binding and the repository
+     * identifier discovered by a previous session : no binding probing and no
+     * repositories listing.
+     * 
+     * @return false if the discovered informations can't be used.
+     */
+    private boolean connect(Map<String, String> param, DiscoveryCache.Entry discovery)
+    {
+        // A forced binding has priority.
+        if (hasForceBinding() && !discovery.getBindingUrl().equals(getBindingUrl(param))) { return false; }
+
+        // The browser binding may have been disabled since the discovery.
+        if (isBrowserBinding(discovery.getBindingUrl()) && !isBrowserBindingEnabled()) { return false; }
+
+        String bindingUrl = getBindingUrl(param);
+        boolean hasRepositoryId = param.get(SessionParameter.REPOSITORY_ID) != null;
+        setBindingUrl(param, discovery.getBindingUrl());
+        if (!hasRepositoryId)
+        {
+            param.put(SessionParameter.REPOSITORY_ID, discovery.getRepositoryId());
+        }
+        try
+        {
+            cmisSession = createSession(SessionFactoryImpl.newInstance(), param);
+            hasPublicAPI = discovery.hasPublicAPI();
+            return true;
+        }
+        catch (Exception err)
+        {
+            // Credentials or server errors won't be fixed by a full discovery.
+            if (!canRediscover(err)) { throw new AlfrescoSessionException(AlfrescoSessionException.SESSION_GENERIC,
+                    err); }
+            if (!hasRepositoryId)
+            {
+                param.remove(SessionParameter.REPOSITORY_ID);
+            }
+            setBindingUrl(param, bindingUrl);
+            return false;
+        }
+    }
+
+    /**
+     * Requests bindings one after another until one of them answers.
+     */
+    private void connect(Map<String, String> param, String[] bindingUrls)
+    {
+        // default factory implementation
+        SessionFactory sessionFactory = SessionFactoryImpl.newInstance();
 
         Exception creationException = null;
         hasPublicAPI = true;
@@ -103,7 +310,8 @@ public class RepositorySessionImpl extends RepositorySession
         {
             if (!hasForceBinding())
             {
-                param.put(SessionParameter.ATOMPUB_URL, bindingUrl);
+                setBindingUrl(param, bindingUrl);
+                hasPublicAPI = isPublicAPIBinding(bindingUrl);
             }
 
             // Create the session with parameters
@@ -114,7 +322,7 @@ public class RepositorySessionImpl extends RepositorySession
             catch (Exception err)
             {
                 creationException = err;
-                if (err.getCause() instanceof CmisUnauthorizedException)
+                if (isUnauthorized(err))
                 {
                     break;
                 }
@@ -136,45 +344,158 @@ public class RepositorySessionImpl extends RepositorySession
         // No session object which means something bad happened.
         if (cmisSession == null) { throw new AlfrescoSessionException(AlfrescoSessionException.SESSION_GENERIC,
                 creationException); }
+    }
 
-        // Check if it's an Alfresco server
-        boolean isAlfresco = cmisSession.getRepositoryInfo().getProductName()
-                .startsWith(OnPremiseConstant.ALFRESCO_VENDOR);
-        if (!isAlfresco) { throw new AlfrescoSessionException(AlfrescoSessionException.SESSION_NO_REPOSITORY,
-                creationException); }
-
-        // If Session Object available we populate other info & capabilities
-        repositoryInfo = new OnPremiseRepositoryInfoImpl(cmisSession.getRepositoryInfo(), hasPublicAPI);
+    /**
+     * Requests all bindings concurrently. Bindings keep their order of
+     * preference : a binding wins as soon as it answers and all preferred
+     * bindings have failed. Requests to the other bindings are then aborted.
+     * <br/>
+     * The preferred binding is sent first : the other bindings are requested
+     * once it has failed or after {@link #PROBE_HEAD_START} ms. If a binding
+     * rejects the credentials (401 / 403), the bootstrap stops : bindings not
+     * requested yet are cancelled and never send the credentials, so a wrong
+     * password costs a single failed login in most cases.
+     * 
+     * @return index of the binding which won.
+     */
+    private int probeBindings(ExecutorService executor, Map<String, String> param, String[] bindingUrls)
+    {
+        int size = bindingUrls.length;
+        final BlockingQueue<Integer> completed = new LinkedBlockingQueue<Integer>();
+        final CountDownLatch headStart = new CountDownLatch(1);
+        final AtomicBoolean rejected = new AtomicBoolean(false);
+        List<Future<Session>> probes = new ArrayList<Future<Session>>(size);
+        List<RequestHandle> handles = new ArrayList<RequestHandle>(size);
+        for (int i = 0; i < size; i++)
+        {
+            final int index = i;
+            final RequestHandle handle = new RequestHandle();
+            final Map<String, String> probeParam = new HashMap<String, String>(param);
+            setBindingUrl(probeParam, bindingUrls[i]);
+            handles.add(handle);
+            probes.add(executor.submit(new Callable<Session>()
+            {
+                public Session call() throws Exception
+                {
+                    RequestHandle.bind(handle);
+                    try
+                    {
+                        if (index > 0)
+                        {
+                            headStart.await(PROBE_HEAD_START, TimeUnit.MILLISECONDS);
+                        }
+                        // Skipped : no credentials sent.
+                        if (rejected.get() || handle.isAborted()) { return null; }
+                        return createSession(SessionFactoryImpl.newInstance(), probeParam);
+                    }
+                    catch (Exception e)
+                    {
+                        if (isRejected(e))
+                        {
+                            rejected.set(true);
+                        }
+                        throw e;
+                    }
+                    finally
+                    {
+                        if (index == 0)
+                        {
+                            headStart.countDown();
+                        }
+                        RequestHandle.unbind();
+                        completed.add(index);
+                    }
+                }
+            }));
+        }
 
-        // On cmisatom binding sometimes the edition is not well formated. In
-        // this case we use service/cmis binding. MOBSDK-508
-        if (repositoryInfo.getEdition() == OnPremiseConstant.ALFRESCO_EDITION_UNKNOWN)
+        Session[] sessions = new Session[size];
+        Exception[] errors = new Exception[size];
+        int winner = -1;
+        try
         {
-            try
+            for (int remaining = size; remaining > 0; remaining--)
             {
-                UrlBuilder builder = new UrlBuilder(OnPremiseUrlRegistry.getServerInfo(baseUrl));
-                Response resp = NetworkHttpInvoker.invokeGET(builder, cmisSession.getBinding()
-                        .getAuthenticationProvider().getHTTPHeaders(baseUrl));
-                Map<String, Object> json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
-                if (json.containsKey(OnPremiseConstant.DATA_VALUE))
+                int index = completed.take();
+                try
                 {
-                    String editionValue = JSONConverter.getString(
-                            JSONConverter.getMap(json.get(OnPremiseConstant.DATA_VALUE)),
-                            OnPremiseConstant.EDITION_VALUE);
-                    repositoryInfo = new OnPremiseRepositoryInfoImpl(cmisSession.getRepositoryInfo(), editionValue);
+                    sessions[index] = probes.get(index).get();
+                }
+                catch (ExecutionException e)
+                {
+                    errors[index] = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                    if (isRejected(errors[index])) { throw new AlfrescoSessionException(
+                            AlfrescoSessionException.SESSION_GENERIC, errors[index]); }
+                }
+
+                // The first binding which has not failed decides.
+                for (int i = 0; i < size; i++)
+                {
+                    if (sessions[i] != null)
+                    {
+                        cmisSession = sessions[i];
+                        winner = i;
+                        return i;
+                    }
+                    if (errors[i] == null)
+                    {
+                        break;
+                    }
                 }
             }
-            catch (Exception e)
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AlfrescoSessionException(AlfrescoSessionException.SESSION_GENERIC, e);
+        }
+        finally
+        {
+            // Losers are aborted, the connections of the winner are kept.
+            rejected.set(true);
+            headStart.countDown();
+            for (int i = 0; i < size; i++)
             {
-                // Nothing major...
+                if (i != winner)
+                {
+                    handles.get(i).abort();
+                    probes.get(i).cancel(true);
+                }
             }
         }
 
-        // Retrieve Root Node
-        rootNode = new FolderImpl(cmisSession.getRootFolder());
+        // No session object which means something bad happened.
+        throw new AlfrescoSessionException(AlfrescoSessionException.SESSION_GENERIC, errors[size - 1]);
+    }
 
-        // Retrieve Service Registry & Services
-        initServices();
+    private static boolean isPublicAPIBinding(String bindingUrl)
+    {
+        return bindingUrl.endsWith(PublicAPIUrlRegistry.BINDING_NETWORK_CMISATOM)
+                || bindingUrl.endsWith(PublicAPIUrlRegistry.BINDING_NETWORK_CMISBROWSER);
+    }
+
+    /**
+     * Retrieves the edition of the server from the server info webscript.
+     * 
+     * @return edition or null if not available.
+     */
+    private String retrieveEdition()
+    {
+        try
+        {
+            UrlBuilder builder = new UrlBuilder(OnPremiseUrlRegistry.getServerInfo(baseUrl));
+            Response resp = NetworkHttpInvoker.invokeGET(builder, cmisSession.getBinding()
+                    .getAuthenticationProvider().getHTTPHeaders(baseUrl));
+            Map<String, Object> json = JsonUtils.parseObject(resp.getStream(), resp.getCharset());
+            if (json.containsKey(OnPremiseConstant.DATA_VALUE)) { return JSONConverter.getString(
+                    JSONConverter.getMap(json.get(OnPremiseConstant.DATA_VALUE)), OnPremiseConstant.EDITION_VALUE); }
+        }
+        catch (Exception e)
+        {
+            // Nothing major...
+        }
+        return null;
     }
 
     private void initServices()
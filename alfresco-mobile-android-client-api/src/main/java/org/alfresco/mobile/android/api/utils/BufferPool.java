@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared and bounded pool of transfer buffers used by uploads, downloads and
+ * file copies. <br/>
+ * All buffers have the same size ({@link #BUFFER_SIZE}). A buffer must be
+ * released once the transfer is finished : at most {@link #MAX_POOLED_BUFFERS}
+ * buffers are kept, extra buffers are left to the garbage collector. The pool
+ * is lock free.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public final class BufferPool
+{
+    /** Size of a transfer buffer : 64 KB. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Maximum number of buffers kept by the pool. */
+    public static final int MAX_POOLED_BUFFERS = 8;
+
+    private static BufferPool instance;
+
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+
+    private final AtomicInteger pooledCount = new AtomicInteger();
+
+    // Statistics
+    private final AtomicLong acquiredCount = new AtomicLong();
+
+    private final AtomicLong allocatedCount = new AtomicLong();
+
+    private BufferPool()
+    {
+    }
+
+    /**
+     * @return the shared buffer pool.
+     */
+    public static synchronized BufferPool getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new BufferPool();
+        }
+        return instance;
+    }
+
+    /**
+     * @return a buffer of {@link #BUFFER_SIZE} bytes. The content of the
+     *         buffer is undefined.
+     */
+    public byte[] acquire()
+    {
+        acquiredCount.incrementAndGet();
+        byte[] buffer = buffers.poll();
+        if (buffer != null)
+        {
+            pooledCount.decrementAndGet();
+            return buffer;
+        }
+        allocatedCount.incrementAndGet();
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used afterwards.
+     * 
+     * @param buffer : buffer returned by {@link #acquire()}. Can be null.
+     */
+    public void release(byte[] buffer)
+    {
+        if (buffer == null || buffer.length != BUFFER_SIZE) { return; }
+        if (pooledCount.incrementAndGet() > MAX_POOLED_BUFFERS)
+        {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+
+    // ///////////////////////////////////////////////
+    // STATISTICS
+    // ///////////////////////////////////////////////
+    /**
+     * @return Number of buffers requested.
+     */
+    public long getAcquiredCount()
+    {
+        return acquiredCount.get();
+    }
+
+    /**
+     * @return Number of buffers allocated because the pool was empty.
+     */
+    public long getAllocatedCount()
+    {
+        return allocatedCount.get();
+    }
+
+    /**
+     * @return Number of buffers currently kept by the pool.
+     */
+    public int getPooledCount()
+    {
+        return pooledCount.get();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetStatistics()
+    {
+        acquiredCount.set(0);
+        allocatedCount.set(0);
+    }
+
+    // ///////////////////////////////////////////////
+    // STREAMS
+    // ///////////////////////////////////////////////
+    /**
+     * Buffered output stream which uses a pooled buffer. The buffer goes back
+     * to the pool when the stream is released or closed.
+     */
+    public static final class PooledOutputStream extends FilterOutputStream
+    {
+        private byte[] buffer;
+
+        private int count;
+
+        /**
+         * @param out : underlying output stream.
+         */
+        public PooledOutputStream(OutputStream out)
+        {
+            super(out);
+            this.buffer = getInstance().acquire();
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (count >= buffer.length)
+            {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (len >= buffer.length)
+            {
+                // Large writes go straight to the underlying stream.
+                flushBuffer();
+                out.write(b, off, len);
+                return;
+            }
+            if (len > buffer.length - count)
+            {
+                flushBuffer();
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            flushBuffer();
+            out.flush();
+        }
+
+        /**
+         * Flushes the stream and gives the buffer back to the pool without
+         * closing the underlying stream.
+         */
+        public void release() throws IOException
+        {
+            if (buffer == null) { return; }
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                getInstance().release(buffer);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                release();
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+
+        private void flushBuffer() throws IOException
+        {
+            if (count > 0)
+            {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+    }
+}
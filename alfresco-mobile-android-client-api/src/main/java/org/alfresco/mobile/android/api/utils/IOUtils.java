@@ -17,8 +17,6 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.api.utils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -27,6 +25,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.alfresco.mobile.android.api.model.ContentFile;
 
@@ -38,86 +39,190 @@ import org.alfresco.mobile.android.api.model.ContentFile;
 public final class IOUtils
 {
 
-    /*
+    /**
      * Monitored input stream for progress feedback on a ContentFile object.
+     * The buffer comes from the {@link BufferPool} and the progress is
+     * notified once per buffer fill (not per read) without any lock : the
+     * stream must be read by a single thread.
+     * 
      * @author Luke Jagger
      */
-
-    static class MonitoredBufferedInputStream extends BufferedInputStream
+    static class MonitoredInputStream extends InputStream
     {
-        ContentFile contentFile = null;
+        private final InputStream in;
+
+        private final ContentFile contentFile;
 
-        int block = 0;
+        private byte[] buffer;
 
-        public MonitoredBufferedInputStream(InputStream in)
+        private int position = 0;
+
+        private int count = 0;
+
+        MonitoredInputStream(InputStream in, ContentFile contentFile)
         {
-            super(in);
+            this.in = in;
+            this.contentFile = contentFile;
+            this.buffer = BufferPool.getInstance().acquire();
         }
 
-        /**
-         * Set the ContentFile object associated with this operation
-         * 
-         * @param cf : ContentFile object to notify
-         */
-
-        void setContentFile(ContentFile cf)
+        @Override
+        public int read() throws IOException
         {
-            contentFile = cf;
+            if (position >= count && fill() <= 0) { return -1; }
+            return buffer[position++] & 0xFF;
         }
 
-        /**
-         * Overriden InputStream file read.
-         */
         @Override
-        public synchronized int read() throws IOException
+        public int read(byte[] b, int off, int len) throws IOException
         {
-            if (contentFile != null)
+            if (len == 0) { return 0; }
+            if (position >= count)
             {
-                contentFile.fileReadCallback(1);
+                if (len >= buffer.length)
+                {
+                    // Large reads bypass the buffer.
+                    int nBytes = in.read(b, off, len);
+                    notifyRead(nBytes);
+                    return nBytes;
+                }
+                if (fill() <= 0) { return -1; }
             }
+            int nBytes = Math.min(len, count - position);
+            System.arraycopy(buffer, position, b, off, nBytes);
+            position += nBytes;
+            return nBytes;
+        }
 
-            return super.read();
+        @Override
+        public int available() throws IOException
+        {
+            return (count - position) + in.available();
         }
 
-        /**
-         * Overriden InputStream file read.
-         */
         @Override
-        public int read(byte[] b) throws IOException
+        public void close() throws IOException
         {
-            ++block;
-            int nBytes = super.read(b);
-            --block;
+            BufferPool.getInstance().release(buffer);
+            buffer = null;
+            in.close();
+        }
 
-            if (contentFile != null && block == 0)
+        private int fill() throws IOException
+        {
+            position = 0;
+            count = Math.max(in.read(buffer, 0, buffer.length), 0);
+            notifyRead(count);
+            return count;
+        }
+
+        private void notifyRead(int nBytes) throws IOException
+        {
+            if (contentFile != null && nBytes > 0)
             {
                 contentFile.fileReadCallback(nBytes);
             }
+        }
+    }
 
-            return nBytes;
+    /**
+     * Monitored input stream which reads a file through a memory mapped
+     * buffer : bytes are copied from the page cache without any intermediate
+     * buffer. Progress is notified once per {@link BufferPool#BUFFER_SIZE}
+     * bytes.
+     */
+    static class MappedInputStream extends InputStream
+    {
+        private final ContentFile contentFile;
+
+        private MappedByteBuffer buffer;
+
+        private int pending = 0;
+
+        MappedInputStream(File file, ContentFile contentFile) throws IOException
+        {
+            this.contentFile = contentFile;
+            FileInputStream in = new FileInputStream(file);
+            try
+            {
+                FileChannel channel = in.getChannel();
+                // The mapping stays valid once the channel is closed.
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            finally
+            {
+                closeStream(in);
+            }
         }
 
-        /**
-         * Overriden InputStream file read.
-         */
         @Override
-        public synchronized int read(byte[] b, int off, int len) throws IOException
+        public int read() throws IOException
         {
-            ++block;
-            int nBytes = super.read(b, off, len);
-            --block;
+            if (!buffer.hasRemaining())
+            {
+                notifyRead(0);
+                return -1;
+            }
+            notifyRead(1);
+            return buffer.get() & 0xFF;
+        }
 
-            if (contentFile != null && block == 0)
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0) { return 0; }
+            if (!buffer.hasRemaining())
             {
-                contentFile.fileReadCallback(nBytes);
+                notifyRead(0);
+                return -1;
             }
+            int nBytes = Math.min(len, buffer.remaining());
+            buffer.get(b, off, nBytes);
+            notifyRead(nBytes);
+            return nBytes;
+        }
 
+        @Override
+        public long skip(long n)
+        {
+            int nBytes = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + nBytes);
             return nBytes;
         }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            notifyRead(0);
+        }
+
+        /**
+         * Notifies the progress by blocks. Pending bytes are notified at the
+         * end of the file.
+         */
+        private void notifyRead(int nBytes) throws IOException
+        {
+            pending += nBytes;
+            if (contentFile != null && pending > 0
+                    && (pending >= BufferPool.BUFFER_SIZE || !buffer.hasRemaining()))
+            {
+                contentFile.fileReadCallback(pending);
+                pending = 0;
+            }
+        }
     }
 
     public static final int MAX_BUFFER_SIZE = 1024;
 
+    /** Files larger than this size (1 MB) are read through a mapped buffer. */
+    public static final long MAPPED_THRESHOLD = 1024 * 1024L;
+
     public static void closeStream(Closeable stream)
     {
         if (stream != null)
@@ -169,29 +274,84 @@ public final class IOUtils
     public static boolean copyFile(InputStream src, File dest) throws IOException
     {
         ensureOrCreatePathAndFile(dest);
-        return copyStream(src, new FileOutputStream(dest));
+        FileOutputStream out = new FileOutputStream(dest);
+        try
+        {
+            transfer(src, out.getChannel());
+        }
+        finally
+        {
+            closeStream(out);
+            closeStream(src);
+        }
+        return true;
     }
 
-    public static boolean copyStream(InputStream src, OutputStream osstream) throws IOException
+    /**
+     * Writes a stream at the current position of a file channel. If the
+     * stream reads a file, bytes are transferred by the system (no copy
+     * inside the Java heap). Otherwise bytes are read inside a pooled buffer
+     * and written with channel writes.
+     * 
+     * @param src : stream to copy. The stream is not closed.
+     * @param dest : destination channel. Its position is moved after the
+     *            written bytes.
+     * @return number of bytes written.
+     * @since 1.4
+     */
+    public static long transfer(InputStream src, FileChannel dest) throws IOException
     {
-        BufferedOutputStream bos = null;
-        MonitoredBufferedInputStream bis = null;
-        boolean copied = true;
+        long total = 0;
+        if (src instanceof FileInputStream)
+        {
+            FileChannel in = ((FileInputStream) src).getChannel();
+            long start = in.position();
+            long size = in.size() - start;
+            long count;
+            while (total < size && (count = in.transferTo(start + total, size - total, dest)) > 0)
+            {
+                total += count;
+            }
+            in.position(start + total);
+            return total;
+        }
 
+        byte[] buffer = BufferPool.getInstance().acquire();
         try
         {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer);
+            int count;
+            while ((count = src.read(buffer)) != -1)
+            {
+                bytes.clear();
+                bytes.limit(count);
+                while (bytes.hasRemaining())
+                {
+                    dest.write(bytes);
+                }
+                total += count;
+            }
+        }
+        finally
+        {
+            BufferPool.getInstance().release(buffer);
+        }
+        return total;
+    }
 
-            bos = new BufferedOutputStream(osstream);
-            bis = new MonitoredBufferedInputStream(src);
-
-            byte[] buffer = new byte[MAX_BUFFER_SIZE];
+    public static boolean copyStream(InputStream src, OutputStream osstream) throws IOException
+    {
+        byte[] buffer = BufferPool.getInstance().acquire();
+        boolean copied = true;
 
+        try
+        {
             int count;
-            while ((count = bis.read(buffer)) != -1)
+            while ((count = src.read(buffer)) != -1)
             {
-                bos.write(buffer, 0, count);
+                osstream.write(buffer, 0, count);
             }
-            bos.flush();
+            osstream.flush();
         }
         catch (IOException e)
         {
@@ -200,9 +360,9 @@ public final class IOUtils
         }
         finally
         {
+            BufferPool.getInstance().release(buffer);
             closeStream(osstream);
             closeStream(src);
-            closeStream(bis);
         }
         return copied;
     }
@@ -214,15 +374,26 @@ public final class IOUtils
         {
             if (contentFile != null)
             {
-                MonitoredBufferedInputStream mb = new MonitoredBufferedInputStream(new FileInputStream(
-                        contentFile.getFile()));
-                mb.setContentFile(contentFile);
-                return mb;
+                long length = contentFile.getFile().length();
+                if (length >= MAPPED_THRESHOLD && length <= Integer.MAX_VALUE) { return new MappedInputStream(
+                        contentFile.getFile(), contentFile); }
+                return new MonitoredInputStream(new FileInputStream(contentFile.getFile()), contentFile);
             }
         }
         catch (FileNotFoundException e)
         {
         }
+        catch (IOException e)
+        {
+            // Mapping not possible : regular stream.
+            try
+            {
+                return new MonitoredInputStream(new FileInputStream(contentFile.getFile()), contentFile);
+            }
+            catch (FileNotFoundException e1)
+            {
+            }
+        }
         return null;
     }
 }
\ No newline at end of file
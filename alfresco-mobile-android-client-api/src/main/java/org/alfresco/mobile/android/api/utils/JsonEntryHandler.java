@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.utils;
+
+import java.util.Map;
+
+/**
+ * Callback used by {@link JsonStreamReader} to consume the entries of a JSON
+ * array one at a time.
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public interface JsonEntryHandler
+{
+    /**
+     * Called for each entry of the array.
+     * 
+     * @param index : position of the entry inside the JSON array.
+     * @param entry : JSON object of the entry.
+     * @return true to continue the parsing, false to stop it.
+     */
+    boolean onEntry(int index, Map<String, Object> entry);
+}
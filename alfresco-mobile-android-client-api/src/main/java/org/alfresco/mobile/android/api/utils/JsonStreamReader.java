@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (C) 2005-2013 Alfresco Software Limited.
+ * 
+ * This file is part of the Alfresco Mobile SDK.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package org.alfresco.mobile.android.api.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.mobile.android.api.exceptions.AlfrescoServiceException;
+import org.alfresco.mobile.android.api.exceptions.ErrorCodeRegistry;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+/**
+ * Pull parser for JSON documents. <br/>
+ * Contrary to {@link JsonUtils#parseObject(InputStream, String)} the document
+ * is never materialized as a whole: the reader moves token by token and only
+ * the entries requested are converted into Map/List objects (same structure
+ * as the one provided by JsonUtils). Entries which are not requested are
+ * skipped without being converted.
+ * 
+ * <pre>
+ * JsonStreamReader reader = new JsonStreamReader(stream, charset);
+ * try
+ * {
+ *     if (reader.moveTo(&quot;data&quot;) &amp;&amp; reader.beginArray())
+ *     {
+ *         reader.readArray(0, -1, handler);
+ *     }
+ * }
+ * finally
+ * {
+ *     reader.close();
+ * }
+ * </pre>
+ * 
+ * @since 1.4
+ * @author Jean Marie Pascal
+ */
+public class JsonStreamReader implements Closeable
+{
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private final InputStream stream;
+
+    private final JsonReader reader;
+
+    /**
+     * Creates a reader on top of the stream. The stream is closed with the
+     * reader.
+     * 
+     * @param stream : JSON content
+     * @param charset : charset of the content. UTF-8 if null.
+     */
+    public JsonStreamReader(InputStream stream, String charset)
+    {
+        try
+        {
+            this.stream = stream;
+            this.reader = new JsonReader(new InputStreamReader(stream, (charset != null) ? charset
+                    : DEFAULT_CHARSET));
+        }
+        catch (Exception e)
+        {
+            IOUtils.closeStream(stream);
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // NAVIGATION
+    // ///////////////////////////////////////////////
+    /**
+     * Moves the reader to the value of the member with the specified name
+     * inside the current object. If the reader is positioned before an object,
+     * this object is opened first. All members before the requested one are
+     * skipped.
+     * 
+     * @param name : member name
+     * @return true if the reader is positioned on the member value. False if
+     *         the member doesn't exist (the current object is then entirely
+     *         consumed).
+     */
+    public boolean moveTo(String name)
+    {
+        try
+        {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT)
+            {
+                reader.beginObject();
+            }
+            while (reader.hasNext())
+            {
+                if (name.equals(reader.nextName())) { return true; }
+                reader.skipValue();
+            }
+            reader.endObject();
+            return false;
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Moves the reader following a path of member names.
+     * 
+     * @param path : member names from the current object.
+     * @return true if all members have been found.
+     */
+    public boolean moveTo(String... path)
+    {
+        for (String name : path)
+        {
+            if (!moveTo(name)) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Opens the array at the current position.
+     * 
+     * @return true if the next value is an array. False otherwise (the reader
+     *         doesn't move).
+     */
+    public boolean beginArray()
+    {
+        try
+        {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) { return false; }
+            reader.beginArray();
+            return true;
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Opens the object at the current position.
+     * 
+     * @return true if the next value is an object. False otherwise (the reader
+     *         doesn't move).
+     */
+    public boolean beginObject()
+    {
+        try
+        {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) { return false; }
+            reader.beginObject();
+            return true;
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * @return true if the current array or object has another element.
+     */
+    public boolean hasNext()
+    {
+        try
+        {
+            return reader.hasNext();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Name of the next member of the current object.
+     */
+    public String nextName()
+    {
+        try
+        {
+            return reader.nextName();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Skips the next value without converting it.
+     */
+    public void skipValue()
+    {
+        try
+        {
+            reader.skipValue();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Closes the current array. All remaining elements are skipped.
+     */
+    public void endArray()
+    {
+        try
+        {
+            while (reader.hasNext())
+            {
+                reader.skipValue();
+            }
+            reader.endArray();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Closes the current object. All remaining members are skipped.
+     */
+    public void endObject()
+    {
+        try
+        {
+            while (reader.hasNext())
+            {
+                reader.nextName();
+                reader.skipValue();
+            }
+            reader.endObject();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    // ///////////////////////////////////////////////
+    // VALUES
+    // ///////////////////////////////////////////////
+    /**
+     * Reads the next value and converts it into Map, List, String, Long,
+     * Double, Boolean or null.
+     */
+    public Object nextValue()
+    {
+        try
+        {
+            return readValue();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+    }
+
+    /**
+     * Reads the next value as a JSON object.
+     * 
+     * @return Map representation of the object or null if the next value is
+     *         not an object (the value is skipped).
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> nextObject()
+    {
+        Object value = nextValue();
+        return (value instanceof Map) ? (Map<String, Object>) value : null;
+    }
+
+    /**
+     * Reads the elements of the current array and forwards them one by one to
+     * the handler. Only the elements sent to the handler are converted.
+     * 
+     * @param skipCount : number of elements to skip before the first call to
+     *            the handler.
+     * @param maxItems : maximum number of elements sent to the handler. -1 for
+     *            no limit.
+     * @param handler : callback for each element. Can stop the reading by
+     *            returning false.
+     * @return index of the next unread element. If the array has been entirely
+     *         read, it's the size of the array.
+     */
+    public int readArray(int skipCount, int maxItems, JsonEntryHandler handler)
+    {
+        int index = 0;
+        int count = 0;
+        try
+        {
+            while (reader.hasNext())
+            {
+                if (index < skipCount)
+                {
+                    reader.skipValue();
+                    index++;
+                    continue;
+                }
+
+                if (maxItems >= 0 && count >= maxItems) { return index; }
+
+                Object value = readValue();
+                index++;
+                if (value instanceof Map)
+                {
+                    count++;
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> entry = (Map<String, Object>) value;
+                    if (!handler.onEntry(index - 1, entry)) { return index; }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+        return index;
+    }
+
+    /**
+     * Counts the remaining elements of the current array without converting
+     * them. The array is closed at the end.
+     * 
+     * @return number of elements skipped.
+     */
+    public int skipArray()
+    {
+        int count = 0;
+        try
+        {
+            while (reader.hasNext())
+            {
+                reader.skipValue();
+                count++;
+            }
+            reader.endArray();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, e);
+        }
+        return count;
+    }
+
+    @Override
+    public void close()
+    {
+        IOUtils.closeStream(reader);
+        IOUtils.closeStream(stream);
+    }
+
+    // ///////////////////////////////////////////////
+    // INTERNAL
+    // ///////////////////////////////////////////////
+    private Object readValue() throws IOException
+    {
+        switch (reader.peek())
+        {
+            case BEGIN_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                reader.beginObject();
+                while (reader.hasNext())
+                {
+                    map.put(reader.nextName(), readValue());
+                }
+                reader.endObject();
+                return map;
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<Object>();
+                reader.beginArray();
+                while (reader.hasNext())
+                {
+                    list.add(readValue());
+                }
+                reader.endArray();
+                return list;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Numbers follow the same conversion as the json-simple parser used by
+     * {@link JsonUtils} : Long for integer values, Double otherwise.
+     */
+    private static Object parseNumber(String value)
+    {
+        if (value.indexOf('.') == -1 && value.indexOf('e') == -1 && value.indexOf('E') == -1)
+        {
+            try
+            {
+                return Long.valueOf(value);
+            }
+            catch (NumberFormatException e)
+            {
+                // Value too big for a long
+            }
+        }
+        return Double.valueOf(value);
+    }
+}
@@ -84,6 +84,49 @@ public final class JsonUtils
         throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_GENERIC, Messagesl18n.getString("JsonUtils.0"));
     }
 
+    /**
+     * Parses an array from an input stream entry by entry. Entries are never
+     * materialized as a whole list : each one is sent to the handler as soon as
+     * it has been read.
+     *
+     * @param stream : JSON content. The stream is closed at the end.
+     * @param charset : charset of the stream.
+     * @param path : member names to follow from the root object to reach the
+     *            array. If empty, the root value must be the array.
+     * @param skipCount : number of entries skipped before calling the handler.
+     * @param maxItems : maximum number of entries sent to the handler. -1 for
+     *            all.
+     * @param handler : callback called for each entry.
+     * @return total number of entries inside the array.
+     */
+    public static int parseArray(InputStream stream, String charset, String[] path, int skipCount, int maxItems,
+            JsonEntryHandler handler)
+    {
+        JsonStreamReader reader = new JsonStreamReader(stream, charset);
+        try
+        {
+            if (path != null && path.length > 0 && !reader.moveTo(path)) { return 0; }
+            if (!reader.beginArray()) { return 0; }
+            int index = reader.readArray(skipCount, maxItems, handler);
+            return index + reader.skipArray();
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parses an array from an input stream entry by entry.
+     *
+     * @see #parseArray(InputStream, String, String[], int, int,
+     *      JsonEntryHandler)
+     */
+    public static int parseArray(InputStream stream, String charset, JsonEntryHandler handler)
+    {
+        return parseArray(stream, charset, null, 0, -1, handler);
+    }
+
     @SuppressWarnings("unchecked")
     public static Map<String, Object> parseObject(String value)
     {
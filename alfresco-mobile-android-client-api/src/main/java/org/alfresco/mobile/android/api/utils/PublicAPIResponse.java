@@ -68,6 +68,64 @@ public class PublicAPIResponse implements Serializable
         entries = (List<Object>) list.get(CloudConstant.ENTRIES_VALUE);
     }
 
+    /**
+     * Streaming version of the response parsing. Entries are not kept inside
+     * the response : each one is sent to the handler while the stream is read.
+     * {@link #getEntries()} returns null.
+     * 
+     * @param resp : HTTP response
+     * @param handler : callback called for each entry of the list.
+     * @since 1.4
+     */
+    public PublicAPIResponse(Response resp, JsonEntryHandler handler)
+    {
+        if (resp == null || resp.getStream() == null)
+        {
+            throw new AlfrescoServiceException(ErrorCodeRegistry.PARSING_JSONDATA_EMPTY,
+                    Messagesl18n.getString("ErrorCodeRegistry.PARSING_JSONDATA_EMPTY"));
+        }
+
+        size = -1;
+        hasMoreItems = false;
+        JsonStreamReader reader = new JsonStreamReader(resp.getStream(), resp.getCharset());
+        try
+        {
+            if (!reader.moveTo(CloudConstant.LIST_VALUE) || !reader.beginObject()) { return; }
+
+            // Pagination and entries can come in any order.
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (CloudConstant.PAGINATION_VALUE.equals(name))
+                {
+                    Map<String, Object> pagination = reader.nextObject();
+                    if (pagination == null)
+                    {
+                        continue;
+                    }
+                    hasMoreItems = JSONConverter.getBoolean(pagination, CloudConstant.HAS_MORE_ITEMS_VALUE);
+                    if (pagination.containsKey(CloudConstant.TOTAL_ITEMS_VALUE))
+                    {
+                        size = JSONConverter.getInteger(pagination, CloudConstant.TOTAL_ITEMS_VALUE).intValue();
+                    }
+                }
+                else if (CloudConstant.ENTRIES_VALUE.equals(name) && reader.beginArray())
+                {
+                    reader.readArray(0, -1, handler);
+                    reader.endArray();
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
     public Boolean getHasMoreItems()
     {
         return hasMoreItems;
@@ -17,14 +17,23 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.test.api.services;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
@@ -36,13 +45,20 @@ import org.alfresco.mobile.android.api.model.ContentStream;
 import org.alfresco.mobile.android.api.model.Document;
 import org.alfresco.mobile.android.api.model.Folder;
 import org.alfresco.mobile.android.api.model.ListingContext;
+import org.alfresco.mobile.android.api.model.ListingProjection;
 import org.alfresco.mobile.android.api.model.Node;
 import org.alfresco.mobile.android.api.model.PagingResult;
 import org.alfresco.mobile.android.api.services.DocumentFolderService;
+import org.alfresco.mobile.android.api.services.ListingRefreshListener;
+import org.alfresco.mobile.android.api.services.cache.impl.ContentDownloadManager;
+import org.alfresco.mobile.android.api.services.cache.impl.NodeCache;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
+import org.alfresco.mobile.android.api.utils.IOUtils;
 import org.alfresco.mobile.android.api.utils.NodeRefUtils;
 import org.alfresco.mobile.android.test.AlfrescoSDKTestCase;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
 import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.http.HttpStatus;
 
 /**
  * Test class for DocumentFolderService.
@@ -1778,6 +1794,324 @@ public class DocumentFolderServiceTest extends AlfrescoSDKTestCase
 
     }
 
+    /**
+     * Nodes retrieved by identifier or path are served by the node cache until
+     * they are modified or deleted.
+     */
+    public void testNodeCache()
+    {
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+        Folder folder = createNewFolder(alfsession, unitTestFolder, SAMPLE_FOLDER_NAME, null);
+
+        // Read by identifier and by path
+        Node node = docfolderservice.getNodeByIdentifier(folder.getIdentifier());
+        Assert.assertNotNull(node);
+        Assert.assertSame(node, docfolderservice.getNodeByIdentifier(folder.getIdentifier()));
+
+        Node nodeByPath = docfolderservice.getChildByPath(unitTestFolder, SAMPLE_FOLDER_NAME);
+        Assert.assertNotNull(nodeByPath);
+        Assert.assertEquals(folder.getIdentifier(), nodeByPath.getIdentifier());
+        Assert.assertSame(nodeByPath, docfolderservice.getChildByPath(unitTestFolder, SAMPLE_FOLDER_NAME));
+
+        // Update invalidates the node
+        Map<String, Serializable> properties = new HashMap<String, Serializable>();
+        properties.put(ContentModel.PROP_TITLE, SAMPLE_FOLDER_DESCRIPTION);
+        docfolderservice.updateProperties(node, properties);
+        node = docfolderservice.getNodeByIdentifier(folder.getIdentifier());
+        Assert.assertEquals(SAMPLE_FOLDER_DESCRIPTION, node.getTitle());
+
+        // Refresh always returns a new node
+        Assert.assertNotSame(node, docfolderservice.refreshNode(node));
+
+        // Delete invalidates the node
+        docfolderservice.deleteNode(node);
+        Assert.assertNull(docfolderservice.getChildByPath(unitTestFolder, SAMPLE_FOLDER_NAME));
+        try
+        {
+            docfolderservice.getNodeByIdentifier(folder.getIdentifier());
+            Assert.fail();
+        }
+        catch (AlfrescoServiceException e)
+        {
+            Assert.assertTrue(true);
+        }
+    }
+
+    /**
+     * With the listing cache, a page already retrieved is returned immediately
+     * and refreshed in background.
+     */
+    public void testListingCache() throws InterruptedException
+    {
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+
+        Map<String, Serializable> settings = new HashMap<String, Serializable>(1);
+        settings.put(AlfrescoSession.LISTING_CACHE, true);
+        AlfrescoSession session = createSession(CONSUMER, CONSUMER_PASSWORD, settings);
+        DocumentFolderService service = session.getServiceRegistry().getDocumentFolderService();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        service.setListingRefreshListener(new ListingRefreshListener()
+        {
+            public void onListingRefresh(Folder folder, ListingContext listingContext, PagingResult<Node> result)
+            {
+                latch.countDown();
+            }
+        });
+
+        PagingResult<Node> page = service.getChildren(unitTestFolder, null);
+        Assert.assertNotNull(page);
+        Assert.assertEquals(0, page.getList().size());
+
+        // Modification by another session : the cached page is returned and
+        // the listener is notified once the page has been refreshed.
+        createNewFolder(alfsession, unitTestFolder, SAMPLE_FOLDER_NAME, null);
+        Assert.assertSame(page, service.getChildren(unitTestFolder, null));
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(1, service.getChildren(unitTestFolder, null).getList().size());
+        Assert.assertEquals(1, service.getFolders(unitTestFolder).size());
+    }
+
+    /**
+     * Nodes retrieved with a listing projection are partial : missing
+     * informations are retrieved on demand.
+     */
+    public void testListingProjection()
+    {
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+        createNewFolder(alfsession, unitTestFolder, SAMPLE_FOLDER_NAME, null);
+
+        ListingContext lc = new ListingContext();
+        lc.setProjection(ListingProjection.SUMMARY);
+        List<Node> nodes = docfolderservice.getChildren(unitTestFolder, lc).getList();
+        Assert.assertEquals(1, nodes.size());
+
+        Folder folder = (Folder) nodes.get(0);
+        Assert.assertFalse(folder.hasAllProperties());
+        Assert.assertEquals(SAMPLE_FOLDER_NAME, folder.getName());
+        Assert.assertNotNull(folder.getModifiedAt());
+        Assert.assertNull(folder.getPropertyValue(PropertyIds.PATH));
+
+        // Informations retrieved on demand
+        Assert.assertTrue(docfolderservice.getPermissions(folder).canEdit());
+        Assert.assertNull(docfolderservice.getChildByPath(folder, SAMPLE_FOLDER_NAME));
+        Node refreshFolder = docfolderservice.refreshNode(folder);
+        Assert.assertTrue(refreshFolder.hasAllProperties());
+        Assert.assertNotNull(refreshFolder.getPropertyValue(PropertyIds.PATH));
+
+        // Default listing is complete
+        Assert.assertTrue(docfolderservice.getChildren(unitTestFolder).get(0).hasAllProperties());
+    }
+
+    /**
+     * Renditions are served by the rendition cache while the node is not
+     * modified.
+     */
+    public void testRenditionCache()
+    {
+        if (isOnPremise() && !hasPublicAPI()) { return; }
+
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+        createDocumentFromAsset(unitTestFolder, "android.jpg");
+        Document doc = (Document) docfolderservice.getChildByPath(unitTestFolder, "android.jpg");
+
+        // Wait for the thumbnail generation
+        ContentFile rendition = null;
+        int i = 0;
+        while (rendition == null && i < 4)
+        {
+            rendition = docfolderservice.getRendition(doc, DocumentFolderService.RENDITION_THUMBNAIL);
+            if (rendition == null)
+            {
+                i++;
+                wait(10000);
+            }
+        }
+        Assert.assertNotNull(rendition);
+        Assert.assertTrue(rendition.getFile().exists());
+        long lastModified = rendition.getFile().lastModified();
+
+        // Same node : the cached file is returned
+        ContentFile cachedRendition = docfolderservice.getRendition(doc, DocumentFolderService.RENDITION_THUMBNAIL);
+        Assert.assertNotNull(cachedRendition);
+        Assert.assertEquals(rendition.getFile(), cachedRendition.getFile());
+        Assert.assertEquals(lastModified, cachedRendition.getFile().lastModified());
+        Assert.assertEquals(rendition.getLength(), cachedRendition.getLength());
+        Assert.assertEquals(rendition.getMimeType(), cachedRendition.getMimeType());
+    }
+
+    /**
+     * Thumbnails of a page are retrieved with the listing and downloaded in a
+     * single batch.
+     */
+    public void testBatchRenditions()
+    {
+        if (isOnPremise() && !hasPublicAPI()) { return; }
+
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+        createNewFolder(alfsession, unitTestFolder, SAMPLE_FOLDER_NAME, null);
+        createDocumentFromAsset(unitTestFolder, "android.jpg");
+        Document doc = (Document) docfolderservice.getChildByPath(unitTestFolder, "android.jpg");
+
+        // Wait for the thumbnail generation
+        ContentStream stream = null;
+        int i = 0;
+        while (stream == null && i < 4)
+        {
+            stream = docfolderservice.getRenditionStream(doc, DocumentFolderService.RENDITION_THUMBNAIL);
+            if (stream == null)
+            {
+                i++;
+                wait(10000);
+            }
+        }
+        Assert.assertNotNull(stream);
+
+        ListingContext lc = new ListingContext();
+        lc.setProjection(ListingProjection.THUMBNAILS);
+        List<Node> nodes = docfolderservice.getChildren(unitTestFolder, lc).getList();
+        Assert.assertEquals(2, nodes.size());
+        Assert.assertTrue(nodes.get(0).hasAllProperties());
+
+        Map<String, ContentFile> renditions = docfolderservice.getRenditions(nodes,
+                DocumentFolderService.RENDITION_THUMBNAIL);
+        Assert.assertEquals(1, renditions.size());
+        ContentFile rendition = renditions.get(doc.getIdentifier());
+        Assert.assertNotNull(rendition);
+        Assert.assertTrue(rendition.getFile().exists());
+        Assert.assertTrue(rendition.getLength() > 0);
+
+        // Second batch : served by the rendition cache
+        renditions = docfolderservice.getRenditions(nodes, DocumentFolderService.RENDITION_THUMBNAIL);
+        Assert.assertEquals(rendition.getFile(), renditions.get(doc.getIdentifier()).getFile());
+        Assert.assertEquals(rendition.getFile(), docfolderservice.getRendition(doc,
+                DocumentFolderService.RENDITION_THUMBNAIL).getFile());
+    }
+
+    /**
+     * An interrupted content download is resumed with a Range request.
+     */
+    public void testResumableContent() throws IOException
+    {
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+        createDocumentFromAsset(unitTestFolder, "android.jpg");
+        final Document doc = (Document) docfolderservice.getChildByPath(unitTestFolder, "android.jpg");
+
+        ContentFile content = docfolderservice.getContent(doc);
+        Assert.assertNotNull(content);
+        Assert.assertEquals(doc.getContentStreamLength(), content.getFile().length());
+        final byte[] bytes = readBytes(content.getFile());
+
+        // Interrupted download : half of the content is written.
+        ContentDownloadManager manager = ContentDownloadManager.getInstance(alfsession
+                .getParameter(AlfrescoSession.CACHE_FOLDER) + "/content");
+        String fileName = NodeRefUtils.getNodeIdentifier(doc.getIdentifier());
+        try
+        {
+            manager.download(fileName, NodeCache.getValidator(doc), doc.getContentStreamLength(),
+                    new ContentDownloadManager.RangeSource()
+                    {
+                        public Response open(long offset, long length, String validator)
+                        {
+                            InputStream stream = new SequenceInputStream(new ByteArrayInputStream(bytes, 0,
+                                    bytes.length / 2), new InputStream()
+                            {
+                                @Override
+                                public int read() throws IOException
+                                {
+                                    throw new IOException("Connection lost");
+                                }
+                            });
+                            return new Response(HttpStatus.SC_OK, "OK", new HashMap<String, List<String>>(), stream,
+                                    null);
+                        }
+                    });
+            Assert.fail();
+        }
+        catch (IOException e)
+        {
+            Assert.assertTrue(true);
+        }
+
+        // Next download restarts from the middle of the content.
+        manager.resetStatistics();
+        content = docfolderservice.getContent(doc);
+        Assert.assertNotNull(content);
+        Assert.assertEquals(1, manager.getResumedCount());
+        Assert.assertEquals(bytes.length / 2, manager.getResumedBytes());
+        Assert.assertTrue(Arrays.equals(bytes, readBytes(content.getFile())));
+        Assert.assertFalse(new File(content.getFile().getPath() + ".part").exists());
+    }
+
+    /**
+     * Large contents are downloaded in several byte ranges.
+     */
+    public void testSegmentedContent() throws IOException
+    {
+        Folder unitTestFolder = createUnitTestFolder(alfsession);
+        createDocumentFromAsset(unitTestFolder, "android.jpg");
+        Document doc = (Document) docfolderservice.getChildByPath(unitTestFolder, "android.jpg");
+        byte[] bytes = readBytes(docfolderservice.getContent(doc).getFile());
+
+        // Every content is segmented
+        Map<String, Serializable> settings = new HashMap<String, Serializable>(2);
+        settings.put(AlfrescoSession.CONTENT_SEGMENT_THRESHOLD, 1L);
+        settings.put(AlfrescoSession.CONTENT_SEGMENT_COUNT, 4);
+        AlfrescoSession segmentedSession = createRepositorySession(settings);
+        DocumentFolderService segmentedService = segmentedSession.getServiceRegistry().getDocumentFolderService();
+
+        ContentDownloadManager manager = ContentDownloadManager.getInstance(segmentedSession
+                .getParameter(AlfrescoSession.CACHE_FOLDER) + "/content");
+        manager.resetStatistics();
+        ContentFile content = segmentedService.getContent(doc);
+        Assert.assertNotNull(content);
+        Assert.assertEquals(1, manager.getSegmentedCount());
+        Assert.assertEquals(doc.getContentStreamLength(), content.getFile().length());
+        Assert.assertTrue(Arrays.equals(bytes, readBytes(content.getFile())));
+    }
+
+    /**
+     * Contents larger than the chunk size are uploaded in several requests
+     * (CMIS 1.1 repositories) : the result must be identical.
+     */
+    public void testChunkedUpload() throws IOException
+    {
+        Map<String, Serializable> settings = new HashMap<String, Serializable>(1);
+        settings.put(AlfrescoSession.UPLOAD_CHUNK_SIZE, 1024);
+        AlfrescoSession chunkedSession = createRepositorySession(settings);
+        DocumentFolderService chunkedService = chunkedSession.getServiceRegistry().getDocumentFolderService();
+        Folder unitTestFolder = createUnitTestFolder(chunkedSession);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+        {
+            builder.append("Chunk ").append(i).append('\n');
+        }
+        ContentFile contentFile = createContentFile(builder.toString());
+        byte[] bytes = readBytes(contentFile.getFile());
+
+        // Create
+        Document doc = chunkedService.createDocument(unitTestFolder, SAMPLE_DATA_DOCFOLDER_FILE, null, contentFile);
+        Assert.assertNotNull(doc);
+        Assert.assertEquals(bytes.length, doc.getContentStreamLength());
+        Assert.assertTrue(Arrays.equals(bytes, readBytes(chunkedService.getContent(doc).getFile())));
+
+        // Update
+        builder.append("Updated");
+        contentFile = createContentFile(builder.toString());
+        bytes = readBytes(contentFile.getFile());
+        doc = chunkedService.updateContent(doc, contentFile);
+        Assert.assertEquals(bytes.length, doc.getContentStreamLength());
+        Assert.assertTrue(Arrays.equals(bytes, readBytes(chunkedService.getContent(doc).getFile())));
+    }
+
+    private static byte[] readBytes(File file) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        IOUtils.copyStream(new FileInputStream(file), bos);
+        return bos.toByteArray();
+    }
+
     public void testArguments()
     {
         // Create Root Test Folder
@@ -26,9 +26,12 @@ import junit.framework.Assert;
 import org.alfresco.mobile.android.api.constants.ContentModel;
 import org.alfresco.mobile.android.api.exceptions.AlfrescoServiceException;
 import org.alfresco.mobile.android.api.exceptions.ErrorCodeRegistry;
+import org.alfresco.mobile.android.api.model.ContentFile;
 import org.alfresco.mobile.android.api.model.Document;
 import org.alfresco.mobile.android.api.model.Folder;
 import org.alfresco.mobile.android.api.model.Node;
+import org.alfresco.mobile.android.api.network.RequestScheduler;
+import org.alfresco.mobile.android.api.network.RouteLimiter;
 import org.alfresco.mobile.android.api.services.DocumentFolderService;
 import org.alfresco.mobile.android.api.services.RatingService;
 import org.alfresco.mobile.android.api.session.AlfrescoSession;
@@ -156,6 +159,45 @@ public class LikeServiceTest extends AlfrescoSDKTestCase
         }
     }
 
+    /**
+     * Like and unlike responses are never read by the caller : their
+     * scheduler slots and route leases must be released once the request is
+     * done.
+     */
+    public void testLikeReleasesUploadSlots()
+    {
+        if (!alfsession.getRepositoryInfo().getCapabilities().doesSupportLikingNodes()) { return; }
+
+        RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.resetStatistics();
+        scheduler.setWaitTimeout(10000);
+        try
+        {
+            Folder unitTestFolder = createUnitTestFolder(alfsession);
+            Folder folder = createNewFolder(alfsession, unitTestFolder, LIKE_FOLDER, null);
+
+            // More unread POST than upload slots
+            for (int i = 0; i <= scheduler.getMaxUploads(); i++)
+            {
+                likeService.like(folder);
+                likeService.unlike(folder);
+            }
+            Assert.assertEquals(0, scheduler.getActiveUploadCount());
+            Assert.assertEquals(0, scheduler.getActiveCount(RequestScheduler.Priority.FOREGROUND));
+            Assert.assertEquals(0, RouteLimiter.getInstance().getActiveCount());
+
+            // An upload still gets through
+            ContentFile content = createContentFile("Upload after likes");
+            Document doc = docFolderService.createDocument(folder, SAMPLE_DOC_NAME + ".txt", null, content);
+            Assert.assertNotNull(doc);
+            Assert.assertEquals(0, scheduler.getTimeoutCount());
+        }
+        finally
+        {
+            scheduler.setWaitTimeout(RequestScheduler.DEFAULT_WAIT_TIMEOUT);
+        }
+    }
+
     // //////////////////////////////////////////////////////////////////////
     // FAILURE TESTS
     // //////////////////////////////////////////////////////////////////////
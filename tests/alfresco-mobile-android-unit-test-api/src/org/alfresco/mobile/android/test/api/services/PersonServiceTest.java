@@ -13,7 +13,10 @@ import org.alfresco.mobile.android.api.model.ContentStream;
 import org.alfresco.mobile.android.api.model.Person;
 import org.alfresco.mobile.android.api.model.impl.PersonImpl;
 import org.alfresco.mobile.android.api.services.PersonService;
+import org.alfresco.mobile.android.api.services.cache.impl.HttpResponseCache;
 import org.alfresco.mobile.android.api.services.impl.AbstractPersonService;
+import org.alfresco.mobile.android.api.services.impl.AlfrescoService;
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.test.AlfrescoSDKTestCase;
 
 /**
@@ -355,7 +358,42 @@ public class PersonServiceTest extends AlfrescoSDKTestCase
         Assert.assertEquals(1, resultPerson.size());
         Assert.assertEquals(referentialPerson.getIdentifier(), resultPerson.get(0).getIdentifier());
     }
-    
+
+    /**
+     * Success Test for conditional requests : an unchanged person is
+     * revalidated against the server and must be identical.
+     * 
+     * @since 1.4
+     */
+    public void testRevalidatePerson()
+    {
+        HttpResponseCache cache = HttpResponseCache.getInstance(alfsession.getParameter(AlfrescoSession.CACHE_FOLDER)
+                + AlfrescoService.HTTP_CACHE_FOLDER, HttpResponseCache.DEFAULT_MAX_SIZE);
+        cache.resetStatistics();
+
+        Person p1 = personService.getPerson(USER_MANAGER_ID);
+        // The server sends a validator : the response is stored (or
+        // revalidated if a previous run already stored it).
+        Assert.assertTrue("No validator sent by the server",
+                cache.getStoreCount() > 0 || cache.getRevalidatedCount() > 0);
+
+        cache.resetStatistics();
+        Person p2 = personService.getPerson(USER_MANAGER_ID);
+
+        // The second request is conditional and answered by a 304 Not
+        // Modified : the stored response is reused.
+        Assert.assertEquals(1, cache.getConditionalCount());
+        Assert.assertEquals(1, cache.getRevalidatedCount());
+        Assert.assertEquals(0, cache.getStoreCount());
+
+        Assert.assertNotNull(p1);
+        Assert.assertNotNull(p2);
+        Assert.assertEquals(p1.getIdentifier(), p2.getIdentifier());
+        Assert.assertEquals(p1.getFullName(), p2.getFullName());
+        Assert.assertEquals(p1.getEmail(), p2.getEmail());
+        Assert.assertEquals(p1.getJobTitle(), p2.getJobTitle());
+        Assert.assertEquals(p1.getAvatarIdentifier(), p2.getAvatarIdentifier());
+    }
 
     @Override
     protected void tearDown() throws Exception
@@ -17,10 +17,26 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.test.api.services;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.Assert;
 
 import org.alfresco.mobile.android.api.constants.OnPremiseConstant;
+import org.alfresco.mobile.android.api.model.Person;
+import org.alfresco.mobile.android.api.model.Site;
 import org.alfresco.mobile.android.api.model.impl.RepositoryVersionHelper;
+import org.alfresco.mobile.android.api.network.RequestCoalescer;
+import org.alfresco.mobile.android.api.network.TransferStatistics;
+import org.alfresco.mobile.android.api.services.AsyncServiceRegistry;
+import org.alfresco.mobile.android.api.services.ServiceCallback;
+import org.alfresco.mobile.android.api.services.ServiceFuture;
+import org.alfresco.mobile.android.api.services.ServiceRegistry;
+import org.alfresco.mobile.android.api.services.ServiceRequest;
 import org.alfresco.mobile.android.test.AlfrescoSDKTestCase;
 
 import android.util.Log;
@@ -106,4 +122,143 @@ public class ServicesTest extends AlfrescoSDKTestCase
             alfsession = createRepositorySession();
         }
     }
+
+    /**
+     * Check requests executed through the asynchronous registry.
+     */
+    public void testAsyncServiceRegistry() throws Exception
+    {
+        AsyncServiceRegistry async = new AsyncServiceRegistry(alfsession);
+        try
+        {
+            ServiceFuture<List<Site>> sites = async.execute(new ServiceRequest<List<Site>>()
+            {
+                public List<Site> execute(ServiceRegistry registry)
+                {
+                    return registry.getSiteService().getSites();
+                }
+            });
+
+            final List<Site> favorites = new ArrayList<Site>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            ServiceFuture<List<Site>> favoriteSites = async.execute(new ServiceRequest<List<Site>>()
+            {
+                public List<Site> execute(ServiceRegistry registry)
+                {
+                    return registry.getSiteService().getFavoriteSites();
+                }
+            }, new ServiceCallback<List<Site>>()
+            {
+                public void onResult(List<Site> result)
+                {
+                    favorites.addAll(result);
+                    latch.countDown();
+                }
+
+                public void onError(Exception e)
+                {
+                    Log.e("ServicesTest", Log.getStackTraceString(e));
+                    latch.countDown();
+                }
+            });
+
+            Assert.assertNotNull(sites.get());
+            Assert.assertEquals(alfsession.getServiceRegistry().getSiteService().getSites().size(), sites.get()
+                    .size());
+            Assert.assertNotNull(favoriteSites.get());
+            Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(favoriteSites.get().size(), favorites.size());
+
+            // Cancellation
+            ServiceFuture<List<Site>> cancelled = async.execute(new ServiceRequest<List<Site>>()
+            {
+                public List<Site> execute(ServiceRegistry registry)
+                {
+                    return registry.getSiteService().getSites();
+                }
+            });
+            cancelled.cancel(true);
+            Assert.assertTrue(cancelled.isCancelled());
+            try
+            {
+                cancelled.get();
+                Assert.fail();
+            }
+            catch (CancellationException e)
+            {
+                // Expected
+            }
+        }
+        finally
+        {
+            async.shutdown();
+        }
+    }
+
+    /**
+     * Identical concurrent reads are merged : each caller still receives a
+     * complete result.
+     */
+    public void testRequestCoalescing() throws Exception
+    {
+        RequestCoalescer coalescer = RequestCoalescer.getInstance();
+        coalescer.resetStatistics();
+
+        AsyncServiceRegistry async = new AsyncServiceRegistry(alfsession);
+        try
+        {
+            List<ServiceFuture<Person>> persons = new ArrayList<ServiceFuture<Person>>();
+            for (int i = 0; i < 5; i++)
+            {
+                persons.add(async.execute(new ServiceRequest<Person>()
+                {
+                    public Person execute(ServiceRegistry registry)
+                    {
+                        return registry.getPersonService().getPerson(alfsession.getPersonIdentifier());
+                    }
+                }));
+            }
+
+            for (ServiceFuture<Person> person : persons)
+            {
+                Assert.assertNotNull(person.get());
+                Assert.assertEquals(alfsession.getPersonIdentifier(), person.get().getIdentifier());
+            }
+        }
+        finally
+        {
+            async.shutdown();
+        }
+
+        Assert.assertTrue(coalescer.getRequestCount() >= 5);
+        Assert.assertTrue(coalescer.getCoalescedCount() + coalescer.getFallbackCount() < coalescer.getRequestCount());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    /**
+     * Responses are counted per endpoint. Decoded bytes are never less than
+     * wire bytes.
+     */
+    public void testTransferStatistics() throws Exception
+    {
+        TransferStatistics statistics = TransferStatistics.getInstance();
+        statistics.resetStatistics();
+
+        Assert.assertNotNull(alfsession.getServiceRegistry().getSiteService().getSites());
+        Assert.assertNotNull(alfsession.getServiceRegistry().getPersonService()
+                .getPerson(alfsession.getPersonIdentifier()));
+
+        Map<String, TransferStatistics.Endpoint> endpoints = statistics.getEndpoints();
+        Assert.assertFalse(endpoints.isEmpty());
+        long responses = 0;
+        for (TransferStatistics.Endpoint endpoint : endpoints.values())
+        {
+            responses += endpoint.getResponseCount();
+            Assert.assertTrue(endpoint.getDecodedBytes() >= endpoint.getWireBytes());
+            Assert.assertTrue(endpoint.getCompressedCount() <= endpoint.getResponseCount());
+        }
+        Assert.assertTrue(responses >= 2);
+        Assert.assertTrue(statistics.getDecodedBytes() >= statistics.getWireBytes());
+        Assert.assertEquals("host/a/b/c/d", TransferStatistics.createEndpointKey("http://host/a/b/c/d/e?f=g"));
+    }
 }
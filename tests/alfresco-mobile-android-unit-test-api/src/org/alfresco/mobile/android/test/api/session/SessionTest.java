@@ -27,6 +27,7 @@ import junit.framework.Assert;
 import org.alfresco.mobile.android.api.constants.OnPremiseConstant;
 import org.alfresco.mobile.android.api.exceptions.AlfrescoSessionException;
 import org.alfresco.mobile.android.api.model.ListingContext;
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
 import org.alfresco.mobile.android.api.session.RepositorySession;
 import org.alfresco.mobile.android.test.AlfrescoSDKTestCase;
 import org.alfresco.mobile.android.test.ServerConfigFile;
@@ -390,6 +391,60 @@ public class SessionTest extends AlfrescoSDKTestCase
         Assert.assertNull(alfsession.getParameter("Key 7"));
     }
 
+    /**
+     * Sessions created with the parallel bootstrap (with and without the
+     * binding remembered from a previous session) must be identical to a
+     * session created by requesting bindings one after another.
+     */
+    public void testParallelBootstrap()
+    {
+        HashMap<String, Serializable> settings = new HashMap<String, Serializable>(1);
+        settings.put(RepositorySession.PARALLEL_BOOTSTRAP, false);
+        RepositorySession sequentialSession = RepositorySession.connect(ALFRESCO_CMIS_BASE_URL, ALFRESCO_CMIS_USER,
+                ALFRESCO_CMIS_PASSWORD, settings);
+        Assert.assertNotNull(sequentialSession);
+
+        // First session discovers the binding, the second one reuses it.
+        for (int i = 0; i < 2; i++)
+        {
+            RepositorySession session = RepositorySession.connect(ALFRESCO_CMIS_BASE_URL, ALFRESCO_CMIS_USER,
+                    ALFRESCO_CMIS_PASSWORD);
+            Assert.assertNotNull(session);
+            Assert.assertEquals(sequentialSession.getRepositoryInfo().getIdentifier(), session.getRepositoryInfo()
+                    .getIdentifier());
+            Assert.assertEquals(sequentialSession.getRepositoryInfo().getEdition(), session.getRepositoryInfo()
+                    .getEdition());
+            Assert.assertEquals(sequentialSession.getRepositoryInfo().getVersion(), session.getRepositoryInfo()
+                    .getVersion());
+            Assert.assertEquals(sequentialSession.getRootFolder().getIdentifier(), session.getRootFolder()
+                    .getIdentifier());
+        }
+    }
+
+    /**
+     * A session created with the browser binding enabled (CMIS 1.1 or
+     * fallback to AtomPub) must be identical to a default session.
+     */
+    public void testBrowserBinding()
+    {
+        RepositorySession atomSession = RepositorySession.connect(ALFRESCO_CMIS_BASE_URL, ALFRESCO_CMIS_USER,
+                ALFRESCO_CMIS_PASSWORD);
+        Assert.assertNotNull(atomSession);
+
+        HashMap<String, Serializable> settings = new HashMap<String, Serializable>(1);
+        settings.put(AlfrescoSession.CMIS_BROWSER_BINDING, true);
+        RepositorySession session = RepositorySession.connect(ALFRESCO_CMIS_BASE_URL, ALFRESCO_CMIS_USER,
+                ALFRESCO_CMIS_PASSWORD, settings);
+        Assert.assertNotNull(session);
+        Assert.assertEquals(atomSession.getRepositoryInfo().getIdentifier(), session.getRepositoryInfo()
+                .getIdentifier());
+        Assert.assertEquals(atomSession.getRootFolder().getIdentifier(), session.getRootFolder().getIdentifier());
+        Assert.assertEquals(
+                atomSession.getServiceRegistry().getDocumentFolderService().getChildren(atomSession.getRootFolder())
+                        .size(),
+                session.getServiceRegistry().getDocumentFolderService().getChildren(session.getRootFolder()).size());
+    }
+
     /**
      * Failure test during creation of RepositorySession
      * 
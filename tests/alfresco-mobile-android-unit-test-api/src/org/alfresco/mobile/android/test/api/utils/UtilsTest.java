@@ -17,12 +17,46 @@
  ******************************************************************************/
 package org.alfresco.mobile.android.test.api.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 import junit.framework.Assert;
 
 import org.alfresco.mobile.android.api.Version;
+import org.alfresco.mobile.android.api.model.ContentFile;
+import org.alfresco.mobile.android.api.model.impl.ContentFileImpl;
+import org.alfresco.mobile.android.api.model.impl.ContentStreamImpl;
+import org.alfresco.mobile.android.api.session.AlfrescoSession;
+import org.alfresco.mobile.android.api.network.CompressionPolicy;
+import org.alfresco.mobile.android.api.network.RequestContext;
+import org.alfresco.mobile.android.api.network.RequestScheduler;
+import org.alfresco.mobile.android.api.network.RetryPolicy;
+import org.alfresco.mobile.android.api.services.cache.impl.RenditionCache;
+import org.alfresco.mobile.android.api.utils.BufferPool;
+import org.alfresco.mobile.android.api.utils.IOUtils;
+import org.alfresco.mobile.android.api.utils.JsonEntryHandler;
+import org.alfresco.mobile.android.api.utils.JsonUtils;
 import org.alfresco.mobile.android.api.utils.NodeRefUtils;
+import org.apache.chemistry.opencmis.client.bindings.impl.SessionImpl;
+import org.apache.chemistry.opencmis.client.bindings.spi.http.Response;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
 
 import android.os.PatternMatcher;
 import android.test.AndroidTestCase;
@@ -95,4 +129,494 @@ public class UtilsTest extends AndroidTestCase
         Assert.assertFalse("i is not equal to " + "I".toLowerCase(new Locale("tr")),
                 "i".equals("I".toLowerCase(new Locale("tr"))));
     }
+
+    public void testStreamingJsonArray() throws Exception
+    {
+        String json = "{\"meta\":{\"skipped\":[1,2,{\"a\":true}]},\"data\":[{\"id\":0,\"title\":\"zero\"},"
+                + "{\"id\":1,\"title\":\"one\"},{\"id\":2,\"title\":\"two\",\"size\":2.5},"
+                + "{\"id\":3,\"title\":null}]}";
+
+        final List<Map<String, Object>> entries = new ArrayList<Map<String, Object>>();
+        JsonEntryHandler handler = new JsonEntryHandler()
+        {
+            public boolean onEntry(int index, Map<String, Object> entry)
+            {
+                entries.add(entry);
+                return true;
+            }
+        };
+
+        // Full array
+        int size = JsonUtils.parseArray(new ByteArrayInputStream(json.getBytes("UTF-8")), "UTF-8",
+                new String[] { "data" }, 0, -1, handler);
+        Assert.assertEquals(4, size);
+        Assert.assertEquals(4, entries.size());
+        Assert.assertEquals(Long.valueOf(0), entries.get(0).get("id"));
+        Assert.assertEquals("one", entries.get(1).get("title"));
+        Assert.assertEquals(Double.valueOf(2.5), entries.get(2).get("size"));
+        Assert.assertTrue(entries.get(3).containsKey("title"));
+        Assert.assertNull(entries.get(3).get("title"));
+
+        // Window : only requested entries are sent to the handler.
+        entries.clear();
+        size = JsonUtils.parseArray(new ByteArrayInputStream(json.getBytes("UTF-8")), "UTF-8",
+                new String[] { "data" }, 1, 2, handler);
+        Assert.assertEquals(4, size);
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("one", entries.get(0).get("title"));
+        Assert.assertEquals("two", entries.get(1).get("title"));
+
+        // Missing path
+        entries.clear();
+        size = JsonUtils.parseArray(new ByteArrayInputStream(json.getBytes("UTF-8")), "UTF-8",
+                new String[] { "unknown" }, 0, -1, handler);
+        Assert.assertEquals(0, size);
+        Assert.assertEquals(0, entries.size());
+    }
+
+    public void testBufferPool() throws Exception
+    {
+        byte[] bytes = new byte[3 * BufferPool.BUFFER_SIZE + 17];
+        new Random(42).nextBytes(bytes);
+
+        // Copy through a pooled buffer
+        BufferPool pool = BufferPool.getInstance();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyStream(new ByteArrayInputStream(bytes), out);
+        Assert.assertTrue(Arrays.equals(bytes, out.toByteArray()));
+
+        // The buffer is reused by the next copy
+        pool.resetStatistics();
+        out = new ByteArrayOutputStream();
+        IOUtils.copyStream(new ByteArrayInputStream(bytes), out);
+        Assert.assertTrue(Arrays.equals(bytes, out.toByteArray()));
+        Assert.assertEquals(1, pool.getAcquiredCount());
+        Assert.assertEquals(0, pool.getAllocatedCount());
+
+        // Progress is notified for every byte read, even byte per byte.
+        File f = new File(getContext().getCacheDir(), "bufferPool.bin");
+        IOUtils.copyFile(new ByteArrayInputStream(bytes), f);
+        final AtomicLong progress = new AtomicLong();
+        ContentFile contentFile = new ContentFileImpl(f)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void fileReadCallback(int nBytes)
+            {
+                progress.addAndGet(nBytes);
+            }
+        };
+        InputStream in = IOUtils.getContentFileInputStream(contentFile);
+        out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1)
+        {
+            out.write(b);
+        }
+        in.close();
+        Assert.assertTrue(Arrays.equals(bytes, out.toByteArray()));
+        Assert.assertEquals(bytes.length, progress.get());
+        f.delete();
+    }
+
+    public void testFileChannelTransfer() throws Exception
+    {
+        byte[] bytes = new byte[(int) IOUtils.MAPPED_THRESHOLD + 4242];
+        new Random(7).nextBytes(bytes);
+
+        // Stream to file : channel writes
+        File source = new File(getContext().getCacheDir(), "channelSource.bin");
+        IOUtils.copyFile(new ByteArrayInputStream(bytes), source);
+        Assert.assertEquals(bytes.length, source.length());
+
+        // File to file : system transfer
+        File copy = new File(getContext().getCacheDir(), "channelCopy.bin");
+        IOUtils.copyFile(new FileInputStream(source), copy);
+        Assert.assertEquals(bytes.length, copy.length());
+
+        // Large file read through a mapped buffer
+        final AtomicLong progress = new AtomicLong();
+        ContentFile contentFile = new ContentFileImpl(copy)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void fileReadCallback(int nBytes)
+            {
+                progress.addAndGet(nBytes);
+            }
+        };
+        InputStream in = IOUtils.getContentFileInputStream(contentFile);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int count;
+        while ((count = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        Assert.assertTrue(Arrays.equals(bytes, out.toByteArray()));
+        Assert.assertEquals(bytes.length, progress.get());
+
+        source.delete();
+        copy.delete();
+    }
+
+    public void testRenditionCacheOversizedEntry() throws Exception
+    {
+        File folder = new File(getContext().getCacheDir(), "renditionCacheTest");
+        RenditionCache cache = RenditionCache.getInstance(folder.getPath(), 10);
+        cache.clear();
+
+        // Bigger than the whole cache : still available to the caller
+        ContentFile big = cache.put("big", "v1", new ContentStreamImpl("big.txt", new ByteArrayInputStream(
+                new byte[20]), "text/plain", 20));
+        Assert.assertTrue(big.getFile().exists());
+        Assert.assertEquals(20, cache.getSize());
+
+        // ... and evicted by the next put
+        ContentFile small = cache.put("small", "v1", new ContentStreamImpl("small.txt", new ByteArrayInputStream(
+                new byte[5]), "text/plain", 5));
+        Assert.assertFalse(big.getFile().exists());
+        Assert.assertNull(cache.get("big", null, 0));
+        Assert.assertTrue(small.getFile().exists());
+        Assert.assertEquals(5, cache.getSize());
+
+        cache.clear();
+    }
+
+    public void testCompressionPolicy() throws Exception
+    {
+        CompressionPolicy policy = CompressionPolicy.getInstance();
+        policy.resetStatistics();
+
+        byte[] text = new byte[100000];
+        for (int i = 0; i < text.length; i++)
+        {
+            text[i] = (byte) ('a' + (i % 7));
+        }
+        byte[] random = new byte[100000];
+        new Random(11).nextBytes(random);
+
+        // Text : compressed without probe
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        Assert.assertTrue(sendBody(policy, "application/atom+xml;type=entry", text, wire));
+        Assert.assertTrue(wire.size() < text.length / 10);
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(wire.toByteArray()));
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int count;
+        while ((count = in.read(buffer)) != -1)
+        {
+            decoded.write(buffer, 0, count);
+        }
+        in.close();
+        Assert.assertTrue(Arrays.equals(text, decoded.toByteArray()));
+        Assert.assertEquals(0, policy.getProbeCount());
+
+        // Already compressed type : sent as is
+        wire = new ByteArrayOutputStream();
+        Assert.assertFalse(sendBody(policy, "image/jpeg", random, wire));
+        Assert.assertTrue(Arrays.equals(random, wire.toByteArray()));
+
+        // Unknown type : probed, then learned
+        for (int i = 0; i < 4; i++)
+        {
+            wire = new ByteArrayOutputStream();
+            Assert.assertFalse(sendBody(policy, "application/x-sdk-test", random, wire));
+            Assert.assertTrue(Arrays.equals(random, wire.toByteArray()));
+        }
+        Assert.assertTrue(policy.getRatio("application/x-sdk-test", null) >= CompressionPolicy.MAX_RATIO);
+        Assert.assertTrue(policy.getProbeCount() >= 3);
+
+        // Small body : never compressed
+        Assert.assertFalse(sendBody(policy, "text/plain", new byte[10], new ByteArrayOutputStream()));
+
+        Assert.assertEquals(1, policy.getCompressedCount());
+        Assert.assertTrue(policy.getWireBytes() < policy.getRawBytes());
+    }
+
+    public void testRetryPolicy() throws Exception
+    {
+        RetryPolicy policy = RetryPolicy.getInstance();
+        policy.resetStatistics();
+
+        // Transient failures : retried until success
+        final int[] calls = new int[1];
+        Response resp = policy.execute("http://localhost/alfresco/service/retry", null, new RetryPolicy.Call()
+        {
+            public Response execute()
+            {
+                return createResponse(++calls[0] < 3 ? 503 : 200);
+            }
+        });
+        Assert.assertEquals(200, resp.getResponseCode());
+        Assert.assertEquals(3, calls[0]);
+        Assert.assertEquals(2, policy.getRetryCount());
+
+        // Other errors : returned immediately
+        calls[0] = 0;
+        resp = policy.execute("http://localhost/alfresco/service/retry", null, new RetryPolicy.Call()
+        {
+            public Response execute()
+            {
+                calls[0]++;
+                return createResponse(404);
+            }
+        });
+        Assert.assertEquals(404, resp.getResponseCode());
+        Assert.assertEquals(1, calls[0]);
+        Assert.assertEquals(2, policy.getRetryCount());
+    }
+
+    public void testHedgedRequest() throws Exception
+    {
+        RetryPolicy policy = RetryPolicy.getInstance();
+        SessionImpl session = new SessionImpl();
+        session.put(AlfrescoSession.HTTP_HEDGING, "true");
+        String url = "http://localhost/alfresco/service/hedge";
+
+        // Latencies of the endpoint
+        for (int i = 0; i < 20; i++)
+        {
+            policy.execute(url, session, new RetryPolicy.Call()
+            {
+                public Response execute()
+                {
+                    return createResponse(200);
+                }
+            });
+        }
+        policy.resetStatistics();
+
+        // The first attempt answers 503 before the hedged one answers 200 :
+        // the transient error doesn't win.
+        final AtomicInteger calls = new AtomicInteger();
+        Response resp = policy.execute(url, session, new RetryPolicy.Call()
+        {
+            public Response execute()
+            {
+                boolean first = calls.incrementAndGet() == 1;
+                try
+                {
+                    Thread.sleep(first ? 200 : 400);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return createResponse(first ? 503 : 200);
+            }
+        });
+        Assert.assertEquals(200, resp.getResponseCode());
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(1, policy.getHedgeCount());
+        Assert.assertEquals(1, policy.getHedgeWinCount());
+        Assert.assertEquals(0, policy.getRetryCount());
+    }
+
+    public void testRequestScheduler() throws Exception
+    {
+        final RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.resetStatistics();
+        scheduler.setMaxRequests(2);
+        scheduler.setMaxBackgroundRequests(1);
+        try
+        {
+            // All slots used by foreground requests
+            scheduler.acquire(RequestScheduler.Priority.FOREGROUND);
+            scheduler.acquire(RequestScheduler.Priority.FOREGROUND);
+
+            final StringBuffer order = new StringBuffer();
+            Thread background = new Thread()
+            {
+                public void run()
+                {
+                    scheduler.acquire(RequestScheduler.Priority.BACKGROUND);
+                    order.append('B');
+                    scheduler.release(RequestScheduler.Priority.BACKGROUND);
+                }
+            };
+            background.start();
+            while (scheduler.getWaitingCount(RequestScheduler.Priority.BACKGROUND) == 0)
+            {
+                Thread.sleep(10);
+            }
+
+            Thread foreground = new Thread()
+            {
+                public void run()
+                {
+                    scheduler.acquire(RequestScheduler.Priority.FOREGROUND);
+                    order.append('F');
+                    scheduler.release(RequestScheduler.Priority.FOREGROUND);
+                }
+            };
+            foreground.start();
+            while (scheduler.getWaitingCount(RequestScheduler.Priority.FOREGROUND) == 0)
+            {
+                Thread.sleep(10);
+            }
+
+            // The queued background request is preempted
+            scheduler.release(RequestScheduler.Priority.FOREGROUND);
+            foreground.join(5000);
+            scheduler.release(RequestScheduler.Priority.FOREGROUND);
+            background.join(5000);
+
+            Assert.assertEquals("FB", order.toString());
+            Assert.assertEquals(1, scheduler.getPreemptedCount());
+            Assert.assertEquals(1, scheduler.getBackgroundCount());
+            Assert.assertEquals(0, scheduler.getActiveCount(RequestScheduler.Priority.FOREGROUND));
+        }
+        finally
+        {
+            scheduler.setMaxRequests(RequestScheduler.DEFAULT_MAX_REQUESTS);
+            scheduler.setMaxBackgroundRequests(RequestScheduler.DEFAULT_MAX_BACKGROUND_REQUESTS);
+        }
+    }
+
+    public void testRequestSchedulerUploads() throws Exception
+    {
+        final RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.resetStatistics();
+        scheduler.setMaxRequests(1);
+        scheduler.setMaxUploads(1);
+        try
+        {
+            // Uploads don't use the slots of the reads
+            scheduler.acquireUpload();
+            scheduler.acquire(RequestScheduler.Priority.FOREGROUND);
+            Assert.assertEquals(1, scheduler.getActiveUploadCount());
+            Assert.assertEquals(1, scheduler.getActiveCount(RequestScheduler.Priority.FOREGROUND));
+            scheduler.release(RequestScheduler.Priority.FOREGROUND);
+
+            // Uploads wait for the upload slots
+            Thread upload = new Thread()
+            {
+                public void run()
+                {
+                    scheduler.acquireUpload();
+                    scheduler.releaseUpload();
+                }
+            };
+            upload.start();
+            while (scheduler.getWaitingUploadCount() == 0)
+            {
+                Thread.sleep(10);
+            }
+            scheduler.acquire(RequestScheduler.Priority.FOREGROUND);
+            scheduler.release(RequestScheduler.Priority.FOREGROUND);
+            Assert.assertEquals(1, scheduler.getWaitingUploadCount());
+
+            scheduler.releaseUpload();
+            upload.join(5000);
+            Assert.assertEquals(0, scheduler.getActiveUploadCount());
+            Assert.assertEquals(2, scheduler.getUploadCount());
+        }
+        finally
+        {
+            scheduler.setMaxRequests(RequestScheduler.DEFAULT_MAX_REQUESTS);
+            scheduler.setMaxUploads(RequestScheduler.DEFAULT_MAX_UPLOADS);
+        }
+    }
+
+    public void testRequestSchedulerTimeout() throws Exception
+    {
+        RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.resetStatistics();
+        scheduler.setMaxUploads(1);
+        scheduler.setWaitTimeout(300);
+        try
+        {
+            scheduler.acquireUpload();
+            try
+            {
+                // No upload slot is released : the request fails instead of
+                // hanging.
+                scheduler.acquireUpload();
+                Assert.fail();
+            }
+            catch (CmisConnectionException e)
+            {
+                Assert.assertEquals(1, scheduler.getTimeoutCount());
+                Assert.assertEquals(0, scheduler.getWaitingUploadCount());
+            }
+            scheduler.releaseUpload();
+
+            // A released slot is available again
+            scheduler.acquireUpload();
+            scheduler.releaseUpload();
+            Assert.assertEquals(0, scheduler.getActiveUploadCount());
+        }
+        finally
+        {
+            scheduler.setMaxUploads(RequestScheduler.DEFAULT_MAX_UPLOADS);
+            scheduler.setWaitTimeout(RequestScheduler.DEFAULT_WAIT_TIMEOUT);
+        }
+    }
+
+    public void testRequestContext() throws Exception
+    {
+        Callable<RequestScheduler.Priority> task = new Callable<RequestScheduler.Priority>()
+        {
+            public RequestScheduler.Priority call()
+            {
+                return RequestScheduler.getCurrentPriority();
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RequestScheduler.Priority previous = RequestScheduler.bind(RequestScheduler.Priority.BACKGROUND);
+        try
+        {
+            // The task keeps the priority of the caller...
+            Assert.assertEquals(RequestScheduler.Priority.BACKGROUND, executor.submit(RequestContext.wrap(task))
+                    .get());
+            Assert.assertEquals(RequestScheduler.Priority.FOREGROUND,
+                    executor.submit(RequestContext.wrap(task, RequestScheduler.Priority.FOREGROUND)).get());
+
+            // ... and the worker thread gets back its own priority.
+            Assert.assertEquals(RequestScheduler.Priority.FOREGROUND, executor.submit(task).get());
+
+            // Executed by the caller thread, the caller context is kept.
+            Assert.assertEquals(RequestScheduler.Priority.FOREGROUND,
+                    RequestContext.wrap(task, RequestScheduler.Priority.FOREGROUND).call());
+            Assert.assertEquals(RequestScheduler.Priority.BACKGROUND, RequestScheduler.getCurrentPriority());
+        }
+        finally
+        {
+            RequestScheduler.bind(previous);
+            executor.shutdown();
+        }
+    }
+
+    private static Response createResponse(int respCode)
+    {
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        return (respCode == 200) ? new Response(respCode, "", new HashMap<String, List<String>>(), stream, null)
+                : new Response(respCode, "", new HashMap<String, List<String>>(), null, stream);
+    }
+
+    private static boolean sendBody(CompressionPolicy policy, String contentType, byte[] body,
+            final ByteArrayOutputStream wire) throws Exception
+    {
+        final boolean[] compressed = new boolean[1];
+        CompressionPolicy.PolicyOutputStream out = policy.createOutputStream(contentType,
+                new CompressionPolicy.Target()
+                {
+                    public OutputStream open(boolean gzip)
+                    {
+                        compressed[0] = gzip;
+                        return wire;
+                    }
+                });
+        for (int i = 0; i < body.length; i += 1000)
+        {
+            out.write(body, i, Math.min(1000, body.length - i));
+        }
+        out.finish();
+        return compressed[0];
+    }
 }